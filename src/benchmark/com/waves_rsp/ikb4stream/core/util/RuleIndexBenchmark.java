@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the {@link HashMap} lookup loop score processors used to have with {@link RuleIndex#score(List)}, on lists of
+ * lemmas where some words have a rule. A score is the time to score one list.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see RuleIndex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleIndexBenchmark {
+    /**
+     * Number of rules
+     */
+    @Param({"50", "1000"})
+    public int nbRules;
+    /**
+     * Number of lemmas of a list
+     */
+    @Param({"20", "200"})
+    public int nbLemmas;
+    /**
+     * Percentage of lemmas which have a rule
+     */
+    @Param({"10"})
+    public int hitPercent;
+    /**
+     * Rules as read by {@link RulesReader#parseJSONRules(String)}
+     */
+    private Map<String, Integer> rulesMap;
+    /**
+     * Rules compiled from {@link RuleIndexBenchmark#rulesMap}
+     */
+    private RuleIndex rules;
+    /**
+     * Lemmas to score
+     */
+    private List<String> lemmas;
+
+    /**
+     * Generate rules and lemmas, with a fixed seed so that all runs score the same lists
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rulesMap = new HashMap<>();
+        for (int i = 0; i < nbRules; i++) {
+            rulesMap.put("rule" + i, 1 + random.nextInt(10));
+        }
+        rules = RuleIndex.compile(rulesMap);
+        lemmas = new ArrayList<>();
+        for (int i = 0; i < nbLemmas; i++) {
+            if (random.nextInt(100) < hitPercent) {
+                lemmas.add(new String("rule" + random.nextInt(nbRules)));
+            } else {
+                lemmas.add(new String("word" + random.nextInt(10 * nbRules)));
+            }
+        }
+    }
+
+    /**
+     * Score lemmas looking up each of them twice in a {@link HashMap}
+     *
+     * @return Score of lemmas
+     */
+    @Benchmark
+    public int hashMap() {
+        int score = 0;
+        for (String word : lemmas) {
+            if (rulesMap.containsKey(word)) {
+                score += rulesMap.get(word);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Score lemmas with {@link RuleIndex#score(List)}
+     *
+     * @return Score of lemmas
+     */
+    @Benchmark
+    public int ruleIndex() {
+        return rules.score(lemmas);
+    }
+}
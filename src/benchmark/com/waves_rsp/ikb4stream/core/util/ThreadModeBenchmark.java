@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compare {@link ThreadMode#PLATFORM} and {@link ThreadMode#VIRTUAL} with many connectors: each connector runs on its
+ * own thread and does blocking fetches, as RSS, DBpedia or the Geocoder do. A score is the time for all connectors
+ * to complete their fetches.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see ThreadMode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThreadModeBenchmark {
+    /**
+     * {@link ThreadMode} of connectors
+     */
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ThreadMode mode;
+    /**
+     * Number of connectors running at once
+     */
+    @Param({"100", "1000", "5000"})
+    public int connectors;
+    /**
+     * Number of fetches of each connector
+     */
+    @Param({"10"})
+    public int fetches;
+    /**
+     * Duration of a blocking fetch in milliseconds
+     */
+    @Param({"5"})
+    public long fetchMs;
+    /**
+     * Number of fetches done, so that nothing is optimized away
+     */
+    private final AtomicLong done = new AtomicLong();
+
+    /**
+     * Check that this JVM can run the {@link ThreadMode}
+     *
+     * @throws IllegalStateException if mode is {@link ThreadMode#VIRTUAL} and this JVM has no virtual threads
+     */
+    @Setup
+    public void setUp() {
+        if (mode == ThreadMode.VIRTUAL && !ThreadMode.isVirtualSupported()) {
+            throw new IllegalStateException("ThreadMode VIRTUAL needs a JVM 21 or newer");
+        }
+    }
+
+    /**
+     * Start all connectors and wait until they are done
+     *
+     * @return Number of fetches done so far
+     * @throws InterruptedException if the benchmark thread is interrupted
+     */
+    @Benchmark
+    public long blockingConnectors() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(connectors);
+        for (int i = 0; i < connectors; i++) {
+            mode.newThread(() -> {
+                try {
+                    for (int j = 0; j < fetches; j++) {
+                        Thread.sleep(fetchMs);
+                        done.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            }, "Connector " + i).start();
+        }
+        latch.await();
+        return done.get();
+    }
+}
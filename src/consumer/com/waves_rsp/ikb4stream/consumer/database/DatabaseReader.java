@@ -22,20 +22,24 @@ import com.mongodb.async.client.MongoClient;
 import com.mongodb.async.client.MongoClients;
 import com.mongodb.async.client.MongoCollection;
 import com.mongodb.async.client.MongoDatabase;
-import com.mongodb.client.model.geojson.Polygon;
-import com.mongodb.client.model.geojson.Position;
+import com.waves_rsp.ikb4stream.core.communication.DatabaseEventsCallback;
 import com.waves_rsp.ikb4stream.core.communication.DatabaseReaderCallback;
 import com.waves_rsp.ikb4stream.core.communication.IDatabaseReader;
 import com.waves_rsp.ikb4stream.core.communication.model.Request;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.EventCodec;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.*;
@@ -80,10 +84,17 @@ public class DatabaseReader implements IDatabaseReader {
      * @see DatabaseReader#getEvent(Request, DatabaseReaderCallback)
      */
     private final MongoCollection<Document> mongoCollection;
+    /**
+     * Same collection as {@link DatabaseReader#mongoCollection}, decoded by {@link EventCodec}
+     *
+     * @see DatabaseReader#getEvents(Request, DatabaseEventsCallback)
+     */
+    private final MongoCollection<Event> eventCollection;
     /**
      * Result limit of request
      *
      * @see DatabaseReader#getEvent(Request, DatabaseReaderCallback)
+     * @see DatabaseReader#getEvents(Request, DatabaseEventsCallback)
      */
     private final int limit;
 
@@ -94,6 +105,7 @@ public class DatabaseReader implements IDatabaseReader {
      * @see DatabaseReader#checkConfiguration()
      * @see DatabaseReader#PROPERTIES_MANAGER
      * @see DatabaseReader#mongoCollection
+     * @see DatabaseReader#eventCollection
      * @see DatabaseReader#limit
      */
     private DatabaseReader() {
@@ -102,6 +114,7 @@ public class DatabaseReader implements IDatabaseReader {
             final MongoClient mongoClient = MongoClients.create(PROPERTIES_MANAGER.getProperty("database.host"));
             final MongoDatabase mongoDatabase = mongoClient.getDatabase(PROPERTIES_MANAGER.getProperty("database.datasource"));
             this.mongoCollection = mongoDatabase.getCollection(PROPERTIES_MANAGER.getProperty("database.collection"));
+            this.eventCollection = mongoCollection.withDocumentClass(Event.class).withCodecRegistry(EventCodec.createCodecRegistry());
         } catch (IllegalArgumentException e) {
             LOGGER.error(e.getMessage());
             throw new IllegalStateException(e);
@@ -144,19 +157,13 @@ public class DatabaseReader implements IDatabaseReader {
      * @param callback Callback method call after select operation
      * @see DatabaseReader#limit
      * @see DatabaseReader#mongoCollection
+     * @see DatabaseReader#createFilter(Request)
      */
     @Override
     public void getEvent(Request request, DatabaseReaderCallback callback) {
-        List<Position> polygon = Arrays.stream(request.getBoundingBox().getLatLongs())
-                .map(l -> new Position(l.getLongitude(), l.getLatitude()))
-                .collect(Collectors.toList());
         final long start = System.currentTimeMillis();
         this.mongoCollection
-                .find(and(
-                        geoIntersects("location", new Polygon(polygon)),
-                        lte("start", request.getEnd().getTime()),
-                        gte("end", request.getStart().getTime())
-                ))
+                .find(createFilter(request))
                 .limit(limit)
                 .into(new ArrayList<Document>(),
                         (result, t) -> {
@@ -168,4 +175,50 @@ public class DatabaseReader implements IDatabaseReader {
                             );
                         });
     }
-}
\ No newline at end of file
+
+    /**
+     * This method requests events from mongodb database like {@link DatabaseReader#getEvent(Request, DatabaseReaderCallback)},
+     * but gives typed {@link Event} decoded by {@link EventCodec}
+     *
+     * @param request  Request to apply to Mongo
+     * @param callback Callback method call after select operation
+     * @throws NullPointerException if request or callback is null
+     * @see DatabaseReader#limit
+     * @see DatabaseReader#eventCollection
+     * @see DatabaseReader#createFilter(Request)
+     */
+    public void getEvents(Request request, DatabaseEventsCallback callback) {
+        Objects.requireNonNull(callback);
+        final long start = System.currentTimeMillis();
+        this.eventCollection
+                .find(createFilter(request))
+                .limit(limit)
+                .into(new ArrayList<Event>(),
+                        (result, t) -> {
+                            long time = System.currentTimeMillis() - start;
+                            METRICS_LOGGER.log("time_dbreader", time);
+                            callback.onResult(t, result);
+                        });
+    }
+
+    /**
+     * Create the filter matching {@link Event} which intersect the bounding box and the period of request
+     *
+     * @param request Request to apply to Mongo
+     * @return Filter to apply to Mongo
+     * @throws NullPointerException if request is null
+     */
+    private static Bson createFilter(Request request) {
+        Objects.requireNonNull(request);
+        // GeoJSON polygon built as a document: Polygon and PolygonCoordinates only have generic varargs constructors
+        List<List<Double>> ring = Arrays.stream(request.getBoundingBox().getLatLongs())
+                .map(l -> Arrays.asList(l.getLongitude(), l.getLatitude()))
+                .collect(Collectors.toList());
+        Bson polygon = new Document("type", "Polygon").append("coordinates", Collections.singletonList(ring));
+        return and(
+                geoIntersects("location", polygon),
+                lte("start", request.getEnd().getTime()),
+                gte("end", request.getStart().getTime())
+        );
+    }
+}
@@ -23,6 +23,7 @@ import com.waves_rsp.ikb4stream.core.communication.ICommunication;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
 import com.waves_rsp.ikb4stream.core.util.ClassManager;
 import com.waves_rsp.ikb4stream.core.util.JarLoader;
+import com.waves_rsp.ikb4stream.core.util.ThreadMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +75,12 @@ public class CommunicationManager {
      * ClassLoader of {@link CommunicationManager}
      */
     private final ClassLoader parent = CommunicationManager.class.getClassLoader();
+    /**
+     * {@link ThreadMode} of each {@link ICommunication}, read from communication.thread.mode
+     *
+     * @see CommunicationManager#launchModule(JarLoader)
+     */
+    private final ThreadMode threadMode = ThreadMode.fromProperty(PROPERTIES_MANAGER, "communication.thread.mode");
     /**
      * {@link DatabaseReader} to read event from Database
      */
@@ -123,6 +130,7 @@ public class CommunicationManager {
      * @param jarLoader JarLoader that represents module
      * @see CommunicationManager#databaseReader
      * @see CommunicationManager#threadCommunications
+     * @see CommunicationManager#threadMode
      * @see CommunicationManager#parent
      */
     private void launchModule(JarLoader jarLoader) {
@@ -136,9 +144,8 @@ public class CommunicationManager {
                         try {
                             ICommunication iCommunication = (ICommunication) ClassManager.newInstance(clazz);
                             if (iCommunication.isActive()) {
-                                Thread thread = new Thread(() -> iCommunication.start(databaseReader));
+                                Thread thread = threadMode.newThread(() -> iCommunication.start(databaseReader), iCommunication.getClass().getName());
                                 thread.setContextClassLoader(classLoader);
-                                thread.setName(iCommunication.getClass().getName());
                                 thread.start();
                                 threadCommunications.put(thread, iCommunication);
                             }
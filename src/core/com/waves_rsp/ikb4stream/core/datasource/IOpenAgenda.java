@@ -20,7 +20,6 @@ package com.waves_rsp.ikb4stream.core.datasource;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
@@ -108,9 +107,10 @@ public interface IOpenAgenda extends IProducerConnector {
      * @param dateEnd     date when the event ending
      * @param city        city where the event take place
      * @param source      event's source
-     * @return {@link Event} with this information
+     * @return {@link Event} with title and description as description, and title, description and city as attributes
      * @throws NullPointerException if one of this param is null
      * @see Event
+     * @see Event#withAttributes(Map)
      */
     default Event createEvent(String latlong, String title, String description, String dateStart, String dateEnd, String city, String source) {
         Objects.requireNonNull(latlong);
@@ -129,11 +129,10 @@ public interface IOpenAgenda extends IProducerConnector {
         }
         LatLong latLong = new LatLong(Double.parseDouble(coord[0]), Double.parseDouble(coord[1]));
         DateFormat df = new SimpleDateFormat("yyyy-mm-dd");
-        ObjectMapper objectMapper = new ObjectMapper();
-        ObjectNode jsonDescription = objectMapper.createObjectNode();
-        jsonDescription.put("title", title);
-        jsonDescription.put("description", description);
-        jsonDescription.put("city", city);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("title", title);
+        attributes.put("description", description);
+        attributes.put("city", city);
         Date start;
         Date end;
         try {
@@ -148,7 +147,7 @@ public interface IOpenAgenda extends IProducerConnector {
             LOGGER.warn("Cannot find the date of end on OpenAgenda.");
             end = Calendar.getInstance().getTime();
         }
-        return new Event(latLong, start, end, jsonDescription.toString(), source);
+        return new Event(latLong, start, end, title + " " + description, source).withAttributes(attributes);
     }
 
     /**
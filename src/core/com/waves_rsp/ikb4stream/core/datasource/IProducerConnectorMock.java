@@ -36,6 +36,7 @@ import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interface to generify mock of {@link IProducerConnector}
@@ -105,13 +106,13 @@ public interface IProducerConnectorMock extends IProducerConnector {
     }
 
     /**
-     * Read events mock file, and push it
+     * Read events mock file, and push it until the queue rejects an {@link Event}
      *
      * @param dataProducer contains the queue
      * @param mapper       indicates how to parse the file
      * @param parser       contains mocks
      * @param start        time when method is called
-     * @return true if interrupted, False if it ended with normal behaviour
+     * @return true if interrupted or stopped by a full queue, False if it ended with normal behaviour
      * @see IDataProducer
      */
     default boolean readMockFile(IDataProducer dataProducer, ObjectMapper mapper, JsonParser parser, long start) {
@@ -119,7 +120,10 @@ public interface IProducerConnectorMock extends IProducerConnector {
             while (parser.nextToken() == JsonToken.START_OBJECT) {
                 ObjectNode objectNode = mapper.readTree(parser);
                 Event event = getEventFromJson(objectNode);
-                pushIfValidEvent(dataProducer, event, start);
+                if (!pushIfValidEvent(dataProducer, event, start)) {
+                    LOGGER.warn("Queue is full, rest of the mock file is dropped");
+                    return true;
+                }
             }
         } catch (IOException e) {
             LOGGER.error("Something went wrong with the facebook post reading");
@@ -145,14 +149,17 @@ public interface IProducerConnectorMock extends IProducerConnector {
      * @param dataProducer {@link IDataProducer} that contains the queue
      * @param event        {@link Event} to push
      * @param start        time when method is called
+     * @return false if the queue rejected event
      * @throws NullPointerException if dataProducer is null
      * @see IDataProducer
      * @see Event
      */
-    static void pushIfValidEvent(IDataProducer dataProducer, Event event, long start) {
+    static boolean pushIfValidEvent(IDataProducer dataProducer, Event event, long start) {
         Objects.requireNonNull(dataProducer);
         if (event != null) {
-            dataProducer.push(event);
+            if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return false;
+            }
             long end = System.currentTimeMillis();
             long result = end - start;
             METRICS_LOGGER.log("time_process_" + event.getSource(), result);
@@ -160,6 +167,7 @@ public interface IProducerConnectorMock extends IProducerConnector {
         } else {
             LOGGER.error("An event was discard (missing field)");
         }
+        return true;
     }
 
 }
@@ -20,6 +20,8 @@ package com.waves_rsp.ikb4stream.core.datasource.model;
 
 import com.waves_rsp.ikb4stream.core.model.Event;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * This class establishes the connexion between an external source and the DataQueue
  *
@@ -28,10 +30,32 @@ import com.waves_rsp.ikb4stream.core.model.Event;
  */
 @FunctionalInterface
 public interface IDataProducer {
+    /**
+     * Default time in seconds a polling connector may wait for room in the queue, see {@link #push(Event, long, TimeUnit)}
+     */
+    long PUSH_TIMEOUT_SECONDS = 30;
+
     /**
      * Push an {@link Event} to be analyse by a {@link IScoreProcessor}
      *
      * @param event {@link Event} to push in process
      */
     void push(Event event);
+
+    /**
+     * Push an {@link Event}, waiting up to timeout for the queue to accept it. Polling connectors should prefer
+     * this method: a full queue then slows them down instead of silently dropping their events. Push connectors
+     * which cannot be slowed down (streams) keep using {@link #push(Event)}. If the calling thread is interrupted
+     * while waiting, the event is not pushed and the interrupt flag is restored.
+     *
+     * @param event   {@link Event} to push in process
+     * @param timeout maximum time to wait for room in the queue
+     * @param unit    {@link TimeUnit} of timeout
+     * @return true if the event has been accepted, false if it was dropped
+     * @see #push(Event)
+     */
+    default boolean push(Event event, long timeout, TimeUnit unit) {
+        push(event);
+        return true;
+    }
 }
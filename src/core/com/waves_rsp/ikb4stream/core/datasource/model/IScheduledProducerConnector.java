@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.datasource.model;
+
+import java.util.Objects;
+
+/**
+ * Interface to implement for a module which polls its source at a fixed interval. Instead of keeping a thread asleep
+ * between two requests, the producer runs {@link #poll(IDataProducer)} on a scheduler shared by all such modules, with
+ * jitter and a backoff after failures.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see IProducerConnector
+ */
+public interface IScheduledProducerConnector extends IProducerConnector {
+    /**
+     * Request the source once and push new {@link com.waves_rsp.ikb4stream.core.model.Event}
+     *
+     * @param dataProducer {@link IDataProducer} contains the data queue
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the source cannot be requested, next poll is delayed
+     */
+    void poll(IDataProducer dataProducer);
+
+    /**
+     * @return Time in milliseconds between two calls to {@link #poll(IDataProducer)}
+     */
+    long getInterval();
+
+    /**
+     * Poll the source from the calling thread until it's interrupted, for callers without a scheduler
+     *
+     * @param dataProducer {@link IDataProducer} contains the data queue
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the source cannot be requested
+     * @see #poll(IDataProducer)
+     * @see #getInterval()
+     */
+    @Override
+    default void load(IDataProducer dataProducer) {
+        Objects.requireNonNull(dataProducer);
+        while (!Thread.currentThread().isInterrupted()) {
+            poll(dataProducer);
+            try {
+                Thread.sleep(getInterval());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -43,4 +43,15 @@ public interface IScoreProcessor {
      * @return List of sources
      */
     List<String> getSources();
+
+    /**
+     * Tell if this ScoreProcessor can be shared by all consumer threads, otherwise an instance is created for each
+     * thread
+     *
+     * @return true if {@link IScoreProcessor#processScore(Event)} can be called by several threads at once, false by
+     * default
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 }
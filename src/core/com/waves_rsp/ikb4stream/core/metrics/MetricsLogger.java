@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
@@ -48,6 +49,7 @@ public class MetricsLogger {
      * @see MetricsLogger#log(Event)
      * @see MetricsLogger#log(Point...)
      * @see MetricsLogger#log(String, long)
+     * @see MetricsLogger#log(Map)
      * @see MetricsLogger#log(String, String)
      * @see MetricsLogger#log(String, String, String)
      */
@@ -65,6 +67,7 @@ public class MetricsLogger {
      *
      * @see MetricsLogger#log(Event)
      * @see MetricsLogger#log(String, long)
+     * @see MetricsLogger#log(Map)
      * @see MetricsLogger#log(String, String)
      * @see MetricsLogger#log(String, String, String)
      */
@@ -74,6 +77,7 @@ public class MetricsLogger {
      *
      * @see MetricsLogger#log(Event)
      * @see MetricsLogger#log(String, long)
+     * @see MetricsLogger#log(Map)
      * @see MetricsLogger#log(String, String)
      * @see MetricsLogger#log(String, String, String)
      */
@@ -83,6 +87,7 @@ public class MetricsLogger {
      *
      * @see MetricsLogger#log(Event)
      * @see MetricsLogger#log(String, long)
+     * @see MetricsLogger#log(Map)
      * @see MetricsLogger#log(String, String)
      */
     private final String measurement;
@@ -143,6 +148,29 @@ public class MetricsLogger {
         }
     }
 
+    /**
+     * Log several long values into influx database as a single point, useful to log a batch with one write
+     *
+     * @param fields Association name of the metric field to its value
+     * @throws NullPointerException if fields is null
+     * @see MetricsLogger#metricsConnector
+     * @see MetricsLogger#measurement
+     * @see MetricsLogger#ASYNC
+     * @see MetricsLogger#AUTOGEN
+     */
+    public void log(Map<String, Long> fields) {
+        Objects.requireNonNull(fields);
+        if (!fields.isEmpty() && checkValidInfluxDBConnexion()) {
+            final InfluxDB influxDB = metricsConnector.getInfluxDB();
+            Point.Builder builder = Point.measurement(measurement).tag(ASYNC, "true")
+                    .time(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            fields.forEach(builder::addField);
+            Point point = builder.build();
+            influxDB.write(metricsConnector.getProperties().getDbName(), AUTOGEN, point);
+            LOGGER.info(MetricsLogger.class.getName() + " : indexed points " + point);
+        }
+    }
+
     /**
      * Log a data as value sent to the influx database into a specific measurement
      *
@@ -18,13 +18,20 @@
 
 package com.waves_rsp.ikb4stream.core.model;
 
+import com.waves_rsp.ikb4stream.core.util.nlp.AnnotatedDocument;
+
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
- * Event class represents an event with starting date and end date
+ * Event class represents an event with starting date and end date. Its location is packed in a double[] and its dates
+ * are kept as milliseconds, {@link LatLong} and Date are only created by {@link Event#getLocation()},
+ * {@link Event#getStart()} and {@link Event#getEnd()}.
  *
  * @author ikb4stream
  * @version 1.0
@@ -39,11 +46,13 @@ public class Event {
      */
     private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(Event.class);
     /**
-     * Position of the {@link Event} represented by a BoundingBox
+     * Position of the {@link Event} represented by a BoundingBox: latitude then longitude of each point
      *
      * @see Event#getLocation()
+     * @see Event#getLatitude(int)
+     * @see Event#getLongitude(int)
      */
-    private final LatLong[] location;
+    private final double[] coordinates;
     /**
      * Description of an {@link Event}
      *
@@ -57,11 +66,12 @@ public class Event {
      */
     private final String source;
     /**
-     * Beginning of {@link Event}
+     * Beginning of {@link Event} in milliseconds since epoch
      *
      * @see Event#getStart()
+     * @see Event#getStartTime()
      */
-    private final Date start;
+    private final long start;
     /**
      * Score associated to this {@link Event}
      *
@@ -69,11 +79,36 @@ public class Event {
      */
     private final byte score;
     /**
-     * End of this {@link Event}
+     * End of this {@link Event} in milliseconds since epoch
      *
      * @see Event#getEnd()
+     * @see Event#getEndTime()
+     */
+    private final long end;
+    /**
+     * Typed attributes filled by a connector for score processors, values are String, Boolean, Long or Double
+     *
+     * @see Event#getAttributes()
+     * @see Event#getAttribute(String, Class)
+     * @see Event#withAttributes(Map)
+     */
+    private final Map<String, Object> attributes;
+    /**
+     * Annotations of a text of this event already computed by a previous stage, kept in memory only: it's not part of
+     * equals, hashCode and toString, and it's not stored
+     *
+     * @see Event#getDocument()
+     * @see Event#withDocument(AnnotatedDocument)
+     */
+    private final AnnotatedDocument document;
+    /**
+     * Identifier of the stored document as an hexadecimal ObjectId, assigned once before the first write so that a
+     * write sent again is recognized by the database. It's not part of equals, hashCode and toString.
+     *
+     * @see Event#getId()
+     * @see Event#withId(String)
      */
-    private final Date end;
+    private final String id;
 
     /**
      * Create an Event without score
@@ -87,23 +122,7 @@ public class Event {
      * @throws IllegalArgumentException if source is empty
      */
     public Event(LatLong[] location, Date start, Date end, String description, String source) {
-        Objects.requireNonNull(location);
-        Objects.requireNonNull(start);
-        Objects.requireNonNull(end);
-        Objects.requireNonNull(description);
-        Objects.requireNonNull(source);
-        if (source.isEmpty()) {
-            throw new IllegalArgumentException("Source argument cannot be empty.");
-        }
-        if (!location[0].equals(location[location.length - 1])) {
-            throw new IllegalArgumentException("BoundingBox is not closed.");
-        }
-        this.location = location;
-        this.start = start;
-        this.end = end;
-        this.description = description;
-        this.score = -1;
-        this.source = source;
+        this(pack(location), start.getTime(), end.getTime(), description, (byte) -1, source);
     }
 
     /**
@@ -119,26 +138,7 @@ public class Event {
      * @throws IllegalArgumentException If source is empty or score is not between 0 and 100
      */
     public Event(LatLong[] location, Date start, Date end, String description, byte score, String source) {
-        Objects.requireNonNull(location);
-        Objects.requireNonNull(start);
-        Objects.requireNonNull(end);
-        Objects.requireNonNull(description);
-        Objects.requireNonNull(source);
-        if (source.isEmpty()) {
-            throw new IllegalArgumentException("Source argument cannot be empty.");
-        }
-        if (score < 0 || score > 100) {
-            throw new IllegalArgumentException("Score need to be between 0 and 100.");
-        }
-        if (!location[0].equals(location[location.length - 1])) {
-            throw new IllegalArgumentException("BoundingBox is not closed.");
-        }
-        this.location = location;
-        this.start = start;
-        this.end = end;
-        this.description = description;
-        this.score = score;
-        this.source = source;
+        this(pack(location), start.getTime(), end.getTime(), description, checkScore(score), source);
     }
 
     /**
@@ -172,33 +172,308 @@ public class Event {
         this(new LatLong[]{location}, start, end, description, score, source);
     }
 
+    /**
+     * Create an Event from its packed form, without {@link LatLong} nor Date
+     *
+     * @param coordinates Latitude then longitude of each point of the BoundingBox, it's not copied and must not be
+     *                    modified afterwards
+     * @param start       The moment when the event begins, in milliseconds since epoch
+     * @param end         End of the event, in milliseconds since epoch
+     * @param description the event content. For instance, the message of a tweet.
+     * @param score       Score of this event between 0 and 100, or -1 if it has no score
+     * @param source      from which datasource the event is provided
+     * @throws NullPointerException     If one params is null
+     * @throws IllegalArgumentException If source is empty, score is invalid or coordinates is not a closed BoundingBox
+     */
+    public Event(double[] coordinates, long start, long end, String description, byte score, String source) {
+        Objects.requireNonNull(coordinates);
+        Objects.requireNonNull(description);
+        Objects.requireNonNull(source);
+        if (source.isEmpty()) {
+            throw new IllegalArgumentException("Source argument cannot be empty.");
+        }
+        if (score != -1) {
+            checkScore(score);
+        }
+        int last = coordinates.length - 2;
+        if (coordinates.length < 2 || coordinates.length % 2 != 0) {
+            throw new IllegalArgumentException("Coordinates must be pairs of latitude and longitude.");
+        }
+        if (Double.compare(coordinates[0], coordinates[last]) != 0 || Double.compare(coordinates[1], coordinates[last + 1]) != 0) {
+            throw new IllegalArgumentException("BoundingBox is not closed.");
+        }
+        this.coordinates = coordinates;
+        this.start = start;
+        this.end = end;
+        this.description = description;
+        this.score = score;
+        this.source = source;
+        this.attributes = Collections.emptyMap();
+        this.document = null;
+        this.id = null;
+    }
+
+    /**
+     * Copy of an Event with another description, score, attributes, document and id, nothing is checked again
+     *
+     * @param event       {@link Event} to copy
+     * @param description New description
+     * @param score       New score
+     * @param attributes  New attributes, already checked and unmodifiable
+     * @param document    New document, can be null
+     * @param id          New id, can be null
+     */
+    private Event(Event event, String description, byte score, Map<String, Object> attributes, AnnotatedDocument document, String id) {
+        this.coordinates = event.coordinates;
+        this.start = event.start;
+        this.end = event.end;
+        this.description = description;
+        this.score = score;
+        this.source = event.source;
+        this.attributes = attributes;
+        this.document = document;
+        this.id = id;
+    }
+
+    /**
+     * Pack a BoundingBox
+     *
+     * @param location BoundingBox to pack
+     * @return Latitude then longitude of each point of location
+     * @throws NullPointerException if location or one of its points is null
+     */
+    private static double[] pack(LatLong[] location) {
+        Objects.requireNonNull(location);
+        double[] coordinates = new double[location.length * 2];
+        for (int i = 0; i < location.length; i++) {
+            coordinates[2 * i] = location[i].getLatitude();
+            coordinates[2 * i + 1] = location[i].getLongitude();
+        }
+        return coordinates;
+    }
+
+    /**
+     * Check a score
+     *
+     * @param score Score to check
+     * @return score
+     * @throws IllegalArgumentException if score is not between 0 and 100
+     */
+    private static byte checkScore(byte score) {
+        if (score < 0 || score > 100) {
+            throw new IllegalArgumentException("Score need to be between 0 and 100.");
+        }
+        return score;
+    }
+
+    /**
+     * Copy this event with another score, location and dates are shared and not checked again
+     *
+     * @param score Score of the copy between 0 and 100
+     * @return Copy of this {@link Event}
+     * @throws IllegalArgumentException If score is not between 0 and 100
+     */
+    public Event withScore(byte score) {
+        return new Event(this, description, checkScore(score), attributes, document, id);
+    }
+
+    /**
+     * Copy this event with another description and score, location and dates are shared and not checked again
+     *
+     * @param description Description of the copy
+     * @param score       Score of the copy between 0 and 100
+     * @return Copy of this {@link Event}
+     * @throws NullPointerException     If description is null
+     * @throws IllegalArgumentException If score is not between 0 and 100
+     */
+    public Event withScore(String description, byte score) {
+        return new Event(this, Objects.requireNonNull(description), checkScore(score), attributes, document, id);
+    }
+
+    /**
+     * Copy this event with other attributes, location and dates are shared and not checked again
+     *
+     * @param attributes Attributes of the copy, values must be String, Boolean, Long or Double
+     * @return Copy of this {@link Event}
+     * @throws NullPointerException     If attributes, one of its names or one of its values is null
+     * @throws IllegalArgumentException If a value is not a String, Boolean, Long or Double
+     */
+    public Event withAttributes(Map<String, ?> attributes) {
+        Objects.requireNonNull(attributes);
+        Map<String, Object> copy = new LinkedHashMap<>();
+        attributes.forEach((name, value) -> {
+            Objects.requireNonNull(name);
+            Objects.requireNonNull(value);
+            if (!(value instanceof String || value instanceof Boolean || value instanceof Long || value instanceof Double)) {
+                throw new IllegalArgumentException("Attribute " + name + " must be a String, Boolean, Long or Double.");
+            }
+            copy.put(name, value);
+        });
+        return new Event(this, description, score, Collections.unmodifiableMap(copy), document, id);
+    }
+
+    /**
+     * Copy this event with an {@link AnnotatedDocument}, so that later stages reuse its annotations
+     *
+     * @param document Annotations of a text of this event
+     * @return Copy of this {@link Event}
+     * @throws NullPointerException If document is null
+     * @see AnnotatedDocument#of(Event, String)
+     */
+    public Event withDocument(AnnotatedDocument document) {
+        return new Event(this, description, score, attributes, Objects.requireNonNull(document), id);
+    }
+
+    /**
+     * Get annotations of a text of this event computed by a previous stage
+     *
+     * @return {@link AnnotatedDocument}, or null if no stage attached one
+     * @see Event#document
+     */
+    public AnnotatedDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Copy this event with the identifier of its stored document
+     *
+     * @param id Hexadecimal ObjectId of the document
+     * @return Copy of this {@link Event}
+     * @throws NullPointerException If id is null
+     * @see com.waves_rsp.ikb4stream.core.util.EventCodec#generateIdIfAbsentFromDocument(Event)
+     */
+    public Event withId(String id) {
+        return new Event(this, description, score, attributes, document, Objects.requireNonNull(id));
+    }
+
+    /**
+     * Get the identifier of the stored document of this event
+     *
+     * @return Hexadecimal ObjectId, or null if none has been assigned yet
+     * @see Event#id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get attributes of this event
+     *
+     * @return Unmodifiable attributes, empty if the connector didn't fill any
+     * @see Event#attributes
+     */
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Get an attribute of this event
+     *
+     * @param name Name of the attribute
+     * @param type Expected type of the attribute
+     * @param <T>  Expected type of the attribute
+     * @return Value of the attribute, or null if it's missing or not of this type
+     * @throws NullPointerException if name or type is null
+     * @see Event#attributes
+     */
+    public <T> T getAttribute(String name, Class<T> type) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(type);
+        Object value = attributes.get(name);
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
     /**
      * Get location of this event
      *
-     * @return LatLong[] to represent the position of this Event
-     * @see Event#location
+     * @return LatLong[] to represent the position of this Event, created at each call
+     * @see Event#coordinates
      */
     public LatLong[] getLocation() {
+        LatLong[] location = new LatLong[coordinates.length / 2];
+        for (int i = 0; i < location.length; i++) {
+            location[i] = new LatLong(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
         return location;
     }
 
+    /**
+     * Get number of points of the location of this event
+     *
+     * @return Number of points, 1 for a single point
+     * @see Event#coordinates
+     */
+    public int getPointCount() {
+        return coordinates.length / 2;
+    }
+
+    /**
+     * Get latitude of a point of the location of this event
+     *
+     * @param point Index of the point
+     * @return Latitude of the point
+     * @throws ArrayIndexOutOfBoundsException if point is not between 0 and {@link Event#getPointCount()} exclusive
+     * @see Event#coordinates
+     */
+    public double getLatitude(int point) {
+        if (point < 0 || point >= getPointCount()) {
+            throw new ArrayIndexOutOfBoundsException(point);
+        }
+        return coordinates[2 * point];
+    }
+
+    /**
+     * Get longitude of a point of the location of this event
+     *
+     * @param point Index of the point
+     * @return Longitude of the point
+     * @throws ArrayIndexOutOfBoundsException if point is not between 0 and {@link Event#getPointCount()} exclusive
+     * @see Event#coordinates
+     */
+    public double getLongitude(int point) {
+        if (point < 0 || point >= getPointCount()) {
+            throw new ArrayIndexOutOfBoundsException(point);
+        }
+        return coordinates[2 * point + 1];
+    }
+
     /**
      * Get the moment when the event begins
      *
-     * @return start date
+     * @return start date, created at each call
      * @see Event#start
      */
     public Date getStart() {
+        return new Date(start);
+    }
+
+    /**
+     * Get the moment when the event begins
+     *
+     * @return start in milliseconds since epoch
+     * @see Event#start
+     */
+    public long getStartTime() {
         return start;
     }
 
     /**
      * Get the moment when the end of the event
      *
-     * @return end date
+     * @return end date, created at each call
      * @see Event#end
      */
     public Date getEnd() {
+        return new Date(end);
+    }
+
+    /**
+     * Get the moment when the end of the event
+     *
+     * @return end in milliseconds since epoch
+     * @see Event#end
+     */
+    public long getEndTime() {
         return end;
     }
 
@@ -244,11 +519,10 @@ public class Event {
         if (o == null || getClass() != o.getClass()) return false;
         Event event = (Event) o;
         if (score != event.score) return false;
-        if (!Arrays.equals(location, event.location)) return false;
-        if (start != null ? !start.equals(event.start) : event.start != null) return false;
-        if (end != null ? !end.equals(event.end) : event.end != null) return false;
-        if (description != null ? !description.equals(event.description) : event.description != null) return false;
-        return source != null ? source.equals(event.source) : event.source == null;
+        if (start != event.start) return false;
+        if (end != event.end) return false;
+        if (!Arrays.equals(coordinates, event.coordinates)) return false;
+        return description.equals(event.description) && source.equals(event.source) && attributes.equals(event.attributes);
     }
 
     /**
@@ -258,12 +532,13 @@ public class Event {
      */
     @Override
     public int hashCode() {
-        int result = Arrays.hashCode(location);
-        result = 31 * result + (start != null ? start.hashCode() : 0);
-        result = 31 * result + (end != null ? end.hashCode() : 0);
-        result = 31 * result + (description != null ? description.hashCode() : 0);
+        int result = Arrays.hashCode(coordinates);
+        result = 31 * result + Long.hashCode(start);
+        result = 31 * result + Long.hashCode(end);
+        result = 31 * result + description.hashCode();
         result = 31 * result + (int) score;
-        result = 31 * result + (source != null ? source.hashCode() : 0);
+        result = 31 * result + source.hashCode();
+        result = 31 * result + attributes.hashCode();
         return result;
     }
 
@@ -271,22 +546,24 @@ public class Event {
      * Represent this {@link Event} as a String
      *
      * @return a string which contains information about an event
-     * @see Event#location
+     * @see Event#coordinates
      * @see Event#start
      * @see Event#end
      * @see Event#description
      * @see Event#score
      * @see Event#source
+     * @see Event#attributes
      */
     @Override
     public String toString() {
         return "Event{" +
-                "location=" + Arrays.stream(location).map(LatLong::toString).collect(Collectors.joining(",", "[", "]")) +
-                ", start=" + start +
-                ", end=" + end +
+                "location=" + Arrays.stream(getLocation()).map(LatLong::toString).collect(Collectors.joining(",", "[", "]")) +
+                ", start=" + getStart() +
+                ", end=" + getEnd() +
                 ", description='" + description + '\'' +
                 ", score=" + score +
                 ", source = " + source +
+                ", attributes=" + attributes +
                 '}';
     }
 
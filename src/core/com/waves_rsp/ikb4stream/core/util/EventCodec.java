@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.core.util;
+
+import com.mongodb.async.client.MongoClients;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Mongodb {@link Codec} which writes an {@link Event} straight into BSON, without JSON in between.
+ * Dates are stored as epoch milliseconds and location as a GeoJSON Point (one {@link LatLong}) or Polygon.
+ * The _id of the document is the id of the {@link Event}: as an {@link Event} is immutable and the driver ignores the
+ * copy returned by {@link EventCodec#generateIdIfAbsentFromDocument(Event)}, writers assign it before the first insert.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ */
+public class EventCodec implements CollectibleCodec<Event> {
+    /**
+     * Constant value {@value ID_FIELD}
+     *
+     * @see EventCodec#encode(BsonWriter, Event, EncoderContext)
+     * @see EventCodec#decode(BsonReader, DecoderContext)
+     */
+    private static final String ID_FIELD = "_id";
+    /**
+     * Constant value {@value LOCATION_FIELD}
+     *
+     * @see EventCodec#encode(BsonWriter, Event, EncoderContext)
+     * @see EventCodec#decode(BsonReader, DecoderContext)
+     */
+    private static final String LOCATION_FIELD = "location";
+    /**
+     * Constant value {@value COORDINATES_FIELD}
+     *
+     * @see EventCodec#writeLocation(BsonWriter, Event)
+     * @see EventCodec#readLocation(BsonReader)
+     */
+    private static final String COORDINATES_FIELD = "coordinates";
+
+    /**
+     * Create a {@link CodecRegistry} with {@link EventCodec} and default codecs of mongodb driver
+     *
+     * @return {@link CodecRegistry} to use on a collection of {@link Event}
+     */
+    public static CodecRegistry createCodecRegistry() {
+        return CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new EventCodec()),
+                MongoClients.getDefaultCodecRegistry());
+    }
+
+    /**
+     * Write an {@link Event} as a BSON document, with its id as _id if it has one
+     *
+     * @param writer         {@link BsonWriter} which receives the document
+     * @param event          {@link Event} to write
+     * @param encoderContext Context of encoding
+     * @throws NullPointerException if writer or event is null
+     * @see EventCodec#writeLocation(BsonWriter, Event)
+     */
+    @Override
+    public void encode(BsonWriter writer, Event event, EncoderContext encoderContext) {
+        Objects.requireNonNull(writer);
+        Objects.requireNonNull(event);
+        writer.writeStartDocument();
+        if (event.getId() != null) {
+            writer.writeObjectId(ID_FIELD, new ObjectId(event.getId()));
+        }
+        writer.writeString("description", event.getDescription());
+        writer.writeString("source", event.getSource());
+        writer.writeInt32("score", event.getScore());
+        writer.writeInt64("start", event.getStartTime());
+        writer.writeInt64("end", event.getEndTime());
+        writer.writeName(LOCATION_FIELD);
+        writeLocation(writer, event);
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Write a GeoJSON Point if there is a single {@link LatLong}, a Polygon otherwise
+     *
+     * @param writer {@link BsonWriter} which receives the geometry
+     * @param event  {@link Event} whose location is written
+     * @see EventCodec#COORDINATES_FIELD
+     */
+    private static void writeLocation(BsonWriter writer, Event event) {
+        writer.writeStartDocument();
+        if (event.getPointCount() == 1) {
+            writer.writeString("type", "Point");
+            writer.writeName(COORDINATES_FIELD);
+            writePosition(writer, event.getLatitude(0), event.getLongitude(0));
+        } else {
+            writer.writeString("type", "Polygon");
+            writer.writeStartArray(COORDINATES_FIELD);
+            writer.writeStartArray();
+            for (int i = 0; i < event.getPointCount(); i++) {
+                writePosition(writer, event.getLatitude(i), event.getLongitude(i));
+            }
+            writer.writeEndArray();
+            writer.writeEndArray();
+        }
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Write a GeoJSON position: longitude then latitude
+     *
+     * @param writer    {@link BsonWriter} which receives the position
+     * @param latitude  Latitude to write
+     * @param longitude Longitude to write
+     */
+    private static void writePosition(BsonWriter writer, double latitude, double longitude) {
+        writer.writeStartArray();
+        writer.writeDouble(longitude);
+        writer.writeDouble(latitude);
+        writer.writeEndArray();
+    }
+
+    /**
+     * Read an {@link Event} from a BSON document, its _id becomes the id of the {@link Event} and unknown fields are skipped
+     *
+     * @param reader         {@link BsonReader} positioned on the document
+     * @param decoderContext Context of decoding
+     * @return {@link Event} stored in the document
+     * @throws NullPointerException          if reader is null
+     * @throws BsonInvalidOperationException if a field of {@link Event} is missing
+     * @see EventCodec#readLocation(BsonReader)
+     */
+    @Override
+    public Event decode(BsonReader reader, DecoderContext decoderContext) {
+        Objects.requireNonNull(reader);
+        double[] location = null;
+        String description = null;
+        String source = null;
+        Long start = null;
+        Long end = null;
+        long score = -1;
+        ObjectId id = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "description":
+                    description = reader.readString();
+                    break;
+                case "source":
+                    source = reader.readString();
+                    break;
+                case "score":
+                    score = readLong(reader);
+                    break;
+                case "start":
+                    start = readLong(reader);
+                    break;
+                case "end":
+                    end = readLong(reader);
+                    break;
+                case LOCATION_FIELD:
+                    location = readLocation(reader);
+                    break;
+                case ID_FIELD:
+                    if (reader.getCurrentBsonType() == BsonType.OBJECT_ID) {
+                        id = reader.readObjectId();
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        if (location == null || description == null || source == null || start == null || end == null) {
+            throw new BsonInvalidOperationException("Document is not a valid event");
+        }
+        Event event = new Event(location, start, end, description, score < 0 || score > 100 ? -1 : (byte) score, source);
+        return id == null ? event : event.withId(id.toHexString());
+    }
+
+    /**
+     * Read a number or a date as a long
+     *
+     * @param reader {@link BsonReader} positioned on the value
+     * @return Value as long
+     * @throws BsonInvalidOperationException if the value is not a number
+     */
+    private static long readLong(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            case DATE_TIME:
+                return reader.readDateTime();
+            default:
+                throw new BsonInvalidOperationException("Invalid number type " + reader.getCurrentBsonType());
+        }
+    }
+
+    /**
+     * Read a number as a double
+     *
+     * @param reader {@link BsonReader} positioned on the value
+     * @return Value as double
+     * @throws BsonInvalidOperationException if the value is not a number
+     */
+    private static double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOUBLE:
+                return reader.readDouble();
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            default:
+                throw new BsonInvalidOperationException("Invalid number type " + reader.getCurrentBsonType());
+        }
+    }
+
+    /**
+     * Read a GeoJSON Point or the outer ring of a GeoJSON Polygon
+     *
+     * @param reader {@link BsonReader} positioned on the geometry
+     * @return Latitude then longitude of each point of the geometry
+     * @see EventCodec#COORDINATES_FIELD
+     */
+    private static double[] readLocation(BsonReader reader) {
+        List<double[]> positions = new ArrayList<>();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (!COORDINATES_FIELD.equals(reader.readName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.readStartArray();
+            if (reader.readBsonType() == BsonType.ARRAY) {
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    positions.add(readPosition(reader));
+                }
+                reader.readEndArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    reader.skipValue();
+                }
+                reader.readEndArray();
+            } else {
+                double longitude = readDouble(reader);
+                reader.readBsonType();
+                double latitude = readDouble(reader);
+                reader.readEndArray();
+                positions.add(new double[]{latitude, longitude});
+            }
+        }
+        reader.readEndDocument();
+        double[] coordinates = new double[2 * positions.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            coordinates[2 * i] = positions.get(i)[0];
+            coordinates[2 * i + 1] = positions.get(i)[1];
+        }
+        return coordinates;
+    }
+
+    /**
+     * Read a GeoJSON position: longitude then latitude
+     *
+     * @param reader {@link BsonReader} positioned on the position
+     * @return Latitude and longitude of this position
+     */
+    private static double[] readPosition(BsonReader reader) {
+        reader.readStartArray();
+        reader.readBsonType();
+        double longitude = readDouble(reader);
+        reader.readBsonType();
+        double latitude = readDouble(reader);
+        reader.readEndArray();
+        return new double[]{latitude, longitude};
+    }
+
+    /**
+     * Give a new ObjectId to an {@link Event} without id
+     *
+     * @param event {@link Event} which needs an id
+     * @return Copy of event with a new id, or event itself if it already has one
+     * @throws NullPointerException if event is null
+     * @see Event#withId(String)
+     */
+    @Override
+    public Event generateIdIfAbsentFromDocument(Event event) {
+        Objects.requireNonNull(event);
+        return documentHasId(event) ? event : event.withId(new ObjectId().toHexString());
+    }
+
+    /**
+     * Check if an {@link Event} already has an id
+     *
+     * @param event {@link Event} to check
+     * @return true if event has an id
+     * @throws NullPointerException if event is null
+     */
+    @Override
+    public boolean documentHasId(Event event) {
+        return Objects.requireNonNull(event).getId() != null;
+    }
+
+    /**
+     * Get the _id of an {@link Event}
+     *
+     * @param event {@link Event} with an id
+     * @return Id of event as an ObjectId
+     * @throws NullPointerException  if event is null
+     * @throws IllegalStateException if event has no id
+     */
+    @Override
+    public BsonValue getDocumentId(Event event) {
+        if (!documentHasId(event)) {
+            throw new IllegalStateException("Event has no id");
+        }
+        return new BsonObjectId(new ObjectId(event.getId()));
+    }
+
+    /**
+     * @return {@link Event} class
+     */
+    @Override
+    public Class<Event> getEncoderClass() {
+        return Event.class;
+    }
+}
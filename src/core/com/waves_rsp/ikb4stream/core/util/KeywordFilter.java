@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton telling in one pass over a text if it contains at least one of some keywords, ignoring case.
+ * Keywords are matched anywhere in the text, not only on word boundaries, so that it can be used as a cheap
+ * pre-filter: a text it rejects can't contain any of the keywords.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see RulesReader#compileJSONFilter(String)
+ */
+public final class KeywordFilter {
+    /**
+     * Root state of the automaton
+     */
+    private static final int ROOT = 0;
+    /**
+     * State each transition slot starts from
+     *
+     * @see KeywordFilter#slot(int, char)
+     */
+    private final int[] sources;
+    /**
+     * Char of each transition slot
+     */
+    private final char[] chars;
+    /**
+     * State each transition slot leads to, 0 if the slot is free as no transition leads to the root
+     */
+    private final int[] targets;
+    /**
+     * Failure link of each state: the state of its longest proper suffix which is a prefix of a keyword
+     */
+    private final int[] failures;
+    /**
+     * true if a keyword ends at a state or at one of its suffixes
+     */
+    private final boolean[] terminals;
+    /**
+     * Size of the transition table minus one, the size is a power of two
+     */
+    private final int mask;
+
+    /**
+     * Create a {@link KeywordFilter} from the transitions of a trie
+     *
+     * @param transitions Children of each state by char
+     * @param terminals   true if a keyword ends at a state
+     */
+    private KeywordFilter(List<Map<Character, Integer>> transitions, boolean[] terminals) {
+        int nbStates = transitions.size();
+        int size = Integer.highestOneBit(Math.max(2, nbStates * 2 - 1)) << 1;
+        this.sources = new int[size];
+        this.chars = new char[size];
+        this.targets = new int[size];
+        this.failures = new int[nbStates];
+        this.terminals = terminals;
+        this.mask = size - 1;
+        for (int state = 0; state < nbStates; state++) {
+            for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                int slot = slot(state, transition.getKey());
+                sources[slot] = state;
+                chars[slot] = transition.getKey();
+                targets[slot] = transition.getValue();
+            }
+        }
+        Queue<Integer> queue = new ArrayDeque<>(transitions.get(ROOT).values());
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                int child = transition.getValue();
+                int failure = failures[state];
+                while (failure != ROOT && next(failure, transition.getKey()) < 0) {
+                    failure = failures[failure];
+                }
+                int next = next(failure, transition.getKey());
+                failures[child] = next < 0 ? ROOT : next;
+                terminals[child] |= terminals[failures[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Compile keywords, empty keywords are ignored
+     *
+     * @param keywords Keywords to find
+     * @return {@link KeywordFilter} of keywords
+     * @throws NullPointerException if keywords or one of its keywords is null
+     */
+    public static KeywordFilter compile(Collection<String> keywords) {
+        Objects.requireNonNull(keywords);
+        List<Map<Character, Integer>> transitions = new ArrayList<>();
+        transitions.add(new HashMap<>());
+        List<Integer> ends = new ArrayList<>();
+        for (String keyword : keywords) {
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.get(state).put(c, next);
+                    transitions.add(new HashMap<>());
+                }
+                state = next;
+            }
+            ends.add(state);
+        }
+        boolean[] terminals = new boolean[transitions.size()];
+        for (int end : ends) {
+            terminals[end] = true;
+        }
+        return new KeywordFilter(transitions, terminals);
+    }
+
+    /**
+     * Check if a text contains at least one keyword, ignoring case
+     *
+     * @param text Text to scan
+     * @return true if a keyword is found in text
+     * @throws NullPointerException if text is null
+     */
+    public boolean matches(CharSequence text) {
+        Objects.requireNonNull(text);
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = next(state, c);
+            while (next < 0 && state != ROOT) {
+                state = failures[state];
+                next = next(state, c);
+            }
+            state = next < 0 ? ROOT : next;
+            if (terminals[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the state a transition leads to
+     *
+     * @param state State the transition starts from
+     * @param c     Char of the transition
+     * @return Next state, or -1 if there is no such transition
+     */
+    private int next(int state, char c) {
+        int slot = slot(state, c);
+        return targets[slot] == 0 ? -1 : targets[slot];
+    }
+
+    /**
+     * Find the slot of a transition by linear probing
+     *
+     * @param state State the transition starts from
+     * @param c     Char of the transition
+     * @return Slot of the transition, or the free slot where it would be
+     */
+    private int slot(int state, char c) {
+        int hash = state * 0x9E3779B9 + c;
+        hash ^= hash >>> 16;
+        int slot = hash & mask;
+        while (targets[slot] != 0 && (sources[slot] != state || chars[slot] != c)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
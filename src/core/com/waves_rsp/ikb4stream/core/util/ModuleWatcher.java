@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watch a directory of modules and its sub-directories: a jar which is created or modified is given to a callback once it
+ * hasn't changed for a delay, so a jar being copied isn't loaded half written, a deleted jar is given to another one.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see JarLoader
+ */
+public class ModuleWatcher {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModuleWatcher.class);
+    /**
+     * WatchService notified of changes in the directory
+     *
+     * @see ModuleWatcher#register(Path)
+     */
+    private final WatchService watchService;
+    /**
+     * Directories watched by {@link ModuleWatcher#watchService}
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /**
+     * Jars changed and time in milliseconds of their last change, until they are given to a callback
+     *
+     * @see ModuleWatcher#fire(long)
+     */
+    private final Map<Path, Long> pending = new HashMap<>();
+    /**
+     * Jars deleted since the last call of {@link ModuleWatcher#fire(long)}
+     */
+    private final Map<Path, Boolean> deleted = new HashMap<>();
+    /**
+     * Time in milliseconds a jar must stay unchanged before being given to {@link ModuleWatcher#onChange}
+     */
+    private final long delayMs;
+    /**
+     * Callback of a jar created or modified
+     */
+    private final Consumer<Path> onChange;
+    /**
+     * Callback of a jar deleted
+     */
+    private final Consumer<Path> onDelete;
+    /**
+     * Thread running {@link ModuleWatcher#watch()}
+     *
+     * @see ModuleWatcher#start(String)
+     * @see ModuleWatcher#stop()
+     */
+    private Thread thread;
+
+    /**
+     * Watch a directory of modules
+     *
+     * @param directory Directory to watch with its sub-directories
+     * @param delayMs   Time in milliseconds a jar must stay unchanged before being given to onChange
+     * @param onChange  Callback of a jar created or modified, with its absolute path
+     * @param onDelete  Callback of a jar deleted, with its absolute path
+     * @throws NullPointerException if directory, onChange or onDelete is null
+     * @throws IOException          if directory cannot be watched
+     */
+    public ModuleWatcher(Path directory, long delayMs, Consumer<Path> onChange, Consumer<Path> onDelete) throws IOException {
+        Objects.requireNonNull(directory);
+        this.onChange = Objects.requireNonNull(onChange);
+        this.onDelete = Objects.requireNonNull(onDelete);
+        this.delayMs = Math.max(0, delayMs);
+        this.watchService = directory.getFileSystem().newWatchService();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            Iterator<Path> iterator = paths.filter(Files::isDirectory).iterator();
+            while (iterator.hasNext()) {
+                register(iterator.next().toAbsolutePath().normalize());
+            }
+        }
+    }
+
+    /**
+     * Start watching on a daemon thread
+     *
+     * @param name Name of the thread
+     * @throws NullPointerException  if name is null
+     * @throws IllegalStateException if this watcher is already started
+     */
+    public synchronized void start(String name) {
+        Objects.requireNonNull(name);
+        if (thread != null) {
+            throw new IllegalStateException("ModuleWatcher is already started");
+        }
+        thread = new Thread(this::watch, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching, pending changes are forgotten
+     */
+    public synchronized void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.warn("Cannot close watch service: {}", e.getMessage());
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Wait changes until {@link ModuleWatcher#stop()}
+     *
+     * @see ModuleWatcher#poll(long)
+     */
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                poll(delayMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("ModuleWatcher is stopped");
+        }
+    }
+
+    /**
+     * Wait a change, record it, then call the callbacks of jars which are ready
+     *
+     * @param timeoutMs Max time to wait a change in milliseconds
+     * @throws InterruptedException        if current thread is interrupted
+     * @throws ClosedWatchServiceException if this watcher is stopped
+     * @see ModuleWatcher#fire(long)
+     */
+    void poll(long timeoutMs) throws InterruptedException {
+        WatchKey key = pending.isEmpty() && deleted.isEmpty()
+                ? watchService.take()
+                : watchService.poll(Math.max(1, timeoutMs), TimeUnit.MILLISECONDS);
+        long now = System.currentTimeMillis();
+        if (key != null) {
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() != OVERFLOW && directory != null) {
+                    record(directory.resolve((Path) event.context()), event.kind(), now);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+        fire(now);
+    }
+
+    /**
+     * Record a change of a path
+     *
+     * @param path Path which changed
+     * @param kind Kind of change
+     * @param now  Time of the change in milliseconds
+     */
+    private void record(Path path, WatchEvent.Kind<?> kind, long now) {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (kind == ENTRY_CREATE && Files.isDirectory(absolute)) {
+            try (Stream<Path> paths = Files.walk(absolute)) {
+                Iterator<Path> iterator = paths.iterator();
+                while (iterator.hasNext()) {
+                    Path child = iterator.next();
+                    if (Files.isDirectory(child)) {
+                        register(child);
+                    } else {
+                        record(child, ENTRY_CREATE, now);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Cannot watch {}: {}", absolute, e.getMessage());
+            }
+            return;
+        }
+        if (!absolute.toString().toLowerCase().endsWith(".jar")) {
+            return;
+        }
+        if (kind == ENTRY_DELETE) {
+            pending.remove(absolute);
+            deleted.put(absolute, Boolean.TRUE);
+        } else {
+            deleted.remove(absolute);
+            pending.put(absolute, now);
+        }
+    }
+
+    /**
+     * Call {@link ModuleWatcher#onDelete} for deleted jars and {@link ModuleWatcher#onChange} for jars unchanged since
+     * {@link ModuleWatcher#delayMs}
+     *
+     * @param now Current time in milliseconds
+     */
+    void fire(long now) {
+        deleted.keySet().forEach(path -> call(onDelete, path));
+        deleted.clear();
+        Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            if (now - entry.getValue() >= delayMs) {
+                iterator.remove();
+                if (Files.isRegularFile(entry.getKey())) {
+                    call(onChange, entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Call a callback, a failure is logged and doesn't stop this watcher
+     *
+     * @param callback Callback to call
+     * @param path     Jar given to callback
+     */
+    private static void call(Consumer<Path> callback, Path path) {
+        try {
+            callback.accept(path);
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot reload {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Watch a directory
+     *
+     * @param directory Directory to watch
+     * @throws IOException if directory cannot be watched
+     */
+    private void register(Path directory) throws IOException {
+        directories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keyword rules compiled once from a map of rules: a rule is a word or a phrase of words separated by spaces, and its
+ * weight. Phrases are stored in a trie whose edges are kept in a single open-addressing table of primitive arrays, so
+ * matching doesn't allocate nor box. Scores are accumulated in an int, {@link RuleIndex#clamp(int, byte, byte)}
+ * gives the final byte score without overflow.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see RulesReader#compileJSONRules(String)
+ */
+public final class RuleIndex {
+    /**
+     * Root node of the trie
+     */
+    private static final int ROOT = 0;
+    /**
+     * Word of each edge slot, null if the slot is free
+     *
+     * @see RuleIndex#slot(int, String, int)
+     */
+    private final String[] words;
+    /**
+     * Node the edge of each slot starts from
+     */
+    private final int[] parents;
+    /**
+     * Node the edge of each slot leads to
+     */
+    private final int[] children;
+    /**
+     * Weight of the rule ending at each node, 0 if no rule ends at it
+     */
+    private final int[] weights;
+    /**
+     * Size of the table minus one, the size is a power of two
+     */
+    private final int mask;
+
+    /**
+     * Create an empty {@link RuleIndex} for a number of words
+     *
+     * @param nbWords Max number of edges of the trie
+     */
+    private RuleIndex(int nbWords) {
+        int size = Integer.highestOneBit(Math.max(2, nbWords * 2 - 1)) << 1;
+        this.words = new String[size];
+        this.parents = new int[size];
+        this.children = new int[size];
+        this.weights = new int[nbWords + 1];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Compile rules
+     *
+     * @param rules Weight of each word or phrase, words of a phrase are separated by spaces
+     * @return {@link RuleIndex} of rules
+     * @throws NullPointerException if rules, one of its rules or one of its weights is null
+     */
+    public static RuleIndex compile(Map<String, Integer> rules) {
+        Objects.requireNonNull(rules);
+        int nbWords = 0;
+        for (String rule : rules.keySet()) {
+            nbWords += split(rule).length;
+        }
+        RuleIndex index = new RuleIndex(nbWords);
+        int nodes = 1;
+        for (Map.Entry<String, Integer> rule : rules.entrySet()) {
+            int weight = Objects.requireNonNull(rule.getValue());
+            String[] phrase = split(rule.getKey());
+            if (phrase.length == 0) {
+                continue;
+            }
+            int node = ROOT;
+            for (String word : phrase) {
+                int slot = index.slot(node, word, 0);
+                if (index.words[slot] == null) {
+                    index.words[slot] = word;
+                    index.parents[slot] = node;
+                    index.children[slot] = nodes++;
+                }
+                node = index.children[slot];
+            }
+            index.weights[node] = weight;
+        }
+        return index;
+    }
+
+    /**
+     * Split a phrase in words
+     *
+     * @param phrase Words separated by spaces
+     * @return Words of phrase
+     */
+    private static String[] split(String phrase) {
+        String trimmed = phrase.trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+    }
+
+    /**
+     * Get weight of a single word
+     *
+     * @param word Word to look up
+     * @return Weight of the rule of this word, 0 if there is none
+     * @throws NullPointerException if word is null
+     */
+    public int weight(String word) {
+        return weight(word, 0);
+    }
+
+    /**
+     * Get weight of a single word, ignoring its first characters
+     *
+     * @param word Word to look up
+     * @param from Number of characters of word to ignore, for instance 1 for the '#' of a hashtag
+     * @return Weight of the rule of this word, 0 if there is none
+     * @throws NullPointerException if word is null
+     */
+    public int weight(String word, int from) {
+        int child = child(ROOT, word, from);
+        return child < 0 ? 0 : weights[child];
+    }
+
+    /**
+     * Sum weights of the single word rules found in a list of words, phrases are ignored
+     *
+     * @param words Words to score, usually distinct lemmas of nouns and verbs
+     * @return Sum of weights, not clamped
+     * @throws NullPointerException if words or one of its words is null
+     * @see RuleIndex#scorePhrases(List, List)
+     */
+    public int scoreWords(List<String> words) {
+        int score = 0;
+        for (String word : words) {
+            score += weight(word, 0);
+        }
+        return score;
+    }
+
+    /**
+     * Sum weights of the phrases of at least two words found in a text. Each word of a phrase may match either the
+     * lemma or the token at its position, so that rules written with lemmas or with inflected words both match.
+     *
+     * @param lemmas Lemma of each token of the text, in the order of the text
+     * @param tokens Each token of the text in lower case, aligned with lemmas
+     * @return Sum of weights, not clamped
+     * @throws NullPointerException     if lemmas, tokens or one of their words is null
+     * @throws IllegalArgumentException if lemmas and tokens don't have the same size
+     * @see RuleIndex#matchPhrases(List, List, int, int)
+     */
+    public int scorePhrases(List<String> lemmas, List<String> tokens) {
+        int score = 0;
+        for (int i = 0; i < lemmas.size(); i++) {
+            score += matchPhrases(lemmas, tokens, i, 0);
+        }
+        return score;
+    }
+
+    /**
+     * Sum weights of the phrases of at least two words starting at a position of a text
+     *
+     * @param lemmas Lemma of each token of the text, in the order of the text
+     * @param tokens Each token of the text in lower case, aligned with lemmas
+     * @param start  Position of the first word
+     * @param from   Number of characters of the first word to ignore, for instance 1 for the '#' of a hashtag
+     * @return Sum of weights of the phrases starting at start
+     * @throws NullPointerException     if lemmas, tokens or one of their words is null
+     * @throws IllegalArgumentException if lemmas and tokens don't have the same size
+     */
+    public int matchPhrases(List<String> lemmas, List<String> tokens, int start, int from) {
+        if (lemmas.size() != tokens.size()) {
+            throw new IllegalArgumentException("Lemmas and tokens are not aligned");
+        }
+        return matchPhrases(ROOT, lemmas, tokens, start, from, 0);
+    }
+
+    /**
+     * Follow the edges of the lemma and of the token at a position, at most two branches per word
+     *
+     * @param node   Current node
+     * @param lemmas Lemma of each token
+     * @param tokens Each token in lower case
+     * @param i      Position of the next word
+     * @param from   Number of characters of the next word to ignore
+     * @param depth  Number of words already matched
+     * @return Sum of weights of the phrases of at least two words reached from node
+     */
+    private int matchPhrases(int node, List<String> lemmas, List<String> tokens, int i, int from, int depth) {
+        if (i >= lemmas.size()) {
+            return 0;
+        }
+        String lemma = lemmas.get(i);
+        String token = tokens.get(i);
+        int score = 0;
+        int child = child(node, lemma, from);
+        if (child >= 0) {
+            score += (depth > 0 ? weights[child] : 0) + matchPhrases(child, lemmas, tokens, i + 1, 0, depth + 1);
+        }
+        if (!token.equals(lemma)) {
+            child = child(node, token, from);
+            if (child >= 0) {
+                score += (depth > 0 ? weights[child] : 0) + matchPhrases(child, lemmas, tokens, i + 1, 0, depth + 1);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Sum weights of all rules found in a list of words, a word can start several phrases
+     *
+     * @param words Words to score, usually lemmas
+     * @return Sum of weights, not clamped
+     * @throws NullPointerException if words or one of its words is null
+     * @see RuleIndex#match(List, int, int)
+     */
+    public int score(List<String> words) {
+        int score = 0;
+        for (int i = 0; i < words.size(); i++) {
+            score += match(words, i, 0);
+        }
+        return score;
+    }
+
+    /**
+     * Sum weights of the rules starting at a position of a list of words: the word itself, then each phrase which
+     * continues with the next words
+     *
+     * @param words Words to score
+     * @param start Position of the first word
+     * @param from  Number of characters of the first word to ignore, for instance 1 for the '#' of a hashtag
+     * @return Sum of weights of the rules starting at start
+     * @throws NullPointerException if words or one of its words is null
+     */
+    public int match(List<String> words, int start, int from) {
+        int score = 0;
+        int node = child(ROOT, words.get(start), from);
+        for (int i = start + 1; node >= 0; i++) {
+            score += weights[node];
+            if (i >= words.size()) {
+                break;
+            }
+            node = child(node, words.get(i), 0);
+        }
+        return score;
+    }
+
+    /**
+     * Clamp a score into bounds
+     *
+     * @param score Score accumulated as int
+     * @param min   Min score
+     * @param max   Max score
+     * @return score between min and max
+     */
+    public static byte clamp(int score, byte min, byte max) {
+        return (byte) Math.max(min, Math.min(max, score));
+    }
+
+    /**
+     * Get the child of a node through a word
+     *
+     * @param node Parent node
+     * @param word Word of the edge
+     * @param from Number of characters of word to ignore
+     * @return Child node, or -1 if there is no such edge
+     */
+    private int child(int node, String word, int from) {
+        int slot = slot(node, word, from);
+        return words[slot] == null ? -1 : children[slot];
+    }
+
+    /**
+     * Find the slot of an edge by linear probing
+     *
+     * @param node Parent node
+     * @param word Word of the edge
+     * @param from Number of characters of word to ignore
+     * @return Slot of the edge, or the free slot where it would be
+     */
+    private int slot(int node, String word, int from) {
+        int length = word.length() - from;
+        int hash = node * 0x9E3779B9;
+        for (int i = from; i < word.length(); i++) {
+            hash = 31 * hash + word.charAt(i);
+        }
+        hash ^= hash >>> 16;
+        int slot = hash & mask;
+        while (words[slot] != null) {
+            String key = words[slot];
+            if (parents[slot] == node && key.length() == length && key.regionMatches(0, word, from, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
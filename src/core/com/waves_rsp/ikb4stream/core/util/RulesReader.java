@@ -20,17 +20,24 @@ package com.waves_rsp.ikb4stream.core.util;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.waves_rsp.ikb4stream.core.util.nlp.OpenNLP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class provides only static method {@link RulesReader#parseJSONRules(String)}
+ * This class provides only static methods {@link RulesReader#parseJSONRules(String)},
+ * {@link RulesReader#compileJSONRules(String)} and {@link RulesReader#compileJSONFilter(String)}, each file is parsed again only when it's modified
  *
  * @author ikb4stream
  * @version 1.0
@@ -40,6 +47,12 @@ public class RulesReader {
      * Logger used to log all information in this class
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(RulesReader.class);
+    /**
+     * Rules already parsed and last modification time of their file, by filename
+     *
+     * @see RulesReader#parseJSONRules(String)
+     */
+    private static final Map<String, Rules> RULES = new ConcurrentHashMap<>();
 
     /**
      * Private constructor to block instantiation
@@ -49,14 +62,99 @@ public class RulesReader {
     }
 
     /**
-     * Parse file
+     * Parse file, next calls with the same filename share the same rules until the file is modified
      *
      * @param filename as JSON to parse
-     * @return Return a map that contains Json elements within rules.json
+     * @return Return an unmodifiable map that contains Json elements within rules.json
      * @throws NullPointerException if filename is null
+     * @see RulesReader#RULES
      */
     public static Map<String, Integer> parseJSONRules(String filename) {
         Objects.requireNonNull(filename);
+        long modified = new File(filename).lastModified();
+        Rules rules = RULES.get(filename);
+        if (rules != null && rules.modified == modified) {
+            return rules.map;
+        }
+        Map<String, Integer> map = read(filename);
+        if (map == null) {
+            return Collections.emptyMap();
+        }
+        RULES.put(filename, new Rules(modified, map));
+        return map;
+    }
+
+    /**
+     * Parse and compile file, next calls with the same filename share the same {@link RuleIndex} until the file is
+     * modified
+     *
+     * @param filename as JSON to parse
+     * @return {@link RuleIndex} of rules within rules.json, empty if file cannot be read
+     * @throws NullPointerException if filename is null
+     * @see RulesReader#parseJSONRules(String)
+     */
+    public static RuleIndex compileJSONRules(String filename) {
+        Map<String, Integer> map = parseJSONRules(filename);
+        Rules rules = RULES.get(filename);
+        if (rules == null || rules.map != map) {
+            return RuleIndex.compile(map);
+        }
+        RuleIndex index = rules.index;
+        if (index == null) {
+            index = RuleIndex.compile(map);
+            rules.index = index;
+        }
+        return index;
+    }
+
+    /**
+     * Parse file and compile a {@link KeywordFilter} of the surface forms of the first word of each rule: a text it
+     * rejects has no lemma which could start a rule, so it would score 0. Next calls with the same filename share the
+     * same {@link KeywordFilter} until the file is modified.
+     *
+     * @param filename as JSON to parse
+     * @return {@link KeywordFilter} of rules within rules.json, rejecting all texts if file cannot be read
+     * @throws NullPointerException if filename is null
+     * @see OpenNLP#getSurfaceForms(Collection)
+     */
+    public static KeywordFilter compileJSONFilter(String filename) {
+        Map<String, Integer> map = parseJSONRules(filename);
+        Rules rules = RULES.get(filename);
+        if (rules == null || rules.map != map) {
+            return filter(map);
+        }
+        KeywordFilter filter = rules.filter;
+        if (filter == null) {
+            filter = filter(map);
+            rules.filter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * Compile a {@link KeywordFilter} of the surface forms of the first word of each rule
+     *
+     * @param map Rules
+     * @return {@link KeywordFilter} of rules
+     */
+    private static KeywordFilter filter(Map<String, Integer> map) {
+        Set<String> firstWords = new HashSet<>();
+        for (String rule : map.keySet()) {
+            String[] words = rule.trim().split("\\s+");
+            if (!words[0].isEmpty()) {
+                firstWords.add(words[0]);
+            }
+        }
+        return KeywordFilter.compile(OpenNLP.getSurfaceForms(firstWords));
+    }
+
+    /**
+     * Parse file
+     *
+     * @param filename as JSON to parse
+     * @return Unmodifiable map that contains Json elements within rules.json, or null if file cannot be read
+     */
+    private static Map<String, Integer> read(String filename) {
         Map<String, Integer> map = new HashMap<>();
         ObjectMapper objectMapper = new ObjectMapper();
         File file = new File(filename);
@@ -73,8 +171,45 @@ public class RulesReader {
             }
         } catch (IOException e) {
             LOGGER.error("Rules file does not exist\n" + e.getMessage());
+            return null;
         }
-        return map;
+        return Collections.unmodifiableMap(map);
     }
-}
 
+    /**
+     * Rules parsed from a file
+     */
+    private static class Rules {
+        /**
+         * Last modification time of the file when it was parsed
+         */
+        private final long modified;
+        /**
+         * Unmodifiable rules
+         */
+        private final Map<String, Integer> map;
+        /**
+         * Rules compiled on first use
+         *
+         * @see RulesReader#compileJSONRules(String)
+         */
+        private volatile RuleIndex index;
+        /**
+         * Filter compiled on first use
+         *
+         * @see RulesReader#compileJSONFilter(String)
+         */
+        private volatile KeywordFilter filter;
+
+        /**
+         * Create rules parsed from a file
+         *
+         * @param modified Last modification time of the file when it was parsed
+         * @param map      Unmodifiable rules
+         */
+        private Rules(long modified, Map<String, Integer> map) {
+            this.modified = modified;
+            this.map = map;
+        }
+    }
+}
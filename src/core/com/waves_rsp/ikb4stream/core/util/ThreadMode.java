@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util;
+
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Kind of threads running blocking tasks (connectors, consumers, communications). {@link ThreadMode#PLATFORM} is the
+ * default, {@link ThreadMode#VIRTUAL} runs each task on a virtual thread so that hundreds of blocking requests don't hold
+ * hundreds of OS threads. Virtual threads are looked up by reflection: the project still compiles for Java 8 and
+ * {@link ThreadMode#VIRTUAL} is only available on a JVM 21 or newer.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see ThreadMode#fromProperty(PropertiesManager, String)
+ */
+public enum ThreadMode {
+    /**
+     * One OS thread per task
+     */
+    PLATFORM,
+    /**
+     * One virtual thread per task, mounted on a few carrier threads while it's not blocked
+     */
+    VIRTUAL;
+
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadMode.class);
+    /**
+     * Thread.ofVirtual(), null if this JVM has no virtual threads
+     *
+     * @see ThreadMode#newThread(Runnable, String)
+     */
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    /**
+     * Thread.Builder.unstarted(Runnable), null if this JVM has no virtual threads
+     *
+     * @see ThreadMode#newThread(Runnable, String)
+     */
+    private static final Method UNSTARTED = findBuilderMethod();
+
+    /**
+     * Look up a public method without parameter
+     *
+     * @param clazz Class declaring the method
+     * @param name  Name of the method
+     * @return Method or null if it doesn't exist
+     */
+    private static Method findMethod(Class<?> clazz, String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Look up Thread.Builder.unstarted(Runnable)
+     *
+     * @return Method or null if it doesn't exist
+     */
+    private static Method findBuilderMethod() {
+        try {
+            return Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check if this JVM can run {@link ThreadMode#VIRTUAL}
+     *
+     * @return True if virtual threads are available
+     */
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null && UNSTARTED != null;
+    }
+
+    /**
+     * Read a {@link ThreadMode} from properties, "platform" (default) or "virtual"
+     *
+     * @param propertiesManager {@link PropertiesManager} to read
+     * @param key               Key of the property
+     * @return {@link ThreadMode} read, {@link ThreadMode#PLATFORM} if the value is unknown or if this JVM has no virtual
+     * threads
+     * @throws NullPointerException if one of params is null
+     */
+    public static ThreadMode fromProperty(PropertiesManager propertiesManager, String key) {
+        Objects.requireNonNull(propertiesManager);
+        Objects.requireNonNull(key);
+        String value = propertiesManager.getPropertyOrDefault(key, "platform").trim().toUpperCase(Locale.ROOT);
+        ThreadMode mode;
+        try {
+            mode = ThreadMode.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("{} is not a thread mode, use platform threads", value);
+            return PLATFORM;
+        }
+        if (mode == VIRTUAL && !isVirtualSupported()) {
+            LOGGER.warn("{} asks for virtual threads but this JVM has none, use platform threads", key);
+            return PLATFORM;
+        }
+        return mode;
+    }
+
+    /**
+     * Create a thread not started yet
+     *
+     * @param task Task run by the thread
+     * @param name Name of the thread
+     * @return Thread of this mode, a virtual thread is always daemon
+     * @throws NullPointerException  if one of params is null
+     * @throws IllegalStateException if this mode is {@link ThreadMode#VIRTUAL} and this JVM has no virtual threads
+     */
+    public Thread newThread(Runnable task, String name) {
+        Objects.requireNonNull(task);
+        Objects.requireNonNull(name);
+        if (this == PLATFORM) {
+            return new Thread(task, name);
+        }
+        if (!isVirtualSupported()) {
+            throw new IllegalStateException("This JVM has no virtual threads");
+        }
+        try {
+            Thread thread = (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), task);
+            thread.setName(name);
+            return thread;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create a virtual thread", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.core.util.nlp;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import opennlp.tools.util.Span;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A text and its annotations: sentences, tokens, POS tags, lemmas and named entities. Each annotation is computed by
+ * {@link OpenNLP} at most once, sentence by sentence and only when a call needs it, so that a text pays the tokenizer
+ * and the tagger once for a whole pipeline. A document can be attached to an {@link Event} to be reused by later
+ * stages. Annotations are read and written by {@link OpenNLP} holding the lock of the document.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see OpenNLP#applyNLPlemma(AnnotatedDocument, int)
+ * @see OpenNLP#applyNLPner(AnnotatedDocument, OpenNLP.nerOptions)
+ * @see Event#withDocument(AnnotatedDocument)
+ */
+public final class AnnotatedDocument {
+    /**
+     * Text of this document
+     *
+     * @see AnnotatedDocument#getText()
+     */
+    private final String text;
+    /**
+     * Sentences of {@link AnnotatedDocument#text}, null until detected
+     */
+    Span[] sentences;
+    /**
+     * Tokens of each sentence, a sentence is null until tokenized
+     */
+    String[][] tokens;
+    /**
+     * Position of each token in its sentence, a sentence is null until tokenized
+     */
+    Span[][] tokenSpans;
+    /**
+     * POS tags of each token, "V" for all verbs, a sentence is null until tagged
+     */
+    String[][] tags;
+    /**
+     * Lemma of each token, a sentence is null until lemmatized
+     */
+    String[][] lemmas;
+    /**
+     * Named entities of each sentence by type, a sentence is null until its entities of this type are found
+     */
+    final Map<OpenNLP.nerOptions, Span[][]> entities = new EnumMap<>(OpenNLP.nerOptions.class);
+
+    /**
+     * Create a document without any annotation
+     *
+     * @param text Text to annotate
+     * @throws NullPointerException if text is null
+     */
+    public AnnotatedDocument(String text) {
+        this.text = Objects.requireNonNull(text);
+    }
+
+    /**
+     * Get the document of an {@link Event} if it annotates a text, a new document otherwise
+     *
+     * @param event {@link Event} which may carry a document
+     * @param text  Text to annotate
+     * @return {@link AnnotatedDocument} of text
+     * @throws NullPointerException if event or text is null
+     * @see Event#getDocument()
+     */
+    public static AnnotatedDocument of(Event event, String text) {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(text);
+        AnnotatedDocument document = event.getDocument();
+        if (document != null && document.text.equals(text)) {
+            return document;
+        }
+        return new AnnotatedDocument(text);
+    }
+
+    /**
+     * Get text of this document
+     *
+     * @return Text annotated
+     */
+    public String getText() {
+        return text;
+    }
+}
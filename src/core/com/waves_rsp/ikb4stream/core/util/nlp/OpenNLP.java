@@ -30,10 +30,13 @@ import opennlp.tools.util.Span;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ikb4stream
@@ -56,18 +59,19 @@ public class OpenNLP {
      * Store unique instance per Thread of {@link OpenNLP}
      *
      * @see OpenNLP#getOpenNLP(Thread)
+     * @see OpenNLP#release(Thread)
      */
-    private static final Map<Thread, OpenNLP> INSTANCES = new HashMap<>();
+    private static final Map<Thread, OpenNLP> INSTANCES = new ConcurrentHashMap<>();
     /**
      * Load lemmatizer model
      *
-     * @see OpenNLP#lemmatize(String)
+     * @see OpenNLP#lemmatize(AnnotatedDocument, int)
      */
     private final DictionaryLemmatizer lemmatizer;
     /**
      * Use to do sentence detection
      *
-     * @see OpenNLP#detectSentences(String)
+     * @see OpenNLP#detectSentences(AnnotatedDocument)
      */
     private final SentenceDetectorME detector;
     /**
@@ -91,7 +95,7 @@ public class OpenNLP {
     /**
      * Use to apply tokenization
      *
-     * @see OpenNLP#learnableTokenize(String)
+     * @see OpenNLP#learnableTokenize(AnnotatedDocument, int)
      */
     private final Tokenizer tokenizer;
     /**
@@ -136,6 +140,49 @@ public class OpenNLP {
         return INSTANCES.computeIfAbsent(thread, t -> new OpenNLP());
     }
 
+    /**
+     * Release the instance of {@link OpenNLP} of a thread which won't use it anymore, so that its models can be
+     * garbage collected
+     *
+     * @param thread Thread which used {@link OpenNLP}
+     * @throws NullPointerException if thread is null
+     * @see OpenNLP#INSTANCES
+     */
+    public static void release(Thread thread) {
+        Objects.requireNonNull(thread);
+        INSTANCES.remove(thread);
+    }
+
+    /**
+     * Get all words which the lemmatizer turns into some lemmas: the lemmas themselves and their forms found in the
+     * dictionary given by nlp.dictionaries.path, in lower case. A token not in the dictionary is lemmatized in lower
+     * case, so a text whose tokens give one of these lemmas contains one of these words, ignoring case.
+     *
+     * @param lemmas Lemmas to look for
+     * @return Lemmas and their surface forms, only lemmas if the dictionary cannot be read
+     * @throws NullPointerException if lemmas or one of its lemmas is null
+     * @see com.waves_rsp.ikb4stream.core.util.KeywordFilter
+     */
+    public static Set<String> getSurfaceForms(Collection<String> lemmas) {
+        Objects.requireNonNull(lemmas);
+        Set<String> forms = new HashSet<>();
+        Set<String> lowerLemmas = new HashSet<>();
+        lemmas.forEach(lemma -> lowerLemmas.add(lemma.toLowerCase()));
+        forms.addAll(lowerLemmas);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(PROPERTIES_MANAGER.getProperty("nlp.dictionaries.path"))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entry = line.split("\t");
+                if (entry.length >= 3 && lowerLemmas.contains(entry[2].toLowerCase())) {
+                    forms.add(entry[0].toLowerCase());
+                }
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            LOGGER.warn("Lemma dictionary cannot be read, only lemmas are used as surface forms\n" + e.getMessage());
+        }
+        return forms;
+    }
+
     /**
      * Enum the ner options
      */
@@ -144,29 +191,40 @@ public class OpenNLP {
     }
 
     /**
-     * OpenNLP : split a text in sentences
+     * OpenNLP : split the text of a document in sentences, only the first time
      *
-     * @param text to analyze
+     * @param document to analyze, its lock is held
      * @return an array of sentences
-     * @throws NullPointerException if text is null
      * @see OpenNLP#detector
      */
-    private String[] detectSentences(String text) {
-        Objects.requireNonNull(text);
-        return detector.sentDetect(text);
+    private Span[] detectSentences(AnnotatedDocument document) {
+        if (document.sentences == null) {
+            Span[] sentences = detector.sentPosDetect(document.getText());
+            document.sentences = sentences;
+            document.tokens = new String[sentences.length][];
+            document.tokenSpans = new Span[sentences.length][];
+            document.tags = new String[sentences.length][];
+            document.lemmas = new String[sentences.length][];
+        }
+        return document.sentences;
     }
 
     /**
-     * OpenNLP : learnableTokenize. The function tokenize a text
+     * OpenNLP : learnableTokenize. The function tokenize a sentence of a document, only the first time
      *
-     * @param text to tokenize
+     * @param document to tokenize, its lock is held and its sentences are detected
+     * @param sentence Index of the sentence
      * @return an array of words
-     * @throws NullPointerException if text is null
      * @see OpenNLP#tokenizer
      */
-    private String[] learnableTokenize(String text) {
-        Objects.requireNonNull(text);
-        return tokenizer.tokenize(text);
+    private String[] learnableTokenize(AnnotatedDocument document, int sentence) {
+        if (document.tokens[sentence] == null) {
+            String text = document.sentences[sentence].getCoveredText(document.getText()).toString();
+            Span[] spans = tokenizer.tokenizePos(text);
+            document.tokenSpans[sentence] = spans;
+            document.tokens[sentence] = Span.spansToStrings(spans, text);
+        }
+        return document.tokens[sentence];
     }
 
     /**
@@ -222,34 +280,34 @@ public class OpenNLP {
     }
 
     /**
-     * OpenNLP : lemmatization. The function simplify the step of POStagging for the verbs category.
+     * OpenNLP : POS tagging then lemmatization of a sentence of a document, only the first time. The function simplify
+     * the step of POStagging for the verbs category.
      *
-     * @param text to lemmatize
-     * @return Map of each lemmatize word with the POStag associate
-     * @throws NullPointerException if text is null
+     * @param document to lemmatize, its lock is held and its sentences are detected
+     * @param sentence Index of the sentence
+     * @return an array of lemmas, tags are in {@link AnnotatedDocument#tags}
+     * @see OpenNLP#tagger
      * @see OpenNLP#lemmatizer
      */
-    private Map<String, String> lemmatize(String text) {
-        Objects.requireNonNull(text);
-        Map<String, String> lemmatizedTokens = new HashMap<>();
-        // Split tweet text content in sentences
-        String[] sentences = detectSentences(text);
-        // For each sentence, tokenize and tag before lemmatizing
-        for (String sentence : sentences) {
-            // Split each sentence in tokens
-            String[] learnableTokens = learnableTokenize(sentence);
+    private String[] lemmatize(AnnotatedDocument document, int sentence) {
+        if (document.lemmas[sentence] == null) {
+            // Split the sentence in tokens
+            String[] learnableTokens = learnableTokenize(document, sentence);
             // Get tag for each token
             String[] tags = posTagging(learnableTokens);
+            String[] lemmas = new String[learnableTokens.length];
             // Get lemmatize form of each token
             for (int i = 0; i < learnableTokens.length; i++) {
                 if (tags[i].startsWith("V") && tags[i].length() > 1) {
                     //if the POStag start with V, we just keep the tag V for simplify the lemmatization with the dictionnary
                     tags[i] = "V";
                 }
-                lemmatizedTokens.put(lemmatizer.lemmatize(learnableTokens[i], tags[i]), tags[i]);
+                lemmas[i] = lemmatizer.lemmatize(learnableTokens[i], tags[i]);
             }
+            document.tags[sentence] = tags;
+            document.lemmas[sentence] = lemmas;
         }
-        return lemmatizedTokens;
+        return document.lemmas[sentence];
     }
 
     /**
@@ -266,9 +324,34 @@ public class OpenNLP {
         if (tmpPost.length() > limit) {
             tmpPost = post.substring(0, limit);
         }
-        Map<String, String> input;
+        return applyNLPlemma(new AnnotatedDocument(tmpPost), limit);
+    }
+
+    /**
+     * Apply the OpenNLP Lemmatization with a dictionnary on the tokens of a document ending within limit, reusing and
+     * keeping its annotations. Keep only distinct words with the verbs and nouns, in the order of the text.
+     *
+     * @param document is the text to lemmatize
+     * @param limit    is the limit to have the n first characters
+     * @return list of selected words.
+     * @throws NullPointerException if document is null
+     * @see AnnotatedDocument
+     */
+    public List<String> applyNLPlemma(AnnotatedDocument document, int limit) {
+        Objects.requireNonNull(document);
+        Map<String, String> input = new LinkedHashMap<>();
+        synchronized (document) {
+            Span[] sentences = detectSentences(document);
+            for (int s = 0; s < sentences.length && sentences[s].getStart() < limit; s++) {
+                String[] lemmas = lemmatize(document, s);
+                String[] tags = document.tags[s];
+                Span[] tokenSpans = document.tokenSpans[s];
+                for (int i = 0; i < lemmas.length && sentences[s].getStart() + tokenSpans[i].getEnd() <= limit; i++) {
+                    input.put(lemmas[i], tags[i]);
+                }
+            }
+        }
         List<String> output = new ArrayList<>();
-        input = lemmatize(tmpPost);
         input.forEach((w, pos) -> {
             if (w.startsWith("#")) {
                 output.add(w);
@@ -293,6 +376,100 @@ public class OpenNLP {
         return applyNLPlemma(post, 1250);
     }
 
+    /**
+     * Apply the OpenNLP Lemmatization with a dictionnary on a document. Keep only words with the verbs and nouns.
+     *
+     * @param document is the text to lemmatize. We only use the 1250 first characters
+     * @return list of selected words.
+     * @throws NullPointerException if document is null
+     * @see OpenNLP#applyNLPlemma(AnnotatedDocument, int)
+     */
+    public List<String> applyNLPlemma(AnnotatedDocument document) {
+        Objects.requireNonNull(document);
+        return applyNLPlemma(document, 1250);
+    }
+
+    /**
+     * Apply the OpenNLP Lemmatization with a dictionnary on the tokens of a document ending within limit, reusing and
+     * keeping its annotations. Unlike {@link OpenNLP#applyNLPlemma(AnnotatedDocument, int)}, every token is kept in the
+     * order of the text, so that phrases can be matched.
+     *
+     * @param document is the text to lemmatize
+     * @param limit    is the limit to have the n first characters
+     * @return lemma of each token, in the order of the text
+     * @throws NullPointerException if document is null
+     * @see OpenNLP#applyNLPtokens(AnnotatedDocument, int)
+     */
+    public List<String> applyNLPlemmaSequence(AnnotatedDocument document, int limit) {
+        Objects.requireNonNull(document);
+        return sequence(document, limit, true);
+    }
+
+    /**
+     * Apply the OpenNLP Lemmatization with a dictionnary on every token of a document, in the order of the text
+     *
+     * @param document is the text to lemmatize. We only use the 1250 first characters
+     * @return lemma of each token, in the order of the text
+     * @throws NullPointerException if document is null
+     * @see OpenNLP#applyNLPlemmaSequence(AnnotatedDocument, int)
+     */
+    public List<String> applyNLPlemmaSequence(AnnotatedDocument document) {
+        Objects.requireNonNull(document);
+        return applyNLPlemmaSequence(document, 1250);
+    }
+
+    /**
+     * Give the tokens of a document ending within limit in lower case, reusing and keeping its annotations. They are
+     * aligned with {@link OpenNLP#applyNLPlemmaSequence(AnnotatedDocument, int)}.
+     *
+     * @param document is the text to tokenize
+     * @param limit    is the limit to have the n first characters
+     * @return each token in lower case, in the order of the text
+     * @throws NullPointerException if document is null
+     */
+    public List<String> applyNLPtokens(AnnotatedDocument document, int limit) {
+        Objects.requireNonNull(document);
+        return sequence(document, limit, false);
+    }
+
+    /**
+     * Give the tokens of a document in lower case, aligned with {@link OpenNLP#applyNLPlemmaSequence(AnnotatedDocument)}
+     *
+     * @param document is the text to tokenize. We only use the 1250 first characters
+     * @return each token in lower case, in the order of the text
+     * @throws NullPointerException if document is null
+     * @see OpenNLP#applyNLPtokens(AnnotatedDocument, int)
+     */
+    public List<String> applyNLPtokens(AnnotatedDocument document) {
+        Objects.requireNonNull(document);
+        return applyNLPtokens(document, 1250);
+    }
+
+    /**
+     * Collect the lemmas or the tokens of a document ending within limit, in the order of the text
+     *
+     * @param document   is the text to analyze
+     * @param limit      is the limit to have the n first characters
+     * @param lemmatized true for lemmas, false for tokens in lower case
+     * @return lemmas or tokens, in the order of the text
+     * @see OpenNLP#lemmatize(AnnotatedDocument, int)
+     */
+    private List<String> sequence(AnnotatedDocument document, int limit, boolean lemmatized) {
+        List<String> output = new ArrayList<>();
+        synchronized (document) {
+            Span[] sentences = detectSentences(document);
+            for (int s = 0; s < sentences.length && sentences[s].getStart() < limit; s++) {
+                String[] lemmas = lemmatize(document, s);
+                String[] tokens = document.tokens[s];
+                Span[] tokenSpans = document.tokenSpans[s];
+                for (int i = 0; i < lemmas.length && sentences[s].getStart() + tokenSpans[i].getEnd() <= limit; i++) {
+                    output.add(lemmatized ? lemmas[i] : tokens[i].toLowerCase());
+                }
+            }
+        }
+        return output;
+    }
+
     /**
      * Apply the ÖpenNLP ner (name entity recognizer) algorithm on a text. Keep only distinct words from a text.
      *
@@ -303,28 +480,46 @@ public class OpenNLP {
      */
     public List<String> applyNLPner(String post, nerOptions ner) {
         Objects.requireNonNull(post);
+        return applyNLPner(new AnnotatedDocument(post), ner);
+    }
+
+    /**
+     * Apply the ÖpenNLP ner (name entity recognizer) algorithm on a document, reusing and keeping its annotations
+     *
+     * @param document to analyze
+     * @param ner      ENUM : LOCATION, ORGANIZATION or PERSON : type of NER analyse
+     * @return List of selected words by NER
+     * @throws NullPointerException if document or ner is null
+     * @see AnnotatedDocument
+     */
+    public List<String> applyNLPner(AnnotatedDocument document, nerOptions ner) {
+        Objects.requireNonNull(document);
         Objects.requireNonNull(ner);
         List<String> words = new ArrayList<>();
-        Span[] spans;
-        String[] sentences = detectSentences(post);
-        for (String sentence : sentences) {
-            String[] learnableTokens = learnableTokenize(sentence);
-            switch (ner.toString()) {
-                case "LOCATION":
-                    spans = findLocationName(learnableTokens);
-                    break;
-                case "ORGANIZATION":
-                    spans = findOrganizationName(learnableTokens);
-                    break;
-                case "PERSON":
-                    spans = findPersonName(learnableTokens);
-                    break;
-                default:
-                    LOGGER.warn("Bad NER option.\n use : 'LOCATION', 'PERSON' or 'ORGANIZATION'");
-                    return words; //return empty list
+        synchronized (document) {
+            Span[] sentences = detectSentences(document);
+            Span[][] entities = document.entities.computeIfAbsent(ner, n -> new Span[sentences.length][]);
+            for (int s = 0; s < sentences.length; s++) {
+                String[] learnableTokens = learnableTokenize(document, s);
+                if (entities[s] == null) {
+                    switch (ner) {
+                        case LOCATION:
+                            entities[s] = findLocationName(learnableTokens);
+                            break;
+                        case ORGANIZATION:
+                            entities[s] = findOrganizationName(learnableTokens);
+                            break;
+                        case PERSON:
+                            entities[s] = findPersonName(learnableTokens);
+                            break;
+                        default:
+                            LOGGER.warn("Bad NER option.\n use : 'LOCATION', 'PERSON' or 'ORGANIZATION'");
+                            return words; //return empty list
+                    }
+                }
+                Arrays.asList(Span.spansToStrings(entities[s], learnableTokens)).forEach(words::add);
             }
-            Arrays.asList(Span.spansToStrings(spans, learnableTokens)).forEach(words::add);
         }
         return words;
     }
-}
\ No newline at end of file
+}
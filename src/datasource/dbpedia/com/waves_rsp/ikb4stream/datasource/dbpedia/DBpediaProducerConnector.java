@@ -21,7 +21,7 @@ package com.waves_rsp.ikb4stream.datasource.dbpedia;
 import com.hp.hpl.jena.query.*;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
-import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.LatLong;
@@ -36,15 +36,16 @@ import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Search rdf data from dbpedia service from a sparql query
  *
  * @author ikb4stream
  * @version 1.0
- * @see com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector
+ * @see com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector
  */
-public class DBpediaProducerConnector implements IProducerConnector {
+public class DBpediaProducerConnector implements IScheduledProducerConnector {
     /**
      * Properties of this module
      *
@@ -68,55 +69,55 @@ public class DBpediaProducerConnector implements IProducerConnector {
     /**
      * Longitude max of {@link com.waves_rsp.ikb4stream.core.communication.model.BoundingBox BoundingBox}
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final double longitudeMax;
     /**
      * Longitude min of {@link com.waves_rsp.ikb4stream.core.communication.model.BoundingBox BoundingBox}
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final double longitudeMin;
     /**
      * Latitude max of {@link com.waves_rsp.ikb4stream.core.communication.model.BoundingBox BoundingBox}
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final double latitudeMax;
     /**
      * Latitude min of {@link com.waves_rsp.ikb4stream.core.communication.model.BoundingBox BoundingBox}
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final double latitudeMin;
     /**
      * Name of city to request
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final String resource;
     /**
      * DBpedia url to request
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final String service;
     /**
      * Interval time between two batch
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final long sleepTime;
     /**
      * Source name of corresponding {@link Event}
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final String source;
     /**
      * Limit of {@link Event} to get from {@link DBpediaProducerConnector#source}
      *
-     * @see DBpediaProducerConnector#load(IDataProducer)
+     * @see DBpediaProducerConnector#poll(IDataProducer)
      */
     private final int limit;
 
@@ -156,7 +157,8 @@ public class DBpediaProducerConnector implements IProducerConnector {
      * The dbpedia service return a rdf response with nodes corresponding to the fields requested
      *
      * @param dataProducer which allows to push {@link Event} in queue
-     * @throws NullPointerException if dataProducer is null
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the query cannot be executed, or the queue rejects an {@link Event}
      * @see DBpediaProducerConnector#source
      * @see DBpediaProducerConnector#service
      * @see DBpediaProducerConnector#latitudeMax
@@ -164,72 +166,81 @@ public class DBpediaProducerConnector implements IProducerConnector {
      * @see DBpediaProducerConnector#longitudeMax
      * @see DBpediaProducerConnector#longitudeMin
      * @see DBpediaProducerConnector#resource
-     * @see DBpediaProducerConnector#sleepTime
      * @see DBpediaProducerConnector#limit
      */
     @Override
-    public void load(IDataProducer dataProducer) {
+    public void poll(IDataProducer dataProducer) {
         Objects.requireNonNull(dataProducer);
-        while (!Thread.interrupted()) {
-            QueryExecution qexec = null;
-            long start = System.currentTimeMillis();
-            try {
-                String query = "prefix db-owl: <http://dbpedia.org/ontology/>\n" +
-                        "prefix url-resource: <http://fr.dbpedia.org/resource/>\n" +
-                        "PREFIX dbo: <http://dbpedia.org/ontology/> \n" +
-                        "prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n" +
-                        "prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
-                        "prefix prop-fr: <http://fr.dbpedia.org/property/>\n" +
-                        "prefix  dc: <http://purl.org/dc/elements/1.1/>\n" +
-                        "select * where {\n" +
-                        "   ?evenements rdf:type db-owl:Event .\n" +
-                        "   ?evenements db-owl:wikiPageWikiLink url-resource:" + resource + " .\n" +
-                        "   OPTIONAL {\n" +
-                        "      ?evenements prop-fr:latitude ?latitude .\n" +
-                        "      ?evenements prop-fr:longitude ?longitude .\n" +
-                        "      ?evenements rdfs:comment ?description .\n" +
-                        "      ?evenements dbo:startDate ?startDate .\n " +
-                        "      ?evenements dbo:endDate ?endDate .\n" +
-                        "      ?evenements rdfs:label ?label .\n" +
-                        "      FILTER (\n" +
-                        "         ?latitude >= " + latitudeMin + " && \n" +
-                        "         ?latitude < " + latitudeMax + " &&       \n" +
-                        "         ?longitude >= " + longitudeMin + " && \n" +
-                        "         ?longitude < " + longitudeMax + " \n" +
-                        "      )\n" +
-                        "   }\n" +
-                        "} LIMIT " + limit;
-                Query request = QueryFactory.create(query);
-                qexec = QueryExecutionFactory.sparqlService(service, request);
-                ResultSet resultSet = qexec.execSelect();
-                while (resultSet.hasNext()) {
-                    QuerySolution qs = resultSet.nextSolution();
-                    RDFNode latitudeNode = qs.get("latitude");
-                    RDFNode longitudeNode = qs.get("longitude");
-                    RDFNode descriptionNode = qs.get("description");
-                    RDFNode startDateNode = qs.get("startDate");
-                    RDFNode endDateNode = qs.get("endDate");
-                    Event event = getEventFromRDFNodes(latitudeNode, longitudeNode, startDateNode, endDateNode, descriptionNode, source);
-                    pushIfValidEvent(dataProducer, event, start);
-                }
-                Thread.sleep(this.sleepTime);
-            } catch (IllegalStateException err) {
-                LOGGER.error("The current query can't be executed: {}", err);
-                Thread.currentThread().interrupt();
-                return;
-            } catch (DateTimeParseException dtp) {
-                LOGGER.error("bad date format given: ", dtp);
-                throw new IllegalStateException(dtp.getMessage());
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } finally {
-                if (qexec != null) {
-                    qexec.close();
+        QueryExecution qexec = null;
+        long start = System.currentTimeMillis();
+        boolean rejected = false;
+        try {
+            String query = "prefix db-owl: <http://dbpedia.org/ontology/>\n" +
+                    "prefix url-resource: <http://fr.dbpedia.org/resource/>\n" +
+                    "PREFIX dbo: <http://dbpedia.org/ontology/> \n" +
+                    "prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n" +
+                    "prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+                    "prefix prop-fr: <http://fr.dbpedia.org/property/>\n" +
+                    "prefix  dc: <http://purl.org/dc/elements/1.1/>\n" +
+                    "select * where {\n" +
+                    "   ?evenements rdf:type db-owl:Event .\n" +
+                    "   ?evenements db-owl:wikiPageWikiLink url-resource:" + resource + " .\n" +
+                    "   OPTIONAL {\n" +
+                    "      ?evenements prop-fr:latitude ?latitude .\n" +
+                    "      ?evenements prop-fr:longitude ?longitude .\n" +
+                    "      ?evenements rdfs:comment ?description .\n" +
+                    "      ?evenements dbo:startDate ?startDate .\n " +
+                    "      ?evenements dbo:endDate ?endDate .\n" +
+                    "      ?evenements rdfs:label ?label .\n" +
+                    "      FILTER (\n" +
+                    "         ?latitude >= " + latitudeMin + " && \n" +
+                    "         ?latitude < " + latitudeMax + " &&       \n" +
+                    "         ?longitude >= " + longitudeMin + " && \n" +
+                    "         ?longitude < " + longitudeMax + " \n" +
+                    "      )\n" +
+                    "   }\n" +
+                    "} LIMIT " + limit;
+            Query request = QueryFactory.create(query);
+            qexec = QueryExecutionFactory.sparqlService(service, request);
+            ResultSet resultSet = qexec.execSelect();
+            while (resultSet.hasNext()) {
+                QuerySolution qs = resultSet.nextSolution();
+                RDFNode latitudeNode = qs.get("latitude");
+                RDFNode longitudeNode = qs.get("longitude");
+                RDFNode descriptionNode = qs.get("description");
+                RDFNode startDateNode = qs.get("startDate");
+                RDFNode endDateNode = qs.get("endDate");
+                Event event = getEventFromRDFNodes(latitudeNode, longitudeNode, startDateNode, endDateNode, descriptionNode, source);
+                if (!pushIfValidEvent(dataProducer, event, start)) {
+                    rejected = true;
+                    break;
                 }
             }
+        } catch (IllegalStateException err) {
+            LOGGER.error("The current query can't be executed: {}", err);
+            throw err;
+        } catch (DateTimeParseException dtp) {
+            LOGGER.error("bad date format given: ", dtp);
+            throw new IllegalStateException(dtp.getMessage());
+        } finally {
+            if (qexec != null) {
+                qexec.close();
+            }
+        }
+        if (rejected) {
+            throw new IllegalStateException("Queue is full, rest of the events of " + source + " are left for next poll");
         }
     }
 
+    /**
+     * @return Time in milliseconds between two requests to DBpedia
+     * @see DBpediaProducerConnector#sleepTime
+     */
+    @Override
+    public long getInterval() {
+        return sleepTime;
+    }
+
     /**
      * Check if this jar is active
      *
@@ -308,16 +319,20 @@ public class DBpediaProducerConnector implements IProducerConnector {
      * @param dataProducer which allows to push {@link Event} in queue
      * @param event        the {@link Event} to push
      * @param start        process start time, used for the metrics module
+     * @return false if the queue rejected event
      * @see Event
      * @see IDataProducer
      * @see DBpediaProducerConnector#METRICS_LOGGER
      */
-    private void pushIfValidEvent(IDataProducer dataProducer, Event event, long start) {
+    private boolean pushIfValidEvent(IDataProducer dataProducer, Event event, long start) {
         if (event != null) {
-            dataProducer.push(event);
+            if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return false;
+            }
             long end = System.currentTimeMillis();
             long result = end - start;
             METRICS_LOGGER.log("time_process_" + this.source, result);
         }
+        return true;
     }
 }
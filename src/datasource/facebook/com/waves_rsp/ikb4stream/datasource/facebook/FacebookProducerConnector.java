@@ -21,7 +21,7 @@ package com.waves_rsp.ikb4stream.datasource.facebook;
 import com.restfb.*;
 import com.restfb.types.Event;
 import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
-import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.LatLong;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -39,9 +40,9 @@ import java.util.Objects;
  *
  * @author ikb4stream
  * @version 1.0
- * @see com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector
+ * @see com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector
  */
-public class FacebookProducerConnector implements IProducerConnector {
+public class FacebookProducerConnector implements IScheduledProducerConnector {
     /**
      * Properties of this module
      *
@@ -76,27 +77,33 @@ public class FacebookProducerConnector implements IProducerConnector {
     /**
      * Keyword to search
      *
-     * @see FacebookProducerConnector#load(IDataProducer)
+     * @see FacebookProducerConnector#poll(IDataProducer)
      */
     private final String word;
     /**
      * Latitude limit to get {@link com.waves_rsp.ikb4stream.core.model.Event Event}
      *
-     * @see FacebookProducerConnector#load(IDataProducer)
+     * @see FacebookProducerConnector#poll(IDataProducer)
      */
     private final double lat;
     /**
      * Longitude limit to get {@link com.waves_rsp.ikb4stream.core.model.Event Event}
      *
-     * @see FacebookProducerConnector#load(IDataProducer)
+     * @see FacebookProducerConnector#poll(IDataProducer)
      */
     private final double lon;
     /**
      * Limit to get {@link com.waves_rsp.ikb4stream.core.model.Event Event}
      *
-     * @see FacebookProducerConnector#load(IDataProducer)
+     * @see FacebookProducerConnector#poll(IDataProducer)
      */
     private final int limit;
+    /**
+     * Interval time in milliseconds between two requests
+     *
+     * @see FacebookProducerConnector#getInterval()
+     */
+    private final long interval;
 
     /**
      * Default constructor that init all members with {@link FacebookProducerConnector#PROPERTIES_MANAGER}
@@ -108,6 +115,7 @@ public class FacebookProducerConnector implements IProducerConnector {
      * @see FacebookProducerConnector#limit
      * @see FacebookProducerConnector#lat
      * @see FacebookProducerConnector#lon
+     * @see FacebookProducerConnector#interval
      */
     public FacebookProducerConnector() {
         try {
@@ -117,6 +125,7 @@ public class FacebookProducerConnector implements IProducerConnector {
             this.limit = Integer.valueOf(PROPERTIES_MANAGER.getProperty("FacebookProducerConnector.limit"));
             this.lat = Double.valueOf(PROPERTIES_MANAGER.getProperty("FacebookProducerConnector.latitude"));
             this.lon = Double.valueOf(PROPERTIES_MANAGER.getProperty("FacebookProducerConnector.longitude"));
+            this.interval = Long.valueOf(PROPERTIES_MANAGER.getPropertyOrDefault("FacebookProducerConnector.interval", "20000"));
         } catch (IllegalArgumentException e) {
             LOGGER.error("Invalid configuration {} ", e);
             throw new IllegalStateException("Invalid configuration");
@@ -184,10 +193,35 @@ public class FacebookProducerConnector implements IProducerConnector {
     }
 
     /**
-     * Load valid events from Facebook into the data producer object
+     * Load valid events from Facebook once unless the calling thread is already interrupted. The
+     * calling thread is then left interrupted as there is nothing more to load. To request Facebook
+     * every {@link FacebookProducerConnector#interval}, use a scheduler with
+     * {@link FacebookProducerConnector#poll(IDataProducer)}.
      *
      * @param dataProducer which allows to push {@link com.waves_rsp.ikb4stream.core.model.Event Event} in queue
      * @throws NullPointerException if dataProducer is null
+     * @see FacebookProducerConnector#poll(IDataProducer)
+     */
+    @Override
+    public void load(IDataProducer dataProducer) {
+        Objects.requireNonNull(dataProducer);
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        try {
+            poll(dataProducer);
+        } finally {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Load valid events from Facebook into the data producer object, the batch stops at the first event the queue
+     * rejects, the others are requested again at next poll
+     *
+     * @param dataProducer which allows to push {@link com.waves_rsp.ikb4stream.core.model.Event Event} in queue
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the queue rejects an event
      * @see com.waves_rsp.ikb4stream.core.model.Event Event
      * @see FacebookProducerConnector#word
      * @see FacebookProducerConnector#limit
@@ -195,21 +229,25 @@ public class FacebookProducerConnector implements IProducerConnector {
      * @see FacebookProducerConnector#lon
      */
     @Override
-    public void load(IDataProducer dataProducer) {
+    public void poll(IDataProducer dataProducer) {
         Objects.requireNonNull(dataProducer);
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                List<com.waves_rsp.ikb4stream.core.model.Event> events = searchWordFromGeolocation(word, limit, lat, lon);
-                events.forEach(dataProducer::push);
-                Thread.sleep(20000);
-            } catch (InterruptedException e) {
-                LOGGER.error(e.getMessage());
-            } finally {
-                Thread.currentThread().interrupt();
+        List<com.waves_rsp.ikb4stream.core.model.Event> events = searchWordFromGeolocation(word, limit, lat, lon);
+        for (com.waves_rsp.ikb4stream.core.model.Event event : events) {
+            if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Queue is full, rest of the events of " + word + " are left for next poll");
             }
         }
     }
 
+    /**
+     * @return Time in milliseconds between two requests to Facebook
+     * @see FacebookProducerConnector#interval
+     */
+    @Override
+    public long getInterval() {
+        return interval;
+    }
+
     /**
      * Check if this jar is active
      *
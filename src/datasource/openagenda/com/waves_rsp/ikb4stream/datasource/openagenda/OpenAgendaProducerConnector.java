@@ -21,6 +21,7 @@ package com.waves_rsp.ikb4stream.datasource.openagenda;
 
 import com.waves_rsp.ikb4stream.core.datasource.IOpenAgenda;
 import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
 
@@ -30,16 +31,17 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Get public {@link Event}
  *
  * @author ikb4stream
  * @version 1.0
- * @see com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector
+ * @see com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector
  * @see com.waves_rsp.ikb4stream.core.datasource.IOpenAgenda
  */
-public class OpenAgendaProducerConnector implements IOpenAgenda {
+public class OpenAgendaProducerConnector implements IOpenAgenda, IScheduledProducerConnector {
     /**
      * Properties of this module
      *
@@ -63,13 +65,13 @@ public class OpenAgendaProducerConnector implements IOpenAgenda {
     /**
      * Interval time between two batch
      *
-     * @see OpenAgendaProducerConnector#load(IDataProducer)
+     * @see OpenAgendaProducerConnector#poll(IDataProducer)
      */
     private final long sleepTime;
     /**
      * Source name of corresponding {@link Event}
      *
-     * @see OpenAgendaProducerConnector#load(IDataProducer)
+     * @see OpenAgendaProducerConnector#poll(IDataProducer)
      */
     private final String source;
     /**
@@ -109,46 +111,67 @@ public class OpenAgendaProducerConnector implements IOpenAgenda {
     }
 
     /**
-     * Listen {@link Event} from openAgenda and load them with the data producer object
+     * Request openAgenda once unless the calling thread is already interrupted. The calling thread
+     * is then left interrupted as there is nothing more to load. To request openAgenda every
+     * {@link OpenAgendaProducerConnector#sleepTime}, use a scheduler with
+     * {@link OpenAgendaProducerConnector#poll(IDataProducer)}.
      *
      * @param dataProducer Instance of {@link IDataProducer}
-     * @throws NullPointerException     if dataProducer is null
-     * @throws IllegalArgumentException Exception during opening stream
-     * @see OpenAgendaProducerConnector#source
-     * @see OpenAgendaProducerConnector#sleepTime
-     * @see OpenAgendaProducerConnector#METRICS_LOGGER
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException Exception during opening stream
+     * @see OpenAgendaProducerConnector#poll(IDataProducer)
      */
     @Override
     public void load(IDataProducer dataProducer) {
         Objects.requireNonNull(dataProducer);
-        InputStream is;
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
         try {
-            is = createURL().openStream();
-        } catch (IOException e) {
-            LOGGER.error("Cannot connect to the OpenAgenda API : {} ", e);
-            throw new IllegalStateException(e.getMessage());
+            poll(dataProducer);
+        } finally {
+            Thread.currentThread().interrupt();
         }
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                long start = System.currentTimeMillis();
-                List<Event> events = searchEvents(is, this.source);
-                long time = System.currentTimeMillis() - start;
-                events.forEach(dataProducer::push);
-                METRICS_LOGGER.log("time_process_" + this.source, time);
-                Thread.sleep(this.sleepTime);
-            } catch (InterruptedException e) {
-                LOGGER.error("Current thread has been interrupted: {}", e);
-            } finally {
-                try {
-                    is.close();
-                } catch (IOException e) {
-                    LOGGER.error("Exception during thread has been interrupted : {} ", e);
+    }
+
+    /**
+     * Listen {@link Event} from openAgenda and load them with the data producer object, the batch stops at the first
+     * {@link Event} the queue rejects, the others are requested again at next poll
+     *
+     * @param dataProducer Instance of {@link IDataProducer}
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException Exception during opening stream, or if the queue rejects an {@link Event}
+     * @see OpenAgendaProducerConnector#source
+     * @see OpenAgendaProducerConnector#METRICS_LOGGER
+     */
+    @Override
+    public void poll(IDataProducer dataProducer) {
+        Objects.requireNonNull(dataProducer);
+        try (InputStream is = createURL().openStream()) {
+            long start = System.currentTimeMillis();
+            List<Event> events = searchEvents(is, this.source);
+            long time = System.currentTimeMillis() - start;
+            for (Event event : events) {
+                if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Queue is full, rest of the events of " + this.source + " are left for next poll");
                 }
-                Thread.currentThread().interrupt();
             }
+            METRICS_LOGGER.log("time_process_" + this.source, time);
+        } catch (IOException e) {
+            LOGGER.error("Cannot connect to the OpenAgenda API : {} ", e);
+            throw new IllegalStateException(e.getMessage());
         }
     }
 
+    /**
+     * @return Time in milliseconds between two requests to openAgenda
+     * @see OpenAgendaProducerConnector#sleepTime
+     */
+    @Override
+    public long getInterval() {
+        return sleepTime;
+    }
+
     /**
      * Create the URL from properties (bbox and dates) for accessing to the webservice
      *
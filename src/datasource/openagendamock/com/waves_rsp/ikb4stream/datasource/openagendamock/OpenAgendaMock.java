@@ -27,6 +27,7 @@ import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
 import java.io.*;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Mock of {@link com.waves_rsp.ikb4stream.datasource.openagenda.OpenAgendaProducerConnector OpenAgendaProducerConnector}
@@ -103,7 +104,12 @@ public class OpenAgendaMock implements IOpenAgenda {
                 long start = System.currentTimeMillis();
                 List<Event> events = searchEvents(this.input, this.source);
                 long time = System.currentTimeMillis() - start;
-                events.forEach(dataProducer::push);
+                for (Event event : events) {
+                    if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        LOGGER.warn("Queue is full, rest of the events of {} are dropped", this.source);
+                        break;
+                    }
+                }
                 METRICS_LOGGER.log("time_process_" + this.source, time);
                 Thread.sleep(this.sleepTime);
             } catch (InterruptedException e) {
@@ -21,7 +21,7 @@ package com.waves_rsp.ikb4stream.datasource.owm;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
-import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.LatLong;
@@ -33,16 +33,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Get weather from OpenWeatherMap API
  *
  * @author ikb4stream
  * @version 1.0
- * @see com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector
+ * @see com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector
  */
-public class OWMProducerConnector implements IProducerConnector {
+public class OWMProducerConnector implements IScheduledProducerConnector {
     /**
      * Properties of this module
      *
@@ -123,12 +126,31 @@ public class OWMProducerConnector implements IProducerConnector {
         }
     }
 
+    /**
+     * Extract from the raw response the attributes read by the score processor
+     *
+     * @param node Raw response of OpenWeatherMap
+     * @return temperature, pressure, humidity and wind_speed as Double, weather and weather_description as String
+     * @see Event#withAttributes(Map)
+     */
+    private static Map<String, Object> getAttributes(JsonNode node) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("temperature", node.path("main").path("temp").asDouble());
+        attributes.put("pressure", node.path("main").path("pressure").asDouble());
+        attributes.put("humidity", node.path("main").path("humidity").asDouble());
+        attributes.put("wind_speed", node.path("wind").path("speed").asDouble());
+        attributes.put("weather", node.path("weather").path(0).path("main").asText());
+        attributes.put("weather_description", node.path("weather").path(0).path("description").asText());
+        return attributes;
+    }
+
     /**
      * Get the current weather from OpenWeatherMap
      *
      * @param latitude Latitude to get weather
      * @param longitude Longitude to get weather
      * @return an Event which contains information about current weather
+     * @throws IllegalStateException if the current weather cannot be read
      * @see OWMProducerConnector#openWeatherMap
      * @see OWMProducerConnector#latitude
      * @see OWMProducerConnector#longitude
@@ -139,20 +161,23 @@ public class OWMProducerConnector implements IProducerConnector {
         Objects.requireNonNull(latitude);
         Objects.requireNonNull(longitude);
         ObjectMapper objectMapper = new ObjectMapper();
-        CurrentWeather currentWeather = openWeatherMap.currentWeatherByCoordinates((float) this.latitude, (float) this.longitude);
         try {
+            CurrentWeather currentWeather = openWeatherMap.currentWeatherByCoordinates((float) this.latitude, (float) this.longitude);
+            if (currentWeather == null || currentWeather.getRawResponse() == null) {
+                throw new IOException("no response");
+            }
             JsonNode jn = objectMapper.readTree(currentWeather.getRawResponse());
             String description = currentWeather.getRawResponse();
             LatLong latLong = new LatLong(Double.valueOf(jn.path("coord").path("lat").toString()), Double.valueOf(jn.path("coord").path("lon").toString()));
             Date start = new Date(Long.valueOf(jn.path("dt").toString()) * 1000);
             Date end = new Date(start.getTime() + requestInterval - 1000);
-            return new Event(latLong, start, end, description, this.source);
+            return new Event(latLong, start, end, description, this.source).withAttributes(getAttributes(jn));
         } catch (NumberFormatException e) {
             LOGGER.warn("value of() failed: {}", e.getMessage());
-            return null;
-        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (IOException | RuntimeException e) {
             LOGGER.warn("Current weather failed: {}", e.getMessage());
-            return null;
+            throw new IllegalStateException(e.getMessage());
         }
     }
 
@@ -172,31 +197,34 @@ public class OWMProducerConnector implements IProducerConnector {
     }
 
     /**
-     * Listen {@link Event} from OWM
+     * Request current weather from OWM once
      *
      * @param dataProducer {@link IDataProducer} contains the data queue
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the current weather cannot be read, or the queue rejects it
      * @see OWMProducerConnector#latitude
      * @see OWMProducerConnector#longitude
      * @see OWMProducerConnector#source
-     * @see OWMProducerConnector#requestInterval
      */
     @Override
-    public void load(IDataProducer dataProducer) {
+    public void poll(IDataProducer dataProducer) {
         Objects.requireNonNull(dataProducer);
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                long start = System.currentTimeMillis();
-                Event event = getCurrentWeather(this.latitude, this.longitude);
-                if (event != null) {
-                    dataProducer.push(event);
-                    long end = System.currentTimeMillis();
-                    long result = end - start;
-                    METRICS_LOGGER.log("time_process_" + this.source, result);
-                }
-                Thread.sleep(requestInterval);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        long start = System.currentTimeMillis();
+        Event event = getCurrentWeather(this.latitude, this.longitude);
+        if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Queue is full, current weather of " + this.source + " is dropped");
         }
+        long end = System.currentTimeMillis();
+        long result = end - start;
+        METRICS_LOGGER.log("time_process_" + this.source, result);
+    }
+
+    /**
+     * @return Time in milliseconds between two requests to OWM
+     * @see OWMProducerConnector#requestInterval
+     */
+    @Override
+    public long getInterval() {
+        return requestInterval;
     }
 }
@@ -20,17 +20,19 @@ package com.waves_rsp.ikb4stream.datasource.rss;
 
 import com.rometools.modules.georss.GeoRSSModule;
 import com.rometools.modules.georss.GeoRSSUtils;
+import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;
 import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
 import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
-import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.LatLong;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
 import com.waves_rsp.ikb4stream.core.util.Geocoder;
+import com.waves_rsp.ikb4stream.core.util.nlp.AnnotatedDocument;
 import com.waves_rsp.ikb4stream.core.util.nlp.OpenNLP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,15 +44,16 @@ import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Get data flow from RSS
  *
  * @author ikb4stream
  * @version 1.0
- * @see com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector
+ * @see com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector
  */
-public class RSSProducerConnector implements IProducerConnector {
+public class RSSProducerConnector implements IScheduledProducerConnector {
     /**
      * Properties of this module
      *
@@ -73,26 +76,38 @@ public class RSSProducerConnector implements IProducerConnector {
     /**
      * Single instance of {@link OpenNLP} per each Thread
      *
-     * @see RSSProducerConnector#geocodeRSS(String)
+     * @see RSSProducerConnector#geocodeRSS(AnnotatedDocument)
      */
     private final OpenNLP openNLP = OpenNLP.getOpenNLP(Thread.currentThread());
     /**
      * Source name of corresponding {@link Event}
      *
-     * @see RSSProducerConnector#geocodeRSS(String)
-     * @see RSSProducerConnector#load(IDataProducer)
+     * @see RSSProducerConnector#geocodeRSS(AnnotatedDocument)
+     * @see RSSProducerConnector#poll(IDataProducer)
      */
     private final String source;
     /**
      * Interval time between two batch
      *
-     * @see RSSProducerConnector#load(IDataProducer)
+     * @see RSSProducerConnector#poll(IDataProducer)
      */
     private final int interval;
     /**
-     * @see RSSProducerConnector#load(IDataProducer)
+     * @see RSSProducerConnector#poll(IDataProducer)
      */
     private final URL url;
+    /**
+     * True until the feed has been read once, all entries of the first reading are pushed
+     *
+     * @see RSSProducerConnector#poll(IDataProducer)
+     */
+    private boolean first = true;
+    /**
+     * Time of the last reading which pushed entries, only entries published after are pushed
+     *
+     * @see RSSProducerConnector#poll(IDataProducer)
+     */
+    private Date lastTime = Date.from(Instant.now());
 
     /**
      * Public constructor to init variable from {@link RSSProducerConnector#PROPERTIES_MANAGER}
@@ -114,60 +129,74 @@ public class RSSProducerConnector implements IProducerConnector {
     }
 
     /**
-     * Listen {@link Event} from RSS
+     * Read the RSS feed once and push entries published since last reading. The reading stops at the first entry the
+     * queue rejects and isn't recorded, so its entries are read again at next poll.
      *
      * @param dataProducer {@link IDataProducer} contains the data queue
-     * @throws NullPointerException if dataProducer is null
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the feed cannot be read, or the queue rejects an entry
      * @see RSSProducerConnector#source
      * @see RSSProducerConnector#url
-     * @see RSSProducerConnector#interval
+     * @see RSSProducerConnector#first
+     * @see RSSProducerConnector#lastTime
      */
     @Override
-    public void load(IDataProducer dataProducer) {
+    public void poll(IDataProducer dataProducer) {
         Objects.requireNonNull(dataProducer);
-        final boolean[] first = {true};
-        final Date[] lastTime = {Date.from(Instant.now())};
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                long start = System.currentTimeMillis(); //metrics
-                SyndFeedInput input = new SyndFeedInput();
-                SyndFeed feed = input.build(new XmlReader(this.url));
-                Date currentTime = Date.from(Instant.now());
-                feed.getEntries().stream()
-                        .filter(entry -> first[0] || entry.getPublishedDate().after(lastTime[0]))
-                        .forEach(entry -> {
-                            lastTime[0] = currentTime;
-                            Date startDate = (entry.getPublishedDate() != null) ? entry.getPublishedDate() : currentTime;
-                            String description = (entry.getDescription().getValue() != null) ? entry.getDescription().getValue() : "";
-                            String completeDesc = entry.getTitle() + "\\n" + description + "\\nVoir plus: " + entry.getLink();
-                            GeoRSSModule module = GeoRSSUtils.getGeoRSS(entry);
-                            LatLong latLong = getLatLong(module, completeDesc);
-                            if (latLong != null) {
-                                Event event = new Event(latLong, startDate, currentTime, completeDesc, source);
-                                dataProducer.push(event);
-                            }
-                        });
-                first[0] = false;
-                long time = System.currentTimeMillis() - start;
-                METRICS_LOGGER.log("time_process_" + this.source, time);
-                Thread.sleep(interval);
-            } catch (IOException | FeedException e) {
-                LOGGER.error("Can't parse RSS [] ", e);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        try {
+            long start = System.currentTimeMillis(); //metrics
+            SyndFeedInput input = new SyndFeedInput();
+            SyndFeed feed = input.build(new XmlReader(this.url));
+            Date currentTime = Date.from(Instant.now());
+            boolean read = false;
+            for (SyndEntry entry : feed.getEntries()) {
+                if (!first && !entry.getPublishedDate().after(lastTime)) {
+                    continue;
+                }
+                read = true;
+                Date startDate = (entry.getPublishedDate() != null) ? entry.getPublishedDate() : currentTime;
+                String description = (entry.getDescription().getValue() != null) ? entry.getDescription().getValue() : "";
+                String completeDesc = entry.getTitle() + "\\n" + description + "\\nVoir plus: " + entry.getLink();
+                GeoRSSModule module = GeoRSSUtils.getGeoRSS(entry);
+                AnnotatedDocument document = new AnnotatedDocument(completeDesc);
+                LatLong latLong = getLatLong(module, document);
+                if (latLong != null) {
+                    Event event = new Event(latLong, startDate, currentTime, completeDesc, source).withDocument(document);
+                    if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Queue is full, rest of the feed of " + source + " is left for next poll");
+                    }
+                }
             }
+            if (read) {
+                lastTime = currentTime;
+            }
+            first = false;
+            long time = System.currentTimeMillis() - start;
+            METRICS_LOGGER.log("time_process_" + this.source, time);
+        } catch (IOException | FeedException e) {
+            LOGGER.error("Can't parse RSS [] ", e);
+            throw new IllegalStateException(e.getMessage());
         }
     }
 
+    /**
+     * @return Time in milliseconds between two readings of the feed
+     * @see RSSProducerConnector#interval
+     */
+    @Override
+    public long getInterval() {
+        return interval;
+    }
+
     /**
      * Getting a {@link LatLong} from a GeoRSSModule or a description
      *
      * @param module GeoRSSModule that represent a {@link LatLong}
-     * @param desc   Description of {@link Event}
+     * @param desc   Description of {@link Event}, annotated
      * @return {@link LatLong} if found something or null
      * @see LatLong
      */
-    private LatLong getLatLong(GeoRSSModule module, String desc) {
+    private LatLong getLatLong(GeoRSSModule module, AnnotatedDocument desc) {
         if (module != null) {
             return new LatLong(module.getPosition().getLatitude(), module.getPosition().getLongitude());
         } else if (desc != null) {
@@ -195,12 +224,12 @@ public class RSSProducerConnector implements IProducerConnector {
      * Select a list of location from a RSS with the NER OpenNLP algorithme.
      * Then, geolocalize the first location found with the geocoder Nominatim (OSM)
      *
-     * @param text to analyze
+     * @param text to analyze, its annotations are kept for score processors
      * @return a latLong coordinates
      * @see RSSProducerConnector#openNLP
      * @see RSSProducerConnector#source
      */
-    private LatLong geocodeRSS(String text) {
+    private LatLong geocodeRSS(AnnotatedDocument text) {
         long start = System.currentTimeMillis();
 
         List<String> locations = openNLP.applyNLPner(text, OpenNLP.nerOptions.LOCATION);
@@ -50,6 +50,12 @@ public class TwitterProducerConnector implements IProducerConnector {
      * Logger used to log all information in this module
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(TwitterProducerConnector.class);
+    /**
+     * Name of the Boolean attribute of an {@link Event} telling if the Twitter account is certified
+     *
+     * @see Event#getAttribute(String, Class)
+     */
+    private static final String USER_CERTIFIED = "user_certified";
     /**
      * Configuration to use Twitter Stream API
      *
@@ -223,20 +229,13 @@ public class TwitterProducerConnector implements IProducerConnector {
             User user = status.getUser();
             LatLong[] latLong = getLatLong(status);
             if (latLong.length > 0) {
-                JSONObject jsonObject = new JSONObject();
-                try {
-                    jsonObject.append("description", description);
-                    jsonObject.append("user_certified", user.isVerified());
-                    Event event;
-                    if (latLong.length == 1) {
-                        event = new Event(latLong[0], start, end, jsonObject.toString(), source);
-                    } else {
-                        event = new Event(latLong, start, end, jsonObject.toString(), source);
-                    }
-                    this.dataProducer.push(event);
-                } catch (JSONException e) {
-                    LOGGER.error(e.getMessage());
+                Event event;
+                if (latLong.length == 1) {
+                    event = new Event(latLong[0], start, end, description, source);
+                } else {
+                    event = new Event(latLong, start, end, description, source);
                 }
+                this.dataProducer.push(event.withAttributes(Collections.singletonMap(USER_CERTIFIED, user.isVerified())));
             }
         }
 
@@ -20,12 +20,13 @@ package com.waves_rsp.ikb4stream.datasource.weather;
 
 import com.rometools.modules.georss.GeoRSSModule;
 import com.rometools.modules.georss.GeoRSSUtils;
+import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;
 import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
 import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
-import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.LatLong;
@@ -40,15 +41,16 @@ import java.time.Instant;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Get {@link Event} from RSS data flow
  *
  * @author ikb4stream
  * @version 1.0
- * @see com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector
+ * @see com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector
  */
-public class WeatherProducerConnector implements IProducerConnector {
+public class WeatherProducerConnector implements IScheduledProducerConnector {
     /**
      * Properties of this module
      *
@@ -71,25 +73,33 @@ public class WeatherProducerConnector implements IProducerConnector {
     /**
      * Source name of corresponding {@link Event}
      *
-     * @see WeatherProducerConnector#load(IDataProducer)
+     * @see WeatherProducerConnector#poll(IDataProducer)
      */
     private final String source;
     /**
      * RSS URL
      */
     private final URL url;
+    /**
+     * Interval time in milliseconds between two readings of the feed
+     *
+     * @see WeatherProducerConnector#getInterval()
+     */
+    private final long interval;
 
     /**
      * Instantiate the WeatherProducerConnector object with load properties to connect to the RSS flow
      *
      * @see WeatherProducerConnector#source
      * @see WeatherProducerConnector#url
+     * @see WeatherProducerConnector#interval
      * @see WeatherProducerConnector#PROPERTIES_MANAGER
      */
     public WeatherProducerConnector() {
         try {
             this.source = PROPERTIES_MANAGER.getProperty("WeatherProducerConnector.source");
             this.url = new URL(PROPERTIES_MANAGER.getProperty("WeatherProducerConnector.url"));
+            this.interval = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("WeatherProducerConnector.interval", "900000"));
         } catch (IllegalArgumentException | MalformedURLException e) {
             LOGGER.error(e.getMessage());
             throw new IllegalStateException("Invalid configuration");
@@ -97,48 +107,60 @@ public class WeatherProducerConnector implements IProducerConnector {
     }
 
     /**
-     * Check a RSS flow from an URL
+     * Read the RSS flow once, the batch stops at the first {@link Event} the queue rejects, the others are read again
+     * at next poll
      *
      * @param dataProducer {@link IDataProducer} contains the data queue
+     * @throws NullPointerException  if dataProducer is null
+     * @throws IllegalStateException if the flow cannot be read, or the queue rejects an {@link Event}
      * @see WeatherProducerConnector#source
      * @see WeatherProducerConnector#METRICS_LOGGER
      */
     @Override
-    public void load(IDataProducer dataProducer) {
+    public void poll(IDataProducer dataProducer) {
         Objects.requireNonNull(dataProducer);
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                SyndFeedInput input = new SyndFeedInput(false, Locale.FRANCE);
-                XmlReader reader = new XmlReader(url);
-                SyndFeed feed = input.build(reader);
-                long start = System.currentTimeMillis();
-                feed.getEntries().forEach(entry -> {
-                    Date date = entry.getPublishedDate();
-                    String description = entry.getDescription().getValue();
-                    GeoRSSModule module = GeoRSSUtils.getGeoRSS(entry);
-                    if (date == null) {
-                        date = Date.from(Instant.now());
-                    }
-                    if (description == null) {
-                        description = "no description";
-                    }
-                    if (module != null && module.getPosition() != null) {
-                        LatLong latLong = new LatLong(module.getPosition().getLatitude(), module.getPosition().getLongitude());
-                        Event event = new Event(latLong, date, date, description, source);
-                        dataProducer.push(event);
-                        long end = System.currentTimeMillis();
-                        long result = end - start;
-                        METRICS_LOGGER.log("time_process_" + this.source, result);
-                        LOGGER.info("Event " + event + " has been pushed");
+        try {
+            SyndFeedInput input = new SyndFeedInput(false, Locale.FRANCE);
+            XmlReader reader = new XmlReader(url);
+            SyndFeed feed = input.build(reader);
+            long start = System.currentTimeMillis();
+            for (SyndEntry entry : feed.getEntries()) {
+                Date date = entry.getPublishedDate();
+                String description = entry.getDescription().getValue();
+                GeoRSSModule module = GeoRSSUtils.getGeoRSS(entry);
+                if (date == null) {
+                    date = Date.from(Instant.now());
+                }
+                if (description == null) {
+                    description = "no description";
+                }
+                if (module != null && module.getPosition() != null) {
+                    LatLong latLong = new LatLong(module.getPosition().getLatitude(), module.getPosition().getLongitude());
+                    Event event = new Event(latLong, date, date, description, source);
+                    if (!dataProducer.push(event, IDataProducer.PUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Queue is full, rest of the flow of " + source + " is left for next poll");
                     }
-                });
-            } catch (IOException | FeedException e) {
-                LOGGER.error(e.getMessage());
-                return;
+                    long end = System.currentTimeMillis();
+                    long result = end - start;
+                    METRICS_LOGGER.log("time_process_" + this.source, result);
+                    LOGGER.info("Event " + event + " has been pushed");
+                }
             }
+        } catch (IOException | FeedException e) {
+            LOGGER.error(e.getMessage());
+            throw new IllegalStateException(e.getMessage());
         }
     }
 
+    /**
+     * @return Time in milliseconds between two readings of the flow
+     * @see WeatherProducerConnector#interval
+     */
+    @Override
+    public long getInterval() {
+        return interval;
+    }
+
     /**
      * Check if this jar is active
      *
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer;
+
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker which stops sending requests to a failing server. After {@link CircuitBreaker#failureThreshold}
+ * consecutive failures the circuit is open and requests are refused during {@link CircuitBreaker#openMs}, then a single
+ * trial request is allowed: its success closes the circuit, its failure opens it again.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DatabaseWriter
+ */
+class CircuitBreaker {
+    /**
+     * State of a {@link CircuitBreaker}
+     */
+    enum State {
+        /**
+         * Requests are allowed
+         */
+        CLOSED,
+        /**
+         * Requests are refused
+         */
+        OPEN,
+        /**
+         * A trial request is running, other requests are refused
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Number of consecutive failures which opens the circuit
+     *
+     * @see CircuitBreaker#onFailure()
+     */
+    private final int failureThreshold;
+    /**
+     * Time in milliseconds the circuit stays open before a trial request
+     *
+     * @see CircuitBreaker#allowRequest()
+     */
+    private final long openMs;
+    /**
+     * Clock in milliseconds
+     */
+    private final LongSupplier clock;
+    /**
+     * Current state
+     */
+    private State state = State.CLOSED;
+    /**
+     * Number of consecutive failures
+     */
+    private int failures;
+    /**
+     * Time when the circuit has been opened
+     */
+    private long openedAt;
+
+    /**
+     * Create a closed {@link CircuitBreaker}
+     *
+     * @param failureThreshold Number of consecutive failures which opens the circuit
+     * @param openMs           Time in milliseconds the circuit stays open before a trial request
+     * @throws IllegalArgumentException if failureThreshold is lower than 1 or openMs is negative
+     */
+    CircuitBreaker(int failureThreshold, long openMs) {
+        this(failureThreshold, openMs, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a closed {@link CircuitBreaker} with a specific clock
+     *
+     * @param failureThreshold Number of consecutive failures which opens the circuit
+     * @param openMs           Time in milliseconds the circuit stays open before a trial request
+     * @param clock            Clock in milliseconds
+     * @throws NullPointerException     if clock is null
+     * @throws IllegalArgumentException if failureThreshold is lower than 1 or openMs is negative
+     */
+    CircuitBreaker(int failureThreshold, long openMs, LongSupplier clock) {
+        Objects.requireNonNull(clock);
+        if (failureThreshold < 1 || openMs < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker configuration");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Tell if a request can be sent, the first call after {@link CircuitBreaker#openMs} becomes the trial request
+     *
+     * @return true if the request can be sent
+     * @see CircuitBreaker#state
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt >= openMs) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Record a successful request, the circuit is closed
+     *
+     * @see CircuitBreaker#state
+     */
+    synchronized void onSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Record a failed request, the circuit is opened after too many failures or a failed trial
+     *
+     * @see CircuitBreaker#failureThreshold
+     */
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /**
+     * @return Current {@link State}
+     */
+    synchronized State getState() {
+        return state;
+    }
+}
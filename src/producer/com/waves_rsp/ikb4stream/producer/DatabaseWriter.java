@@ -18,26 +18,34 @@
 
 package com.waves_rsp.ikb4stream.producer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.async.client.MongoClient;
 import com.mongodb.async.client.MongoClients;
 import com.mongodb.async.client.MongoCollection;
 import com.mongodb.async.client.MongoDatabase;
-import com.mongodb.client.model.geojson.Point;
-import com.mongodb.client.model.geojson.Polygon;
-import com.mongodb.client.model.geojson.Position;
+import com.mongodb.client.model.InsertManyOptions;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.EventCodec;
 import com.waves_rsp.ikb4stream.producer.model.DatabaseWriterCallback;
-import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -59,6 +67,7 @@ public class DatabaseWriter {
      * Object to add metrics from this class
      *
      * @see DatabaseWriter#insertEvent(Event, DatabaseWriterCallback)
+     * @see DatabaseWriter#insertEvents(List, DatabaseWriterCallback)
      * @see MetricsLogger#getMetricsLogger()
      * @see MetricsLogger#log(String, long)
      */
@@ -74,23 +83,72 @@ public class DatabaseWriter {
      */
     private static final DatabaseWriter DATABASE_WRITER = new DatabaseWriter();
     /**
-     * Mongo collection containing {@link Event}
+     * Error code of mongodb when a document with the same _id is already stored
      *
-     * @see DatabaseWriter#insertEvent(Event, DatabaseWriterCallback)
+     * @see DatabaseWriter#isDuplicateKey(Throwable)
      */
-    private final MongoCollection<Document> mongoCollection;
+    private static final int DUPLICATE_KEY = 11000;
     /**
-     * Constant value {@value LOCATION_FIELD}
+     * {@link EventCodec} which gives an id to each {@link Event} before its first insert
+     *
+     * @see DatabaseWriter#withIds(List)
+     */
+    private final EventCodec eventCodec = new EventCodec();
+    /**
+     * Mongo collection containing {@link Event}, encoded by {@link EventCodec}
      *
      * @see DatabaseWriter#insertEvent(Event, DatabaseWriterCallback)
+     * @see DatabaseWriter#insertEvents(List, DatabaseWriterCallback)
      */
-    private static final String LOCATION_FIELD = "location";
+    private final MongoCollection<Event> mongoCollection;
     /**
-     * Mapper to read JSON
+     * Write-behind buffer of {@link Event}, null if database.write.batchsize is 1
      *
      * @see DatabaseWriter#insertEvent(Event, DatabaseWriterCallback)
+     * @see DatabaseWriter#flush()
+     * @see DatabaseWriter#createBatcher()
      */
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final WriteBehindBatcher<Event> batcher;
+    /**
+     * {@link InFlightWindow} of insert requests, a {@link com.waves_rsp.ikb4stream.producer.datasource.DataConsumer} waits here when mongodb is slower than producers
+     *
+     * @see DatabaseWriter#acquire()
+     * @see DatabaseWriter#send(List, Consumer)
+     * @see DatabaseWriter#getInFlightCount()
+     */
+    private final InFlightWindow inFlight;
+    /**
+     * Disk-backed outbox of {@link Event} which cannot be written now, null if database.outbox.path is not set
+     *
+     * @see DatabaseWriter#spill(List, Throwable, Consumer)
+     * @see DatabaseWriter#replay()
+     */
+    private final Outbox outbox;
+    /**
+     * {@link CircuitBreaker} which sends {@link Event} to {@link DatabaseWriter#outbox} while mongodb is down
+     *
+     * @see DatabaseWriter#send(List, Consumer)
+     * @see DatabaseWriter#replay()
+     */
+    private final CircuitBreaker circuitBreaker;
+    /**
+     * Max time in milliseconds to wait for an in-flight permit before spilling into {@link DatabaseWriter#outbox}
+     *
+     * @see DatabaseWriter#acquire()
+     */
+    private final long spillMs;
+    /**
+     * Max time in milliseconds to wait for an in-flight permit without {@link DatabaseWriter#outbox}, the batch fails after it
+     *
+     * @see DatabaseWriter#acquire()
+     */
+    private final long inFlightMs;
+    /**
+     * True while a segment of {@link DatabaseWriter#outbox} is replayed
+     *
+     * @see DatabaseWriter#replay()
+     */
+    private final AtomicBoolean replaying = new AtomicBoolean();
 
     /**
      * DataWriter constructor
@@ -101,14 +159,101 @@ public class DatabaseWriter {
         try {
             final MongoClient mongoClient = MongoClients.create(PROPERTIES_MANAGER.getProperty("database.host"));
             final MongoDatabase mongoDatabase = mongoClient.getDatabase(PROPERTIES_MANAGER.getProperty("database.datasource"));
-            this.mongoCollection = mongoDatabase.getCollection(PROPERTIES_MANAGER.getProperty("database.collection"));
+            this.mongoCollection = mongoDatabase.getCollection(PROPERTIES_MANAGER.getProperty("database.collection"), Event.class)
+                    .withCodecRegistry(EventCodec.createCodecRegistry());
         } catch (IllegalArgumentException e) {
             LOGGER.error(e.getMessage());
             throw new IllegalStateException(e.getMessage());
         }
+        int inFlightPermits = 64;
+        int failureThreshold = 5;
+        long openMs = 5000;
+        long replayMs = 1000;
+        long spill = 100;
+        long inFlightWait = 30_000;
+        long segmentSize = 16L * 1024 * 1024;
+        try {
+            inFlightPermits = Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("database.write.inflight", "64"));
+            inFlightWait = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("database.write.inflightms", "30000"));
+            failureThreshold = Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("database.outbox.failures", "5"));
+            openMs = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("database.outbox.openms", "5000"));
+            replayMs = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("database.outbox.replayms", "1000"));
+            spill = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("database.outbox.spillms", "100"));
+            segmentSize = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("database.outbox.segmentsize", "16777216"));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid number in database.write or database.outbox configuration, use default value");
+        }
+        this.inFlight = new InFlightWindow(Math.max(1, inFlightPermits));
+        this.spillMs = Math.max(0, spill);
+        this.inFlightMs = Math.max(0, inFlightWait);
+        this.circuitBreaker = new CircuitBreaker(Math.max(1, failureThreshold), Math.max(0, openMs));
+        this.outbox = createOutbox(Math.max(1, segmentSize));
+        if (outbox != null) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "OutboxReplay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, replayMs);
+            scheduler.scheduleWithFixedDelay(this::replay, period, period, TimeUnit.MILLISECONDS);
+        }
+        this.batcher = createBatcher();
         LOGGER.info("DatabaseWriter has been instantiate");
     }
 
+    /**
+     * Open the outbox set by database.outbox.path
+     *
+     * @param segmentSize Size in bytes of an outbox segment
+     * @return {@link Outbox} or null if database.outbox.path is not set or cannot be opened
+     * @see DatabaseWriter#outbox
+     * @see DatabaseWriter#PROPERTIES_MANAGER
+     */
+    private static Outbox createOutbox(long segmentSize) {
+        String path = PROPERTIES_MANAGER.getPropertyOrDefault("database.outbox.path", "").trim();
+        if (path.isEmpty()) {
+            LOGGER.info("database.outbox.path is not set, failed writes will not be replayed");
+            return null;
+        }
+        try {
+            return new Outbox(Paths.get(path), segmentSize);
+        } catch (IOException e) {
+            LOGGER.error("Outbox {} cannot be opened: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Create the write-behind buffer set by database.write.batchsize and database.write.lingerms
+     *
+     * @return {@link WriteBehindBatcher} which flushes with an unordered insertMany, or null if batch size is 1
+     * @see DatabaseWriter#batcher
+     * @see DatabaseWriter#PROPERTIES_MANAGER
+     * @see DatabaseWriter#send(List, Consumer)
+     */
+    private WriteBehindBatcher<Event> createBatcher() {
+        int batchSize = 1;
+        long lingerMs = 50;
+        try {
+            batchSize = Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("database.write.batchsize", "1"));
+            lingerMs = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("database.write.lingerms", "50"));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("database.write.batchsize or database.write.lingerms is not a number, use default value");
+        }
+        if (batchSize <= 1) {
+            return null;
+        }
+        LOGGER.info("DatabaseWriter writes by batch of {} documents or every {} ms", batchSize, Math.max(0, lingerMs));
+        return new WriteBehindBatcher<>(batchSize, Math.max(0, lingerMs), (events, onComplete) -> {
+            long start = System.currentTimeMillis();
+            send(events, t -> {
+                METRICS_LOGGER.log("time_dbwriter_flush", System.currentTimeMillis() - start);
+                onComplete.accept(t);
+            });
+            METRICS_LOGGER.log("dbwriter_flush_size", events.size());
+        });
+    }
+
     /**
      * Return an instance of {@link DatabaseWriter}
      *
@@ -120,40 +265,326 @@ public class DatabaseWriter {
     }
 
     /**
-     * This method inserts an {@link Event} in the database
+     * This method inserts an {@link Event} in the database, through the write-behind buffer if it's enabled
      *
      * @param event    {@link Event} to insert into database
-     * @param callback {@link DatabaseWriterCallback} called after inserting
+     * @param callback {@link DatabaseWriterCallback} called after inserting, or after storing into the outbox
      * @throws NullPointerException    if event or callback is null
-     * @see DatabaseWriter#mongoCollection
-     * @see DatabaseWriter#LOCATION_FIELD
      * @see DatabaseWriter#METRICS_LOGGER
-     * @see DatabaseWriter#mapper
+     * @see DatabaseWriter#batcher
+     * @see DatabaseWriter#send(List, Consumer)
+     * @see DatabaseWriter#withIds(List)
      */
     public void insertEvent(Event event, DatabaseWriterCallback callback) {
         Objects.requireNonNull(event);
         Objects.requireNonNull(callback);
+        long start = System.currentTimeMillis();
+        Event identified = eventCodec.generateIdIfAbsentFromDocument(event);
+        if (batcher != null) {
+            batcher.add(identified, callback);
+        } else {
+            send(Collections.singletonList(identified), callback::onResult);
+        }
+        long time = System.currentTimeMillis() - start;
+        METRICS_LOGGER.log("time_dbwriter_" + event.getSource(), time);
+    }
+
+    /**
+     * This method inserts a batch of {@link Event} in the database with a single unordered request
+     *
+     * @param events   List of {@link Event} to insert into database
+     * @param callback {@link DatabaseWriterCallback} called once after inserting the whole batch, or after storing into the outbox
+     * @throws NullPointerException if events or callback is null
+     * @see DatabaseWriter#METRICS_LOGGER
+     * @see DatabaseWriter#send(List, Consumer)
+     * @see DatabaseWriter#withIds(List)
+     */
+    public void insertEvents(List<Event> events, DatabaseWriterCallback callback) {
+        Objects.requireNonNull(events);
+        Objects.requireNonNull(callback);
+        if (events.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        send(withIds(events), callback::onResult);
+        long time = System.currentTimeMillis() - start;
+        METRICS_LOGGER.log("time_dbwriter_batch", time);
+    }
+
+    /**
+     * Give an id to each {@link Event} before its first insert. The driver ignores the copy returned by
+     * {@link EventCodec#generateIdIfAbsentFromDocument(Event)}, so without this mongodb would choose a new _id at each
+     * attempt and a request sent again, from the outbox or after a lost acknowledgement, would store duplicates.
+     *
+     * @param events {@link Event} to insert
+     * @return Same {@link Event} with an id
+     * @see DatabaseWriter#eventCodec
+     */
+    private List<Event> withIds(List<Event> events) {
+        return events.stream().map(eventCodec::generateIdIfAbsentFromDocument).collect(Collectors.toList());
+    }
+
+    /**
+     * Check if an insert failed only because its documents are already stored, which happens when a request is sent
+     * again after its acknowledgement was lost, or when an outbox segment is replayed twice
+     *
+     * @param t Error of an insert request, can be null
+     * @return true if every write error is a duplicate _id
+     * @see DatabaseWriter#DUPLICATE_KEY
+     */
+    static boolean isDuplicateKey(Throwable t) {
+        if (t instanceof MongoBulkWriteException) {
+            MongoBulkWriteException e = (MongoBulkWriteException) t;
+            List<BulkWriteError> errors = e.getWriteErrors();
+            return e.getWriteConcernError() == null && !errors.isEmpty()
+                    && errors.stream().allMatch(error -> error.getCode() == DUPLICATE_KEY);
+        }
+        return t instanceof MongoWriteException && ((MongoWriteException) t).getError().getCode() == DUPLICATE_KEY;
+    }
+
+    /**
+     * {@link Event} of an unordered insert which mongodb rejected for another reason than a duplicate _id
+     *
+     * @param events {@link Event} of the insert, in the order they were sent
+     * @param e      Error of the insert
+     * @return Rejected {@link Event}
+     * @see DatabaseWriter#DUPLICATE_KEY
+     */
+    private static List<Event> rejected(List<Event> events, MongoBulkWriteException e) {
+        return e.getWriteErrors().stream()
+                .filter(error -> error.getCode() != DUPLICATE_KEY)
+                .map(error -> events.get(error.getIndex()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Write now all {@link Event} waiting in the write-behind buffer
+     *
+     * @see DatabaseWriter#batcher
+     */
+    public void flush() {
+        if (batcher != null) {
+            batcher.flush();
+        }
+    }
+
+    /**
+     * Write the write-behind buffer and stop its linger thread, then close the current outbox segment, so that it's
+     * replayed at next startup if mongodb is still unreachable
+     *
+     * @see DatabaseWriter#batcher
+     * @see DatabaseWriter#outbox
+     */
+    public void close() {
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (outbox != null) {
+            try {
+                outbox.close();
+            } catch (IOException e) {
+                LOGGER.error("Outbox cannot be closed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Number of insert requests sent to mongodb and not yet acknowledged
+     *
+     * @return Current in-flight count
+     * @see DatabaseWriter#inFlight
+     */
+    public int getInFlightCount() {
+        return inFlight.getInFlightCount();
+    }
+
+    /**
+     * Send {@link Event} to mongodb, or to the outbox if the circuit is open or the in-flight window stays full.
+     * Without outbox, a window which stays full fails the insertion.
+     *
+     * @param events     {@link Event} to insert
+     * @param onComplete Called once with the result of the insertion
+     * @see DatabaseWriter#circuitBreaker
+     * @see DatabaseWriter#acquire()
+     * @see DatabaseWriter#onInsertResult(List, Throwable, Consumer)
+     */
+    private void send(List<Event> events, Consumer<Throwable> onComplete) {
+        if (outbox != null && !circuitBreaker.allowRequest()) {
+            spill(events, null, onComplete);
+            return;
+        }
+        Throwable refused = acquire();
+        if (refused != null) {
+            if (outbox != null) {
+                spill(events, null, onComplete);
+            } else {
+                onComplete.accept(refused);
+            }
+            return;
+        }
+        Consumer<Throwable> release = t -> {
+            inFlight.release();
+            onInsertResult(events, t, onComplete);
+        };
         try {
-            long start = System.currentTimeMillis();
-            Document document = Document.parse(mapper.writeValueAsString(event));
-            document.remove("start");
-            document.remove("end");
-            document.remove(LOCATION_FIELD);
-            document.append("start", event.getStart().getTime());
-            document.append("end", event.getEnd().getTime());
-            if (event.getLocation().length == 1) {
-                document.append(LOCATION_FIELD, new Point(new Position(
-                        event.getLocation()[0].getLongitude(), event.getLocation()[0].getLatitude())));
+            if (events.size() == 1) {
+                this.mongoCollection.insertOne(events.get(0), (result, t) -> release.accept(t));
             } else {
-                List<Position> positions = Arrays.stream(event.getLocation())
-                        .map(p -> new Position(p.getLongitude(), p.getLatitude())).collect(Collectors.toList());
-                document.append(LOCATION_FIELD, new Polygon(positions));
+                this.mongoCollection.insertMany(events, new InsertManyOptions().ordered(false), (result, t) -> release.accept(t));
+            }
+        } catch (RuntimeException e) {
+            release.accept(e);
+        }
+    }
+
+    /**
+     * Handle the result of an insert request. Duplicate _id errors mean {@link Event} are already stored, it's a success.
+     * Another write error means mongodb is up but rejected some documents, they would be rejected again so they
+     * aren't stored. Any other error is a failure of mongodb: {@link Event} go to the outbox.
+     *
+     * @param events     {@link Event} of the request
+     * @param t          Error of the request, null on success
+     * @param onComplete Called once with the result of the insertion
+     * @see DatabaseWriter#circuitBreaker
+     * @see DatabaseWriter#spill(List, Throwable, Consumer)
+     * @see DatabaseWriter#isDuplicateKey(Throwable)
+     */
+    private void onInsertResult(List<Event> events, Throwable error, Consumer<Throwable> onComplete) {
+        Throwable t = isDuplicateKey(error) ? null : error;
+        if (outbox == null) {
+            onComplete.accept(t);
+        } else if (t == null || t instanceof MongoBulkWriteException || t instanceof MongoWriteException) {
+            circuitBreaker.onSuccess();
+            onComplete.accept(t);
+        } else {
+            circuitBreaker.onFailure();
+            spill(events, t, onComplete);
+        }
+    }
+
+    /**
+     * Store {@link Event} into the outbox, callback gets null once they are stored
+     *
+     * @param events     {@link Event} to store
+     * @param cause      Error of mongodb if there is one
+     * @param onComplete Called once with the result of the storage
+     * @see DatabaseWriter#outbox
+     */
+    private void spill(List<Event> events, Throwable cause, Consumer<Throwable> onComplete) {
+        try {
+            outbox.append(events);
+            METRICS_LOGGER.log("dbwriter_outbox_append", events.size());
+            if (cause != null) {
+                LOGGER.warn("{} events stored in outbox: {}", events.size(), cause.getMessage());
+            }
+            onComplete.accept(null);
+        } catch (IOException e) {
+            LOGGER.error("{} events cannot be stored in outbox: {}", events.size(), e.getMessage());
+            onComplete.accept(cause != null ? cause : e);
+        }
+    }
+
+    /**
+     * Replay the oldest outbox segment with a single unordered insertMany if the circuit allows it.
+     * The segment is deleted once mongodb acknowledges it, duplicate _id errors included: {@link Event} keep the id
+     * given before their first insert, so those already stored by an earlier attempt are not stored twice.
+     * Documents rejected for another reason go to a quarantine file instead of being lost, and a segment whose
+     * write concern failed is kept to be replayed again.
+     *
+     * @see DatabaseWriter#outbox
+     * @see DatabaseWriter#circuitBreaker
+     * @see DatabaseWriter#replaying
+     * @see DatabaseWriter#isDuplicateKey(Throwable)
+     */
+    private void replay() {
+        if (!replaying.compareAndSet(false, true)) {
+            return;
+        }
+        boolean sent = false;
+        try {
+            Path segment = outbox.nextSegment();
+            if (segment == null) {
+                return;
+            }
+            List<Event> events = outbox.read(segment);
+            if (events.isEmpty()) {
+                outbox.delete(segment);
+                return;
+            }
+            if (!inFlight.tryAcquire()) {
+                return;
+            }
+            if (!circuitBreaker.allowRequest()) {
+                inFlight.release();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            this.mongoCollection.insertMany(events, new InsertManyOptions().ordered(false), (result, t) -> {
+                inFlight.release();
+                try {
+                    if (t == null || isDuplicateKey(t)) {
+                        if (t != null) {
+                            LOGGER.info("Outbox segment {} was already stored", segment);
+                        }
+                        circuitBreaker.onSuccess();
+                        outbox.delete(segment);
+                        METRICS_LOGGER.log("dbwriter_outbox_replay", events.size());
+                        METRICS_LOGGER.log("time_dbwriter_replay", System.currentTimeMillis() - start);
+                    } else if (t instanceof MongoBulkWriteException && ((MongoBulkWriteException) t).getWriteConcernError() == null) {
+                        circuitBreaker.onSuccess();
+                        List<Event> rejected = rejected(events, (MongoBulkWriteException) t);
+                        Path quarantine = outbox.quarantine(segment, rejected);
+                        METRICS_LOGGER.log("dbwriter_outbox_replay", events.size() - rejected.size());
+                        METRICS_LOGGER.log("dbwriter_outbox_rejected", rejected.size());
+                        LOGGER.error("{} events of outbox segment {} rejected by mongodb, kept in {}: {}",
+                                rejected.size(), segment, quarantine, t.getMessage());
+                    } else {
+                        circuitBreaker.onFailure();
+                        LOGGER.warn("Outbox replay failed: {}", t.getMessage());
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Replayed segment {} cannot be deleted: {}", segment, e.getMessage());
+                } finally {
+                    replaying.set(false);
+                }
+            });
+            sent = true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Outbox cannot be replayed: {}", e.getMessage());
+            circuitBreaker.onFailure();
+        } finally {
+            if (!sent) {
+                replaying.set(false);
+            }
+        }
+    }
+
+    /**
+     * Take a permit of in-flight request, wait while mongodb has not acknowledged enough previous requests.
+     * Waiting stops after {@link DatabaseWriter#spillMs} with an outbox, after {@link DatabaseWriter#inFlightMs}
+     * without, or when the thread is interrupted: neither a write-behind flush nor a stopping
+     * {@link com.waves_rsp.ikb4stream.producer.datasource.DataConsumer} can be blocked forever by mongodb.
+     *
+     * @return null if a permit has been taken, else the reason why it has not
+     * @see DatabaseWriter#inFlight
+     * @see DatabaseWriter#METRICS_LOGGER
+     */
+    private Throwable acquire() {
+        if (!inFlight.tryAcquire()) {
+            long start = System.nanoTime();
+            long timeoutMs = outbox == null ? inFlightMs : spillMs;
+            try {
+                if (!inFlight.acquire(timeoutMs)) {
+                    METRICS_LOGGER.log(outbox == null ? "dbwriter_inflight_timeout" : "dbwriter_inflight_spill", 1);
+                    return new TimeoutException("No in-flight permit after " + timeoutMs + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return e;
             }
-            this.mongoCollection.insertOne(document, (result, t) -> callback.onResult(t));
-            long time = System.currentTimeMillis() - start;
-            METRICS_LOGGER.log("time_dbwriter_" + event.getSource(), time);
-        } catch (JsonProcessingException e) {
-            LOGGER.error("Invalid event format: event not inserted in database.");
+            METRICS_LOGGER.log("dbwriter_inflight_wait", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         }
+        METRICS_LOGGER.log("dbwriter_inflight", getInFlightCount());
+        return null;
     }
 }
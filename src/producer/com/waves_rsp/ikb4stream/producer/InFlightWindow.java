@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Window of insert requests sent to mongodb and not yet acknowledged. A writer takes a permit before sending and gives
+ * it back on the acknowledgement; when the window is full it waits, at most a given time and never uninterruptibly,
+ * so a slow or unreachable mongodb cannot block a writer or the shutdown forever.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DatabaseWriter
+ */
+class InFlightWindow {
+    /**
+     * Max number of requests in flight
+     *
+     * @see InFlightWindow#getInFlightCount()
+     */
+    private final int max;
+    /**
+     * Permits of requests in flight
+     */
+    private final Semaphore permits;
+
+    /**
+     * Create an empty {@link InFlightWindow}
+     *
+     * @param max Max number of requests in flight
+     * @throws IllegalArgumentException if max is lower than 1
+     */
+    InFlightWindow(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("In-flight window must be positive");
+        }
+        this.max = max;
+        this.permits = new Semaphore(max);
+    }
+
+    /**
+     * Take a permit if one is free, without waiting
+     *
+     * @return true if a permit has been taken
+     */
+    boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Take a permit, waiting at most timeoutMs for a request to be acknowledged
+     *
+     * @param timeoutMs Max time in milliseconds to wait, 0 or less doesn't wait
+     * @return true if a permit has been taken, false if timeoutMs elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean acquire(long timeoutMs) throws InterruptedException {
+        return permits.tryAcquire(Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Give back a permit once a request is acknowledged
+     */
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * @return Number of requests in flight
+     */
+    int getInFlightCount() {
+        return max - permits.availablePermits();
+    }
+}
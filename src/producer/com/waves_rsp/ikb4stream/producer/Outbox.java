@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.util.EventCodec;
+import org.bson.BSONException;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Disk-backed outbox of {@link Event} which cannot be written in mongodb right now.
+ * {@link Event} are appended as BSON documents, encoded by {@link EventCodec}, to segment files. A segment is closed
+ * when it reaches {@link Outbox#segmentSize} and closed segments are replayed from the oldest one. Segments left by a
+ * previous run are found again at startup, a record truncated by a crash ends its segment.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DatabaseWriter
+ */
+class Outbox {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Outbox.class);
+    /**
+     * Constant value {@value SEGMENT_PREFIX}
+     *
+     * @see Outbox#segmentPath(long)
+     */
+    private static final String SEGMENT_PREFIX = "outbox-";
+    /**
+     * Constant value {@value SEGMENT_SUFFIX}
+     *
+     * @see Outbox#segmentPath(long)
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+    /**
+     * Constant value {@value QUARANTINE_PREFIX}
+     *
+     * @see Outbox#quarantine(Path, List)
+     */
+    private static final String QUARANTINE_PREFIX = "rejected-";
+    /**
+     * {@link EventCodec} used to write and read segments
+     *
+     * @see Outbox#append(List)
+     * @see Outbox#read(Path)
+     */
+    private final EventCodec codec = new EventCodec();
+    /**
+     * Directory of segments
+     */
+    private final Path directory;
+    /**
+     * Size in bytes after which the current segment is closed
+     *
+     * @see Outbox#append(List)
+     */
+    private final long segmentSize;
+    /**
+     * Closed segments, from the oldest to the newest
+     *
+     * @see Outbox#nextSegment()
+     * @see Outbox#delete(Path)
+     */
+    private final Deque<Path> closedSegments = new ArrayDeque<>();
+    /**
+     * Sequence number of the next segment
+     *
+     * @see Outbox#segmentPath(long)
+     */
+    private long nextSequence;
+    /**
+     * Segment currently appended, null if there is none
+     *
+     * @see Outbox#append(List)
+     * @see Outbox#roll()
+     */
+    private FileChannel current;
+    /**
+     * Path of {@link Outbox#current}
+     */
+    private Path currentPath;
+
+    /**
+     * Open an outbox in directory, segments of a previous run are queued for replay
+     *
+     * @param directory   Directory of segments, created if needed
+     * @param segmentSize Size in bytes after which a segment is closed
+     * @throws IOException              if directory cannot be read or created
+     * @throws NullPointerException     if directory is null
+     * @throws IllegalArgumentException if segmentSize is lower than 1
+     */
+    Outbox(Path directory, long segmentSize) throws IOException {
+        Objects.requireNonNull(directory);
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(existing::add);
+        }
+        existing.sort(null);
+        for (Path path : existing) {
+            nextSequence = Math.max(nextSequence, sequenceOf(path) + 1);
+            closedSegments.add(path);
+        }
+        if (!existing.isEmpty()) {
+            LOGGER.info("{} outbox segments found in {}", existing.size(), directory);
+        }
+    }
+
+    /**
+     * Append {@link Event} to the current segment, the segment is closed once it's bigger than {@link Outbox#segmentSize}.
+     * Records are forced to disk before returning, so {@link Event} acknowledged after a spill survive a crash.
+     *
+     * @param events {@link Event} to store
+     * @throws IOException          if the segment cannot be written
+     * @throws NullPointerException if events is null
+     * @see Outbox#current
+     */
+    synchronized void append(List<Event> events) throws IOException {
+        Objects.requireNonNull(events);
+        if (events.isEmpty()) {
+            return;
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        for (Event event : events) {
+            codec.encode(new BsonBinaryWriter(buffer), event, EncoderContext.builder().build());
+        }
+        if (current == null) {
+            currentPath = segmentPath(nextSequence++);
+            current = FileChannel.open(currentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            current.write(bytes);
+        }
+        current.force(false);
+        if (current.size() >= segmentSize) {
+            roll();
+        }
+    }
+
+    /**
+     * Give the oldest segment to replay, the current segment is closed if there isn't a closed one
+     *
+     * @return Oldest segment or null if the outbox is empty
+     * @throws IOException if the current segment cannot be closed
+     * @see Outbox#closedSegments
+     */
+    synchronized Path nextSegment() throws IOException {
+        if (closedSegments.isEmpty() && current != null) {
+            roll();
+        }
+        return closedSegments.peekFirst();
+    }
+
+    /**
+     * Read all {@link Event} of a segment, stop at the first truncated or invalid record
+     *
+     * @param segment Segment to read
+     * @return {@link Event} stored in segment
+     * @throws IOException          if segment cannot be read
+     * @throws NullPointerException if segment is null
+     */
+    List<Event> read(Path segment) throws IOException {
+        Objects.requireNonNull(segment);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment)).order(ByteOrder.LITTLE_ENDIAN);
+        List<Event> events = new ArrayList<>();
+        while (bytes.remaining() >= 4) {
+            int length = bytes.getInt(bytes.position());
+            if (length < 5 || length > bytes.remaining()) {
+                LOGGER.warn("Truncated record in {}, {} bytes ignored", segment, bytes.remaining());
+                break;
+            }
+            ByteBuffer record = bytes.slice();
+            record.limit(length);
+            try (BsonBinaryReader reader = new BsonBinaryReader(record.order(ByteOrder.LITTLE_ENDIAN))) {
+                events.add(codec.decode(reader, DecoderContext.builder().build()));
+            } catch (BSONException | IllegalArgumentException e) {
+                LOGGER.warn("Invalid record in {}: {}", segment, e.getMessage());
+                break;
+            }
+            bytes.position(bytes.position() + length);
+        }
+        return events;
+    }
+
+    /**
+     * Delete a replayed segment
+     *
+     * @param segment Segment given by {@link Outbox#nextSegment()}
+     * @throws IOException          if segment cannot be deleted
+     * @throws NullPointerException if segment is null
+     * @see Outbox#closedSegments
+     */
+    synchronized void delete(Path segment) throws IOException {
+        Objects.requireNonNull(segment);
+        closedSegments.remove(segment);
+        Files.deleteIfExists(segment);
+    }
+
+    /**
+     * Replace a replayed segment by a quarantine file holding the {@link Event} mongodb rejected, they are never
+     * replayed again but stay on disk to be inspected. The quarantine file is forced before the segment is deleted.
+     *
+     * @param segment  Segment given by {@link Outbox#nextSegment()}
+     * @param rejected {@link Event} of segment rejected by mongodb
+     * @return Path of the quarantine file, or null if there is no rejected {@link Event}
+     * @throws IOException          if the quarantine file cannot be written or segment cannot be deleted
+     * @throws NullPointerException if segment or rejected is null
+     * @see Outbox#QUARANTINE_PREFIX
+     */
+    synchronized Path quarantine(Path segment, List<Event> rejected) throws IOException {
+        Objects.requireNonNull(segment);
+        Objects.requireNonNull(rejected);
+        Path path = null;
+        if (!rejected.isEmpty()) {
+            BasicOutputBuffer buffer = new BasicOutputBuffer();
+            for (Event event : rejected) {
+                codec.encode(new BsonBinaryWriter(buffer), event, EncoderContext.builder().build());
+            }
+            path = directory.resolve(QUARANTINE_PREFIX + segment.getFileName());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+        }
+        delete(segment);
+        return path;
+    }
+
+    /**
+     * @return true if there is no {@link Event} waiting in this outbox
+     */
+    synchronized boolean isEmpty() {
+        return closedSegments.isEmpty() && current == null;
+    }
+
+    /**
+     * Close the current segment, it will be replayed at next startup if it isn't replayed before
+     *
+     * @throws IOException if the current segment cannot be closed
+     */
+    synchronized void close() throws IOException {
+        if (current != null) {
+            roll();
+        }
+    }
+
+    /**
+     * Flush and close the current segment and queue it for replay
+     *
+     * @throws IOException if the current segment cannot be closed
+     * @see Outbox#current
+     * @see Outbox#closedSegments
+     */
+    private void roll() throws IOException {
+        try {
+            current.force(true);
+        } finally {
+            current.close();
+            closedSegments.addLast(currentPath);
+            current = null;
+            currentPath = null;
+        }
+    }
+
+    /**
+     * Path of a segment, sequence is zero-padded so that segments are sorted by name
+     *
+     * @param sequence Sequence number of the segment
+     * @return Path of the segment in {@link Outbox#directory}
+     */
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Extract sequence number of a segment
+     *
+     * @param segment Path of a segment
+     * @return Sequence number or -1 if name is invalid
+     */
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
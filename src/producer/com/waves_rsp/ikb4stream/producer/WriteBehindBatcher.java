@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer;
+
+import com.waves_rsp.ikb4stream.producer.model.DatabaseWriterCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind buffer used by {@link DatabaseWriter}: items are collected and written together when
+ * {@link WriteBehindBatcher#batchSize} items are waiting or when the oldest one has waited {@link WriteBehindBatcher#lingerMs}.
+ * Each {@link DatabaseWriterCallback} is called with the result of the batch which contained its item.
+ *
+ * @param <T> Type of item to write
+ * @author ikb4stream
+ * @version 1.0
+ */
+class WriteBehindBatcher<T> {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBatcher.class);
+    /**
+     * Function which writes a batch and calls its second argument once the write is done
+     *
+     * @see WriteBehindBatcher#write(Batch)
+     */
+    private final BiConsumer<List<T>, Consumer<Throwable>> writer;
+    /**
+     * Number of items which triggers a flush
+     *
+     * @see WriteBehindBatcher#add(Object, DatabaseWriterCallback)
+     */
+    private final int batchSize;
+    /**
+     * Max time in milliseconds an item waits before being flushed
+     *
+     * @see WriteBehindBatcher#add(Object, DatabaseWriterCallback)
+     */
+    private final long lingerMs;
+    /**
+     * Thread which flushes a batch once {@link WriteBehindBatcher#lingerMs} has elapsed
+     *
+     * @see WriteBehindBatcher#add(Object, DatabaseWriterCallback)
+     * @see WriteBehindBatcher#close()
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Batch currently filled
+     *
+     * @see WriteBehindBatcher#add(Object, DatabaseWriterCallback)
+     * @see WriteBehindBatcher#swap()
+     */
+    private Batch<T> current;
+    /**
+     * Incremented each time {@link WriteBehindBatcher#current} is swapped, so a linger task can tell its batch is gone
+     *
+     * @see WriteBehindBatcher#flush(long)
+     */
+    private long generation;
+
+    /**
+     * Create a {@link WriteBehindBatcher}
+     *
+     * @param batchSize Number of items which triggers a flush
+     * @param lingerMs  Max time in milliseconds an item waits before being flushed
+     * @param writer    Function which writes a batch and calls its second argument once the write is done
+     * @throws NullPointerException     if writer is null
+     * @throws IllegalArgumentException if batchSize is lower than 1 or lingerMs is negative
+     */
+    WriteBehindBatcher(int batchSize, long lingerMs, BiConsumer<List<T>, Consumer<Throwable>> writer) {
+        Objects.requireNonNull(writer);
+        if (batchSize < 1 || lingerMs < 0) {
+            throw new IllegalArgumentException("Invalid batch size or linger time");
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.current = new Batch<>(batchSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "WriteBehindBatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add an item to the current batch, the batch is written by the calling thread if it is full or if this batcher
+     * is closed
+     *
+     * @param item     Item to write
+     * @param callback {@link DatabaseWriterCallback} called after writing the batch of item
+     * @throws NullPointerException if item or callback is null
+     * @see WriteBehindBatcher#batchSize
+     * @see WriteBehindBatcher#lingerMs
+     */
+    void add(T item, DatabaseWriterCallback callback) {
+        Objects.requireNonNull(item);
+        Objects.requireNonNull(callback);
+        Batch<T> full = null;
+        synchronized (this) {
+            current.items.add(item);
+            current.callbacks.add(callback);
+            if (current.items.size() >= batchSize || scheduler.isShutdown()) {
+                full = swap();
+            } else if (current.items.size() == 1) {
+                long scheduledGeneration = generation;
+                scheduler.schedule(() -> flush(scheduledGeneration), lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            write(full);
+        }
+    }
+
+    /**
+     * Write the current batch right now, whatever its size
+     *
+     * @see WriteBehindBatcher#current
+     */
+    void flush() {
+        Batch<T> batch;
+        synchronized (this) {
+            if (current.items.isEmpty()) {
+                return;
+            }
+            batch = swap();
+        }
+        write(batch);
+    }
+
+    /**
+     * Flush the current batch written since the last {@link WriteBehindBatcher#lingerMs}
+     *
+     * @param scheduledGeneration Value of {@link WriteBehindBatcher#generation} when the task was scheduled
+     * @see WriteBehindBatcher#generation
+     */
+    private void flush(long scheduledGeneration) {
+        Batch<T> batch;
+        synchronized (this) {
+            if (scheduledGeneration != generation || current.items.isEmpty()) {
+                return;
+            }
+            batch = swap();
+        }
+        write(batch);
+    }
+
+    /**
+     * Stop the linger thread and flush pending items, items added later are written right away
+     *
+     * @see WriteBehindBatcher#scheduler
+     */
+    void close() {
+        synchronized (this) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Replace the current batch by an empty one, must be called while holding the lock
+     *
+     * @return Batch to write
+     * @see WriteBehindBatcher#current
+     * @see WriteBehindBatcher#generation
+     */
+    private Batch<T> swap() {
+        Batch<T> batch = current;
+        current = new Batch<>(batchSize);
+        generation++;
+        return batch;
+    }
+
+    /**
+     * Write a batch and forward the result to each callback of this batch
+     *
+     * @param batch Batch to write
+     * @see WriteBehindBatcher#writer
+     */
+    private void write(Batch<T> batch) {
+        try {
+            writer.accept(batch.items, t -> batch.callbacks.forEach(callback -> callback.onResult(t)));
+        } catch (RuntimeException e) {
+            LOGGER.error("Batch of {} items cannot be written: {}", batch.items.size(), e.getMessage());
+            batch.callbacks.forEach(callback -> callback.onResult(e));
+        }
+    }
+
+    /**
+     * Items of a batch and their callbacks at the same index
+     *
+     * @param <T> Type of item to write
+     */
+    private static class Batch<T> {
+        /**
+         * Items to write
+         */
+        private final List<T> items;
+        /**
+         * Callback of each item
+         */
+        private final List<DatabaseWriterCallback> callbacks;
+
+        /**
+         * Create an empty batch
+         *
+         * @param capacity Expected number of items
+         */
+        private Batch(int capacity) {
+            this.items = new ArrayList<>(capacity);
+            this.callbacks = new ArrayList<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventQueue} backed by an {@link ArrayBlockingQueue}, all producers and consumers share a single lock
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see EventQueue
+ */
+class BlockingEventQueue implements EventQueue {
+    /**
+     * {@link PackagedEvent} will be stored in this queue
+     *
+     * @see BlockingEventQueue#offer(PackagedEvent)
+     * @see BlockingEventQueue#take()
+     */
+    private final BlockingQueue<PackagedEvent> queue;
+
+    /**
+     * Create a {@link BlockingEventQueue}
+     *
+     * @param capacity Max number of {@link PackagedEvent} stored
+     * @throws IllegalArgumentException if capacity is lower than 1
+     */
+    BlockingEventQueue(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Insert a {@link PackagedEvent} if there is room left
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @return false if the queue is full
+     * @see BlockingEventQueue#queue
+     */
+    @Override
+    public boolean offer(PackagedEvent packagedEvent) {
+        return queue.offer(packagedEvent);
+    }
+
+    /**
+     * Insert a {@link PackagedEvent}, waiting at most timeout for room to become available
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @param timeout       Max time to wait
+     * @param unit          {@link TimeUnit} of timeout
+     * @return false if the queue is still full once timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @see BlockingEventQueue#queue
+     */
+    @Override
+    public boolean offer(PackagedEvent packagedEvent, long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.offer(packagedEvent, timeout, unit);
+    }
+
+    /**
+     * Wait until a {@link PackagedEvent} is available and remove it
+     *
+     * @return The oldest {@link PackagedEvent}
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @see BlockingEventQueue#queue
+     */
+    @Override
+    public PackagedEvent take() throws InterruptedException {
+        return queue.take();
+    }
+
+    /**
+     * Wait at most timeout until a {@link PackagedEvent} is available and remove it
+     *
+     * @param timeout Max time to wait
+     * @param unit    {@link TimeUnit} of timeout
+     * @return The oldest {@link PackagedEvent} or null if timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @see BlockingEventQueue#queue
+     */
+    @Override
+    public PackagedEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Remove at most max {@link PackagedEvent} without waiting
+     *
+     * @param collection Collection which receives {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to remove
+     * @return Number of {@link PackagedEvent} moved into collection
+     * @see BlockingEventQueue#queue
+     */
+    @Override
+    public int drainTo(Collection<? super PackagedEvent> collection, int max) {
+        return queue.drainTo(collection, max);
+    }
+
+    /**
+     * @return Number of {@link PackagedEvent} in {@link BlockingEventQueue#queue}
+     * @see BlockingEventQueue#queue
+     */
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.ThreadMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler shared by all {@link IScheduledProducerConnector}: a few threads run
+ * {@link IScheduledProducerConnector#poll(IDataProducer)} of every module, instead of one sleeping thread per module.
+ * Each delay is randomized by producer.scheduler.jitter percent so that modules don't all poll at once, and doubles
+ * after each consecutive failure up to producer.scheduler.maxbackoffms. With {@link ThreadMode#VIRTUAL}, these threads only
+ * trigger polls: each poll runs on its own virtual thread, so slow requests don't delay other modules.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see IScheduledProducerConnector
+ * @see ProducerManager
+ */
+class ConnectorScheduler {
+    /**
+     * Properties of this class
+     *
+     * @see PropertiesManager
+     * @see PropertiesManager#getPropertyOrDefault(String, String)
+     */
+    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(ConnectorScheduler.class, "resources/config.properties");
+    /**
+     * Object to add metrics from this class
+     *
+     * @see ScheduledConnector#run()
+     * @see MetricsLogger#log(Map)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectorScheduler.class);
+    /**
+     * Max number of doublings of the interval after failures
+     *
+     * @see ConnectorScheduler#nextDelay(long, int, long, int, double)
+     */
+    private static final int MAX_DOUBLINGS = 16;
+    /**
+     * Threads running {@link IScheduledProducerConnector#poll(IDataProducer)}
+     */
+    private final ScheduledThreadPoolExecutor executor;
+    /**
+     * Percent of randomization applied to each delay
+     */
+    private final int jitter;
+    /**
+     * Max delay in milliseconds after failures, or the interval of the module if it's longer
+     */
+    private final long maxBackoffMs;
+    /**
+     * {@link ThreadMode} of polls
+     *
+     * @see ScheduledConnector#run()
+     */
+    private final ThreadMode threadMode;
+    /**
+     * Virtual threads polling right now, interrupted by {@link ConnectorScheduler#stop()}
+     */
+    private final Set<Thread> polling = ConcurrentHashMap.newKeySet();
+    /**
+     * Task of each scheduled module
+     *
+     * @see ConnectorScheduler#unschedule(IScheduledProducerConnector)
+     */
+    private final Map<IScheduledProducerConnector, ScheduledConnector> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Create a {@link ConnectorScheduler} sized by producer.scheduler.thread, producer.scheduler.jitter and
+     * producer.scheduler.maxbackoffms
+     *
+     * @param threadMode {@link ThreadMode} of polls, {@link ThreadMode#PLATFORM} polls on scheduler threads
+     * @throws NullPointerException if threadMode is null
+     */
+    ConnectorScheduler(ThreadMode threadMode) {
+        this.threadMode = Objects.requireNonNull(threadMode);
+        int nbThread = 2;
+        int jitterPercent = 10;
+        long maxBackoff = 3_600_000;
+        try {
+            nbThread = Math.max(1, Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("producer.scheduler.thread", "2")));
+            jitterPercent = Math.min(100, Math.max(0, Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("producer.scheduler.jitter", "10"))));
+            maxBackoff = Math.max(0, Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("producer.scheduler.maxbackoffms", "3600000")));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.scheduler settings are not numbers, use default values");
+        }
+        this.jitter = jitterPercent;
+        this.maxBackoffMs = maxBackoff;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(nbThread, r -> {
+            Thread thread = new Thread(r, "Connector scheduler " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        LOGGER.info("Connector scheduler uses {} thread(s) and {} polls", nbThread, threadMode);
+    }
+
+    /**
+     * Give the delay before the next poll of a module
+     *
+     * @param interval      Interval of the module in milliseconds
+     * @param failures      Number of consecutive failed polls
+     * @param maxBackoffMs  Max delay after failures, or interval if it's longer
+     * @param jitterPercent Percent of randomization
+     * @param random        Random value between 0 inclusive and 1 exclusive
+     * @return Delay in milliseconds
+     */
+    static long nextDelay(long interval, int failures, long maxBackoffMs, int jitterPercent, double random) {
+        long delay = Math.max(0, interval);
+        if (failures > 0) {
+            long cap = Math.max(delay, maxBackoffMs);
+            int doublings = Math.min(failures, MAX_DOUBLINGS);
+            delay = delay > cap >> doublings ? cap : delay << doublings;
+        }
+        double factor = 1 + jitterPercent / 100.0 * (2 * random - 1);
+        return Math.max(0, (long) (delay * factor));
+    }
+
+    /**
+     * Poll a module periodically until {@link ConnectorScheduler#stop()}, its first poll is delayed by a random part of
+     * the jitter
+     *
+     * @param connector    {@link IScheduledProducerConnector} to poll
+     * @param dataProducer {@link IDataProducer} given to connector
+     * @param classLoader  ClassLoader of the module, set as context ClassLoader while it's polled
+     * @throws NullPointerException if one of params is null
+     */
+    void schedule(IScheduledProducerConnector connector, IDataProducer dataProducer, ClassLoader classLoader) {
+        ScheduledConnector task = new ScheduledConnector(connector, dataProducer, classLoader);
+        tasks.put(connector, task);
+        long firstDelay = (long) (Math.max(0, connector.getInterval()) * jitter / 100.0 * ThreadLocalRandom.current().nextDouble());
+        task.next = executor.schedule(task, firstDelay, TimeUnit.MILLISECONDS);
+        LOGGER.info("{} is polled every {} ms", task.name, connector.getInterval());
+    }
+
+    /**
+     * Cancel next polls of a module, a running poll isn't interrupted and ends normally
+     *
+     * @param connector {@link IScheduledProducerConnector} to stop polling
+     * @return true if connector was scheduled
+     * @throws NullPointerException if connector is null
+     */
+    boolean unschedule(IScheduledProducerConnector connector) {
+        return cancel(connector) != null;
+    }
+
+    /**
+     * Cancel next polls of a module, then wait for its running poll to end
+     *
+     * @param connector {@link IScheduledProducerConnector} to stop polling
+     * @param timeoutMs Max time to wait for the running poll in milliseconds
+     * @return true if no poll of connector is running anymore
+     * @throws NullPointerException if connector is null
+     * @throws InterruptedException if current thread is interrupted while waiting
+     * @see ScheduledConnector#awaitPoll(long)
+     */
+    boolean unschedule(IScheduledProducerConnector connector, long timeoutMs) throws InterruptedException {
+        ScheduledConnector task = cancel(connector);
+        return task == null || task.awaitPoll(timeoutMs);
+    }
+
+    /**
+     * Cancel next polls of a module
+     *
+     * @param connector {@link IScheduledProducerConnector} to stop polling
+     * @return Task of connector, or null if it wasn't scheduled
+     * @throws NullPointerException if connector is null
+     */
+    private ScheduledConnector cancel(IScheduledProducerConnector connector) {
+        ScheduledConnector task = tasks.remove(Objects.requireNonNull(connector));
+        if (task == null) {
+            return null;
+        }
+        task.cancelled = true;
+        ScheduledFuture<?> next = task.next;
+        if (next != null) {
+            next.cancel(false);
+        }
+        LOGGER.info("{} is not polled anymore", task.name);
+        return task;
+    }
+
+    /**
+     * Cancel next polls and interrupt running ones
+     */
+    void stop() {
+        executor.shutdownNow();
+        polling.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Poll of a module, which schedules the next one once done
+     */
+    private final class ScheduledConnector implements Runnable {
+        /**
+         * {@link IScheduledProducerConnector} to poll
+         */
+        private final IScheduledProducerConnector connector;
+        /**
+         * {@link IDataProducer} given to connector
+         */
+        private final IDataProducer dataProducer;
+        /**
+         * ClassLoader of the module
+         */
+        private final ClassLoader classLoader;
+        /**
+         * Name of the module in logs and metrics
+         */
+        private final String name;
+        /**
+         * Number of consecutive failed polls
+         */
+        private int failures;
+        /**
+         * True once {@link ConnectorScheduler#unschedule(IScheduledProducerConnector)} is called, no poll starts after
+         */
+        private volatile boolean cancelled;
+        /**
+         * True while {@link IScheduledProducerConnector#poll(IDataProducer)} runs, guarded by this task
+         *
+         * @see ScheduledConnector#awaitPoll(long)
+         */
+        private boolean running;
+        /**
+         * Next poll, cancelled by {@link ConnectorScheduler#unschedule(IScheduledProducerConnector)}
+         */
+        private volatile ScheduledFuture<?> next;
+
+        /**
+         * Create a {@link ScheduledConnector}
+         *
+         * @param connector    {@link IScheduledProducerConnector} to poll
+         * @param dataProducer {@link IDataProducer} given to connector
+         * @param classLoader  ClassLoader of the module
+         * @throws NullPointerException if one of params is null
+         */
+        private ScheduledConnector(IScheduledProducerConnector connector, IDataProducer dataProducer, ClassLoader classLoader) {
+            this.connector = Objects.requireNonNull(connector);
+            this.dataProducer = Objects.requireNonNull(dataProducer);
+            this.classLoader = Objects.requireNonNull(classLoader);
+            this.name = connector.getClass().getSimpleName();
+        }
+
+        /**
+         * Poll the module from this thread, or from a new virtual thread with {@link ThreadMode#VIRTUAL}
+         *
+         * @see ConnectorScheduler#threadMode
+         */
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            if (threadMode == ThreadMode.PLATFORM) {
+                poll();
+                return;
+            }
+            Thread thread = threadMode.newThread(() -> {
+                try {
+                    poll();
+                } finally {
+                    polling.remove(Thread.currentThread());
+                }
+            }, "Poll " + name);
+            polling.add(thread);
+            thread.start();
+        }
+
+        /**
+         * Poll the module, log its duration and failures, then schedule next poll
+         *
+         * @see ConnectorScheduler#nextDelay(long, int, long, int, double)
+         */
+        private void poll() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                running = true;
+            }
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            long start = System.currentTimeMillis();
+            try {
+                connector.poll(dataProducer);
+                failures = 0;
+            } catch (RuntimeException e) {
+                failures++;
+                LOGGER.warn("Poll of {} failed ({} in a row): {}", name, failures, e.getMessage());
+            } finally {
+                thread.setContextClassLoader(previous);
+                synchronized (this) {
+                    running = false;
+                    notifyAll();
+                }
+            }
+            Map<String, Long> fields = new HashMap<>();
+            fields.put("poll_time_" + name, System.currentTimeMillis() - start);
+            fields.put("poll_failures_" + name, (long) failures);
+            METRICS_LOGGER.log(fields);
+            if (cancelled) {
+                return;
+            }
+            long delay = nextDelay(connector.getInterval(), failures, maxBackoffMs, jitter, ThreadLocalRandom.current().nextDouble());
+            try {
+                next = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("{} won't be polled anymore, scheduler is stopped", name);
+            }
+        }
+
+        /**
+         * Wait for the running poll of this task to end, once cancelled no other poll starts
+         *
+         * @param timeoutMs Max time to wait in milliseconds
+         * @return true if no poll is running anymore
+         * @throws InterruptedException if current thread is interrupted while waiting
+         * @see ScheduledConnector#running
+         */
+        private synchronized boolean awaitPoll(long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long left = timeoutMs;
+            while (running && left > 0) {
+                wait(left);
+                left = deadline - System.currentTimeMillis();
+            }
+            return !running;
+        }
+    }
+}
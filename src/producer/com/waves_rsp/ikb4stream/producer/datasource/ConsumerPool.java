@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.ThreadMode;
+import com.waves_rsp.ikb4stream.core.util.nlp.OpenNLP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of {@link DataConsumer} threads which grows and shrinks between producer.thread.min and producer.thread.max.
+ * Every producer.thread.scalems, it updates the {@link OverloadController}, then compares the time
+ * {@link com.waves_rsp.ikb4stream.core.model.Event} wait in {@link DataQueue} and the time needed to score the current
+ * backlog with producer.thread.targetwaitms: the pool grows when one of them is over, and shrinks by one thread when
+ * the queue stayed empty during {@link ConsumerPool#IDLE_ROUNDS} rounds. A fixed pool only skips the sizing decision.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DataConsumer
+ * @see ProducerManager
+ */
+class ConsumerPool {
+    /**
+     * Number of consecutive idle rounds before the pool shrinks
+     *
+     * @see ConsumerPool#round()
+     */
+    static final int IDLE_ROUNDS = 3;
+    /**
+     * Properties of this class
+     *
+     * @see PropertiesManager
+     * @see PropertiesManager#getPropertyOrDefault(String, String)
+     */
+    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(ConsumerPool.class, "resources/config.properties");
+    /**
+     * Object to add metrics from this class
+     *
+     * @see ConsumerPool#round()
+     * @see MetricsLogger#log(Map)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerPool.class);
+    /**
+     * {@link DataQueue} consumed by the pool
+     */
+    private final DataQueue dataQueue;
+    /**
+     * {@link PersistenceStage} fed by the pool
+     */
+    private final PersistenceStage persistenceStage;
+    /**
+     * {@link ThreadMode} of {@link DataConsumer} threads
+     *
+     * @see ConsumerPool#grow(int)
+     */
+    private final ThreadMode threadMode;
+    /**
+     * Scoring time in microseconds of each {@link com.waves_rsp.ikb4stream.core.model.Event}, filled by {@link DataConsumer}
+     *
+     * @see ConsumerPool#round()
+     */
+    private final MeanCounter scoreCounter = new MeanCounter();
+    /**
+     * {@link DuplicateFilter} shared by all {@link DataConsumer}, null if deduplication is disabled
+     *
+     * @see DuplicateFilter#createDuplicateFilter()
+     */
+    private final DuplicateFilter duplicateFilter = DuplicateFilter.createDuplicateFilter();
+    /**
+     * {@link NearDuplicateIndex} shared by all {@link DataConsumer}, null if it's disabled
+     *
+     * @see NearDuplicateIndex#createNearDuplicateIndex()
+     */
+    private final NearDuplicateIndex nearDuplicateIndex = NearDuplicateIndex.createNearDuplicateIndex();
+    /**
+     * {@link OverloadController} shared by all {@link DataConsumer}, updated at each round
+     *
+     * @see ConsumerPool#round()
+     */
+    private final OverloadController overloadController;
+    /**
+     * Min number of {@link DataConsumer}
+     */
+    private final int min;
+    /**
+     * Max number of {@link DataConsumer}
+     */
+    private final int max;
+    /**
+     * Number of {@link DataConsumer} at startup
+     */
+    private final int initial;
+    /**
+     * Time in milliseconds between two scaling decisions
+     */
+    private final long scaleMs;
+    /**
+     * Time in milliseconds an {@link com.waves_rsp.ikb4stream.core.model.Event} should wait at most in {@link DataQueue}
+     */
+    private final long targetWaitMs;
+    /**
+     * Running {@link DataConsumer} and their threads
+     *
+     * @see ConsumerPool#grow(int)
+     * @see ConsumerPool#shrink()
+     */
+    private final List<Worker> workers = new ArrayList<>();
+    /**
+     * Threads of {@link DataConsumer} asked to stop which may still handle an {@link com.waves_rsp.ikb4stream.core.model.Event},
+     * they are interrupted by {@link ConsumerPool#stop()}
+     */
+    private final List<Thread> retired = new ArrayList<>();
+    /**
+     * Number of consecutive rounds with nothing to do
+     *
+     * @see ConsumerPool#round()
+     */
+    private int idleRounds;
+    /**
+     * Number of threads created so far, used to name them
+     */
+    private int created;
+    /**
+     * Scheduler of rounds, null if the pool isn't started
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create a {@link ConsumerPool} sized by producer.thread, producer.thread.min, producer.thread.max,
+     * producer.thread.scalems and producer.thread.targetwaitms
+     *
+     * @param dataQueue        {@link DataQueue} consumed by the pool
+     * @param persistenceStage {@link PersistenceStage} fed by the pool
+     * @param threadMode       {@link ThreadMode} of {@link DataConsumer} threads
+     * @throws NullPointerException if one of params is null
+     */
+    ConsumerPool(DataQueue dataQueue, PersistenceStage persistenceStage, ThreadMode threadMode) {
+        this.dataQueue = Objects.requireNonNull(dataQueue);
+        this.persistenceStage = Objects.requireNonNull(persistenceStage);
+        this.threadMode = Objects.requireNonNull(threadMode);
+        this.overloadController = OverloadController.createOverloadController();
+        int nbThread = Math.max(1, readInt("producer.thread", Runtime.getRuntime().availableProcessors()));
+        this.min = Math.max(1, readInt("producer.thread.min", nbThread));
+        this.max = Math.max(min, readInt("producer.thread.max", nbThread));
+        this.initial = Math.min(max, Math.max(min, nbThread));
+        this.scaleMs = Math.max(100, readInt("producer.thread.scalems", 5000));
+        this.targetWaitMs = Math.max(1, readInt("producer.thread.targetwaitms", 1000));
+    }
+
+    /**
+     * Create a {@link ConsumerPool} with the given sizing
+     *
+     * @param dataQueue          {@link DataQueue} consumed by the pool
+     * @param persistenceStage   {@link PersistenceStage} fed by the pool
+     * @param threadMode         {@link ThreadMode} of {@link DataConsumer} threads
+     * @param overloadController {@link OverloadController} shared by all {@link DataConsumer}
+     * @param min                Min number of {@link DataConsumer}
+     * @param max                Max number of {@link DataConsumer}
+     * @param scaleMs            Time in milliseconds between two rounds
+     * @param targetWaitMs       Time in milliseconds an {@link com.waves_rsp.ikb4stream.core.model.Event} should wait at most
+     * @throws NullPointerException     if one of objects is null
+     * @throws IllegalArgumentException if min is lower than 1, max lower than min, or scaleMs or targetWaitMs lower than 1
+     */
+    ConsumerPool(DataQueue dataQueue, PersistenceStage persistenceStage, ThreadMode threadMode, OverloadController overloadController,
+                 int min, int max, long scaleMs, long targetWaitMs) {
+        if (min < 1 || max < min || scaleMs < 1 || targetWaitMs < 1) {
+            throw new IllegalArgumentException("Invalid sizing of consumer pool");
+        }
+        this.dataQueue = Objects.requireNonNull(dataQueue);
+        this.persistenceStage = Objects.requireNonNull(persistenceStage);
+        this.threadMode = Objects.requireNonNull(threadMode);
+        this.overloadController = Objects.requireNonNull(overloadController);
+        this.min = min;
+        this.max = max;
+        this.initial = min;
+        this.scaleMs = scaleMs;
+        this.targetWaitMs = targetWaitMs;
+    }
+
+    /**
+     * Read an integer property of this pool
+     *
+     * @param key          Key of the property
+     * @param defaultValue Value used if the property is missing or is not a number
+     * @return Value of the property
+     * @see ConsumerPool#PROPERTIES_MANAGER
+     */
+    private static int readInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("{} is not a number, use default value", key);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Give the number of {@link DataConsumer} to add or remove
+     *
+     * @param size            Current number of {@link DataConsumer}
+     * @param min             Min number of {@link DataConsumer}
+     * @param max             Max number of {@link DataConsumer}
+     * @param depth           Number of {@link com.waves_rsp.ikb4stream.core.model.Event} in {@link DataQueue}
+     * @param meanWaitMs      Mean time spent in {@link DataQueue} during last round
+     * @param meanScoreMicros Mean scoring time of an {@link com.waves_rsp.ikb4stream.core.model.Event} during last round
+     * @param targetWaitMs    Time an {@link com.waves_rsp.ikb4stream.core.model.Event} should wait at most
+     * @return Number of {@link DataConsumer} to add, -1 if the pool is idle and may shrink, 0 otherwise
+     */
+    static int delta(int size, int min, int max, long depth, long meanWaitMs, long meanScoreMicros, long targetWaitMs) {
+        long drainMs = size == 0 ? Long.MAX_VALUE : depth * meanScoreMicros / 1000 / size;
+        long pressure = Math.max(meanWaitMs, drainMs);
+        if (pressure > targetWaitMs && size < max) {
+            // Grow in proportion to the pressure, at most doubling the pool at once
+            long wanted = (size * pressure + targetWaitMs - 1) / targetWaitMs;
+            long grow = Math.min(Math.max(1, wanted - size), Math.max(1, size));
+            return (int) Math.min(grow, max - size);
+        }
+        if (depth == 0 && meanWaitMs < targetWaitMs / 4 && size > min) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Launch producer.thread {@link DataConsumer} and the rounds, even if min and max are the same so that the
+     * {@link OverloadController} is still updated
+     *
+     * @see ConsumerPool#round()
+     */
+    synchronized void start() {
+        grow(initial);
+        LOGGER.info("{} consumer(s) has been launched, pool between {} and {}", initial, min, max);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Consumer pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::round, scaleMs, scaleMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop rounds and interrupt all {@link DataConsumer}
+     *
+     * @see ConsumerPool#workers
+     * @see ConsumerPool#retired
+     */
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        workers.forEach(worker -> worker.thread.interrupt());
+        retired.forEach(Thread::interrupt);
+        workers.clear();
+        retired.clear();
+    }
+
+    /**
+     * @return Current number of {@link DataConsumer}
+     */
+    synchronized int size() {
+        return workers.size();
+    }
+
+    /**
+     * Update the {@link OverloadController}, take a scaling decision if min and max differ, and log them with their inputs
+     *
+     * @see ConsumerPool#delta(int, int, int, long, long, long, long)
+     * @see OverloadController#update(long, long, long)
+     * @see ConsumerPool#METRICS_LOGGER
+     */
+    private synchronized void round() {
+        if (scheduler == null) {
+            return;
+        }
+        retired.removeIf(thread -> !thread.isAlive());
+        long depth = dataQueue.size();
+        long meanWaitMs = dataQueue.getWaitCounter().takeMean();
+        long meanScoreMicros = scoreCounter.takeMean();
+        long utilisation = scoreCounter.getLastTotal() * 100 / Math.max(1, workers.size() * TimeUnit.MILLISECONDS.toMicros(scaleMs));
+        long meanWriteMs = persistenceStage.getWriteCounter().takeMean();
+        OverloadController.Mode mode = overloadController.update(depth, utilisation, meanWriteMs);
+        int delta = min < max ? delta(workers.size(), min, max, depth, meanWaitMs, meanScoreMicros, targetWaitMs) : 0;
+        if (delta < 0) {
+            idleRounds++;
+            if (idleRounds >= IDLE_ROUNDS) {
+                idleRounds = 0;
+                shrink();
+            } else {
+                delta = 0;
+            }
+        } else {
+            idleRounds = 0;
+            grow(delta);
+        }
+        if (delta != 0) {
+            LOGGER.info("Consumer pool {} by {} to {} threads (depth {}, wait {} ms, score {} us)",
+                    delta > 0 ? "grows" : "shrinks", Math.abs(delta), workers.size(), depth, meanWaitMs, meanScoreMicros);
+        }
+        Map<String, Long> fields = new HashMap<>();
+        fields.put("consumer_pool_size", (long) workers.size());
+        fields.put("consumer_pool_delta", (long) delta);
+        fields.put("consumer_pool_depth", depth);
+        fields.put("consumer_pool_wait", meanWaitMs);
+        fields.put("consumer_pool_score_us", meanScoreMicros);
+        fields.put("consumer_pool_utilisation", utilisation);
+        fields.put("consumer_pool_write", meanWriteMs);
+        fields.put("overload_level", (long) mode.ordinal());
+        METRICS_LOGGER.log(fields);
+    }
+
+    /**
+     * Launch new {@link DataConsumer}, the {@link OpenNLP} instance of their thread and
+     * their score processors are released when they return
+     *
+     * @param count Number of {@link DataConsumer} to launch
+     * @see ConsumerPool#workers
+     * @see OpenNLP#release(Thread)
+     * @see DataConsumer#close()
+     */
+    private void grow(int count) {
+        for (int i = 0; i < count; i++) {
+            DataConsumer dataConsumer = DataConsumer.createDataConsumer(dataQueue, persistenceStage, scoreCounter, duplicateFilter, nearDuplicateIndex, overloadController);
+            Thread thread = threadMode.newThread(() -> {
+                try {
+                    dataConsumer.consume();
+                } finally {
+                    dataConsumer.close();
+                    OpenNLP.release(Thread.currentThread());
+                }
+            }, "Consumer " + (++created));
+            thread.start();
+            workers.add(new Worker(dataConsumer, thread));
+        }
+    }
+
+    /**
+     * Ask the last {@link DataConsumer} to stop once it's done with the {@link com.waves_rsp.ikb4stream.core.model.Event}
+     * it holds, it's woken up if it waits for one
+     *
+     * @see DataConsumer#stop()
+     * @see ConsumerPool#retired
+     */
+    private void shrink() {
+        Worker worker = workers.remove(workers.size() - 1);
+        worker.dataConsumer.stop();
+        retired.add(worker.thread);
+    }
+
+    /**
+     * {@link DataConsumer} with its thread
+     */
+    private static final class Worker {
+        /**
+         * {@link DataConsumer} run by thread
+         */
+        private final DataConsumer dataConsumer;
+        /**
+         * Thread running dataConsumer
+         */
+        private final Thread thread;
+
+        /**
+         * Create a {@link Worker}
+         *
+         * @param dataConsumer {@link DataConsumer} run by thread
+         * @param thread       Thread running dataConsumer
+         */
+        private Worker(DataConsumer dataConsumer, Thread thread) {
+            this.dataConsumer = dataConsumer;
+            this.thread = thread;
+        }
+    }
+}
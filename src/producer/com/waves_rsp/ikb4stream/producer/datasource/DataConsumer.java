@@ -21,15 +21,20 @@ package com.waves_rsp.ikb4stream.producer.datasource;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
-import com.waves_rsp.ikb4stream.producer.DatabaseWriter;
 import com.waves_rsp.ikb4stream.producer.score.ScoreProcessorManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Object to consume {@link Event} in {@link DataQueue}
+ * Scoring stage of the producer: consume {@link Event} in {@link DataQueue}, drop duplicates and near-duplicates, score
+ * them and hand kept ones to the {@link PersistenceStage}. The {@link OverloadController} may drop more of them or
+ * raise the target score.
  *
  * @author ikb4stream
  * @version 1.0
@@ -49,12 +54,6 @@ public class DataConsumer {
      * @see MetricsLogger#getMetricsLogger()
      */
     private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
-    /**
-     * {@link DatabaseWriter} to write {@link Event} in database
-     *
-     * @see DataConsumer#consume()
-     */
-    private static final DatabaseWriter DATABASE_WRITER = DatabaseWriter.getInstance();
     /**
      * Logger used to log all information in this class
      */
@@ -62,52 +61,189 @@ public class DataConsumer {
     /**
      * Single instance of {@link DataQueue}
      *
-     * @see DataQueue#pop()
+     * @see DataQueue#take()
+     * @see DataQueue#ack(PackagedEvent)
      * @see DataConsumer#consume()
-     * @see DataConsumer#createDataConsumer(DataQueue)
+     * @see DataConsumer#createDataConsumer(DataQueue, PersistenceStage, MeanCounter, DuplicateFilter, NearDuplicateIndex, OverloadController)
      */
     private final DataQueue dataQueue;
+    /**
+     * {@link PersistenceStage} which writes kept {@link Event}
+     *
+     * @see DataConsumer#consume()
+     * @see DataConsumer#consumeBatch()
+     */
+    private final PersistenceStage persistenceStage;
+    /**
+     * {@link MeanCounter} which receives scoring time in microseconds of each {@link Event}
+     *
+     * @see DataConsumer#consume()
+     * @see DataConsumer#consumeBatch()
+     */
+    private final MeanCounter scoreCounter;
+    /**
+     * {@link DuplicateFilter} shared by all {@link DataConsumer}, null if deduplication is disabled
+     *
+     * @see DataConsumer#dropBeforeScoring(PackagedEvent)
+     */
+    private final DuplicateFilter duplicateFilter;
+    /**
+     * {@link NearDuplicateIndex} shared by all {@link DataConsumer}, null if it's disabled
+     *
+     * @see DataConsumer#dropBeforeScoring(PackagedEvent)
+     */
+    private final NearDuplicateIndex nearDuplicateIndex;
+    /**
+     * {@link OverloadController} shared by all {@link DataConsumer}
+     *
+     * @see DataConsumer#dropBeforeScoring(PackagedEvent)
+     * @see DataConsumer#consume()
+     * @see DataConsumer#consumeBatch()
+     */
+    private final OverloadController overloadController;
+    /**
+     * Set by {@link DataConsumer#stop()}, this {@link DataConsumer} returns once it's done with the {@link Event} it holds
+     *
+     * @see DataConsumer#consume()
+     */
+    private volatile boolean stopped;
+    /**
+     * Thread of this {@link DataConsumer} while it waits for {@link Event} in {@link DataQueue}, null otherwise
+     *
+     * @see DataConsumer#beginWait()
+     * @see DataConsumer#stop()
+     */
+    private Thread waiting;
     /**
      * Target score to reach for an {@link Event}
      *
      * @see DataConsumer#filter(Event, int)
-     * @see DataConsumer#createDataConsumer(DataQueue)
+     * @see DataConsumer#createDataConsumer(DataQueue, PersistenceStage, MeanCounter, DuplicateFilter, NearDuplicateIndex, OverloadController)
      */
     private final int targetScore;
+    /**
+     * Max number of {@link Event} popped, scored and written together, 1 disables batch mode
+     *
+     * @see DataConsumer#consume()
+     * @see DataConsumer#createDataConsumer(DataQueue, PersistenceStage, MeanCounter, DuplicateFilter, NearDuplicateIndex, OverloadController)
+     */
+    private final int batchSize;
+    /**
+     * Max time in milliseconds to wait for a full batch
+     *
+     * @see DataConsumer#consumeBatch()
+     * @see DataConsumer#createDataConsumer(DataQueue, PersistenceStage, MeanCounter, DuplicateFilter, NearDuplicateIndex, OverloadController)
+     */
+    private final long lingerMs;
 
     /**
-     * Private constructor, you must use {@link DataConsumer#createDataConsumer(DataQueue)}
+     * Private constructor, you must use {@link DataConsumer#createDataConsumer(DataQueue, PersistenceStage, MeanCounter, DuplicateFilter, NearDuplicateIndex, OverloadController)}
      *
-     * @param dataQueue   Single instance of {@link DataQueue}
-     * @param targetScore Target score to reach
+     * @param dataQueue          Single instance of {@link DataQueue}
+     * @param persistenceStage   {@link PersistenceStage} which writes kept {@link Event}
+     * @param scoreCounter       {@link MeanCounter} which receives scoring time of each {@link Event}
+     * @param duplicateFilter    {@link DuplicateFilter} dropping duplicates before scoring, null to keep them
+     * @param nearDuplicateIndex {@link NearDuplicateIndex} dropping near-duplicates before scoring, null to keep them
+     * @param overloadController {@link OverloadController} degrading scoring under pressure
+     * @param targetScore        Target score to reach
+     * @param batchSize          Max number of {@link Event} in a batch
+     * @param lingerMs           Max time to wait for a full batch
      * @see DataConsumer#dataQueue
+     * @see DataConsumer#persistenceStage
+     * @see DataConsumer#scoreCounter
+     * @see DataConsumer#duplicateFilter
+     * @see DataConsumer#nearDuplicateIndex
+     * @see DataConsumer#overloadController
      * @see DataConsumer#targetScore
+     * @see DataConsumer#batchSize
+     * @see DataConsumer#lingerMs
      */
-    private DataConsumer(DataQueue dataQueue, int targetScore) {
+    private DataConsumer(DataQueue dataQueue, PersistenceStage persistenceStage, MeanCounter scoreCounter, DuplicateFilter duplicateFilter, NearDuplicateIndex nearDuplicateIndex, OverloadController overloadController, int targetScore, int batchSize, long lingerMs) {
         this.dataQueue = dataQueue;
+        this.persistenceStage = persistenceStage;
+        this.scoreCounter = scoreCounter;
+        this.duplicateFilter = duplicateFilter;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.overloadController = overloadController;
         this.targetScore = targetScore;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
     }
 
     /**
      * Create a {@link DataConsumer}
      *
-     * @param dataQueue Single instance of {@link DataQueue}
+     * @param dataQueue          Single instance of {@link DataQueue}
+     * @param persistenceStage   {@link PersistenceStage} which writes kept {@link Event}
+     * @param scoreCounter       {@link MeanCounter} which receives scoring time in microseconds of each {@link Event}
+     * @param duplicateFilter    {@link DuplicateFilter} dropping duplicates before scoring, null to keep them
+     * @param nearDuplicateIndex {@link NearDuplicateIndex} dropping near-duplicates before scoring, null to keep them
+     * @param overloadController {@link OverloadController} degrading scoring under pressure
      * @return {@link DataConsumer}
-     * @throws NullPointerException if dataQueue is null
+     * @throws NullPointerException if dataQueue, persistenceStage, scoreCounter or overloadController is null
      * @see DataConsumer#dataQueue
+     * @see DataConsumer#persistenceStage
+     * @see DataConsumer#scoreCounter
+     * @see DataConsumer#duplicateFilter
+     * @see DataConsumer#nearDuplicateIndex
+     * @see DataConsumer#overloadController
      * @see DataConsumer#targetScore
+     * @see DataConsumer#batchSize
+     * @see DataConsumer#lingerMs
      */
-    public static DataConsumer createDataConsumer(DataQueue dataQueue) {
+    static DataConsumer createDataConsumer(DataQueue dataQueue, PersistenceStage persistenceStage, MeanCounter scoreCounter, DuplicateFilter duplicateFilter, NearDuplicateIndex nearDuplicateIndex, OverloadController overloadController) {
         Objects.requireNonNull(dataQueue);
+        Objects.requireNonNull(persistenceStage);
+        Objects.requireNonNull(scoreCounter);
+        Objects.requireNonNull(overloadController);
+        PropertiesManager propertiesManager = PropertiesManager.getInstance(DataConsumer.class, "resources/config.properties");
         int targetScore = 25;
         try {
-            targetScore = Integer.parseInt(PropertiesManager.getInstance(DataConsumer.class, "resources/config.properties").getProperty("score.target"));
+            targetScore = Integer.parseInt(propertiesManager.getProperty("score.target"));
         } catch (NumberFormatException e) {
             LOGGER.warn("score.target is not a number, use default value");
         } catch (IllegalArgumentException e) {
             LOGGER.warn("Use default value for score.target");
         }
-        return new DataConsumer(dataQueue, targetScore);
+        int batchSize = 1;
+        long lingerMs = 10;
+        try {
+            batchSize = Math.max(1, Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.consumer.batchsize", "1")));
+            lingerMs = Math.max(0, Long.parseLong(propertiesManager.getPropertyOrDefault("producer.consumer.lingerms", "10")));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.consumer.batchsize or producer.consumer.lingerms is not a number, use default value");
+        }
+        return new DataConsumer(dataQueue, persistenceStage, scoreCounter, duplicateFilter, nearDuplicateIndex, overloadController, targetScore, batchSize, lingerMs);
+    }
+
+    /**
+     * Drop a {@link PackagedEvent} already seen during the window of {@link DataConsumer#duplicateFilter}, whose
+     * description is almost the same as an earlier one in {@link DataConsumer#nearDuplicateIndex}, or shed by
+     * {@link DataConsumer#overloadController}: it's acknowledged without being scored and counted in event_duplicate,
+     * event_near_duplicate or event_shed
+     *
+     * @param packEvent {@link PackagedEvent} taken from {@link DataQueue}
+     * @return true if packEvent must not be handled
+     * @see DataConsumer#duplicateFilter
+     * @see DataConsumer#nearDuplicateIndex
+     * @see DataConsumer#overloadController
+     * @see DataConsumer#METRICS_LOGGER
+     */
+    private boolean dropBeforeScoring(PackagedEvent packEvent) {
+        String metric;
+        if (duplicateFilter != null && duplicateFilter.isDuplicate(packEvent.event)) {
+            metric = "event_duplicate";
+        } else if (nearDuplicateIndex != null && nearDuplicateIndex.isNearDuplicate(packEvent.event)) {
+            metric = "event_near_duplicate";
+        } else if (overloadController.shed(packEvent.event)) {
+            metric = "event_shed";
+        } else {
+            return false;
+        }
+        dataQueue.ack(packEvent);
+        METRICS_LOGGER.log(metric, packEvent.event.getSource());
+        LOGGER.debug("{} is dropped as {}", packEvent.event, metric);
+        return true;
     }
 
     /**
@@ -123,26 +259,48 @@ public class DataConsumer {
     }
 
     /**
-     * Consume Event in dataQueue and send to scoreProcessor
+     * Consume Event in dataQueue and send to scoreProcessor, each {@link Event} is acknowledged once written or filtered out
      *
-     * @see DataConsumer#DATABASE_WRITER
+     * @see DataConsumer#dropBeforeScoring(PackagedEvent)
+     * @see DataConsumer#persistenceStage
      * @see DataConsumer#METRICS_LOGGER
      * @see DataConsumer#targetScore
      * @see DataConsumer#dataQueue
+     * @see DataConsumer#batchSize
+     * @see DataConsumer#consumeBatch()
      */
     public void consume() {
-        while (!Thread.currentThread().isInterrupted()) {
+        if (batchSize > 1) {
+            consumeBatch();
+            return;
+        }
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
             try {
-                Event event = dataQueue.pop();
+                if (!beginWait()) {
+                    return;
+                }
+                PackagedEvent packEvent;
+                try {
+                    packEvent = dataQueue.take();
+                } finally {
+                    endWait();
+                }
+                if (dropBeforeScoring(packEvent)) {
+                    continue;
+                }
+                Event event = packEvent.event;
+                long start = System.nanoTime();
                 Event eventClone = scoreProcessorManger.processScore(event);
+                long time = System.nanoTime() - start;
+                METRICS_LOGGER.log("stage_score_time", TimeUnit.NANOSECONDS.toMillis(time));
+                scoreCounter.add(TimeUnit.NANOSECONDS.toMicros(time), 1);
                 LOGGER.info("Event {} has been scored", eventClone);
 
-                if (filter(eventClone, targetScore)) {
-                    DATABASE_WRITER.insertEvent(eventClone, t -> {
-                        METRICS_LOGGER.log("event_scored_" + event.getSource(), eventClone.getScore());
-                        LOGGER.error(t.getMessage());
-                    });
+                if (filter(eventClone, overloadController.target(targetScore))) {
+                    METRICS_LOGGER.log("event_scored_" + event.getSource(), eventClone.getScore());
+                    persistenceStage.submit(Collections.singletonList(eventClone), Collections.singletonList(packEvent));
                 } else {
+                    dataQueue.ack(packEvent);
                     METRICS_LOGGER.log("scored_not_kept_" + event.getSource(), eventClone.getScore());
                 }
             } catch (InterruptedException e) {
@@ -150,4 +308,115 @@ public class DataConsumer {
             }
         }
     }
+
+    /**
+     * Pop up to {@link DataConsumer#batchSize} {@link Event}, score them and write kept ones with a single request.
+     * {@link Event} are acknowledged once they are written or filtered out.
+     *
+     * @see DataConsumer#dropBeforeScoring(PackagedEvent)
+     * @see DataConsumer#persistenceStage
+     * @see DataConsumer#METRICS_LOGGER
+     * @see DataConsumer#targetScore
+     * @see DataConsumer#dataQueue
+     * @see DataConsumer#batchSize
+     * @see DataConsumer#lingerMs
+     */
+    private void consumeBatch() {
+        List<PackagedEvent> packEvents = new ArrayList<>(batchSize);
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            packEvents.clear();
+            if (!beginWait()) {
+                return;
+            }
+            try {
+                dataQueue.takeBatch(packEvents, batchSize, lingerMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                endWait();
+            }
+            packEvents.removeIf(this::dropBeforeScoring);
+            List<Event> kept = new ArrayList<>(packEvents.size());
+            List<PackagedEvent> keptPackEvents = new ArrayList<>(packEvents.size());
+            long start = System.nanoTime();
+            for (PackagedEvent packEvent : packEvents) {
+                Event eventClone = scoreProcessorManger.processScore(packEvent.event);
+                LOGGER.debug("Event {} has been scored", eventClone);
+                if (filter(eventClone, overloadController.target(targetScore))) {
+                    METRICS_LOGGER.log("event_scored_" + packEvent.event.getSource(), eventClone.getScore());
+                    kept.add(eventClone);
+                    keptPackEvents.add(packEvent);
+                } else {
+                    dataQueue.ack(packEvent);
+                    METRICS_LOGGER.log("scored_not_kept_" + packEvent.event.getSource(), eventClone.getScore());
+                }
+            }
+            long time = System.nanoTime() - start;
+            METRICS_LOGGER.log("stage_score_time", TimeUnit.NANOSECONDS.toMillis(time));
+            scoreCounter.add(TimeUnit.NANOSECONDS.toMicros(time), packEvents.size());
+            LOGGER.info("{} events have been scored, {} kept", packEvents.size(), kept.size());
+            if (!kept.isEmpty()) {
+                try {
+                    persistenceStage.submit(kept, keptPackEvents);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            METRICS_LOGGER.log("event_scored_batch", kept.size());
+            METRICS_LOGGER.log("scored_not_kept_batch", packEvents.size() - kept.size());
+        }
+    }
+
+    /**
+     * Record that the current thread starts waiting for {@link Event}, so that {@link DataConsumer#stop()} can wake it
+     *
+     * @return false if this {@link DataConsumer} is stopped and must not wait
+     * @see DataConsumer#waiting
+     */
+    private synchronized boolean beginWait() {
+        if (stopped) {
+            return false;
+        }
+        waiting = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * Record that the current thread doesn't wait anymore. If it has been stopped meanwhile, the interrupt sent by
+     * {@link DataConsumer#stop()} is cleared so that {@link Event} already taken are still handled.
+     *
+     * @see DataConsumer#waiting
+     */
+    private synchronized void endWait() {
+        waiting = null;
+        if (stopped) {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Ask this {@link DataConsumer} to return from {@link DataConsumer#consume()} once it's done with the {@link Event}
+     * it holds. Its thread is interrupted only if it's waiting for {@link Event}, so no {@link Event} already taken is
+     * left unacknowledged.
+     *
+     * @see DataConsumer#stopped
+     * @see DataConsumer#waiting
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (waiting != null) {
+            waiting.interrupt();
+        }
+    }
+
+    /**
+     * Release the {@link ScoreProcessorManager} of this {@link DataConsumer} once it returned from
+     * {@link DataConsumer#consume()}, so ClassLoader of reloaded modules can be closed
+     *
+     * @see ScoreProcessorManager#close()
+     */
+    void close() {
+        scoreProcessorManger.close();
+    }
 }
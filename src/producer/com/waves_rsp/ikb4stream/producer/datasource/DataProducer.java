@@ -25,9 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class receives {@link Event} from connectors and push in {@link DataQueue}
+ * This class receives {@link Event} from connectors and push in {@link DataQueue}, once admitted by the
+ * {@link SourceRateLimiter}
  *
  * @author ikb4stream
  * @version 1.0
@@ -53,6 +55,13 @@ public class DataProducer implements IDataProducer {
      * @see DataProducer#DataProducer(DataQueue)
      */
     private final DataQueue dataQueue;
+    /**
+     * {@link SourceRateLimiter} which admits {@link Event} before they are pushed
+     *
+     * @see DataProducer#push(Event)
+     * @see DataProducer#push(Event, long, TimeUnit)
+     */
+    private final SourceRateLimiter rateLimiter;
 
     /**
      * Give the unique instance of {@link DataQueue}
@@ -62,21 +71,40 @@ public class DataProducer implements IDataProducer {
      * @see DataProducer#dataQueue
      */
     public DataProducer(DataQueue dataQueue) {
+        this(dataQueue, SourceRateLimiter.getInstance());
+    }
+
+    /**
+     * Give the unique instance of {@link DataQueue} and a {@link SourceRateLimiter}
+     *
+     * @param dataQueue   Set the {@link DataQueue} to this Producer
+     * @param rateLimiter {@link SourceRateLimiter} which admits {@link Event}
+     * @throws NullPointerException if one of params is null
+     * @see DataProducer#dataQueue
+     * @see DataProducer#rateLimiter
+     */
+    DataProducer(DataQueue dataQueue, SourceRateLimiter rateLimiter) {
         Objects.requireNonNull(dataQueue);
+        Objects.requireNonNull(rateLimiter);
         this.dataQueue = dataQueue;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
-     * Push an {@link Event} into DataQueue
+     * Push an {@link Event} into DataQueue, unless its source is over its rate limit
      *
      * @param event {@link Event} to push in {@link DataQueue} to be analysed
      * @throws NullPointerException if event is null
      * @see Event
      * @see DataProducer#dataQueue
+     * @see DataProducer#rateLimiter
      * @see DataProducer#METRICS_LOGGER
      */
     public void push(Event event) {
         Objects.requireNonNull(event);
+        if (!rateLimiter.admit(event)) {
+            return;
+        }
         long start = System.currentTimeMillis();
         dataQueue.push(event);
         long end = System.currentTimeMillis();
@@ -84,4 +112,36 @@ public class DataProducer implements IDataProducer {
         METRICS_LOGGER.log("time_process_" + event.getSource(), result);
         LOGGER.info("The event {} has been pushed into database.", event.getSource());
     }
+
+    /**
+     * Push an {@link Event} into DataQueue, waiting at most timeout for room to become available. An {@link Event} over
+     * the rate limit of its source is rejected right away.
+     *
+     * @param event   {@link Event} to push in {@link DataQueue} to be analysed
+     * @param timeout Max time to wait for room in {@link DataQueue}
+     * @param unit    {@link TimeUnit} of timeout
+     * @return true if event has been accepted by {@link DataQueue}
+     * @throws NullPointerException if event or unit is null
+     * @see Event
+     * @see DataProducer#dataQueue
+     * @see DataProducer#rateLimiter
+     * @see DataProducer#METRICS_LOGGER
+     */
+    @Override
+    public boolean push(Event event, long timeout, TimeUnit unit) {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(unit);
+        if (!rateLimiter.admit(event)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        boolean pushed = dataQueue.push(event, timeout, unit);
+        long end = System.currentTimeMillis();
+        long result = end - start;
+        METRICS_LOGGER.log("time_process_" + event.getSource(), result);
+        if (pushed) {
+            LOGGER.info("The event {} has been pushed into database.", event.getSource());
+        }
+        return pushed;
+    }
 }
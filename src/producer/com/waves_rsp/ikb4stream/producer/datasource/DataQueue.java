@@ -24,9 +24,16 @@ import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 /**
  * This class stores and provides {@link Event} for {@link DataConsumer} and {@link DataProducer}
@@ -55,6 +62,12 @@ class DataQueue {
      * Logger used to log all information in this class
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(DataQueue.class);
+    /**
+     * Settings of sources already read, by full key
+     *
+     * @see DataQueue#sourceProperty(String, String, String, long)
+     */
+    private static final Map<String, Long> SOURCE_PROPERTIES = new ConcurrentHashMap<>();
     /**
      * Single instance of {@link DataQueue}
      *
@@ -66,18 +79,29 @@ class DataQueue {
      *
      * @see DataQueue#push(Event)
      * @see DataQueue#isEmpty()
-     * @see DataQueue#pop()
+     * @see DataQueue#take()
+     * @see DataQueue#takeBatch(List, int, long)
+     * @see DataQueue#ack(PackagedEvent)
      */
-    private final BlockingQueue<PackagedEvent> queue;
+    private final EventQueue queue;
     /**
-     * Size of {@link DataQueue#queue}
+     * Give the max time in milliseconds an {@link Event} of a source may wait in {@link DataQueue#queue}, 0 to keep
+     * it whatever its age
      *
-     * @see DataQueue#isEmpty()
+     * @see DataQueue#expire(PackagedEvent, long)
      */
-    private final int size;
+    private final ToLongFunction<String> maxAgeOf;
+    /**
+     * Time in milliseconds spent in {@link DataQueue#queue} by taken {@link Event}
+     *
+     * @see DataQueue#getWaitCounter()
+     */
+    private final MeanCounter waitCounter = new MeanCounter();
 
     /**
      * Private constructor to block instantiation, use {@link DataQueue#createDataQueue()} instead
+     *
+     * @see DataQueue#createEventQueue(String, int)
      */
     private DataQueue() {
         int defaultSize = 500;
@@ -86,8 +110,107 @@ class DataQueue {
         } catch (IllegalArgumentException e) {
             LOGGER.warn(e.getMessage());
         }
-        this.queue = new ArrayBlockingQueue<>(defaultSize);
-        this.size = defaultSize;
+        String impl = PROPERTIES_MANAGER.getPropertyOrDefault("producer.queue.impl", "blocking").trim();
+        this.queue = createEventQueue(impl, defaultSize);
+        this.maxAgeOf = source -> sourceProperty("producer.queue", source, "maxagems", 0);
+        LOGGER.info("DataQueue uses {} implementation with a size of {}", impl, defaultSize);
+    }
+
+    /**
+     * Create the {@link EventQueue} set by producer.queue.impl
+     *
+     * @param impl Name of implementation: blocking, ring, wal, lanes or deadline
+     * @param size Size of the queue
+     * @return {@link EventQueue} to use in {@link DataQueue}
+     * @throws NullPointerException if impl is null
+     * @see BlockingEventQueue
+     * @see RingBufferEventQueue
+     * @see WalEventQueue
+     * @see LaneEventQueue
+     * @see DeadlineEventQueue
+     */
+    private static EventQueue createEventQueue(String impl, int size) {
+        Objects.requireNonNull(impl);
+        switch (impl) {
+            case "ring":
+                return new RingBufferEventQueue(size);
+            case "blocking":
+                return new BlockingEventQueue(size);
+            case "wal":
+                return createWalEventQueue(size);
+            case "lanes":
+                return new LaneEventQueue(
+                        source -> (int) sourceProperty("producer.queue.lane", source, "weight", 1),
+                        source -> (int) sourceProperty("producer.queue.lane", source, "capacity", size));
+            case "deadline":
+                return new DeadlineEventQueue(size,
+                        source -> (int) sourceProperty("producer.queue.deadline", source, "priority", 0),
+                        source -> sourceProperty("producer.queue.deadline", source, "ms", 60_000));
+            default:
+                LOGGER.warn("Unknown producer.queue.impl {}, use blocking", impl);
+                return new BlockingEventQueue(size);
+        }
+    }
+
+    /**
+     * Create the {@link WalEventQueue} set by producer.queue.wal.path, producer.queue.wal.segmentsize,
+     * producer.queue.wal.capacity, producer.queue.wal.redeliveryms and producer.queue.wal.maxattempts.
+     * The WAL lives on disk, so its capacity doesn't follow producer.sizequeue.
+     *
+     * @param size Size of the in-memory queue used if the WAL cannot be opened
+     * @return {@link WalEventQueue}, or {@link BlockingEventQueue} if the WAL cannot be opened
+     * @see WalEventQueue
+     */
+    private static EventQueue createWalEventQueue(int size) {
+        String path = PROPERTIES_MANAGER.getPropertyOrDefault("producer.queue.wal.path", "resources/wal").trim();
+        int segmentSize = 64 * 1024 * 1024;
+        int capacity = 1_000_000;
+        long redeliveryMs = 5000;
+        int maxAttempts = 0;
+        try {
+            segmentSize = Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("producer.queue.wal.segmentsize", String.valueOf(segmentSize)));
+            capacity = Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("producer.queue.wal.capacity", String.valueOf(capacity)));
+            redeliveryMs = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("producer.queue.wal.redeliveryms", String.valueOf(redeliveryMs)));
+            maxAttempts = Integer.parseInt(PROPERTIES_MANAGER.getPropertyOrDefault("producer.queue.wal.maxattempts", String.valueOf(maxAttempts)));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid number in producer.queue.wal configuration, use default value");
+        }
+        try {
+            return new WalEventQueue(Paths.get(path), Math.max(1, segmentSize), Math.max(1, capacity),
+                    Math.max(0, redeliveryMs), Math.max(0, maxAttempts), System::currentTimeMillis);
+        } catch (IOException e) {
+            LOGGER.error("WAL {} cannot be opened, use blocking: {}", path, e.getMessage());
+            return new BlockingEventQueue(size);
+        }
+    }
+
+    /**
+     * Read a setting of a source: &lt;prefix&gt;.&lt;source&gt;.&lt;name&gt;, else &lt;prefix&gt;.&lt;name&gt;, else defaultValue.
+     * Each setting is read and logged once, next calls get the same value.
+     *
+     * @param prefix       Prefix of the setting, such as producer.queue.lane
+     * @param source       Source of {@link Event}
+     * @param name         Name of the setting
+     * @param defaultValue Value used if the setting is missing or is not a number
+     * @return Value of the setting
+     * @see DeadlineEventQueue
+     * @see LaneEventQueue
+     * @see SourceRateLimiter
+     * @see DataQueue#SOURCE_PROPERTIES
+     */
+    static long sourceProperty(String prefix, String source, String name, long defaultValue) {
+        return SOURCE_PROPERTIES.computeIfAbsent(prefix + "." + source + "." + name, key -> {
+            String value = PROPERTIES_MANAGER.getPropertyOrDefault(prefix + "." + name, String.valueOf(defaultValue));
+            value = PROPERTIES_MANAGER.getPropertyOrDefault(key, value);
+            try {
+                long result = Long.parseLong(value.trim());
+                LOGGER.debug("{} uses {}.{} = {}", source, prefix, name, result);
+                return result;
+            } catch (NumberFormatException e) {
+                LOGGER.warn("{}.{} of {} is not a number, use default value", prefix, name, source);
+                return defaultValue;
+            }
+        });
     }
 
     /**
@@ -119,67 +242,264 @@ class DataQueue {
     }
 
     /**
-     * Return the first {@link Event} in {@link DataQueue#queue}
+     * Push a new {@link Event}, waiting at most timeout if {@link DataQueue#queue} is full. The event is ignored if
+     * there is still no room once timeout elapsed or if the calling thread is interrupted, in which case the interrupt
+     * flag is restored
+     *
+     * @param event   {@link Event} to push in this {@link DataQueue}
+     * @param timeout Max time to wait for room in {@link DataQueue#queue}
+     * @param unit    {@link TimeUnit} of timeout
+     * @return true if event has been inserted
+     * @throws NullPointerException if event or unit is null
+     * @see DataQueue#METRICS_LOGGER
+     * @see DataQueue#queue
+     */
+    public boolean push(Event event, long timeout, TimeUnit unit) {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(unit);
+        long arrivedTime = System.currentTimeMillis();
+        boolean inserted;
+        try {
+            inserted = queue.offer(new PackagedEvent(event, arrivedTime), timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inserted = false;
+        }
+        if (!inserted) {
+            METRICS_LOGGER.log("event_dropped_fullqueue", event.getSource());
+            LOGGER.warn(event + " cannot be push");
+        }
+        return inserted;
+    }
+
+    /**
+     * Return the first {@link Event} in {@link DataQueue#queue}, it's acknowledged right away
      *
      * @return {@link Event} in {@link DataQueue}
      * @throws InterruptedException if thread is interrupted during pop operation
+     * @see DataQueue#take()
+     * @see DataQueue#ack(PackagedEvent)
+     * @see Event
+     */
+    public Event pop() throws InterruptedException {
+        PackagedEvent packEvent = take();
+        ack(packEvent);
+        return packEvent.event;
+    }
+
+    /**
+     * Return the first {@link PackagedEvent} in {@link DataQueue#queue}, it must be given to
+     * {@link DataQueue#ack(PackagedEvent)} once it has been handled. Expired {@link PackagedEvent} are skipped
+     *
+     * @return {@link PackagedEvent} in {@link DataQueue}
+     * @throws InterruptedException if thread is interrupted during pop operation
      * @see DataQueue#METRICS_LOGGER
      * @see DataQueue#queue
+     * @see DataQueue#expire(PackagedEvent, long)
      * @see PackagedEvent
-     * @see Event
      */
-    public Event pop() throws InterruptedException {
-        PackagedEvent packEvent = queue.take();
-        Event popEvent = packEvent.event;
+    PackagedEvent take() throws InterruptedException {
+        PackagedEvent packEvent = takeFresh();
         long time = System.currentTimeMillis() - packEvent.arrivedTime;
-        METRICS_LOGGER.log("life_in_queue_" + popEvent.getSource(), time);
-        return popEvent;
+        METRICS_LOGGER.log("life_in_queue_" + packEvent.event.getSource(), time);
+        waitCounter.add(time, 1);
+        return packEvent;
+    }
+
+    /**
+     * Wait for a first {@link Event} then move up to max {@link Event} in events, they are acknowledged right away
+     *
+     * @param events   List which receives popped {@link Event}
+     * @param max      Max number of {@link Event} to pop
+     * @param lingerMs Max time in milliseconds to wait for a full batch once the first {@link Event} is popped
+     * @return Number of {@link Event} added to events
+     * @throws InterruptedException     if thread is interrupted while waiting the first {@link Event}
+     * @throws NullPointerException     if events is null
+     * @throws IllegalArgumentException if max is lower than 1 or lingerMs is negative
+     * @see DataQueue#takeBatch(List, int, long)
+     */
+    public int popBatch(List<Event> events, int max, long lingerMs) throws InterruptedException {
+        Objects.requireNonNull(events);
+        List<PackagedEvent> packEvents = new ArrayList<>(max);
+        int count = takeBatch(packEvents, max, lingerMs);
+        for (PackagedEvent packEvent : packEvents) {
+            ack(packEvent);
+            events.add(packEvent.event);
+        }
+        return count;
+    }
+
+    /**
+     * Wait for a first {@link PackagedEvent} then move up to max {@link PackagedEvent} in packEvents. If less than max
+     * are available, wait at most lingerMs for the next ones. Time spent in queue is logged once per batch, as the mean
+     * for each source. Each {@link PackagedEvent} must be given to {@link DataQueue#ack(PackagedEvent)} once handled.
+     * Expired {@link PackagedEvent} are skipped.
+     *
+     * @param packEvents List which receives popped {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to pop
+     * @param lingerMs   Max time in milliseconds to wait for a full batch once the first one is popped
+     * @return Number of {@link PackagedEvent} added to packEvents
+     * @throws InterruptedException     if thread is interrupted while waiting the first {@link PackagedEvent}
+     * @throws NullPointerException     if packEvents is null
+     * @throws IllegalArgumentException if max is lower than 1 or lingerMs is negative
+     * @see DataQueue#METRICS_LOGGER
+     * @see DataQueue#queue
+     */
+    int takeBatch(List<PackagedEvent> packEvents, int max, long lingerMs) throws InterruptedException {
+        Objects.requireNonNull(packEvents);
+        if (max < 1 || lingerMs < 0) {
+            throw new IllegalArgumentException("Invalid batch size or linger time");
+        }
+        int first = packEvents.size();
+        packEvents.add(takeFresh());
+        queue.drainTo(packEvents, max - 1);
+        removeExpired(packEvents, first + 1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (packEvents.size() - first < max) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PackagedEvent packEvent;
+            try {
+                packEvent = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (packEvent == null) {
+                break;
+            }
+            int from = packEvents.size();
+            packEvents.add(packEvent);
+            queue.drainTo(packEvents, max - (packEvents.size() - first));
+            removeExpired(packEvents, from);
+        }
+        long now = System.currentTimeMillis();
+        Map<String, long[]> lifeBySource = new HashMap<>();
+        for (PackagedEvent packEvent : packEvents.subList(first, packEvents.size())) {
+            long[] life = lifeBySource.computeIfAbsent(packEvent.event.getSource(), k -> new long[2]);
+            life[0] += now - packEvent.arrivedTime;
+            life[1]++;
+        }
+        Map<String, Long> fields = new HashMap<>();
+        lifeBySource.forEach((source, life) -> {
+            fields.put("life_in_queue_" + source, life[0] / life[1]);
+            waitCounter.add(life[0], life[1]);
+        });
+        METRICS_LOGGER.log(fields);
+        return packEvents.size() - first;
+    }
+
+    /**
+     * Wait for a {@link PackagedEvent} which has not expired
+     *
+     * @return {@link PackagedEvent} in {@link DataQueue}
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @see DataQueue#expire(PackagedEvent, long)
+     */
+    private PackagedEvent takeFresh() throws InterruptedException {
+        PackagedEvent packEvent = queue.take();
+        while (expire(packEvent, System.currentTimeMillis())) {
+            packEvent = queue.take();
+        }
+        return packEvent;
+    }
+
+    /**
+     * Remove expired {@link PackagedEvent} from packEvents, starting at index from
+     *
+     * @param packEvents List of {@link PackagedEvent} taken from {@link DataQueue#queue}
+     * @param from       Index of the first {@link PackagedEvent} to check
+     * @see DataQueue#expire(PackagedEvent, long)
+     */
+    private void removeExpired(List<PackagedEvent> packEvents, int from) {
+        long now = System.currentTimeMillis();
+        packEvents.subList(from, packEvents.size()).removeIf(packEvent -> expire(packEvent, now));
+    }
+
+    /**
+     * Expire a {@link PackagedEvent} which waited longer than the max age of its source: it's acknowledged without
+     * being scored and counted in event_expired
+     *
+     * @param packEvent {@link PackagedEvent} taken from {@link DataQueue#queue}
+     * @param now       Current time in milliseconds
+     * @return true if packEvent has expired and must not be handled
+     * @see DataQueue#maxAgeOf
+     * @see DataQueue#METRICS_LOGGER
+     */
+    private boolean expire(PackagedEvent packEvent, long now) {
+        String source = packEvent.event.getSource();
+        long maxAge = maxAgeOf.applyAsLong(source);
+        if (maxAge <= 0 || now - packEvent.arrivedTime <= maxAge) {
+            return false;
+        }
+        ack(packEvent);
+        METRICS_LOGGER.log("event_expired", source);
+        LOGGER.debug("{} expired after {} ms in queue", packEvent.event, now - packEvent.arrivedTime);
+        return true;
+    }
+
+    /**
+     * Acknowledge a {@link PackagedEvent} handled by a {@link DataConsumer}, a persistent queue won't deliver it again
+     *
+     * @param packEvent {@link PackagedEvent} given by {@link DataQueue#take()} or {@link DataQueue#takeBatch(List, int, long)}
+     * @throws NullPointerException if packEvent is null
+     * @see EventQueue#ack(PackagedEvent)
+     */
+    void ack(PackagedEvent packEvent) {
+        queue.ack(packEvent);
+    }
+
+    /**
+     * Give back a {@link PackagedEvent} which could not be written, a persistent queue delivers it again later
+     *
+     * @param packEvent {@link PackagedEvent} given by {@link DataQueue#take()} or {@link DataQueue#takeBatch(List, int, long)}
+     * @throws NullPointerException if packEvent is null
+     * @see EventQueue#nack(PackagedEvent)
+     */
+    void nack(PackagedEvent packEvent) {
+        queue.nack(packEvent);
+    }
+
+    /**
+     * @return true if queued {@link Event} survive a restart
+     * @see EventQueue#isPersistent()
+     */
+    public boolean isPersistent() {
+        return queue.isPersistent();
+    }
+
+    /**
+     * Release resources of the queue, a persistent queue keeps {@link Event} not acknowledged for the next startup
+     *
+     * @see EventQueue#close()
+     */
+    public void close() {
+        queue.close();
     }
 
     /**
      * @return Return true if the DataQueue is empty
      * @see DataQueue#queue
-     * @see DataQueue#size
      */
     public boolean isEmpty() {
-        return queue.remainingCapacity() == size;
-    }
-
-    /**
-     * Packaged {@link Event} to apply metrics in {@link DataQueue#queue}
-     *
-     * @author ikb4stream
-     * @version 1.0
-     */
-    private class PackagedEvent {
-        /**
-         * Arrival time in {@link DataQueue#queue}
-         *
-         * @see DataQueue#push(Event)
-         * @see DataQueue#pop()
-         */
-        private final long arrivedTime;
-        /**
-         * {@link Event} to package
-         *
-         * @see DataQueue#push(Event)
-         * @see DataQueue#pop()
-         */
-        private final Event event;
-
-        /**
-         * Create a {@link PackagedEvent} with {@link Event}
-         *
-         * @param event       {@link Event} to package before insertion in {@link DataQueue#queue}
-         * @param arrivedTime Arrival time in {@link DataQueue#queue}
-         * @throws NullPointerException if event or arrivedTime is null
-         * @see Event
-         */
-        private PackagedEvent(Event event, long arrivedTime) {
-            Objects.requireNonNull(event);
-            Objects.requireNonNull(arrivedTime);
-            this.event = event;
-            this.arrivedTime = arrivedTime;
-        }
+        return queue.isEmpty();
+    }
+
+    /**
+     * @return Number of {@link Event} waiting in {@link DataQueue#queue}
+     * @see DataQueue#queue
+     */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return {@link MeanCounter} of time in milliseconds spent in {@link DataQueue} by taken {@link Event}
+     * @see DataQueue#waitCounter
+     */
+    MeanCounter getWaitCounter() {
+        return waitCounter;
     }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded {@link EventQueue} which delivers the {@link PackagedEvent} of highest priority first, then the one with the
+ * earliest deadline. Priority and relative deadline are given per source. Events of equal priority and deadline keep
+ * their arrival order. A {@link PackagedEvent} past its deadline is dropped instead of being delivered, and a full
+ * queue makes room for a new {@link PackagedEvent} by evicting the oldest one of the lowest priority, unless all stored
+ * ones have a higher priority than the new one.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see EventQueue
+ */
+class DeadlineEventQueue implements EventQueue {
+    /**
+     * Object to add metrics from this class
+     *
+     * @see DeadlineEventQueue#drop(Entry, String)
+     * @see MetricsLogger#log(String, String)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Order of delivery: highest priority, then earliest deadline, then arrival order
+     *
+     * @see DeadlineEventQueue#entries
+     */
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry e) -> -e.priority)
+            .thenComparingLong(e -> e.deadline)
+            .thenComparingLong(e -> e.order);
+    /**
+     * Order of eviction: lowest priority, then arrival order
+     *
+     * @see DeadlineEventQueue#victims
+     */
+    private static final Comparator<Entry> EVICTION = Comparator.comparingInt((Entry e) -> e.priority)
+            .thenComparingLong(e -> e.order);
+    /**
+     * Order of expiry: earliest deadline, then arrival order
+     *
+     * @see DeadlineEventQueue#expiring
+     */
+    private static final Comparator<Entry> EXPIRY = Comparator.comparingLong((Entry e) -> e.deadline)
+            .thenComparingLong(e -> e.order);
+    /**
+     * Give the priority of a source, higher is delivered first
+     *
+     * @see DeadlineEventQueue#offer(PackagedEvent)
+     */
+    private final ToIntFunction<String> priorityOf;
+    /**
+     * Give the time in milliseconds an {@link PackagedEvent} of a source may wait before its deadline, 0 or less to
+     * never drop it
+     *
+     * @see DeadlineEventQueue#offer(PackagedEvent)
+     */
+    private final ToLongFunction<String> deadlineOf;
+    /**
+     * Current time in milliseconds
+     */
+    private final LongSupplier clock;
+    /**
+     * Max number of {@link PackagedEvent} stored
+     */
+    private final int capacity;
+    /**
+     * Stored {@link PackagedEvent}, sorted with {@link DeadlineEventQueue#ORDER}
+     */
+    private final TreeSet<Entry> entries = new TreeSet<>(ORDER);
+    /**
+     * Same entries as {@link DeadlineEventQueue#entries}, sorted with {@link DeadlineEventQueue#EVICTION}
+     */
+    private final TreeSet<Entry> victims = new TreeSet<>(EVICTION);
+    /**
+     * Entries of {@link DeadlineEventQueue#entries} which have a deadline, sorted with
+     * {@link DeadlineEventQueue#EXPIRY}
+     *
+     * @see DeadlineEventQueue#dropExpired(long)
+     */
+    private final TreeSet<Entry> expiring = new TreeSet<>(EXPIRY);
+    /**
+     * Lock guarding {@link DeadlineEventQueue#entries}, {@link DeadlineEventQueue#victims} and
+     * {@link DeadlineEventQueue#expiring}
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signaled when a {@link PackagedEvent} is stored
+     */
+    private final Condition notEmpty = lock.newCondition();
+    /**
+     * Number of {@link PackagedEvent} offered so far, keeps arrival order between equal entries
+     */
+    private long offered;
+
+    /**
+     * Create a {@link DeadlineEventQueue}
+     *
+     * @param capacity   Max number of {@link PackagedEvent} stored
+     * @param priorityOf Priority of a source, higher is delivered first
+     * @param deadlineOf Time in milliseconds an {@link PackagedEvent} of a source may wait before its deadline
+     * @throws IllegalArgumentException if capacity is lower than 1
+     * @throws NullPointerException     if priorityOf or deadlineOf is null
+     */
+    DeadlineEventQueue(int capacity, ToIntFunction<String> priorityOf, ToLongFunction<String> deadlineOf) {
+        this(capacity, priorityOf, deadlineOf, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a {@link DeadlineEventQueue} with its own clock
+     *
+     * @param capacity   Max number of {@link PackagedEvent} stored
+     * @param priorityOf Priority of a source, higher is delivered first
+     * @param deadlineOf Time in milliseconds an {@link PackagedEvent} of a source may wait before its deadline
+     * @param clock      Current time in milliseconds
+     * @throws IllegalArgumentException if capacity is lower than 1
+     * @throws NullPointerException     if priorityOf, deadlineOf or clock is null
+     */
+    DeadlineEventQueue(int capacity, ToIntFunction<String> priorityOf, ToLongFunction<String> deadlineOf, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        }
+        this.capacity = capacity;
+        this.priorityOf = Objects.requireNonNull(priorityOf);
+        this.deadlineOf = Objects.requireNonNull(deadlineOf);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Insert a {@link PackagedEvent}. If the queue is full, {@link PackagedEvent} past their deadline are dropped, then
+     * the oldest one of the lowest priority is evicted if its priority isn't higher than the new one.
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @return false if the queue is full of {@link PackagedEvent} of higher priority
+     * @throws NullPointerException if packagedEvent is null
+     */
+    @Override
+    public boolean offer(PackagedEvent packagedEvent) {
+        Objects.requireNonNull(packagedEvent);
+        String source = packagedEvent.event.getSource();
+        int priority = priorityOf.applyAsInt(source);
+        long ms = deadlineOf.applyAsLong(source);
+        long deadline = packagedEvent.arrivedTime + Math.max(0, ms);
+        lock.lock();
+        try {
+            if (entries.size() >= capacity) {
+                dropExpired(clock.getAsLong());
+            }
+            if (entries.size() >= capacity) {
+                Entry victim = victims.first();
+                if (victim.priority > priority) {
+                    return false;
+                }
+                entries.remove(victim);
+                victims.remove(victim);
+                expiring.remove(victim);
+                drop(victim, "event_evicted");
+            }
+            Entry entry = new Entry(packagedEvent, priority, deadline, ms > 0, offered++);
+            entries.add(entry);
+            victims.add(entry);
+            if (entry.expires) {
+                expiring.add(entry);
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a {@link PackagedEvent} is available and remove the most urgent one
+     *
+     * @return The most urgent {@link PackagedEvent}
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    @Override
+    public PackagedEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Entry entry;
+            while ((entry = pollFresh()) == null) {
+                notEmpty.await();
+            }
+            return entry.packagedEvent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait at most timeout until a {@link PackagedEvent} is available and remove the most urgent one
+     *
+     * @param timeout Max time to wait
+     * @param unit    {@link TimeUnit} of timeout
+     * @return The most urgent {@link PackagedEvent} or null if timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    @Override
+    public PackagedEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Entry entry;
+            while ((entry = pollFresh()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return entry.packagedEvent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove at most max {@link PackagedEvent} without waiting, most urgent first
+     *
+     * @param collection Collection which receives {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to remove
+     * @return Number of {@link PackagedEvent} moved into collection
+     */
+    @Override
+    public int drainTo(Collection<? super PackagedEvent> collection, int max) {
+        Objects.requireNonNull(collection);
+        lock.lock();
+        try {
+            int count = 0;
+            Entry entry;
+            while (count < max && (entry = pollFresh()) != null) {
+                collection.add(entry.packagedEvent);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of {@link PackagedEvent} stored
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the most urgent {@link Entry}, dropping the ones past their deadline met on the way. The lock must be held.
+     *
+     * @return Most urgent {@link Entry} not past its deadline, or null if there is none
+     */
+    private Entry pollFresh() {
+        long now = clock.getAsLong();
+        Entry entry;
+        while ((entry = entries.pollFirst()) != null) {
+            victims.remove(entry);
+            expiring.remove(entry);
+            if (!entry.isExpired(now)) {
+                return entry;
+            }
+            drop(entry, "event_expired");
+        }
+        return null;
+    }
+
+    /**
+     * Drop all {@link Entry} past their deadline, earliest first, stopping at the first one which isn't. The lock must
+     * be held.
+     *
+     * @param now Current time in milliseconds
+     * @see DeadlineEventQueue#expiring
+     */
+    private void dropExpired(long now) {
+        Entry entry;
+        while ((entry = expiring.pollFirst()) != null) {
+            if (!entry.isExpired(now)) {
+                expiring.add(entry);
+                return;
+            }
+            entries.remove(entry);
+            victims.remove(entry);
+            drop(entry, "event_expired");
+        }
+    }
+
+    /**
+     * Count a dropped {@link Entry} by source
+     *
+     * @param entry  {@link Entry} removed from this queue without being delivered
+     * @param metric event_expired or event_evicted
+     * @see DeadlineEventQueue#METRICS_LOGGER
+     */
+    private static void drop(Entry entry, String metric) {
+        METRICS_LOGGER.log(metric, entry.packagedEvent.event.getSource());
+    }
+
+    /**
+     * {@link PackagedEvent} with its scheduling keys
+     */
+    private static final class Entry {
+        /**
+         * Stored {@link PackagedEvent}
+         */
+        private final PackagedEvent packagedEvent;
+        /**
+         * Priority of its source
+         */
+        private final int priority;
+        /**
+         * Absolute deadline in milliseconds
+         */
+        private final long deadline;
+        /**
+         * True if it's dropped once its deadline is past
+         */
+        private final boolean expires;
+        /**
+         * Arrival order in the queue
+         */
+        private final long order;
+
+        /**
+         * Create an {@link Entry}
+         *
+         * @param packagedEvent Stored {@link PackagedEvent}
+         * @param priority      Priority of its source
+         * @param deadline      Absolute deadline in milliseconds
+         * @param expires       True if it's dropped once its deadline is past
+         * @param order         Arrival order in the queue
+         */
+        private Entry(PackagedEvent packagedEvent, int priority, long deadline, boolean expires, long order) {
+            this.packagedEvent = packagedEvent;
+            this.priority = priority;
+            this.deadline = deadline;
+            this.expires = expires;
+            this.order = order;
+        }
+
+        /**
+         * @param now Current time in milliseconds
+         * @return true if this {@link Entry} is past its deadline
+         */
+        private boolean isExpired(long now) {
+            return expires && now > deadline;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Rolling Bloom filter which tells if an {@link Event} has already been seen during the last producer.dedup.windowms.
+ * The window is split into {@link DuplicateFilter#GENERATIONS} generations sharing producer.dedup.memorybytes: new
+ * fingerprints go to the current generation, and the oldest one is cleared each time a generation length has elapsed.
+ * So an {@link Event} is remembered between 3/4 of the window and the whole window. As any Bloom filter, it may
+ * wrongly report a new {@link Event} as a duplicate: about 1% per generation as long as a generation receives fewer
+ * {@link Event} than a tenth of its bits, 800,000 with the default memory.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DataConsumer
+ */
+class DuplicateFilter {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateFilter.class);
+    /**
+     * Number of generations in the window
+     */
+    static final int GENERATIONS = 4;
+    /**
+     * Number of bits set for each fingerprint
+     */
+    static final int NB_HASHES = 5;
+    /**
+     * Bits of each generation, {@link DuplicateFilter#current} is the one receiving new fingerprints
+     */
+    private final long[][] generations;
+    /**
+     * Number of bits in each generation, a power of two
+     */
+    private final int nbBits;
+    /**
+     * Time in milliseconds covered by a generation
+     */
+    private final long generationMs;
+    /**
+     * Index of the generation receiving new fingerprints
+     */
+    private int current;
+    /**
+     * Time in milliseconds the current generation started
+     */
+    private long currentStart;
+
+    /**
+     * Create a {@link DuplicateFilter}
+     *
+     * @param windowMs    Time in milliseconds an {@link Event} is remembered
+     * @param memoryBytes Memory shared by all generations, rounded down to a power of two per generation
+     * @param now         Current time in milliseconds
+     * @throws IllegalArgumentException if windowMs is lower than {@link DuplicateFilter#GENERATIONS} or memoryBytes is
+     *                                  too low to give 64 bits per generation
+     */
+    DuplicateFilter(long windowMs, long memoryBytes, long now) {
+        if (windowMs < GENERATIONS || memoryBytes < GENERATIONS * Long.BYTES) {
+            throw new IllegalArgumentException("Invalid window or memory of DuplicateFilter");
+        }
+        long bitsPerGeneration = Math.min(1L << 30, memoryBytes * 8 / GENERATIONS);
+        this.nbBits = Integer.highestOneBit((int) bitsPerGeneration);
+        this.generations = new long[GENERATIONS][nbBits / Long.SIZE];
+        this.generationMs = windowMs / GENERATIONS;
+        this.currentStart = now;
+    }
+
+    /**
+     * Create a {@link DuplicateFilter} from producer.dedup.windowms and producer.dedup.memorybytes
+     *
+     * @return {@link DuplicateFilter} or null if producer.dedup.windowms is 0 (default) which disables deduplication
+     */
+    static DuplicateFilter createDuplicateFilter() {
+        PropertiesManager propertiesManager = PropertiesManager.getInstance(DuplicateFilter.class, "resources/config.properties");
+        long windowMs = 0;
+        long memoryBytes = 4 << 20;
+        try {
+            windowMs = Long.parseLong(propertiesManager.getPropertyOrDefault("producer.dedup.windowms", "0"));
+            memoryBytes = Long.parseLong(propertiesManager.getPropertyOrDefault("producer.dedup.memorybytes", "4194304"));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.dedup.windowms or producer.dedup.memorybytes is not a number, use default value");
+        }
+        if (windowMs <= 0) {
+            return null;
+        }
+        try {
+            DuplicateFilter duplicateFilter = new DuplicateFilter(windowMs, memoryBytes, System.currentTimeMillis());
+            LOGGER.info("Duplicates are dropped during {} ms with {} bits per generation", windowMs, duplicateFilter.nbBits);
+            return duplicateFilter;
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("{}, duplicates are not dropped", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Check if event has been seen during the window, and remember it
+     *
+     * @param event {@link Event} to check
+     * @return True if event is a duplicate and must not be handled
+     * @throws NullPointerException if event is null
+     */
+    boolean isDuplicate(Event event) {
+        return isDuplicate(event, System.currentTimeMillis());
+    }
+
+    /**
+     * Check if event has been seen during the window, and remember it
+     *
+     * @param event {@link Event} to check
+     * @param now   Current time in milliseconds
+     * @return True if event is a duplicate and must not be handled
+     * @throws NullPointerException if event is null
+     * @see DuplicateFilter#fingerprint(Event, long)
+     */
+    boolean isDuplicate(Event event, long now) {
+        Objects.requireNonNull(event);
+        long h1 = fingerprint(event, 0x9E3779B97F4A7C15L);
+        long h2 = fingerprint(event, 0xC2B2AE3D27D4EB4FL) | 1;
+        int[] bits = new int[NB_HASHES];
+        for (int i = 0; i < NB_HASHES; i++) {
+            bits[i] = (int) (h1 + i * h2) & (nbBits - 1);
+        }
+        synchronized (this) {
+            rotate(now);
+            for (long[] generation : generations) {
+                if (containsAll(generation, bits)) {
+                    return true;
+                }
+            }
+            long[] generation = generations[current];
+            for (int bit : bits) {
+                generation[bit >>> 6] |= 1L << bit;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Check if all bits are set in a generation
+     *
+     * @param generation Bits of a generation
+     * @param bits       Index of bits to check
+     * @return True if all bits are set
+     */
+    private static boolean containsAll(long[] generation, int[] bits) {
+        for (int bit : bits) {
+            if ((generation[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clear the oldest generation for each generation length elapsed since the current one started
+     *
+     * @param now Current time in milliseconds
+     */
+    private void rotate(long now) {
+        for (int i = 0; i < GENERATIONS && now - currentStart >= generationMs; i++) {
+            current = (current + 1) % GENERATIONS;
+            Arrays.fill(generations[current], 0);
+            currentStart += generationMs;
+        }
+        if (now - currentStart >= generationMs) {
+            currentStart = now;
+        }
+    }
+
+    /**
+     * Hash source, location, start, end and description of an {@link Event}, score is ignored
+     *
+     * @param event {@link Event} to hash
+     * @param seed  Seed of the hash
+     * @return 64-bit hash of event
+     */
+    static long fingerprint(Event event, long seed) {
+        long hash = mix(seed, event.getSource());
+        for (int i = 0; i < event.getPointCount(); i++) {
+            hash = mix(hash, Double.doubleToLongBits(event.getLatitude(i)));
+            hash = mix(hash, Double.doubleToLongBits(event.getLongitude(i)));
+        }
+        hash = mix(hash, event.getStartTime());
+        hash = mix(hash, event.getEndTime());
+        return mix(hash, event.getDescription());
+    }
+
+    /**
+     * Mix a String into a hash, four chars at a time
+     *
+     * @param hash  Current hash
+     * @param value String to add
+     * @return New hash
+     */
+    static long mix(long hash, String value) {
+        long h = hash;
+        int length = value.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            h = mix(h, (long) value.charAt(i) << 48 | (long) value.charAt(i + 1) << 32 | (long) value.charAt(i + 2) << 16 | value.charAt(i + 3));
+        }
+        for (; i < length; i++) {
+            h = mix(h, value.charAt(i));
+        }
+        return mix(h, length);
+    }
+
+    /**
+     * Mix a value into a hash
+     *
+     * @param hash  Current hash
+     * @param value Value to add
+     * @return New hash
+     */
+    static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
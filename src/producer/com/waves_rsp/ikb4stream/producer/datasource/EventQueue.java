@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Storage used by {@link DataQueue} to hold {@link PackagedEvent} between {@link DataProducer} and {@link DataConsumer}
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see BlockingEventQueue
+ * @see RingBufferEventQueue
+ * @see WalEventQueue
+ */
+interface EventQueue {
+    /**
+     * Longest pause between two attempts of {@link #offer(PackagedEvent, long, TimeUnit)}
+     */
+    long MAX_OFFER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Insert a {@link PackagedEvent} without waiting
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @return false if there is no room left
+     */
+    boolean offer(PackagedEvent packagedEvent);
+
+    /**
+     * Insert a {@link PackagedEvent}, waiting at most timeout for room to become available. The default implementation
+     * retries {@link #offer(PackagedEvent)} and parks up to {@link #MAX_OFFER_PARK_NANOS} between attempts
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @param timeout       Max time to wait
+     * @param unit          {@link TimeUnit} of timeout
+     * @return false if there is still no room left once timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    default boolean offer(PackagedEvent packagedEvent, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(packagedEvent)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(remaining, MAX_OFFER_PARK_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait until a {@link PackagedEvent} is available and remove it
+     *
+     * @return The oldest {@link PackagedEvent}
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    PackagedEvent take() throws InterruptedException;
+
+    /**
+     * Wait at most timeout until a {@link PackagedEvent} is available and remove it
+     *
+     * @param timeout Max time to wait
+     * @param unit    {@link TimeUnit} of timeout
+     * @return The oldest {@link PackagedEvent} or null if timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    PackagedEvent poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Remove at most max {@link PackagedEvent} without waiting
+     *
+     * @param collection Collection which receives {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to remove
+     * @return Number of {@link PackagedEvent} moved into collection
+     */
+    int drainTo(Collection<? super PackagedEvent> collection, int max);
+
+    /**
+     * @return Number of {@link PackagedEvent} currently stored
+     */
+    int size();
+
+    /**
+     * @return true if there is no {@link PackagedEvent} stored
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Tell a persistent queue that a {@link PackagedEvent} has been handled and must not be delivered again
+     *
+     * @param packagedEvent {@link PackagedEvent} removed from this queue
+     */
+    default void ack(PackagedEvent packagedEvent) {
+        // Only persistent queues keep track of delivered events
+    }
+
+    /**
+     * Tell a persistent queue that a {@link PackagedEvent} could not be handled, it's delivered again later instead of
+     * holding its storage until a restart
+     *
+     * @param packagedEvent {@link PackagedEvent} removed from this queue
+     */
+    default void nack(PackagedEvent packagedEvent) {
+        // In-memory queues don't deliver an event twice
+    }
+
+    /**
+     * @return true if stored {@link PackagedEvent} survive a restart
+     */
+    default boolean isPersistent() {
+        return false;
+    }
+
+    /**
+     * Release resources held by this queue
+     */
+    default void close() {
+        // Nothing to release for in-memory queues
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link EventQueue} with one bounded lane per source, lanes are served with deficit round-robin so that a burst from
+ * one source cannot starve the others. Each time a lane gets its turn, it's credited with its weight and may deliver
+ * as many {@link PackagedEvent} before the next lane is served.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see EventQueue
+ */
+class LaneEventQueue implements EventQueue {
+    /**
+     * Give the weight of the lane of a source, i.e. the number of {@link PackagedEvent} it delivers per round
+     *
+     * @see LaneEventQueue#lane(String)
+     */
+    private final ToIntFunction<String> weightOf;
+    /**
+     * Give the max number of {@link PackagedEvent} stored in the lane of a source
+     *
+     * @see LaneEventQueue#lane(String)
+     */
+    private final ToIntFunction<String> capacityOf;
+    /**
+     * Lane of each source, created the first time the source pushes
+     *
+     * @see LaneEventQueue#lane(String)
+     */
+    private final Map<String, Lane> lanes = new HashMap<>();
+    /**
+     * Lanes holding at least one {@link PackagedEvent}, the first one is being served
+     *
+     * @see LaneEventQueue#dequeue()
+     */
+    private final ArrayDeque<Lane> active = new ArrayDeque<>();
+    /**
+     * Lock guarding all lanes
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signaled when a {@link PackagedEvent} is stored
+     */
+    private final Condition notEmpty = lock.newCondition();
+    /**
+     * Number of {@link PackagedEvent} stored in all lanes
+     */
+    private int size;
+
+    /**
+     * Create a {@link LaneEventQueue}
+     *
+     * @param weightOf   Weight of the lane of a source, values lower than 1 are raised to 1
+     * @param capacityOf Capacity of the lane of a source, values lower than 1 are raised to 1
+     * @throws NullPointerException if one of params is null
+     */
+    LaneEventQueue(ToIntFunction<String> weightOf, ToIntFunction<String> capacityOf) {
+        this.weightOf = Objects.requireNonNull(weightOf);
+        this.capacityOf = Objects.requireNonNull(capacityOf);
+    }
+
+    /**
+     * Insert a {@link PackagedEvent} in the lane of its source if there is room left
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @return false if the lane of its source is full
+     * @throws NullPointerException if packagedEvent is null
+     */
+    @Override
+    public boolean offer(PackagedEvent packagedEvent) {
+        Objects.requireNonNull(packagedEvent);
+        lock.lock();
+        try {
+            Lane lane = lane(packagedEvent.event.getSource());
+            if (lane.events.size() >= lane.capacity) {
+                return false;
+            }
+            if (lane.events.isEmpty()) {
+                lane.deficit = lane.weight;
+                active.addLast(lane);
+            }
+            lane.events.addLast(packagedEvent);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a {@link PackagedEvent} is available and remove it from the lane being served
+     *
+     * @return The oldest {@link PackagedEvent} of the lane being served
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    @Override
+    public PackagedEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait at most timeout until a {@link PackagedEvent} is available and remove it from the lane being served
+     *
+     * @param timeout Max time to wait
+     * @param unit    {@link TimeUnit} of timeout
+     * @return The oldest {@link PackagedEvent} of the lane being served or null if timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    @Override
+    public PackagedEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove at most max {@link PackagedEvent} without waiting, following the round-robin order
+     *
+     * @param collection Collection which receives {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to remove
+     * @return Number of {@link PackagedEvent} moved into collection
+     */
+    @Override
+    public int drainTo(Collection<? super PackagedEvent> collection, int max) {
+        Objects.requireNonNull(collection);
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < max && size > 0) {
+                collection.add(dequeue());
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of {@link PackagedEvent} stored in all lanes
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give the lane of a source, create it if needed. Must be called with {@link LaneEventQueue#lock} held
+     *
+     * @param source Source of {@link PackagedEvent}
+     * @return {@link Lane} of this source
+     * @see LaneEventQueue#weightOf
+     * @see LaneEventQueue#capacityOf
+     */
+    private Lane lane(String source) {
+        return lanes.computeIfAbsent(source, s -> new Lane(
+                Math.max(1, weightOf.applyAsInt(s)),
+                Math.max(1, capacityOf.applyAsInt(s))));
+    }
+
+    /**
+     * Remove a {@link PackagedEvent} from the lane being served. Once the lane has used its credit it goes back at the
+     * end of the round with a new credit, once it's empty it leaves the round. Must be called with
+     * {@link LaneEventQueue#lock} held and at least one {@link PackagedEvent} stored
+     *
+     * @return The oldest {@link PackagedEvent} of the lane being served
+     * @see LaneEventQueue#active
+     */
+    private PackagedEvent dequeue() {
+        Lane lane = active.peekFirst();
+        PackagedEvent packagedEvent = lane.events.pollFirst();
+        size--;
+        lane.deficit--;
+        if (lane.events.isEmpty()) {
+            active.pollFirst();
+            lane.deficit = 0;
+        } else if (lane.deficit <= 0) {
+            active.pollFirst();
+            lane.deficit += lane.weight;
+            active.addLast(lane);
+        }
+        return packagedEvent;
+    }
+
+    /**
+     * Bounded FIFO of a single source
+     */
+    private static final class Lane {
+        /**
+         * Number of {@link PackagedEvent} delivered per round
+         */
+        private final int weight;
+        /**
+         * Max number of {@link PackagedEvent} stored
+         */
+        private final int capacity;
+        /**
+         * {@link PackagedEvent} waiting in this lane
+         */
+        private final ArrayDeque<PackagedEvent> events = new ArrayDeque<>();
+        /**
+         * Number of {@link PackagedEvent} this lane may still deliver in the current round
+         */
+        private int deficit;
+
+        /**
+         * Create a {@link Lane}
+         *
+         * @param weight   Number of {@link PackagedEvent} delivered per round
+         * @param capacity Max number of {@link PackagedEvent} stored
+         */
+        private Lane(int weight, int capacity) {
+            this.weight = weight;
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+/**
+ * Mean of values recorded by many threads since the last reading
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see ConsumerPool
+ */
+class MeanCounter {
+    /**
+     * Sum of values recorded since last reading
+     *
+     * @see MeanCounter#add(long, long)
+     */
+    private long total;
+    /**
+     * Number of values recorded since last reading
+     *
+     * @see MeanCounter#add(long, long)
+     */
+    private long count;
+    /**
+     * Sum of values of the period ended by the last {@link MeanCounter#takeMean()}
+     *
+     * @see MeanCounter#getLastTotal()
+     */
+    private long lastTotal;
+
+    /**
+     * Record count values whose sum is total
+     *
+     * @param total Sum of values
+     * @param count Number of values
+     */
+    synchronized void add(long total, long count) {
+        this.total += total;
+        this.count += count;
+    }
+
+    /**
+     * Give the mean of values recorded since last call, and start a new period
+     *
+     * @return Mean of recorded values, 0 if nothing has been recorded
+     */
+    synchronized long takeMean() {
+        long mean = count == 0 ? 0 : total / count;
+        lastTotal = total;
+        total = 0;
+        count = 0;
+        return mean;
+    }
+
+    /**
+     * @return Sum of values of the period ended by the last {@link MeanCounter#takeMean()}
+     */
+    synchronized long getLastTotal() {
+        return lastTotal;
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * MinHash index of the descriptions seen during producer.neardup.windowms, which finds {@link Event} whose description
+ * is almost the same as an earlier one from the same source and the same geographic cell: retweets with one more
+ * hashtag, the same story from several feeds... Each description gets a signature of {@link NearDuplicateIndex#BANDS}
+ * x {@link NearDuplicateIndex#ROWS} MinHash of its words, and is indexed once per band. Descriptions sharing a band are
+ * near-duplicates if the share of equal MinHash, an estimate of the Jaccard similarity of their words, reaches
+ * producer.neardup.similarity.
+ * Buckets live in two generations: new signatures go to the current one, which replaces the previous one once it's half
+ * a window old or holds producer.neardup.maxentries signatures.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DataConsumer
+ * @see DuplicateFilter
+ */
+class NearDuplicateIndex {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NearDuplicateIndex.class);
+    /**
+     * Number of bands of a signature, a description is indexed in one bucket per band
+     */
+    static final int BANDS = 8;
+    /**
+     * Number of MinHash in a band, all of them must be equal to share a bucket
+     */
+    static final int ROWS = 4;
+    /**
+     * Sources checked by this index, every source if it's empty
+     */
+    private final Set<String> sources;
+    /**
+     * Min share of equal MinHash between two near-duplicates
+     */
+    private final double similarity;
+    /**
+     * Size of a geographic cell in degrees
+     */
+    private final double cellSize;
+    /**
+     * Time in milliseconds covered by a generation
+     */
+    private final long generationMs;
+    /**
+     * Max number of signatures in a generation
+     */
+    private final int maxEntries;
+    /**
+     * Buckets receiving new signatures
+     */
+    private Map<Long, Entry> current = new HashMap<>();
+    /**
+     * Buckets of the previous generation, only read
+     */
+    private Map<Long, Entry> previous = new HashMap<>();
+    /**
+     * Number of signatures in {@link NearDuplicateIndex#current}
+     */
+    private int currentSize;
+    /**
+     * Time in milliseconds the current generation started
+     */
+    private long currentStart;
+
+    /**
+     * Create a {@link NearDuplicateIndex}
+     *
+     * @param sources    Sources checked by this index, every source if it's empty
+     * @param similarity Min share of equal MinHash between two near-duplicates, greater than 0 and at most 1
+     * @param cellSize   Size of a geographic cell in degrees
+     * @param windowMs   Time in milliseconds a description is remembered
+     * @param maxEntries Max number of signatures in a generation
+     * @param now        Current time in milliseconds
+     * @throws NullPointerException     if sources is null
+     * @throws IllegalArgumentException if one of params is out of range
+     */
+    NearDuplicateIndex(Set<String> sources, double similarity, double cellSize, long windowMs, int maxEntries, long now) {
+        Objects.requireNonNull(sources);
+        if (!(similarity > 0 && similarity <= 1) || !(cellSize > 0) || windowMs < 2 || maxEntries < 1) {
+            throw new IllegalArgumentException("Invalid settings of NearDuplicateIndex");
+        }
+        this.sources = Collections.unmodifiableSet(new HashSet<>(sources));
+        this.similarity = similarity;
+        this.cellSize = cellSize;
+        this.generationMs = windowMs / 2;
+        this.maxEntries = maxEntries;
+        this.currentStart = now;
+    }
+
+    /**
+     * Create a {@link NearDuplicateIndex} from producer.neardup.windowms, producer.neardup.sources,
+     * producer.neardup.similarity, producer.neardup.cell and producer.neardup.maxentries
+     *
+     * @return {@link NearDuplicateIndex} or null if producer.neardup.windowms is 0 (default) which disables it
+     */
+    static NearDuplicateIndex createNearDuplicateIndex() {
+        PropertiesManager propertiesManager = PropertiesManager.getInstance(NearDuplicateIndex.class, "resources/config.properties");
+        long windowMs = 0;
+        double similarity = 0.7;
+        double cellSize = 0.1;
+        int maxEntries = 50_000;
+        try {
+            windowMs = Long.parseLong(propertiesManager.getPropertyOrDefault("producer.neardup.windowms", "0"));
+            similarity = Double.parseDouble(propertiesManager.getPropertyOrDefault("producer.neardup.similarity", "0.7"));
+            cellSize = Double.parseDouble(propertiesManager.getPropertyOrDefault("producer.neardup.cell", "0.1"));
+            maxEntries = Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.neardup.maxentries", "50000"));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.neardup settings are not numbers, use default values");
+        }
+        if (windowMs <= 0) {
+            return null;
+        }
+        Set<String> sources = new HashSet<>();
+        for (String source : propertiesManager.getPropertyOrDefault("producer.neardup.sources", "").split(",")) {
+            if (!source.trim().isEmpty()) {
+                sources.add(source.trim());
+            }
+        }
+        try {
+            NearDuplicateIndex nearDuplicateIndex = new NearDuplicateIndex(sources, similarity, cellSize, windowMs, maxEntries, System.currentTimeMillis());
+            LOGGER.info("Near-duplicates of {} are dropped during {} ms", sources.isEmpty() ? "all sources" : sources, windowMs);
+            return nearDuplicateIndex;
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("{}, near-duplicates are not dropped", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Check if the description of event is almost the same as one seen during the window, from the same source and
+     * geographic cell, and remember it
+     *
+     * @param event {@link Event} to check
+     * @return True if event is a near-duplicate and must not be handled
+     * @throws NullPointerException if event is null
+     */
+    boolean isNearDuplicate(Event event) {
+        return isNearDuplicate(event, System.currentTimeMillis());
+    }
+
+    /**
+     * Check if the description of event is almost the same as one seen during the window, from the same source and
+     * geographic cell, and remember it
+     *
+     * @param event {@link Event} to check
+     * @param now   Current time in milliseconds
+     * @return True if event is a near-duplicate and must not be handled, an {@link Event} without word never is
+     * @throws NullPointerException if event is null
+     * @see NearDuplicateIndex#signature(String)
+     */
+    boolean isNearDuplicate(Event event, long now) {
+        Objects.requireNonNull(event);
+        if (!sources.isEmpty() && !sources.contains(event.getSource())) {
+            return false;
+        }
+        int[] signature = signature(event.getDescription());
+        if (signature == null) {
+            return false;
+        }
+        long context = context(event);
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+                key = DuplicateFilter.mix(key, signature[row]);
+            }
+            keys[band] = DuplicateFilter.mix(context, key);
+        }
+        synchronized (this) {
+            rotate(now);
+            for (long key : keys) {
+                if (contains(current.get(key), context, signature) || contains(previous.get(key), context, signature)) {
+                    return true;
+                }
+            }
+            for (long key : keys) {
+                current.put(key, new Entry(context, signature, current.get(key)));
+            }
+            currentSize++;
+            return false;
+        }
+    }
+
+    /**
+     * Check if a bucket holds a signature similar to signature
+     *
+     * @param entry     First {@link Entry} of the bucket, null if it's empty
+     * @param context   Source and cell of the {@link Event}
+     * @param signature Signature of the description
+     * @return True if a similar signature has been found
+     * @see NearDuplicateIndex#similarity(int[], int[])
+     */
+    private boolean contains(Entry entry, long context, int[] signature) {
+        for (Entry e = entry; e != null; e = e.next) {
+            if (e.context == context && similarity(e.signature, signature) >= similarity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimate the Jaccard similarity of the words of two descriptions
+     *
+     * @param signature1 Signature of the first description
+     * @param signature2 Signature of the second description
+     * @return Share of equal MinHash
+     */
+    static double similarity(int[] signature1, int[] signature2) {
+        int equal = 0;
+        for (int i = 0; i < signature1.length; i++) {
+            if (signature1[i] == signature2[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / signature1.length;
+    }
+
+    /**
+     * Start a new generation if the current one is half a window old or full
+     *
+     * @param now Current time in milliseconds
+     */
+    private void rotate(long now) {
+        if (now - currentStart < generationMs && currentSize < maxEntries) {
+            return;
+        }
+        previous = now - currentStart < 2 * generationMs ? current : new HashMap<>();
+        current = new HashMap<>();
+        currentSize = 0;
+        currentStart = now;
+    }
+
+    /**
+     * Hash the source and the geographic cell of the center of an {@link Event}
+     *
+     * @param event {@link Event} to locate
+     * @return Hash of source and cell
+     */
+    private long context(Event event) {
+        double latitude = 0;
+        double longitude = 0;
+        int points = event.getPointCount();
+        for (int i = 0; i < points; i++) {
+            latitude += event.getLatitude(i);
+            longitude += event.getLongitude(i);
+        }
+        long hash = DuplicateFilter.mix(0, event.getSource());
+        hash = DuplicateFilter.mix(hash, (long) Math.floor(latitude / points / cellSize));
+        return DuplicateFilter.mix(hash, (long) Math.floor(longitude / points / cellSize));
+    }
+
+    /**
+     * Compute the MinHash signature of the words of a text: for each of the {@link NearDuplicateIndex#BANDS} x
+     * {@link NearDuplicateIndex#ROWS} hash functions, the min hash of all words
+     *
+     * @param text Text to hash
+     * @return Signature of text, null if it has no word
+     */
+    static int[] signature(String text) {
+        int[] signature = new int[BANDS * ROWS];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        boolean hasWord = false;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int length = lower.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                hasWord = true;
+                long word = DuplicateFilter.mix(0, lower.substring(start, i));
+                for (int j = 0; j < signature.length; j++) {
+                    signature[j] = Math.min(signature[j], (int) (DuplicateFilter.mix(word, j) >>> 33));
+                }
+            }
+        }
+        return hasWord ? signature : null;
+    }
+
+    /**
+     * Signature of a bucket, chained to the previous one of the same bucket
+     */
+    private static final class Entry {
+        /**
+         * Source and cell of the {@link Event}
+         */
+        private final long context;
+        /**
+         * Signature of the description, shared by the buckets of all bands
+         */
+        private final int[] signature;
+        /**
+         * Previous {@link Entry} of the bucket
+         */
+        private final Entry next;
+
+        /**
+         * Create an {@link Entry}
+         *
+         * @param context   Source and cell of the {@link Event}
+         * @param signature Signature of the description
+         * @param next      Previous {@link Entry} of the bucket, or null
+         */
+        private Entry(long context, int[] signature, Entry next) {
+            this.context = context;
+            this.signature = signature;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Degrade the scoring stage step by step when the producer is overloaded, instead of letting the backlog grow. At each
+ * round of the {@link ConsumerPool}, the producer is under pressure if the depth of {@link DataQueue} reaches
+ * producer.overload.depth, if {@link DataConsumer} are busy more than producer.overload.utilisation percent of the
+ * time, or if the database takes more than producer.overload.writems to acknowledge a write. Each round under pressure
+ * moves to the next {@link Mode}, up to producer.overload.maxlevel, and each {@link OverloadController#RECOVERY_ROUNDS}
+ * rounds without pressure move back to the previous one.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see ConsumerPool
+ * @see DataConsumer
+ */
+class OverloadController {
+    /**
+     * Object to add metrics from this class
+     *
+     * @see OverloadController#update(long, long, long)
+     * @see MetricsLogger#log(String, long)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(OverloadController.class);
+    /**
+     * Number of rounds without pressure before moving back to the previous {@link Mode}
+     */
+    static final int RECOVERY_ROUNDS = 3;
+
+    /**
+     * Degraded modes, each one also applies the previous ones
+     */
+    enum Mode {
+        /**
+         * Every {@link Event} is scored and kept if it reaches score.target
+         */
+        NORMAL,
+        /**
+         * The target score is raised by producer.overload.targetstep, fewer {@link Event} are written
+         */
+        RAISE_TARGET,
+        /**
+         * {@link Event} of producer.overload.lowpriority sources are dropped without being scored
+         */
+        SKIP_LOW_PRIORITY,
+        /**
+         * Only one {@link Event} out of producer.overload.sample is scored
+         */
+        SAMPLE
+    }
+
+    /**
+     * Deepest {@link Mode} allowed, as an ordinal
+     */
+    private final int maxLevel;
+    /**
+     * Depth of {@link DataQueue} under pressure
+     */
+    private final long depthLimit;
+    /**
+     * Percent of time {@link DataConsumer} are busy under pressure
+     */
+    private final long utilisationLimit;
+    /**
+     * Time in milliseconds to acknowledge a write under pressure
+     */
+    private final long writeMsLimit;
+    /**
+     * Value added to the target score from {@link Mode#RAISE_TARGET}
+     */
+    private final int targetStep;
+    /**
+     * Sources dropped from {@link Mode#SKIP_LOW_PRIORITY}
+     */
+    private final Set<String> lowPriority;
+    /**
+     * One {@link Event} out of this number is scored in {@link Mode#SAMPLE}
+     */
+    private final int sample;
+    /**
+     * Number of {@link Event} seen in {@link Mode#SAMPLE}
+     */
+    private final AtomicLong sampled = new AtomicLong();
+    /**
+     * Current {@link Mode}, read by all {@link DataConsumer}
+     */
+    private volatile Mode mode = Mode.NORMAL;
+    /**
+     * Number of rounds without pressure in a row
+     */
+    private int calmRounds;
+
+    /**
+     * Create an {@link OverloadController}
+     *
+     * @param maxLevel         Deepest {@link Mode} allowed as an ordinal, 0 to never degrade
+     * @param depthLimit       Depth of {@link DataQueue} under pressure
+     * @param utilisationLimit Percent of time {@link DataConsumer} are busy under pressure
+     * @param writeMsLimit     Time in milliseconds to acknowledge a write under pressure
+     * @param targetStep       Value added to the target score from {@link Mode#RAISE_TARGET}
+     * @param lowPriority      Sources dropped from {@link Mode#SKIP_LOW_PRIORITY}
+     * @param sample           One {@link Event} out of this number is scored in {@link Mode#SAMPLE}
+     * @throws NullPointerException if lowPriority is null
+     */
+    OverloadController(int maxLevel, long depthLimit, long utilisationLimit, long writeMsLimit, int targetStep, Set<String> lowPriority, int sample) {
+        Objects.requireNonNull(lowPriority);
+        this.maxLevel = Math.min(Mode.values().length - 1, Math.max(0, maxLevel));
+        this.depthLimit = Math.max(1, depthLimit);
+        this.utilisationLimit = Math.max(1, utilisationLimit);
+        this.writeMsLimit = Math.max(1, writeMsLimit);
+        this.targetStep = Math.max(0, targetStep);
+        this.lowPriority = Collections.unmodifiableSet(new HashSet<>(lowPriority));
+        this.sample = Math.max(1, sample);
+    }
+
+    /**
+     * Create an {@link OverloadController} from producer.overload.maxlevel, producer.overload.depth,
+     * producer.overload.utilisation, producer.overload.writems, producer.overload.targetstep,
+     * producer.overload.lowpriority and producer.overload.sample
+     *
+     * @return {@link OverloadController}, which never degrades if producer.overload.maxlevel is 0 (default)
+     */
+    static OverloadController createOverloadController() {
+        PropertiesManager propertiesManager = PropertiesManager.getInstance(OverloadController.class, "resources/config.properties");
+        int maxLevel = 0;
+        long depth = 400;
+        long utilisation = 90;
+        long writeMs = 1000;
+        int targetStep = 25;
+        int sample = 4;
+        try {
+            maxLevel = Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.overload.maxlevel", "0"));
+            depth = Long.parseLong(propertiesManager.getPropertyOrDefault("producer.overload.depth", "400"));
+            utilisation = Long.parseLong(propertiesManager.getPropertyOrDefault("producer.overload.utilisation", "90"));
+            writeMs = Long.parseLong(propertiesManager.getPropertyOrDefault("producer.overload.writems", "1000"));
+            targetStep = Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.overload.targetstep", "25"));
+            sample = Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.overload.sample", "4"));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.overload settings are not numbers, use default values");
+        }
+        Set<String> lowPriority = new HashSet<>();
+        for (String source : propertiesManager.getPropertyOrDefault("producer.overload.lowpriority", "").split(",")) {
+            if (!source.trim().isEmpty()) {
+                lowPriority.add(source.trim());
+            }
+        }
+        return new OverloadController(maxLevel, depth, utilisation, writeMs, targetStep, lowPriority, sample);
+    }
+
+    /**
+     * Move to the next {@link Mode} if the producer is under pressure, or back to the previous one after
+     * {@link OverloadController#RECOVERY_ROUNDS} rounds without pressure. Changes are logged in overload_change.
+     *
+     * @param depth       Depth of {@link DataQueue}
+     * @param utilisation Percent of time {@link DataConsumer} were busy during the round
+     * @param writeMs     Mean time in milliseconds to acknowledge a write during the round
+     * @return {@link Mode} after this round
+     * @see OverloadController#METRICS_LOGGER
+     */
+    synchronized Mode update(long depth, long utilisation, long writeMs) {
+        boolean pressure = depth >= depthLimit || utilisation >= utilisationLimit || writeMs >= writeMsLimit;
+        int level = mode.ordinal();
+        if (pressure) {
+            calmRounds = 0;
+            level = Math.min(maxLevel, level + 1);
+        } else if (level > 0 && ++calmRounds >= RECOVERY_ROUNDS) {
+            calmRounds = 0;
+            level--;
+        }
+        Mode next = Mode.values()[level];
+        if (next != mode) {
+            LOGGER.warn("Overload mode {} -> {} (depth {}, utilisation {}%, write {} ms)", mode, next, depth, utilisation, writeMs);
+            mode = next;
+            METRICS_LOGGER.log("overload_change", level);
+        }
+        return next;
+    }
+
+    /**
+     * @return Current {@link Mode}
+     */
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Give the target score to reach in the current {@link Mode}
+     *
+     * @param target Target score in {@link Mode#NORMAL}
+     * @return target, raised by producer.overload.targetstep from {@link Mode#RAISE_TARGET}
+     */
+    int target(int target) {
+        return mode.compareTo(Mode.RAISE_TARGET) >= 0 ? target + targetStep : target;
+    }
+
+    /**
+     * Check if an {@link Event} must be dropped without being scored in the current {@link Mode}
+     *
+     * @param event {@link Event} taken from {@link DataQueue}
+     * @return True if event is from a low priority source from {@link Mode#SKIP_LOW_PRIORITY}, or if it's not sampled
+     * in {@link Mode#SAMPLE}
+     * @throws NullPointerException if event is null
+     */
+    boolean shed(Event event) {
+        Objects.requireNonNull(event);
+        Mode current = mode;
+        if (current.compareTo(Mode.SKIP_LOW_PRIORITY) >= 0 && lowPriority.contains(event.getSource())) {
+            return true;
+        }
+        return current == Mode.SAMPLE && sampled.incrementAndGet() % sample != 0;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+
+import java.util.Objects;
+
+/**
+ * Packaged {@link Event} to apply metrics in {@link DataQueue}
+ *
+ * @author ikb4stream
+ * @version 1.0
+ */
+class PackagedEvent {
+    /**
+     * Arrival time in {@link DataQueue}
+     *
+     * @see DataQueue#push(Event)
+     * @see DataQueue#pop()
+     */
+    final long arrivedTime;
+    /**
+     * {@link Event} to package
+     *
+     * @see DataQueue#push(Event)
+     * @see DataQueue#pop()
+     */
+    final Event event;
+    /**
+     * Sequence given by a persistent {@link EventQueue}, -1 if the {@link EventQueue} is not persistent
+     *
+     * @see EventQueue#ack(PackagedEvent)
+     * @see WalEventQueue
+     */
+    final long sequence;
+
+    /**
+     * Create a {@link PackagedEvent} with {@link Event}
+     *
+     * @param event       {@link Event} to package before insertion in {@link DataQueue}
+     * @param arrivedTime Arrival time in {@link DataQueue}
+     * @throws NullPointerException if event is null
+     * @see Event
+     */
+    PackagedEvent(Event event, long arrivedTime) {
+        this(event, arrivedTime, -1);
+    }
+
+    /**
+     * Create a {@link PackagedEvent} read from a persistent {@link EventQueue}
+     *
+     * @param event       {@link Event} to package
+     * @param arrivedTime Arrival time in {@link DataQueue}
+     * @param sequence    Sequence in the persistent {@link EventQueue}
+     * @throws NullPointerException if event is null
+     * @see Event
+     */
+    PackagedEvent(Event event, long arrivedTime, long sequence) {
+        Objects.requireNonNull(event);
+        this.event = event;
+        this.arrivedTime = arrivedTime;
+        this.sequence = sequence;
+    }
+}
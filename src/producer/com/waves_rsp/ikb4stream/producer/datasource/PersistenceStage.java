@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.producer.DatabaseWriter;
+import com.waves_rsp.ikb4stream.producer.model.DatabaseWriterCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Persistence stage of the producer: {@link DataConsumer} score {@link Event} then hand kept ones to this stage, whose
+ * own threads write them with {@link DatabaseWriter}. Waiting for mongodb thus never holds a scoring thread. With 0
+ * thread, {@link Event} are written by the scoring thread itself.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DataConsumer
+ * @see ProducerManager
+ */
+class PersistenceStage {
+    /**
+     * Object to add metrics from this class
+     *
+     * @see PersistenceStage#submit(List, List)
+     * @see PersistenceStage#persist(ScoredEvents)
+     * @see MetricsLogger#log(Map)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceStage.class);
+    /**
+     * {@link DataQueue} in which written {@link Event} are acknowledged
+     *
+     * @see PersistenceStage#persist(ScoredEvents)
+     */
+    private final DataQueue dataQueue;
+    /**
+     * {@link EventWriter} to write {@link Event} in database
+     *
+     * @see PersistenceStage#persist(ScoredEvents)
+     */
+    private final EventWriter eventWriter;
+    /**
+     * Scored {@link Event} waiting to be written, null if they are written by the scoring thread
+     *
+     * @see PersistenceStage#submit(List, List)
+     */
+    private final BlockingQueue<ScoredEvents> queue;
+    /**
+     * Number of threads writing {@link Event}
+     *
+     * @see PersistenceStage#start()
+     */
+    private final int nbThread;
+    /**
+     * Threads of this stage
+     *
+     * @see PersistenceStage#start()
+     * @see PersistenceStage#stop()
+     */
+    private final List<Thread> threads = new ArrayList<>();
+    /**
+     * Time in milliseconds between the start of a write and its acknowledgement by the database
+     *
+     * @see PersistenceStage#persist(ScoredEvents)
+     * @see PersistenceStage#getWriteCounter()
+     */
+    private final MeanCounter writeCounter = new MeanCounter();
+
+    /**
+     * Create a {@link PersistenceStage}
+     *
+     * @param dataQueue   {@link DataQueue} in which written {@link Event} are acknowledged
+     * @param eventWriter {@link EventWriter} to write {@link Event}
+     * @param nbThread    Number of threads writing {@link Event}, 0 to write them from the scoring thread
+     * @param capacity    Max number of scored batches waiting to be written
+     * @throws NullPointerException     if dataQueue or eventWriter is null
+     * @throws IllegalArgumentException if nbThread is negative or capacity is lower than 1
+     */
+    PersistenceStage(DataQueue dataQueue, EventWriter eventWriter, int nbThread, int capacity) {
+        Objects.requireNonNull(dataQueue);
+        Objects.requireNonNull(eventWriter);
+        if (nbThread < 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid number of threads or capacity of persistence stage");
+        }
+        this.dataQueue = dataQueue;
+        this.eventWriter = eventWriter;
+        this.nbThread = nbThread;
+        this.queue = nbThread == 0 ? null : new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Create a {@link PersistenceStage} writing with {@link DatabaseWriter}, sized by producer.persist.thread and
+     * producer.persist.sizequeue
+     *
+     * @param dataQueue {@link DataQueue} in which written {@link Event} are acknowledged
+     * @return {@link PersistenceStage}
+     * @throws NullPointerException if dataQueue is null
+     */
+    static PersistenceStage createPersistenceStage(DataQueue dataQueue) {
+        PropertiesManager propertiesManager = PropertiesManager.getInstance(PersistenceStage.class, "resources/config.properties");
+        int nbThread = 2;
+        int capacity = 100;
+        try {
+            nbThread = Math.max(0, Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.persist.thread", "2")));
+            capacity = Math.max(1, Integer.parseInt(propertiesManager.getPropertyOrDefault("producer.persist.sizequeue", "100")));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.persist.thread or producer.persist.sizequeue is not a number, use default value");
+        }
+        DatabaseWriter databaseWriter = DatabaseWriter.getInstance();
+        return new PersistenceStage(dataQueue, (events, callback) -> {
+            if (events.size() == 1) {
+                databaseWriter.insertEvent(events.get(0), callback);
+            } else {
+                databaseWriter.insertEvents(events, callback);
+            }
+        }, nbThread, capacity);
+    }
+
+    /**
+     * Launch threads of this stage
+     *
+     * @see PersistenceStage#threads
+     */
+    void start() {
+        for (int i = 0; i < nbThread; i++) {
+            Thread thread = new Thread(this::run);
+            thread.setName("Persistence " + (i + 1));
+            thread.start();
+            threads.add(thread);
+        }
+        LOGGER.info("{} persistence thread(s) has been launched", nbThread);
+    }
+
+    /**
+     * Hand scored {@link Event} to this stage, wait if too many of them are waiting to be written
+     *
+     * @param events     Scored {@link Event} to write
+     * @param packEvents {@link PackagedEvent} to acknowledge once events are written
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @throws NullPointerException if events or packEvents is null
+     * @see PersistenceStage#queue
+     */
+    void submit(List<Event> events, List<PackagedEvent> packEvents) throws InterruptedException {
+        ScoredEvents scoredEvents = new ScoredEvents(events, packEvents);
+        if (queue == null) {
+            persist(scoredEvents);
+            return;
+        }
+        queue.put(scoredEvents);
+        METRICS_LOGGER.log("stage_persist_size", queue.size());
+    }
+
+    /**
+     * @return {@link MeanCounter} of the time in milliseconds the database takes to acknowledge a write
+     */
+    MeanCounter getWriteCounter() {
+        return writeCounter;
+    }
+
+    /**
+     * @return true if no scored {@link Event} is waiting to be written
+     */
+    boolean isEmpty() {
+        return queue == null || queue.isEmpty();
+    }
+
+    /**
+     * Interrupt threads of this stage and wait for them
+     *
+     * @see PersistenceStage#threads
+     */
+    void stop() {
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                LOGGER.error(e.getMessage());
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        threads.clear();
+    }
+
+    /**
+     * Loop of a thread of this stage
+     *
+     * @see PersistenceStage#queue
+     */
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                persist(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Write scored {@link Event}, their {@link PackagedEvent} are acknowledged once written and given back to
+     * {@link DataQueue#nack(PackagedEvent)} if the write failed, so a persistent queue doesn't keep them until a restart
+     *
+     * @param scoredEvents {@link ScoredEvents} to write
+     * @see PersistenceStage#eventWriter
+     * @see PersistenceStage#dataQueue
+     * @see PersistenceStage#writeCounter
+     */
+    private void persist(ScoredEvents scoredEvents) {
+        long start = System.currentTimeMillis();
+        DatabaseWriterCallback callback = t -> {
+            writeCounter.add(System.currentTimeMillis() - start, 1);
+            if (t != null) {
+                LOGGER.error(t.getMessage());
+                scoredEvents.packEvents.forEach(dataQueue::nack);
+            } else {
+                scoredEvents.packEvents.forEach(dataQueue::ack);
+            }
+        };
+        eventWriter.write(scoredEvents.events, callback);
+        Map<String, Long> fields = new HashMap<>();
+        fields.put("stage_persist_wait", start - scoredEvents.submittedTime);
+        fields.put("stage_persist_time", System.currentTimeMillis() - start);
+        METRICS_LOGGER.log(fields);
+    }
+
+    /**
+     * Write of scored {@link Event} in database, done by {@link DatabaseWriter} outside tests
+     *
+     * @see PersistenceStage#createPersistenceStage(DataQueue)
+     */
+    @FunctionalInterface
+    interface EventWriter {
+        /**
+         * Write {@link Event} and call callback once the database acknowledged them
+         *
+         * @param events   {@link Event} to write, at least one
+         * @param callback {@link DatabaseWriterCallback} called with the error, or null once written
+         */
+        void write(List<Event> events, DatabaseWriterCallback callback);
+    }
+
+    /**
+     * Scored {@link Event} waiting to be written
+     */
+    private static final class ScoredEvents {
+        /**
+         * Scored {@link Event} to write
+         */
+        private final List<Event> events;
+        /**
+         * {@link PackagedEvent} to acknowledge once written
+         */
+        private final List<PackagedEvent> packEvents;
+        /**
+         * Time when this batch has been handed to the stage
+         */
+        private final long submittedTime = System.currentTimeMillis();
+
+        /**
+         * Create a {@link ScoredEvents}
+         *
+         * @param events     Scored {@link Event} to write
+         * @param packEvents {@link PackagedEvent} to acknowledge once written
+         * @throws NullPointerException if one of params is null
+         */
+        private ScoredEvents(List<Event> events, List<PackagedEvent> packEvents) {
+            this.events = Objects.requireNonNull(events);
+            this.packEvents = Objects.requireNonNull(packEvents);
+        }
+    }
+}
@@ -19,9 +19,15 @@
 package com.waves_rsp.ikb4stream.producer.datasource;
 
 import com.waves_rsp.ikb4stream.core.datasource.model.IProducerConnector;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
+import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
 import com.waves_rsp.ikb4stream.core.util.ClassManager;
 import com.waves_rsp.ikb4stream.core.util.JarLoader;
+import com.waves_rsp.ikb4stream.core.util.ModuleWatcher;
+import com.waves_rsp.ikb4stream.core.util.ThreadMode;
+import com.waves_rsp.ikb4stream.producer.DatabaseWriter;
+import com.waves_rsp.ikb4stream.producer.score.ScoreProcessorManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,11 +40,16 @@ import java.nio.file.Paths;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
- * Object which manage all {@link IProducerConnector} and {@link DataConsumer}
+ * Object which manage all {@link IProducerConnector}, the scoring stage ({@link DataConsumer}) and the
+ * {@link PersistenceStage}. With producer.reload.enable, jars of producer.path and scoreprocessor.path are watched and
+ * reloaded in new ClassLoaders when they change, without restart.
  *
  * @author ikb4stream
  * @version 1.0
@@ -62,33 +73,68 @@ public class ProducerManager {
      * @see ProducerManager#getInstance()
      */
     private static final ProducerManager PRODUCER_MANAGER = new ProducerManager();
+    /**
+     * Max time in milliseconds to wait the threads of a module which is reloaded
+     *
+     * @see ProducerManager#retire(Module)
+     */
+    private static final long RETIRE_TIMEOUT_MS = 10_000;
     /**
      * ClassLoader of {@link ProducerManager}
      *
-     * @see ProducerManager#launchModule(JarLoader)
+     * @see ProducerManager#launchModule(Path)
      */
     private final ClassLoader parent = ProducerManager.class.getClassLoader();
     /**
-     * List of Thread for each {@link IProducerConnector}
+     * {@link ThreadMode} of connectors and consumers, read from producer.thread.mode
+     *
+     * @see ProducerManager#launchModule(Path)
+     * @see ProducerManager#launchDataConsumer()
+     */
+    private final ThreadMode threadMode = ThreadMode.fromProperty(PROPERTIES_MANAGER, "producer.thread.mode");
+    /**
+     * Running {@link IProducerConnector} of each module, by path of its jar
+     *
+     * @see ProducerManager#launchModule(Path)
+     * @see ProducerManager#reloadModule(Path)
+     * @see ProducerManager#stop()
+     */
+    private final Map<Path, Module> modules = new HashMap<>();
+    /**
+     * {@link ModuleWatcher} of producer.path and scoreprocessor.path, empty without producer.reload.enable
      *
-     * @see ProducerManager#launchModule(JarLoader)
+     * @see ProducerManager#launchWatchers()
      * @see ProducerManager#stop()
      */
-    private final List<Thread> producerConnectors = new ArrayList<>();
+    private final List<ModuleWatcher> watchers = new ArrayList<>();
+    /**
+     * {@link ConnectorScheduler} polling each {@link IScheduledProducerConnector}
+     *
+     * @see ProducerManager#launchModule(Path)
+     * @see ProducerManager#stop()
+     */
+    private ConnectorScheduler connectorScheduler;
     /**
      * Single instance of {@link DataQueue}
      *
-     * @see ProducerManager#launchModule(JarLoader)
+     * @see ProducerManager#launchModule(Path)
      * @see ProducerManager#stop()
      */
     private final DataQueue dataQueue = DataQueue.createDataQueue();
     /**
-     * List of Thread for each {@link DataConsumer}
+     * {@link ConsumerPool} running {@link DataConsumer}
      *
      * @see ProducerManager#launchDataConsumer()
      * @see ProducerManager#stop()
      */
-    private final List<Thread> dataConsumers = new ArrayList<>();
+    private ConsumerPool consumerPool;
+    /**
+     * {@link PersistenceStage} fed by {@link DataConsumer}
+     *
+     * @see ProducerManager#launchDataConsumer()
+     * @see ProducerManager#stop()
+     */
+    private PersistenceStage persistenceStage;
 
     /**
      * Private constructor to block instantiation
@@ -112,51 +158,41 @@ public class ProducerManager {
      *
      * @see ProducerManager#launchDataProducer()
      * @see ProducerManager#launchDataConsumer()
+     * @see ProducerManager#launchWatchers()
      */
     public void instantiate() {
         launchDataConsumer();
         launchDataProducer();
+        launchWatchers();
     }
 
     /**
-     * Launch all consumers
+     * Launch the {@link PersistenceStage} and the {@link ConsumerPool}
      *
      * @see ProducerManager#PRODUCER_MANAGER
-     * @see ProducerManager#dataConsumers
+     * @see ProducerManager#consumerPool
+     * @see ProducerManager#persistenceStage
      */
     private void launchDataConsumer() {
-        int nbThreadConsumer = 10;
-        try {
-            nbThreadConsumer = Integer.parseInt(PROPERTIES_MANAGER.getProperty("producer.thread"));
-        } catch (IllegalArgumentException e) {
-            LOGGER.warn("Use default value for producer.thread");
-        }
-
-        LOGGER.info(nbThreadConsumer + " consumer will be launch");
-
-        for (int i = 0; i < nbThreadConsumer; i++) {
-            Thread thread = new Thread(() -> {
-                DataConsumer dataConsumer = DataConsumer.createDataConsumer(dataQueue);
-                dataConsumer.consume();
-            });
-            thread.setName("Consumer " + (i + 1));
-            thread.start();
-            dataConsumers.add(thread);
-        }
-        LOGGER.info(nbThreadConsumer + " consumer(s) has been launched");
+        persistenceStage = PersistenceStage.createPersistenceStage(dataQueue);
+        persistenceStage.start();
+        consumerPool = new ConsumerPool(dataQueue, persistenceStage, threadMode);
+        consumerPool.start();
     }
 
     /**
      * Launch all producers
+     *
+     * @see ProducerManager#connectorScheduler
      */
     private void launchDataProducer() {
+        connectorScheduler = new ConnectorScheduler(threadMode);
         String stringPath = getPathProducerConnector();
         if (stringPath == null) return;
         try (Stream<Path> paths = Files.walk(Paths.get(stringPath))) {
             paths.forEach((Path filePath) -> {
                 if (Files.isRegularFile(filePath)) {
-                    JarLoader jarLoader = JarLoader.createJarLoader(filePath.toString());
-                    launchModule(jarLoader);
+                    launchModule(filePath);
                 }
             });
         } catch (IOException e) {
@@ -164,6 +200,125 @@ public class ProducerManager {
         }
     }
 
+    /**
+     * Watch producer.path and scoreprocessor.path if producer.reload.enable is true, a jar is reloaded once it hasn't
+     * changed for producer.reload.delayms (by default 2000)
+     *
+     * @see ProducerManager#watchers
+     * @see ProducerManager#reloadModule(Path)
+     * @see ScoreProcessorManager#reloadModule(Path)
+     */
+    private void launchWatchers() {
+        if (!Boolean.parseBoolean(PROPERTIES_MANAGER.getPropertyOrDefault("producer.reload.enable", "false"))) {
+            return;
+        }
+        long delayMs = 2000;
+        try {
+            delayMs = Long.parseLong(PROPERTIES_MANAGER.getPropertyOrDefault("producer.reload.delayms", "2000"));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("producer.reload.delayms is not a number, use default value");
+        }
+        launchWatcher(getPathProducerConnector(), delayMs, this::reloadModule, this::unloadModule);
+        launchWatcher(PROPERTIES_MANAGER.getPropertyOrDefault("scoreprocessor.path", null), delayMs,
+                ScoreProcessorManager::reloadModule, ScoreProcessorManager::unloadModule);
+    }
+
+    /**
+     * Watch a directory of modules
+     *
+     * @param directory Directory to watch, nothing is done if it's null
+     * @param delayMs   Time in milliseconds a jar must stay unchanged before being reloaded
+     * @param onChange  Callback of a jar created or modified
+     * @param onDelete  Callback of a jar deleted
+     * @see ProducerManager#watchers
+     */
+    private void launchWatcher(String directory, long delayMs, Consumer<Path> onChange, Consumer<Path> onDelete) {
+        if (directory == null) return;
+        try {
+            ModuleWatcher watcher = new ModuleWatcher(Paths.get(directory), delayMs, onChange, onDelete);
+            watcher.start("Module watcher " + directory);
+            watchers.add(watcher);
+            LOGGER.info("Modules of {} are reloaded when they change", directory);
+        } catch (IOException e) {
+            LOGGER.error("Cannot watch {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the {@link IProducerConnector} of a module, then load it again in a new ClassLoader
+     *
+     * @param jar Path of the jar of the module
+     * @throws NullPointerException if jar is null
+     * @see ProducerManager#retire(Module)
+     * @see ProducerManager#launchModule(Path)
+     */
+    void reloadModule(Path jar) {
+        Path key = jar.toAbsolutePath().normalize();
+        synchronized (modules) {
+            retire(modules.remove(key));
+            launchModule(key);
+        }
+        LOGGER.info("{} reloaded", key);
+    }
+
+    /**
+     * Stop the {@link IProducerConnector} of a module
+     *
+     * @param jar Path of the jar of the module
+     * @throws NullPointerException if jar is null
+     * @see ProducerManager#retire(Module)
+     */
+    void unloadModule(Path jar) {
+        Path key = jar.toAbsolutePath().normalize();
+        synchronized (modules) {
+            retire(modules.remove(key));
+        }
+        LOGGER.info("{} unloaded", key);
+    }
+
+    /**
+     * Stop {@link IProducerConnector} of a module: scheduled ones aren't polled anymore, a running poll ends normally,
+     * the others are interrupted. Both are waited up to {@link ProducerManager#RETIRE_TIMEOUT_MS} so that
+     * {@link Event} they are pushing reach the {@link DataQueue}, then the ClassLoader of the module is closed. It's
+     * kept open if one of them is still running, as it may still load classes.
+     *
+     * @param module {@link Module} to stop, nothing is done if it's null
+     * @see ConnectorScheduler#unschedule(IScheduledProducerConnector, long)
+     */
+    private void retire(Module module) {
+        if (module == null) return;
+        module.threads.forEach(Thread::interrupt);
+        long deadline = System.currentTimeMillis() + RETIRE_TIMEOUT_MS;
+        boolean finished = true;
+        try {
+            for (IScheduledProducerConnector connector : module.scheduled) {
+                if (!connectorScheduler.unschedule(connector, Math.max(1, deadline - System.currentTimeMillis()))) {
+                    LOGGER.warn("Poll of {} is still running after {} ms", connector.getClass().getSimpleName(), RETIRE_TIMEOUT_MS);
+                    finished = false;
+                }
+            }
+            for (Thread thread : module.threads) {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+                if (thread.isAlive()) {
+                    LOGGER.warn("{} is still running after {} ms", thread.getName(), RETIRE_TIMEOUT_MS);
+                    finished = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        if (!finished) {
+            LOGGER.warn("ClassLoader of a retired module is kept open");
+            return;
+        }
+        try {
+            module.classLoader.close();
+        } catch (IOException e) {
+            LOGGER.warn("ClassLoader of a retired module cannot be closed: {}", e.getMessage());
+        }
+    }
+
     /**
      * Get path where ProducerConnector are store
      *
@@ -182,56 +337,126 @@ public class ProducerManager {
     /**
      * Launch module
      *
-     * @param jarLoader {@link JarLoader} that represents module
-     * @see ProducerManager#producerConnectors
+     * @param jar Path of the jar of the module, an {@link IScheduledProducerConnector} is polled by
+     *            {@link ProducerManager#connectorScheduler}, another {@link IProducerConnector} gets its own thread
+     * @see ProducerManager#modules
+     * @see ProducerManager#connectorScheduler
+     * @see ProducerManager#threadMode
      * @see ProducerManager#dataQueue
      * @see ProducerManager#parent
      */
-    private void launchModule(JarLoader jarLoader) {
+    private void launchModule(Path jar) {
+        JarLoader jarLoader = JarLoader.createJarLoader(jar.toString());
         if (jarLoader != null) {
             List<URL> urls = jarLoader.getUrls();
-            ClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<ClassLoader>) () -> new URLClassLoader(urls.toArray(new URL[urls.size()]), parent));
+            URLClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<URLClassLoader>) () -> new URLClassLoader(urls.toArray(new URL[urls.size()]), parent));
+            Module module = new Module(classLoader);
             jarLoader.getClasses().stream()
                     .map(c -> ClassManager.loadClass(c, classLoader))
                     .filter(c -> ClassManager.implementInterface(c, IProducerConnector.class))
                     .forEach(clazz -> {
                         try {
                             IProducerConnector producerConnector = (IProducerConnector) ClassManager.newInstance(clazz);
-                            if (producerConnector.isActive()) {
-                                Thread thread = new Thread(() -> producerConnector.load(new DataProducer(dataQueue)));
+                            if (producerConnector.isActive() && producerConnector instanceof IScheduledProducerConnector) {
+                                connectorScheduler.schedule((IScheduledProducerConnector) producerConnector, new DataProducer(dataQueue), classLoader);
+                                module.scheduled.add((IScheduledProducerConnector) producerConnector);
+                            } else if (producerConnector.isActive()) {
+                                Thread thread = threadMode.newThread(() -> producerConnector.load(new DataProducer(dataQueue)), producerConnector.getClass().getName());
                                 thread.setContextClassLoader(classLoader);
-                                thread.setName(producerConnector.getClass().getName());
                                 thread.start();
-                                producerConnectors.add(thread);
+                                module.threads.add(thread);
                             }
                         } catch (Exception e) {
                             LOGGER.error("Error during instantiate {} : {}", clazz.getName(), e.getMessage());
                         }
                     });
+            synchronized (modules) {
+                modules.put(jar.toAbsolutePath().normalize(), module);
+            }
         }
     }
 
     /**
-     * Stop producer and consumer when dataQueue is empty
+     * Stop producer and consumer when dataQueue is empty, then the {@link PersistenceStage} once it has nothing left to
+     * write. A persistent dataQueue isn't drained: {@link Event} not acknowledged are delivered again at next startup.
      *
-     * @see ProducerManager#producerConnectors
-     * @see ProducerManager#dataConsumers
+     * @see ProducerManager#watchers
+     * @see ProducerManager#modules
+     * @see ProducerManager#connectorScheduler
+     * @see ProducerManager#consumerPool
+     * @see ProducerManager#persistenceStage
      * @see ProducerManager#dataQueue
+     * @see DatabaseWriter#close()
      */
     public void stop() {
-        producerConnectors.forEach(Thread::interrupt);
+        watchers.forEach(ModuleWatcher::stop);
+        synchronized (modules) {
+            modules.values().forEach(module -> module.threads.forEach(Thread::interrupt));
+        }
+        if (connectorScheduler != null) {
+            connectorScheduler.stop();
+        }
         LOGGER.info("All producer has been stopped");
-        // Wait the DataQueue is Empty
-        LOGGER.info("Wait producers finished to clear the DataQueue");
-        while (!dataQueue.isEmpty()) {
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                LOGGER.error(e.getMessage());
-                Thread.currentThread().interrupt();
+        if (!dataQueue.isPersistent()) {
+            // Wait the DataQueue is Empty
+            LOGGER.info("Wait producers finished to clear the DataQueue");
+            while (!dataQueue.isEmpty()) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    LOGGER.error(e.getMessage());
+                    Thread.currentThread().interrupt();
+                }
             }
         }
-        dataConsumers.forEach(Thread::interrupt);
+        if (consumerPool != null) {
+            consumerPool.stop();
+        }
         LOGGER.info("All consumers has been stopped");
+        if (persistenceStage != null) {
+            while (!dataQueue.isPersistent() && !persistenceStage.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    LOGGER.error(e.getMessage());
+                    Thread.currentThread().interrupt();
+                }
+            }
+            persistenceStage.stop();
+            LOGGER.info("Persistence stage has been stopped");
+        }
+        DatabaseWriter.getInstance().close();
+        dataQueue.close();
+    }
+
+    /**
+     * {@link IProducerConnector} launched from a jar
+     *
+     * @see ProducerManager#modules
+     */
+    private static class Module {
+        /**
+         * Threads of {@link IProducerConnector} which aren't scheduled
+         */
+        private final List<Thread> threads = new ArrayList<>();
+        /**
+         * {@link IScheduledProducerConnector} polled by {@link ProducerManager#connectorScheduler}
+         */
+        private final List<IScheduledProducerConnector> scheduled = new ArrayList<>();
+        /**
+         * ClassLoader of the jar, closed once the module is retired
+         *
+         * @see ProducerManager#retire(Module)
+         */
+        private final URLClassLoader classLoader;
+
+        /**
+         * Create a module
+         *
+         * @param classLoader ClassLoader of the jar
+         */
+        private Module(URLClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free bounded {@link EventQueue} which accepts many producers and many consumers.
+ * Slots are preallocated in a ring, each slot owns a sequence counter which tells if it is free for the producer
+ * at this position or ready for the consumer at this position. Producers and consumers only compete on a CAS of
+ * {@link RingBufferEventQueue#tail} or {@link RingBufferEventQueue#head}, and a consumer can claim several slots
+ * with a single CAS in {@link RingBufferEventQueue#drainTo(Collection, int)}.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see EventQueue
+ */
+class RingBufferEventQueue implements EventQueue {
+    /**
+     * Number of busy spins of an idle consumer before yielding
+     *
+     * @see RingBufferEventQueue#idle(int)
+     */
+    private static final int SPIN_TRIES = 100;
+    /**
+     * Number of yields of an idle consumer before parking
+     *
+     * @see RingBufferEventQueue#idle(int)
+     */
+    private static final int YIELD_TRIES = 100;
+    /**
+     * Max time an idle consumer parks before checking again the ring
+     *
+     * @see RingBufferEventQueue#idle(int)
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Preallocated slots of the ring
+     *
+     * @see RingBufferEventQueue#offer(PackagedEvent)
+     * @see RingBufferEventQueue#drainTo(Collection, int)
+     */
+    private final PackagedEvent[] slots;
+    /**
+     * Sequence of each slot: equals to position when the slot is free for the producer at this position,
+     * position + 1 when the slot is ready for the consumer at this position
+     *
+     * @see RingBufferEventQueue#offer(PackagedEvent)
+     * @see RingBufferEventQueue#drainTo(Collection, int)
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * Mask to get index of a position in {@link RingBufferEventQueue#slots}
+     */
+    private final int mask;
+    /**
+     * Next position to consume
+     *
+     * @see RingBufferEventQueue#drainTo(Collection, int)
+     * @see RingBufferEventQueue#poll()
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Next position to produce
+     *
+     * @see RingBufferEventQueue#offer(PackagedEvent)
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Create a {@link RingBufferEventQueue}, capacity is rounded up to the next power of two and is at least 2 as a
+     * single slot cannot tell a full ring from an empty one
+     *
+     * @param capacity Min number of {@link PackagedEvent} stored
+     * @throws IllegalArgumentException if capacity is not between 1 and 2^30
+     */
+    RingBufferEventQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity of ring must be between 1 and 2^30.");
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new PackagedEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claim the next free slot and publish packagedEvent into it
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @return false if the ring is full
+     * @throws NullPointerException if packagedEvent is null
+     * @see RingBufferEventQueue#tail
+     * @see RingBufferEventQueue#sequences
+     */
+    @Override
+    public boolean offer(PackagedEvent packagedEvent) {
+        Objects.requireNonNull(packagedEvent);
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = packagedEvent;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    /**
+     * Wait until a {@link PackagedEvent} is published and remove it
+     *
+     * @return The oldest {@link PackagedEvent}
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @see RingBufferEventQueue#poll()
+     */
+    @Override
+    public PackagedEvent take() throws InterruptedException {
+        int idleCount = 0;
+        while (true) {
+            PackagedEvent packagedEvent = poll();
+            if (packagedEvent != null) {
+                return packagedEvent;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            idleCount = idle(idleCount);
+        }
+    }
+
+    /**
+     * Wait at most timeout until a {@link PackagedEvent} is published and remove it
+     *
+     * @param timeout Max time to wait
+     * @param unit    {@link TimeUnit} of timeout
+     * @return The oldest {@link PackagedEvent} or null if timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @throws NullPointerException if unit is null
+     * @see RingBufferEventQueue#poll()
+     */
+    @Override
+    public PackagedEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(unit);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idleCount = 0;
+        while (true) {
+            PackagedEvent packagedEvent = poll();
+            if (packagedEvent != null || System.nanoTime() - deadline >= 0) {
+                return packagedEvent;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            idleCount = idle(idleCount);
+        }
+    }
+
+    /**
+     * Claim with a single CAS every published slot from {@link RingBufferEventQueue#head}, up to max
+     *
+     * @param collection Collection which receives {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to remove
+     * @return Number of {@link PackagedEvent} moved into collection
+     * @throws NullPointerException if collection is null
+     * @see RingBufferEventQueue#head
+     * @see RingBufferEventQueue#sequences
+     */
+    @Override
+    public int drainTo(Collection<? super PackagedEvent> collection, int max) {
+        Objects.requireNonNull(collection);
+        while (true) {
+            long position = head.get();
+            int count = 0;
+            while (count < max && sequences.get((int) (position + count) & mask) == position + count + 1) {
+                count++;
+            }
+            if (count == 0) {
+                return 0;
+            }
+            if (head.compareAndSet(position, position + count)) {
+                for (int i = 0; i < count; i++) {
+                    collection.add(release(position + i));
+                }
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Number of claimed slots, a slot claimed by a producer but not yet published is counted
+     *
+     * @return Number of {@link PackagedEvent} in the ring
+     * @see RingBufferEventQueue#head
+     * @see RingBufferEventQueue#tail
+     */
+    @Override
+    public int size() {
+        long consumed = head.get();
+        long produced = tail.get();
+        return (int) Math.min(produced - consumed, slots.length);
+    }
+
+    /**
+     * Remove a single {@link PackagedEvent} without waiting
+     *
+     * @return The oldest {@link PackagedEvent} or null if there isn't a published slot
+     * @see RingBufferEventQueue#head
+     */
+    private PackagedEvent poll() {
+        long position = head.get();
+        while (true) {
+            long diff = sequences.get((int) position & mask) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    return release(position);
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    /**
+     * Read a slot owned by the current consumer and give it back to producers of the next lap
+     *
+     * @param position Position claimed by the current consumer
+     * @return {@link PackagedEvent} stored at this position
+     */
+    private PackagedEvent release(long position) {
+        int index = (int) position & mask;
+        PackagedEvent packagedEvent = slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, position + slots.length);
+        return packagedEvent;
+    }
+
+    /**
+     * Back off an idle consumer: spin, then yield, then park with an exponential delay
+     *
+     * @param idleCount Number of times the consumer has already been idle
+     * @return New idle count
+     * @see RingBufferEventQueue#SPIN_TRIES
+     * @see RingBufferEventQueue#YIELD_TRIES
+     * @see RingBufferEventQueue#MAX_PARK_NANOS
+     */
+    private static int idle(int idleCount) {
+        if (idleCount < SPIN_TRIES) {
+            return idleCount + 1;
+        }
+        if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+            return idleCount + 1;
+        }
+        int shift = idleCount - SPIN_TRIES - YIELD_TRIES;
+        LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << shift));
+        return shift < 10 ? idleCount + 1 : idleCount;
+    }
+}
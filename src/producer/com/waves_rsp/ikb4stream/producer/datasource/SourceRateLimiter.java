@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Admission control of {@link DataProducer}: each source has a token bucket refilled with producer.ratelimit.rate
+ * {@link Event} per second and holding at most producer.ratelimit.burst tokens. An {@link Event} without token is
+ * rejected and counted in event_ratelimited, unless producer.ratelimit.sample is set: one {@link Event} out of this
+ * number is then let through anyway and counted in event_ratelimit_sampled. So a noisy source can't fill
+ * {@link DataQueue} at the expense of the other ones. All settings can be set for a single source with
+ * producer.ratelimit.&lt;source&gt;.&lt;name&gt;, a rate of 0 (default) means no limit.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see DataProducer
+ */
+class SourceRateLimiter {
+    /**
+     * Object to add metrics from this class
+     *
+     * @see SourceRateLimiter#admit(Event, long)
+     * @see MetricsLogger#log(String, String)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceRateLimiter.class);
+    /**
+     * Single instance of {@link SourceRateLimiter} shared by all {@link DataProducer}
+     *
+     * @see SourceRateLimiter#getInstance()
+     */
+    private static final SourceRateLimiter SOURCE_RATE_LIMITER = new SourceRateLimiter(
+            source -> DataQueue.sourceProperty("producer.ratelimit", source, "rate", 0),
+            source -> DataQueue.sourceProperty("producer.ratelimit", source, "burst", 0),
+            source -> DataQueue.sourceProperty("producer.ratelimit", source, "sample", 0));
+    /**
+     * {@link TokenBucket} of each source, {@link TokenBucket#UNLIMITED} if the source has no limit
+     */
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    /**
+     * Number of {@link Event} per second of a source
+     */
+    private final ToLongFunction<String> rateOf;
+    /**
+     * Max number of tokens of a source, the rate if it's lower
+     */
+    private final ToLongFunction<String> burstOf;
+    /**
+     * One rejected {@link Event} out of this number is let through, 0 to reject all of them
+     */
+    private final ToLongFunction<String> sampleOf;
+
+    /**
+     * Create a {@link SourceRateLimiter}
+     *
+     * @param rateOf   Number of {@link Event} per second of a source, 0 for no limit
+     * @param burstOf  Max number of tokens of a source, at least the rate is used
+     * @param sampleOf One rejected {@link Event} out of this number is let through, 0 to reject all of them
+     * @throws NullPointerException if one of params is null
+     */
+    SourceRateLimiter(ToLongFunction<String> rateOf, ToLongFunction<String> burstOf, ToLongFunction<String> sampleOf) {
+        this.rateOf = Objects.requireNonNull(rateOf);
+        this.burstOf = Objects.requireNonNull(burstOf);
+        this.sampleOf = Objects.requireNonNull(sampleOf);
+    }
+
+    /**
+     * Get single instance of {@link SourceRateLimiter}, configured by producer.ratelimit settings
+     *
+     * @return Single instance of {@link SourceRateLimiter}
+     * @see SourceRateLimiter#SOURCE_RATE_LIMITER
+     */
+    static SourceRateLimiter getInstance() {
+        return SOURCE_RATE_LIMITER;
+    }
+
+    /**
+     * Check if an {@link Event} may be pushed in {@link DataQueue}
+     *
+     * @param event {@link Event} to push
+     * @return True if event may be pushed
+     * @throws NullPointerException if event is null
+     */
+    boolean admit(Event event) {
+        return admit(event, System.nanoTime());
+    }
+
+    /**
+     * Check if an {@link Event} may be pushed in {@link DataQueue}
+     *
+     * @param event    {@link Event} to push
+     * @param nowNanos Current time in nanoseconds, as given by {@link System#nanoTime()}
+     * @return True if event may be pushed
+     * @throws NullPointerException if event is null
+     * @see SourceRateLimiter#METRICS_LOGGER
+     */
+    boolean admit(Event event, long nowNanos) {
+        String source = event.getSource();
+        TokenBucket bucket = buckets.computeIfAbsent(source, s -> createBucket(s, nowNanos));
+        if (bucket == TokenBucket.UNLIMITED) {
+            return true;
+        }
+        switch (bucket.tryAcquire(nowNanos)) {
+            case ADMITTED:
+                return true;
+            case SAMPLED:
+                METRICS_LOGGER.log("event_ratelimit_sampled", source);
+                return true;
+            default:
+                METRICS_LOGGER.log("event_ratelimited", source);
+                LOGGER.debug("{} is over its rate limit", event);
+                return false;
+        }
+    }
+
+    /**
+     * Create the {@link TokenBucket} of a source, full
+     *
+     * @param source   Source of {@link Event}
+     * @param nowNanos Current time in nanoseconds
+     * @return {@link TokenBucket} of source
+     */
+    private TokenBucket createBucket(String source, long nowNanos) {
+        long rate = rateOf.applyAsLong(source);
+        if (rate <= 0) {
+            return TokenBucket.UNLIMITED;
+        }
+        long burst = Math.max(rate, burstOf.applyAsLong(source));
+        long sample = Math.max(0, sampleOf.applyAsLong(source));
+        LOGGER.info("{} is limited to {} events per second, burst of {}", source, rate, burst);
+        return new TokenBucket(rate, burst, sample, nowNanos);
+    }
+
+    /**
+     * Result of {@link TokenBucket#tryAcquire(long)}
+     */
+    private enum Admission {
+        /**
+         * A token has been taken
+         */
+        ADMITTED,
+        /**
+         * There was no token but the {@link Event} is let through as a sample
+         */
+        SAMPLED,
+        /**
+         * There was no token
+         */
+        REJECTED
+    }
+
+    /**
+     * Tokens of a source, refilled as time goes
+     */
+    private static final class TokenBucket {
+        /**
+         * Bucket of a source without limit
+         */
+        private static final TokenBucket UNLIMITED = new TokenBucket(1, 1, 0, 0);
+        /**
+         * Number of tokens added per nanosecond
+         */
+        private final double tokensPerNano;
+        /**
+         * Max number of tokens
+         */
+        private final long burst;
+        /**
+         * One rejected {@link Event} out of this number is let through, 0 to reject all of them
+         */
+        private final long sample;
+        /**
+         * Number of tokens available
+         */
+        private double tokens;
+        /**
+         * Time in nanoseconds tokens have been refilled
+         */
+        private long refillNanos;
+        /**
+         * Number of rejected {@link Event}, for sampling
+         */
+        private long rejected;
+
+        /**
+         * Create a full {@link TokenBucket}
+         *
+         * @param rate     Number of tokens per second
+         * @param burst    Max number of tokens
+         * @param sample   One rejected {@link Event} out of this number is let through, 0 to reject all of them
+         * @param nowNanos Current time in nanoseconds
+         */
+        private TokenBucket(long rate, long burst, long sample, long nowNanos) {
+            this.tokensPerNano = (double) rate / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.sample = sample;
+            this.tokens = burst;
+            this.refillNanos = nowNanos;
+        }
+
+        /**
+         * Take a token
+         *
+         * @param nowNanos Current time in nanoseconds
+         * @return {@link Admission} of the {@link Event}
+         */
+        private synchronized Admission tryAcquire(long nowNanos) {
+            long elapsed = nowNanos - refillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+                refillNanos = nowNanos;
+            }
+            if (tokens >= 1) {
+                tokens--;
+                return Admission.ADMITTED;
+            }
+            rejected++;
+            return sample > 0 && rejected % sample == 0 ? Admission.SAMPLED : Admission.REJECTED;
+        }
+    }
+}
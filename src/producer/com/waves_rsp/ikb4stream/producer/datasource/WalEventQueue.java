@@ -0,0 +1,1046 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent {@link EventQueue}: {@link PackagedEvent} are written in memory-mapped segment files and read back from
+ * them, so the queue can hold more {@link Event} than the heap. Each {@link PackagedEvent} taken from this queue must be
+ * given back to {@link WalEventQueue#ack(PackagedEvent)} once it's written in database. Acknowledged sequences are
+ * appended to an ack file next to their segment, a segment is deleted once all its records are acknowledged.
+ * At startup, records of a previous run which were never acknowledged are copied in new segments and delivered again,
+ * so delivery is at-least-once. A {@link PackagedEvent} given back to {@link WalEventQueue#nack(PackagedEvent)} is
+ * written again at the end of the log after a delay which doubles at each attempt, and dropped after
+ * {@link WalEventQueue#maxAttempts} attempts if it's set.
+ * <p>
+ * Record layout: int length, long sequence, long arrival time, then the {@link Event}: source, description (int length
+ * and UTF-8 bytes), start, end, score, number of {@link LatLong} and their latitude and longitude, then number of
+ * attributes and for each its name, a type byte and its value. Records without attributes are read as such.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see EventQueue
+ */
+class WalEventQueue implements EventQueue {
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WalEventQueue.class);
+    /**
+     * Object to add metrics from this class
+     *
+     * @see WalEventQueue#nack(PackagedEvent)
+     * @see MetricsLogger#log(String, String)
+     */
+    private static final MetricsLogger METRICS_LOGGER = MetricsLogger.getMetricsLogger();
+    /**
+     * Longest delay in milliseconds before a {@link PackagedEvent} given to {@link WalEventQueue#nack(PackagedEvent)}
+     * is delivered again
+     *
+     * @see WalEventQueue#redeliveryDelay(int)
+     */
+    private static final long MAX_REDELIVERY_MS = 300_000;
+    /**
+     * Constant value {@value SEGMENT_PREFIX}
+     */
+    private static final String SEGMENT_PREFIX = "wal-";
+    /**
+     * Constant value {@value SEGMENT_SUFFIX}
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+    /**
+     * Constant value {@value ACK_SUFFIX}
+     */
+    private static final String ACK_SUFFIX = ".ack";
+    /**
+     * Size of a record header: length, sequence and arrival time
+     */
+    private static final int HEADER_SIZE = 4 + 8 + 8;
+    /**
+     * Type byte of a String attribute
+     */
+    private static final byte ATTRIBUTE_STRING = 0;
+    /**
+     * Type byte of a Boolean attribute
+     */
+    private static final byte ATTRIBUTE_BOOLEAN = 1;
+    /**
+     * Type byte of a Long attribute
+     */
+    private static final byte ATTRIBUTE_LONG = 2;
+    /**
+     * Type byte of a Double attribute
+     */
+    private static final byte ATTRIBUTE_DOUBLE = 3;
+    /**
+     * Directory of segments
+     */
+    private final Path directory;
+    /**
+     * Size in bytes of a new segment
+     *
+     * @see WalEventQueue#roll(int)
+     */
+    private final int segmentSize;
+    /**
+     * Max number of {@link PackagedEvent} not taken yet
+     *
+     * @see WalEventQueue#offer(PackagedEvent)
+     */
+    private final int capacity;
+    /**
+     * Delay in milliseconds before the first redelivery of a {@link PackagedEvent} which could not be written
+     *
+     * @see WalEventQueue#redeliveryDelay(int)
+     */
+    private final long redeliveryMs;
+    /**
+     * Max number of failed attempts before a {@link PackagedEvent} is dropped, 0 never drops it
+     *
+     * @see WalEventQueue#nack(PackagedEvent)
+     */
+    private final int maxAttempts;
+    /**
+     * Clock in milliseconds
+     */
+    private final LongSupplier clock;
+    /**
+     * Records waiting for their redelivery, the next one first. Their old record stays unacknowledged until then, so
+     * they are delivered again after a restart.
+     *
+     * @see WalEventQueue#redeliver()
+     */
+    private final PriorityQueue<Retry> retries = new PriorityQueue<>(Comparator.comparingLong(retry -> retry.due));
+    /**
+     * Number of failed attempts of records written again by {@link WalEventQueue#redeliver()}, by sequence
+     *
+     * @see WalEventQueue#nack(PackagedEvent)
+     */
+    private final Map<Long, Integer> attempts = new HashMap<>();
+    /**
+     * Lock which protects segments and cursors
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signaled when a {@link PackagedEvent} is written
+     *
+     * @see WalEventQueue#take()
+     * @see WalEventQueue#poll(long, TimeUnit)
+     */
+    private final Condition notEmpty = lock.newCondition();
+    /**
+     * Segments not fully acknowledged, from the oldest to the newest which is written
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    /**
+     * Segment where the next {@link PackagedEvent} is read
+     */
+    private Segment readSegment;
+    /**
+     * Sequence of the next written record
+     */
+    private long nextSequence;
+    /**
+     * Number of {@link PackagedEvent} written and not taken yet
+     */
+    private int size;
+
+    /**
+     * Open a {@link WalEventQueue} in directory and deliver again records not acknowledged by a previous run
+     *
+     * @param directory   Directory of segments, created if needed
+     * @param segmentSize Size in bytes of a segment
+     * @param capacity    Max number of {@link PackagedEvent} not taken yet
+     * @throws IOException              if directory or segments cannot be read or written
+     * @throws NullPointerException     if directory is null
+     * @throws IllegalArgumentException if segmentSize or capacity is lower than 1
+     */
+    WalEventQueue(Path directory, int segmentSize, int capacity) throws IOException {
+        this(directory, segmentSize, capacity, 5000, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * Open a {@link WalEventQueue} in directory with a specific redelivery policy and clock
+     *
+     * @param directory    Directory of segments, created if needed
+     * @param segmentSize  Size in bytes of a segment
+     * @param capacity     Max number of {@link PackagedEvent} not taken yet
+     * @param redeliveryMs Delay in milliseconds before the first redelivery of a {@link PackagedEvent} not written
+     * @param maxAttempts  Max number of failed attempts before a {@link PackagedEvent} is dropped, 0 never drops it
+     * @param clock        Clock in milliseconds
+     * @throws IOException              if directory or segments cannot be read or written
+     * @throws NullPointerException     if directory or clock is null
+     * @throws IllegalArgumentException if segmentSize or capacity is lower than 1, or redeliveryMs or maxAttempts is negative
+     */
+    WalEventQueue(Path directory, int segmentSize, int capacity, long redeliveryMs, int maxAttempts, LongSupplier clock) throws IOException {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(clock);
+        if (segmentSize < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Segment size and capacity must be positive");
+        }
+        if (redeliveryMs < 0 || maxAttempts < 0) {
+            throw new IllegalArgumentException("Redelivery delay and max attempts cannot be negative");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.capacity = capacity;
+        this.redeliveryMs = redeliveryMs;
+        this.maxAttempts = maxAttempts;
+        this.clock = clock;
+        Files.createDirectories(directory);
+        lock.lock();
+        try {
+            recover();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write a {@link PackagedEvent} at the end of the log
+     *
+     * @param packagedEvent {@link PackagedEvent} to insert
+     * @return false if the queue is full or if a new segment cannot be created
+     * @throws NullPointerException if packagedEvent is null
+     */
+    @Override
+    public boolean offer(PackagedEvent packagedEvent) {
+        Objects.requireNonNull(packagedEvent);
+        ByteBuffer payload = encode(packagedEvent.event);
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                return false;
+            }
+            append(packagedEvent.arrivedTime, payload);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("{} cannot be written in WAL: {}", packagedEvent.event, e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a {@link PackagedEvent} is available and read it
+     *
+     * @return The oldest {@link PackagedEvent} not taken yet
+     * @throws InterruptedException if thread is interrupted while waiting
+     * @see WalEventQueue#redeliver()
+     */
+    @Override
+    public PackagedEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (redeliver() == 0) {
+                long next = nextRetryNanos();
+                if (next == Long.MAX_VALUE) {
+                    notEmpty.await();
+                } else {
+                    notEmpty.awaitNanos(next);
+                }
+            }
+            return read();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait at most timeout until a {@link PackagedEvent} is available and read it
+     *
+     * @param timeout Max time to wait
+     * @param unit    {@link TimeUnit} of timeout
+     * @return The oldest {@link PackagedEvent} not taken yet or null if timeout elapsed
+     * @throws InterruptedException if thread is interrupted while waiting
+     */
+    @Override
+    public PackagedEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (redeliver() == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                long wait = Math.min(nanos, nextRetryNanos());
+                nanos -= wait - notEmpty.awaitNanos(wait);
+            }
+            return read();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read at most max {@link PackagedEvent} without waiting
+     *
+     * @param collection Collection which receives {@link PackagedEvent}
+     * @param max        Max number of {@link PackagedEvent} to read
+     * @return Number of {@link PackagedEvent} moved into collection
+     */
+    @Override
+    public int drainTo(Collection<? super PackagedEvent> collection, int max) {
+        Objects.requireNonNull(collection);
+        lock.lock();
+        try {
+            redeliver();
+            int count = 0;
+            while (count < max && size > 0) {
+                collection.add(read());
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of {@link PackagedEvent} written and not taken yet
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acknowledge a {@link PackagedEvent} taken from this queue, it won't be delivered again after a restart
+     *
+     * @param packagedEvent {@link PackagedEvent} written in database
+     * @throws NullPointerException if packagedEvent is null
+     */
+    @Override
+    public void ack(PackagedEvent packagedEvent) {
+        Objects.requireNonNull(packagedEvent);
+        lock.lock();
+        try {
+            attempts.remove(packagedEvent.sequence);
+            release(packagedEvent.sequence);
+        } catch (IOException e) {
+            LOGGER.error("Ack of {} cannot be written: {}", packagedEvent.sequence, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedule the redelivery of a {@link PackagedEvent} which could not be written in database, after
+     * {@link WalEventQueue#redeliveryDelay(int)}. Once {@link WalEventQueue#maxAttempts} is reached the
+     * {@link PackagedEvent} is acknowledged and counted in event_dropped_redelivery instead.
+     *
+     * @param packagedEvent {@link PackagedEvent} not written in database
+     * @throws NullPointerException if packagedEvent is null
+     * @see WalEventQueue#retries
+     * @see WalEventQueue#redeliver()
+     */
+    @Override
+    public void nack(PackagedEvent packagedEvent) {
+        Objects.requireNonNull(packagedEvent);
+        ByteBuffer payload = encode(packagedEvent.event);
+        lock.lock();
+        try {
+            Integer previous = attempts.remove(packagedEvent.sequence);
+            int attempt = previous == null ? 1 : previous + 1;
+            if (maxAttempts > 0 && attempt >= maxAttempts) {
+                release(packagedEvent.sequence);
+                METRICS_LOGGER.log("event_dropped_redelivery", packagedEvent.event.getSource());
+                LOGGER.warn("{} dropped after {} failed writes", packagedEvent.event, attempt);
+                return;
+            }
+            retries.add(new Retry(packagedEvent.sequence, packagedEvent.arrivedTime, payload,
+                    clock.getAsLong() + redeliveryDelay(attempt), attempt));
+            notEmpty.signal();
+        } catch (IOException e) {
+            LOGGER.error("Ack of {} cannot be written: {}", packagedEvent.sequence, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delay before the redelivery of a {@link PackagedEvent} which failed attempt times, doubled at each attempt
+     *
+     * @param attempt Number of failed attempts, 1 or more
+     * @return Delay in milliseconds, at most {@link WalEventQueue#MAX_REDELIVERY_MS}
+     */
+    private long redeliveryDelay(int attempt) {
+        long delay = redeliveryMs;
+        for (int i = 1; i < attempt && delay < MAX_REDELIVERY_MS; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, MAX_REDELIVERY_MS);
+    }
+
+    /**
+     * Write at the end of the log the records whose redelivery is due, then acknowledge their old record so its segment
+     * can be deleted. Must be called while holding the lock.
+     *
+     * @return Number of {@link PackagedEvent} written and not taken yet
+     * @see WalEventQueue#retries
+     */
+    private int redeliver() {
+        long now = clock.getAsLong();
+        while (!retries.isEmpty() && retries.peek().due <= now) {
+            Retry retry = retries.poll();
+            try {
+                long sequence = nextSequence;
+                append(retry.arrivedTime, retry.payload);
+                attempts.put(sequence, retry.attempt);
+                release(retry.sequence);
+            } catch (IOException e) {
+                LOGGER.error("{} cannot be written again: {}", retry.sequence, e.getMessage());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Time in nanoseconds before the next redelivery, or Long.MAX_VALUE if none is waiting
+     * @see WalEventQueue#retries
+     */
+    private long nextRetryNanos() {
+        Retry next = retries.peek();
+        if (next == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(1, next.due - clock.getAsLong()));
+    }
+
+    /**
+     * Acknowledge a record and delete its segment once all its records are acknowledged, must be called while holding
+     * the lock
+     *
+     * @param sequence Sequence of the record
+     * @throws IOException if the ack file cannot be written or the segment cannot be deleted
+     */
+    private void release(long sequence) throws IOException {
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.contains(sequence)) {
+                segment.ack(sequence);
+                if (segment.isDone() && segment != segments.peekLast()) {
+                    if (readSegment == segment) {
+                        readSegment = next(segment);
+                    }
+                    iterator.remove();
+                    segment.delete();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true, events are kept on disk across restarts
+     */
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    /**
+     * Flush and close all segments, records not acknowledged will be delivered again at next startup
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.forEach(segment -> unmap(segment.buffer));
+            segments.clear();
+            retries.clear();
+            attempts.clear();
+            readSegment = null;
+            size = 0;
+        } catch (IOException e) {
+            LOGGER.error("WAL cannot be closed: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write a record at the end of the last segment, must be called while holding the lock
+     *
+     * @param arrivedTime Arrival time of the {@link Event}
+     * @param payload     Encoded {@link Event}
+     * @throws IOException if a new segment cannot be created
+     * @see WalEventQueue#roll(int)
+     */
+    private void append(long arrivedTime, ByteBuffer payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.remaining();
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.buffer.capacity() - segment.writePosition < recordSize) {
+            segment = roll(recordSize);
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        buffer.putLong(position + 4, nextSequence);
+        buffer.putLong(position + 12, arrivedTime);
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + HEADER_SIZE);
+        target.put(payload.duplicate());
+        buffer.putInt(position, recordSize - 4);
+        segment.writePosition += recordSize;
+        segment.count++;
+        nextSequence++;
+        size++;
+        if (readSegment == null) {
+            readSegment = segment;
+        }
+        notEmpty.signal();
+    }
+
+    /**
+     * Read the next record, must be called while holding the lock and when {@link WalEventQueue#size} is positive
+     *
+     * @return {@link PackagedEvent} of the record
+     */
+    private PackagedEvent read() {
+        while (readSegment.readPosition >= readSegment.writePosition) {
+            readSegment = next(readSegment);
+        }
+        MappedByteBuffer buffer = readSegment.buffer;
+        int position = readSegment.readPosition;
+        int length = buffer.getInt(position);
+        long sequence = buffer.getLong(position + 4);
+        long arrivedTime = buffer.getLong(position + 12);
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + HEADER_SIZE);
+        payload.limit(position + 4 + length);
+        readSegment.readPosition += 4 + length;
+        size--;
+        return new PackagedEvent(decode(payload.slice()), arrivedTime, sequence);
+    }
+
+    /**
+     * Segment following segment
+     *
+     * @param segment Segment fully read
+     * @return Next segment
+     */
+    private Segment next(Segment segment) {
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == segment) {
+                return iterator.next();
+            }
+        }
+        throw new IllegalStateException("Segment is not in WAL anymore");
+    }
+
+    /**
+     * Create a new segment at the end of the log. The previous one is deleted if all its records are acknowledged.
+     *
+     * @param minSize Min size of the segment, a record bigger than {@link WalEventQueue#segmentSize} gets its own segment
+     * @return New last segment
+     * @throws IOException if the segment cannot be created
+     */
+    private Segment roll(int minSize) throws IOException {
+        Segment previous = segments.peekLast();
+        Segment segment = new Segment(directory, nextSequence, Math.max(segmentSize, minSize));
+        segments.addLast(segment);
+        if (previous != null) {
+            previous.buffer.force();
+            if (previous.isDone()) {
+                segments.remove(previous);
+                if (readSegment == previous) {
+                    readSegment = segment;
+                }
+                previous.delete();
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Copy records of a previous run which are not acknowledged in new segments, then delete old segments.
+     * Must be called while holding the lock.
+     *
+     * @throws IOException if segments cannot be read or written
+     */
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        if (paths.isEmpty()) {
+            return;
+        }
+        paths.sort(null);
+        for (Path path : paths) {
+            nextSequence = Math.max(nextSequence, baseSequence(path) + 1);
+            forEachRecord(path, (sequence, arrivedTime, payload) -> nextSequence = Math.max(nextSequence, sequence + 1));
+        }
+        int replayed = 0;
+        for (Path path : paths) {
+            Set<Long> acked = readAcks(ackPath(path));
+            int[] count = {0};
+            forEachRecord(path, (sequence, arrivedTime, payload) -> {
+                if (!acked.contains(sequence)) {
+                    append(arrivedTime, payload);
+                    count[0]++;
+                }
+            });
+            replayed += count[0];
+        }
+        Segment last = segments.peekLast();
+        if (last != null) {
+            last.buffer.force();
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(ackPath(path));
+            Files.deleteIfExists(path);
+        }
+        LOGGER.info("{} events not acknowledged have been recovered from {}", replayed, directory);
+    }
+
+    /**
+     * Call visitor for each complete record of a segment
+     *
+     * @param path    Path of the segment
+     * @param visitor Called with sequence, arrival time and payload of each record
+     * @throws IOException if the segment cannot be read
+     */
+    private static void forEachRecord(Path path, RecordVisitor visitor) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            int position = 0;
+            while (position + HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length < HEADER_SIZE - 4 || position + 4 + length > buffer.capacity()) {
+                    break;
+                }
+                ByteBuffer payload = buffer.duplicate();
+                payload.position(position + HEADER_SIZE);
+                payload.limit(position + 4 + length);
+                visitor.visit(buffer.getLong(position + 4), buffer.getLong(position + 12), payload.slice());
+                position += 4 + length;
+            }
+        } finally {
+            unmap(buffer);
+        }
+    }
+
+    /**
+     * Unmap a buffer now instead of waiting for the garbage collector, otherwise deleted segments keep their disk
+     * space and their address space while their buffer is reachable. The buffer must not be used anymore.
+     * Uses Unsafe.invokeCleaner since Java 9 and the cleaner of the buffer on Java 8, nothing is done if neither exists.
+     *
+     * @param buffer Mapped buffer to release
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Mapped buffer cannot be released before garbage collection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Read acknowledged sequences of a segment
+     *
+     * @param ackPath Path of the ack file
+     * @return Set of acknowledged sequences, empty if there is no ack file
+     * @throws IOException if the ack file cannot be read
+     */
+    private static Set<Long> readAcks(Path ackPath) throws IOException {
+        Set<Long> acked = new HashSet<>();
+        if (Files.exists(ackPath)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(ackPath));
+            while (buffer.remaining() >= 8) {
+                acked.add(buffer.getLong());
+            }
+        }
+        return acked;
+    }
+
+    /**
+     * @param segmentPath Path of a segment
+     * @return Path of its ack file
+     */
+    private static Path ackPath(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + ACK_SUFFIX);
+    }
+
+    /**
+     * @param segmentPath Path of a segment
+     * @return Sequence of its first record, or -1 if name is invalid
+     */
+    private static long baseSequence(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Encode an {@link Event} in the compact layout of a record
+     *
+     * @param event {@link Event} to encode
+     * @return Buffer ready to be read
+     */
+    static ByteBuffer encode(Event event) {
+        byte[] source = event.getSource().getBytes(StandardCharsets.UTF_8);
+        byte[] description = event.getDescription().getBytes(StandardCharsets.UTF_8);
+        int points = event.getPointCount();
+        List<byte[]> attributes = new ArrayList<>();
+        int attributesLength = 4;
+        for (Map.Entry<String, Object> attribute : event.getAttributes().entrySet()) {
+            byte[] name = attribute.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = encodeAttribute(attribute.getValue());
+            attributes.add(name);
+            attributes.add(value);
+            attributesLength += 4 + name.length + value.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + source.length + 4 + description.length + 8 + 8 + 1 + 4 + 16 * points
+                + attributesLength);
+        buffer.putInt(source.length).put(source);
+        buffer.putInt(description.length).put(description);
+        buffer.putLong(event.getStartTime());
+        buffer.putLong(event.getEndTime());
+        buffer.put(event.getScore());
+        buffer.putInt(points);
+        for (int i = 0; i < points; i++) {
+            buffer.putDouble(event.getLatitude(i));
+            buffer.putDouble(event.getLongitude(i));
+        }
+        buffer.putInt(attributes.size() / 2);
+        for (int i = 0; i < attributes.size(); i += 2) {
+            buffer.putInt(attributes.get(i).length).put(attributes.get(i)).put(attributes.get(i + 1));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Encode the value of an attribute: a type byte then the value
+     *
+     * @param value String, Boolean, Long or Double
+     * @return Encoded value
+     * @see Event#getAttributes()
+     */
+    private static byte[] encodeAttribute(Object value) {
+        if (value instanceof Boolean) {
+            return new byte[]{ATTRIBUTE_BOOLEAN, (byte) ((Boolean) value ? 1 : 0)};
+        } else if (value instanceof Long) {
+            return ByteBuffer.allocate(9).put(ATTRIBUTE_LONG).putLong((Long) value).array();
+        } else if (value instanceof Double) {
+            return ByteBuffer.allocate(9).put(ATTRIBUTE_DOUBLE).putDouble((Double) value).array();
+        }
+        byte[] string = value.toString().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(5 + string.length).put(ATTRIBUTE_STRING).putInt(string.length).put(string).array();
+    }
+
+    /**
+     * Decode the value of an attribute written by {@link WalEventQueue#encodeAttribute(Object)}
+     *
+     * @param buffer Buffer positioned on the type byte
+     * @return Decoded value
+     * @throws IllegalStateException if the type byte is unknown
+     */
+    private static Object decodeAttribute(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case ATTRIBUTE_BOOLEAN:
+                return buffer.get() != 0;
+            case ATTRIBUTE_LONG:
+                return buffer.getLong();
+            case ATTRIBUTE_DOUBLE:
+                return buffer.getDouble();
+            case ATTRIBUTE_STRING:
+                byte[] string = new byte[buffer.getInt()];
+                buffer.get(string);
+                return new String(string, StandardCharsets.UTF_8);
+            default:
+                throw new IllegalStateException("Unknown attribute type " + type);
+        }
+    }
+
+    /**
+     * Decode an {@link Event} written by {@link WalEventQueue#encode(Event)}
+     *
+     * @param buffer Buffer positioned on the encoded {@link Event}
+     * @return Decoded {@link Event}
+     */
+    static Event decode(ByteBuffer buffer) {
+        byte[] source = new byte[buffer.getInt()];
+        buffer.get(source);
+        byte[] description = new byte[buffer.getInt()];
+        buffer.get(description);
+        long start = buffer.getLong();
+        long end = buffer.getLong();
+        byte score = buffer.get();
+        double[] coordinates = new double[2 * buffer.getInt()];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = buffer.getDouble();
+        }
+        String sourceString = new String(source, StandardCharsets.UTF_8);
+        String descriptionString = new String(description, StandardCharsets.UTF_8);
+        Event event = new Event(coordinates, start, end, descriptionString, score < 0 ? -1 : score, sourceString);
+        if (!buffer.hasRemaining()) {
+            return event;
+        }
+        int count = buffer.getInt();
+        if (count == 0) {
+            return event;
+        }
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            attributes.put(new String(name, StandardCharsets.UTF_8), decodeAttribute(buffer));
+        }
+        return event.withAttributes(attributes);
+    }
+
+    /**
+     * Visitor of records in {@link WalEventQueue#forEachRecord(Path, RecordVisitor)}
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /**
+         * Visit a record
+         *
+         * @param sequence    Sequence of the record
+         * @param arrivedTime Arrival time of the {@link Event}
+         * @param payload     Encoded {@link Event}
+         * @throws IOException if the record cannot be handled
+         */
+        void visit(long sequence, long arrivedTime, ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Record given to {@link WalEventQueue#nack(PackagedEvent)} and waiting for its redelivery
+     */
+    private static class Retry {
+        /**
+         * Sequence of the old record
+         */
+        private final long sequence;
+        /**
+         * Arrival time of the {@link Event}
+         */
+        private final long arrivedTime;
+        /**
+         * Encoded {@link Event}
+         */
+        private final ByteBuffer payload;
+        /**
+         * Time in milliseconds when the record is written again
+         */
+        private final long due;
+        /**
+         * Number of failed attempts
+         */
+        private final int attempt;
+
+        /**
+         * Create a {@link Retry}
+         *
+         * @param sequence    Sequence of the old record
+         * @param arrivedTime Arrival time of the {@link Event}
+         * @param payload     Encoded {@link Event}
+         * @param due         Time in milliseconds when the record is written again
+         * @param attempt     Number of failed attempts
+         */
+        private Retry(long sequence, long arrivedTime, ByteBuffer payload, long due, int attempt) {
+            this.sequence = sequence;
+            this.arrivedTime = arrivedTime;
+            this.payload = payload;
+            this.due = due;
+            this.attempt = attempt;
+        }
+    }
+
+    /**
+     * Memory-mapped segment file and its ack file
+     */
+    private static class Segment {
+        /**
+         * Sequence of the first record
+         */
+        private final long baseSequence;
+        /**
+         * Path of the segment file
+         */
+        private final Path path;
+        /**
+         * Mapped content of the segment file
+         */
+        private final MappedByteBuffer buffer;
+        /**
+         * Channel of the ack file
+         */
+        private final FileChannel ackChannel;
+        /**
+         * Buffer used to append a sequence in the ack file
+         */
+        private final ByteBuffer ackBuffer = ByteBuffer.allocate(8);
+        /**
+         * Position of the next written record
+         */
+        private int writePosition;
+        /**
+         * Position of the next read record
+         */
+        private int readPosition;
+        /**
+         * Number of records written
+         */
+        private int count;
+        /**
+         * Number of records acknowledged
+         */
+        private int acked;
+
+        /**
+         * Create and map a new segment
+         *
+         * @param directory    Directory of segments
+         * @param baseSequence Sequence of the first record
+         * @param size         Size in bytes of the segment
+         * @throws IOException if the segment cannot be created
+         */
+        private Segment(Path directory, long baseSequence, int size) throws IOException {
+            this.baseSequence = baseSequence;
+            this.path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseSequence, SEGMENT_SUFFIX));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            this.ackChannel = FileChannel.open(ackPath(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        /**
+         * @param sequence Sequence of a record
+         * @return true if the record is in this segment
+         */
+        private boolean contains(long sequence) {
+            return sequence >= baseSequence && sequence < baseSequence + count;
+        }
+
+        /**
+         * Append sequence in the ack file
+         *
+         * @param sequence Sequence of an acknowledged record
+         * @throws IOException if the ack file cannot be written
+         */
+        private void ack(long sequence) throws IOException {
+            ackBuffer.clear();
+            ackBuffer.putLong(sequence).flip();
+            while (ackBuffer.hasRemaining()) {
+                ackChannel.write(ackBuffer);
+            }
+            acked++;
+        }
+
+        /**
+         * @return true if every record is acknowledged
+         */
+        private boolean isDone() {
+            return acked == count;
+        }
+
+        /**
+         * Flush the segment and close its ack file
+         *
+         * @throws IOException if the ack file cannot be closed
+         */
+        private void close() throws IOException {
+            buffer.force();
+            ackChannel.close();
+        }
+
+        /**
+         * Delete the segment and its ack file, its buffer is unmapped and must not be used anymore
+         *
+         * @throws IOException if files cannot be deleted
+         */
+        private void delete() throws IOException {
+            ackChannel.close();
+            unmap(buffer);
+            Files.deleteIfExists(ackPath(path));
+            Files.deleteIfExists(path);
+        }
+    }
+}
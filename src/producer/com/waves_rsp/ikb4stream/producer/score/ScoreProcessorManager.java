@@ -20,63 +20,89 @@ package com.waves_rsp.ikb4stream.producer.score;
 
 import com.waves_rsp.ikb4stream.core.datasource.model.IScoreProcessor;
 import com.waves_rsp.ikb4stream.core.model.Event;
-import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
-import com.waves_rsp.ikb4stream.core.util.ClassManager;
-import com.waves_rsp.ikb4stream.core.util.JarLoader;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
 
 /**
- * Object which manage all {@link IScoreProcessor}
+ * Object which manage all {@link IScoreProcessor} of a thread. Modules are loaded once by {@link ScoreProcessorRegistry},
+ * {@link IScoreProcessor} which are not thread safe are instantiated by this manager at their first use. When a module
+ * is reloaded, this manager switches to the new {@link ScoreProcessorRegistry} before its next {@link Event}.
  *
  * @author ikb4stream
  * @version 1.0
+ * @see ScoreProcessorRegistry
  */
 public class ScoreProcessorManager {
     /**
-     * Properties of this class
+     * Give the current {@link ScoreProcessorRegistry}
      *
-     * @see PropertiesManager
-     * @see PropertiesManager#getProperty(String)
-     * @see PropertiesManager#getInstance(Class)
+     * @see ScoreProcessorManager#processScore(Event)
      */
-    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(ScoreProcessorManager.class);
+    private final Supplier<ScoreProcessorRegistry> registries;
     /**
-     * Logger used to log all information in this class
+     * {@link ScoreProcessorRegistry} which knows all {@link IScoreProcessor}, held until this manager switches to
+     * another one or is closed
+     *
+     * @see ScoreProcessorManager#findIScoreProcessor(String)
+     * @see ScoreProcessorManager#update()
+     * @see ScoreProcessorManager#close()
      */
-    private static final Logger LOGGER = LoggerFactory.getLogger(ScoreProcessorManager.class);
+    private ScoreProcessorRegistry registry;
     /**
-     * Association {@link Event#source} to a list of {@link IScoreProcessor}
+     * Association {@link Event#source} to a list of {@link IScoreProcessor}, filled at first {@link Event} of a source
      *
      * @see ScoreProcessorManager#findIScoreProcessor(String)
-     * @see ScoreProcessorManager#launchModule(JarLoader)
      */
     private final Map<String, List<IScoreProcessor>> scoreProcessors = new HashMap<>();
     /**
-     * ClassLoader of {@link ScoreProcessorManager}
+     * Instances of this manager of {@link IScoreProcessor} which are not thread safe, shared between their sources
      *
-     * @see ScoreProcessorManager#launchModule(JarLoader)
+     * @see ScoreProcessorManager#resolve(ScoreProcessorRegistry.Registration)
      */
-    private final ClassLoader parent = ScoreProcessorManager.class.getClassLoader();
+    private final Map<ScoreProcessorRegistry.Registration, Optional<IScoreProcessor>> instances = new HashMap<>();
 
     /**
      * Override default constructor
      *
-     * @see ScoreProcessorManager#instanciate()
+     * @see ScoreProcessorRegistry#getInstance()
      */
     public ScoreProcessorManager() {
-        instanciate();
+        this(ScoreProcessorRegistry::getInstance);
+    }
+
+    /**
+     * Create a manager of {@link IScoreProcessor} which follows a {@link ScoreProcessorRegistry}
+     *
+     * @param registries Give the current {@link ScoreProcessorRegistry}
+     * @throws NullPointerException if registries is null
+     */
+    ScoreProcessorManager(Supplier<ScoreProcessorRegistry> registries) {
+        this.registries = Objects.requireNonNull(registries);
+        this.registry = acquire();
+    }
+
+    /**
+     * Load a module of scoreprocessor.path again, {@link ScoreProcessorManager} use it from their next {@link Event}
+     *
+     * @param jar Path of the jar of the module
+     * @throws NullPointerException if jar is null
+     * @see ScoreProcessorRegistry#reload(Path)
+     */
+    public static void reloadModule(Path jar) {
+        ScoreProcessorRegistry.reload(jar);
+    }
+
+    /**
+     * Remove a module of scoreprocessor.path, {@link ScoreProcessorManager} stop using it from their next {@link Event}
+     *
+     * @param jar Path of the jar of the module
+     * @throws NullPointerException if jar is null
+     * @see ScoreProcessorRegistry#unload(Path)
+     */
+    public static void unloadModule(Path jar) {
+        ScoreProcessorRegistry.unload(jar);
     }
 
     /**
@@ -90,10 +116,59 @@ public class ScoreProcessorManager {
      */
     public Event processScore(Event event) {
         Objects.requireNonNull(event);
+        update();
         List<IScoreProcessor> sp = findIScoreProcessor(event.getSource());
         return process(sp, event);
     }
 
+    /**
+     * Switch to the current {@link ScoreProcessorRegistry} if a module has been reloaded: instances of modules which
+     * didn't change are kept, the others are released
+     *
+     * @see ScoreProcessorManager#registries
+     */
+    void update() {
+        if (registry == registries.get()) {
+            return;
+        }
+        ScoreProcessorRegistry current = acquire();
+        if (registry != null) {
+            registry.release();
+        }
+        registry = current;
+        scoreProcessors.clear();
+        instances.keySet().removeIf(registration -> !current.contains(registration));
+    }
+
+    /**
+     * Hold the current {@link ScoreProcessorRegistry}, so ClassLoader of its modules stay open while this manager uses it
+     *
+     * @return Current {@link ScoreProcessorRegistry}, held by this manager
+     * @throws NullPointerException if {@link ScoreProcessorManager#registries} gives null
+     * @see ScoreProcessorRegistry#acquire()
+     */
+    private ScoreProcessorRegistry acquire() {
+        ScoreProcessorRegistry current;
+        do {
+            current = Objects.requireNonNull(registries.get());
+        } while (!current.acquire());
+        return current;
+    }
+
+    /**
+     * Stop holding the {@link ScoreProcessorRegistry}, ClassLoader of reloaded modules can be closed
+     *
+     * @see ScoreProcessorRegistry#release()
+     */
+    public void close() {
+        if (registry != null) {
+            registry.release();
+            registry = null;
+            scoreProcessors.clear();
+            instances.clear();
+        }
+    }
+
     /**
      * Find {@link IScoreProcessor} to apply to a {@link Event#source}
      *
@@ -102,11 +177,28 @@ public class ScoreProcessorManager {
      * @throws NullPointerException if source is null
      * @see ScoreProcessorManager#scoreProcessors
      */
-    private List<IScoreProcessor> findIScoreProcessor(String source) {
+    List<IScoreProcessor> findIScoreProcessor(String source) {
         Objects.requireNonNull(source);
-        List<IScoreProcessor> sp = scoreProcessors.get(source);
-        if (sp == null) return new ArrayList<>();
-        return sp;
+        return scoreProcessors.computeIfAbsent(source, s -> {
+            List<IScoreProcessor> sp = new ArrayList<>();
+            registry.getRegistrations(s).forEach(registration -> resolve(registration).ifPresent(sp::add));
+            return sp;
+        });
+    }
+
+    /**
+     * Get the instance of a {@link IScoreProcessor} for this manager
+     *
+     * @param registration {@link ScoreProcessorRegistry.Registration} of {@link IScoreProcessor}
+     * @return Shared instance if it's thread safe, otherwise instance of this manager, empty if it cannot be created
+     * @see ScoreProcessorManager#instances
+     */
+    private Optional<IScoreProcessor> resolve(ScoreProcessorRegistry.Registration registration) {
+        IScoreProcessor shared = registration.getShared();
+        if (shared != null) {
+            return Optional.of(shared);
+        }
+        return instances.computeIfAbsent(registration, r -> Optional.ofNullable(r.newInstance()));
     }
 
     /**
@@ -126,66 +218,4 @@ public class ScoreProcessorManager {
         }
         return tmp;
     }
-
-    /**
-     * Get all {@link IScoreProcessor} associated to {@link Event#source}
-     */
-    private void instanciate() {
-        String stringPath = getPathScoreProcessor();
-        if (stringPath == null) return;
-        try (Stream<Path> paths = Files.walk(Paths.get(stringPath))) {
-            paths.forEach((Path filePath) -> {
-                if (Files.isRegularFile(filePath)) {
-                    launchModule(JarLoader.createJarLoader(filePath.toString()));
-                }
-            });
-        } catch (IOException e) {
-            LOGGER.error(e.getMessage());
-        }
-    }
-
-    /**
-     * Get path where {@link IScoreProcessor} are store
-     *
-     * @return Path or null if there is invalid configuration
-     * @see ScoreProcessorManager#PROPERTIES_MANAGER
-     */
-    private static String getPathScoreProcessor() {
-        try {
-            return PROPERTIES_MANAGER.getProperty("scoreprocessor.path");
-        } catch (IllegalArgumentException e) {
-            LOGGER.warn(e.getMessage());
-            LOGGER.warn("There is no ScoreProcessor to load");
-            return null;
-        }
-    }
-
-    /**
-     * Launch module of {@link IScoreProcessor}
-     *
-     * @param jarLoader {@link JarLoader} that represents module
-     * @see ScoreProcessorManager#scoreProcessors
-     * @see ScoreProcessorManager#parent
-     * @see IScoreProcessor
-     */
-    private void launchModule(JarLoader jarLoader) {
-        if (jarLoader != null) {
-            List<URL> urls = jarLoader.getUrls();
-            ClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<ClassLoader>) () -> new URLClassLoader(urls.toArray(new URL[urls.size()]), parent));
-            jarLoader.getClasses().stream()
-                    .map(c -> ClassManager.loadClass(c, classLoader))
-                    .filter(c -> ClassManager.implementInterface(c, IScoreProcessor.class))
-                    .forEach(clazz -> {
-                        try {
-                            IScoreProcessor iScoreProcessor = (IScoreProcessor) ClassManager.newInstance(clazz);
-                            iScoreProcessor.getSources().forEach(source -> {
-                                List<IScoreProcessor> iScoreProcessorList = scoreProcessors.computeIfAbsent(source, l -> new ArrayList<>());
-                                iScoreProcessorList.add(iScoreProcessor);
-                            });
-                        } catch (Exception e) {
-                            LOGGER.error("Error during instantiate {} : {}", clazz.getName(), e.getMessage());
-                        }
-                    });
-        }
-    }
 }
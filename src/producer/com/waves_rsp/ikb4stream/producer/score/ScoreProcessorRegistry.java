@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) 2017 ikb4stream team
+ * ikb4stream is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ikb4stream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ */
+package com.waves_rsp.ikb4stream.producer.score;
+
+import com.waves_rsp.ikb4stream.core.datasource.model.IScoreProcessor;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.ClassManager;
+import com.waves_rsp.ikb4stream.core.util.JarLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Process-wide registry of {@link IScoreProcessor}: each module of scoreprocessor.path is loaded once in its own
+ * ClassLoader and each {@link IScoreProcessor} is instantiated once to know its sources. Thread safe
+ * {@link IScoreProcessor} are shared by all {@link ScoreProcessorManager}, the others are instantiated again by each
+ * {@link ScoreProcessorManager}. A registry is immutable: reloading a module creates a new registry which replaces the
+ * current one, {@link ScoreProcessorManager} switch to it between two {@link Event}.
+ * Each {@link ScoreProcessorManager} holds the registry it uses with {@link ScoreProcessorRegistry#acquire()}, the
+ * ClassLoader of a replaced module is closed once no registry which contains it is held anymore.
+ *
+ * @author ikb4stream
+ * @version 1.0
+ * @see IScoreProcessor#isThreadSafe()
+ */
+class ScoreProcessorRegistry {
+    /**
+     * Properties of this class
+     *
+     * @see PropertiesManager
+     * @see PropertiesManager#getProperty(String)
+     * @see PropertiesManager#getInstance(Class)
+     */
+    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(ScoreProcessorRegistry.class);
+    /**
+     * Logger used to log all information in this class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScoreProcessorRegistry.class);
+    /**
+     * Single instance of {@link ScoreProcessorRegistry}
+     *
+     * @see ScoreProcessorRegistry#getInstance()
+     */
+    private static volatile ScoreProcessorRegistry instance;
+    /**
+     * Lock which protects the reference counts of {@link Module}
+     *
+     * @see ScoreProcessorRegistry#acquire()
+     * @see ScoreProcessorRegistry#release()
+     */
+    private static final Object LOCK = new Object();
+    /**
+     * {@link Module} by path of its jar
+     *
+     * @see ScoreProcessorRegistry#withModule(Path, Collection, Closeable)
+     */
+    private final Map<Path, Module> modules;
+    /**
+     * Association {@link Event#source} to {@link Registration} of {@link IScoreProcessor} to apply, in loading order
+     *
+     * @see ScoreProcessorRegistry#getRegistrations(String)
+     */
+    private final Map<String, List<Registration>> registrations = new HashMap<>();
+
+    /**
+     * Create a registry from instances of {@link IScoreProcessor} of a single module
+     *
+     * @param scoreProcessors {@link IScoreProcessor} to register, in order of application
+     * @throws NullPointerException if scoreProcessors is null
+     * @see ScoreProcessorRegistry#registrations
+     */
+    ScoreProcessorRegistry(Collection<IScoreProcessor> scoreProcessors) {
+        this(Collections.singletonMap(Paths.get(""), new Module(register(scoreProcessors), null)));
+    }
+
+    /**
+     * Create a registry from each {@link Module}
+     *
+     * @param modules {@link Module} by path, in order of application
+     * @see ScoreProcessorRegistry#registrations
+     */
+    private ScoreProcessorRegistry(Map<Path, Module> modules) {
+        this.modules = Collections.unmodifiableMap(new LinkedHashMap<>(modules));
+        this.modules.values().forEach(module -> module.registrations.forEach(registration ->
+                registration.sources.forEach(source ->
+                        registrations.computeIfAbsent(source, s -> new ArrayList<>()).add(registration))));
+    }
+
+    /**
+     * Register instances of {@link IScoreProcessor}
+     *
+     * @param scoreProcessors {@link IScoreProcessor} to register
+     * @return {@link Registration} of each {@link IScoreProcessor}
+     * @throws NullPointerException if scoreProcessors is null
+     */
+    private static List<Registration> register(Collection<IScoreProcessor> scoreProcessors) {
+        Objects.requireNonNull(scoreProcessors);
+        List<Registration> module = new ArrayList<>();
+        scoreProcessors.forEach(scoreProcessor -> module.add(new Registration(scoreProcessor)));
+        return Collections.unmodifiableList(module);
+    }
+
+    /**
+     * Get the current instance of {@link ScoreProcessorRegistry}, modules are loaded at first call
+     *
+     * @return Instance of {@link ScoreProcessorRegistry}
+     * @see ScoreProcessorRegistry#instance
+     */
+    static ScoreProcessorRegistry getInstance() {
+        ScoreProcessorRegistry registry = instance;
+        if (registry == null) {
+            synchronized (ScoreProcessorRegistry.class) {
+                if (instance == null) {
+                    ScoreProcessorRegistry loaded = new ScoreProcessorRegistry(load());
+                    loaded.acquire();
+                    instance = loaded;
+                }
+                registry = instance;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Load a module again in a new ClassLoader and replace the current registry, {@link Event} being scored keep
+     * instances of the previous module
+     *
+     * @param jar Path of the jar of the module
+     * @throws NullPointerException if jar is null
+     * @see ScoreProcessorRegistry#withModule(Path, Collection, Closeable)
+     * @see ScoreProcessorRegistry#replace(ScoreProcessorRegistry)
+     */
+    static synchronized void reload(Path jar) {
+        Objects.requireNonNull(jar);
+        Path module = jar.toAbsolutePath().normalize();
+        List<IScoreProcessor> scoreProcessors = new ArrayList<>();
+        URLClassLoader classLoader = loadModule(JarLoader.createJarLoader(module.toString()), scoreProcessors);
+        replace(getInstance().withModule(module, scoreProcessors, classLoader));
+        LOGGER.info("{} reloaded with {} ScoreProcessor", module, scoreProcessors.size());
+    }
+
+    /**
+     * Remove a module and replace the current registry
+     *
+     * @param jar Path of the jar of the module
+     * @throws NullPointerException if jar is null
+     * @see ScoreProcessorRegistry#withModule(Path, Collection, Closeable)
+     * @see ScoreProcessorRegistry#replace(ScoreProcessorRegistry)
+     */
+    static synchronized void unload(Path jar) {
+        Objects.requireNonNull(jar);
+        Path module = jar.toAbsolutePath().normalize();
+        replace(getInstance().withModule(module, Collections.emptyList(), null));
+        LOGGER.info("{} unloaded", module);
+    }
+
+    /**
+     * Make next the current registry, the previous one is retired
+     *
+     * @param next New current {@link ScoreProcessorRegistry}
+     * @see ScoreProcessorRegistry#retire(ScoreProcessorRegistry)
+     */
+    private static void replace(ScoreProcessorRegistry next) {
+        ScoreProcessorRegistry previous = getInstance();
+        next.acquire();
+        instance = next;
+        previous.retire(next);
+    }
+
+    /**
+     * Create a copy of this registry where a module is replaced
+     *
+     * @param jar             Path of the jar of the module
+     * @param scoreProcessors New {@link IScoreProcessor} of this module, empty to remove the module
+     * @return New {@link ScoreProcessorRegistry}, other modules keep their {@link Registration}
+     * @throws NullPointerException if jar or scoreProcessors is null
+     */
+    ScoreProcessorRegistry withModule(Path jar, Collection<IScoreProcessor> scoreProcessors) {
+        return withModule(jar, scoreProcessors, null);
+    }
+
+    /**
+     * Create a copy of this registry where a module is replaced
+     *
+     * @param jar             Path of the jar of the module
+     * @param scoreProcessors New {@link IScoreProcessor} of this module, empty to remove the module
+     * @param classLoader     ClassLoader of the new module, closed once the module is retired and not held anymore, can be null
+     * @return New {@link ScoreProcessorRegistry}, other modules keep their {@link Module}
+     * @throws NullPointerException if jar or scoreProcessors is null
+     */
+    ScoreProcessorRegistry withModule(Path jar, Collection<IScoreProcessor> scoreProcessors, Closeable classLoader) {
+        Objects.requireNonNull(jar);
+        Map<Path, Module> copy = new LinkedHashMap<>(modules);
+        if (scoreProcessors.isEmpty()) {
+            copy.remove(jar);
+            close(classLoader);
+        } else {
+            copy.put(jar, new Module(register(scoreProcessors), classLoader));
+        }
+        return new ScoreProcessorRegistry(copy);
+    }
+
+    /**
+     * Hold this registry: the ClassLoader of its modules stay open until {@link ScoreProcessorRegistry#release()}
+     *
+     * @return false if a module of this registry is already closed, this registry cannot be used anymore
+     * @see Module#references
+     */
+    boolean acquire() {
+        synchronized (LOCK) {
+            if (modules.values().stream().anyMatch(module -> module.closed)) {
+                return false;
+            }
+            modules.values().forEach(module -> module.references++);
+            return true;
+        }
+    }
+
+    /**
+     * Stop holding this registry, modules retired and not held anymore are closed
+     *
+     * @see ScoreProcessorRegistry#acquire()
+     * @see ScoreProcessorRegistry#retire(ScoreProcessorRegistry)
+     */
+    void release() {
+        synchronized (LOCK) {
+            modules.values().forEach(module -> {
+                module.references--;
+                if (module.references <= 0 && module.retired && !module.closed) {
+                    module.closed = true;
+                    close(module.classLoader);
+                }
+            });
+        }
+    }
+
+    /**
+     * Retire modules of this registry which next doesn't contain, then release this registry held as the current one
+     *
+     * @param next Registry which replaces this one
+     * @throws NullPointerException if next is null
+     * @see ScoreProcessorRegistry#release()
+     */
+    void retire(ScoreProcessorRegistry next) {
+        Objects.requireNonNull(next);
+        synchronized (LOCK) {
+            modules.values().stream()
+                    .filter(module -> !next.modules.containsValue(module))
+                    .forEach(module -> module.retired = true);
+        }
+        release();
+    }
+
+    /**
+     * Close the ClassLoader of a module, its jar isn't held open anymore
+     *
+     * @param classLoader ClassLoader to close, can be null
+     */
+    private static void close(Closeable classLoader) {
+        if (classLoader == null) {
+            return;
+        }
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            LOGGER.warn("ClassLoader of a module cannot be closed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Tell if a {@link Registration} belongs to this registry
+     *
+     * @param registration {@link Registration} to look for
+     * @return true if one module of this registry has this registration
+     */
+    boolean contains(Registration registration) {
+        return modules.values().stream().anyMatch(module -> module.registrations.contains(registration));
+    }
+
+    /**
+     * Get {@link Registration} of {@link IScoreProcessor} to apply to a {@link Event#source}
+     *
+     * @param source Origin of the {@link Event}
+     * @return Unmodifiable list of {@link Registration}, empty if there is no {@link IScoreProcessor}
+     * @throws NullPointerException if source is null
+     * @see ScoreProcessorRegistry#registrations
+     */
+    List<Registration> getRegistrations(String source) {
+        Objects.requireNonNull(source);
+        return Collections.unmodifiableList(registrations.getOrDefault(source, Collections.emptyList()));
+    }
+
+    /**
+     * Instantiate all {@link IScoreProcessor} found in scoreprocessor.path
+     *
+     * @return {@link Module} by path of its jar
+     * @see ScoreProcessorRegistry#loadModule(JarLoader, List)
+     */
+    private static Map<Path, Module> load() {
+        Map<Path, Module> modules = new LinkedHashMap<>();
+        String stringPath = getPathScoreProcessor();
+        if (stringPath == null) return modules;
+        long start = System.currentTimeMillis();
+        try (Stream<Path> paths = Files.walk(Paths.get(stringPath))) {
+            paths.forEach((Path filePath) -> {
+                if (Files.isRegularFile(filePath)) {
+                    List<IScoreProcessor> scoreProcessors = new ArrayList<>();
+                    URLClassLoader classLoader = loadModule(JarLoader.createJarLoader(filePath.toString()), scoreProcessors);
+                    if (!scoreProcessors.isEmpty()) {
+                        modules.put(filePath.toAbsolutePath().normalize(), new Module(register(scoreProcessors), classLoader));
+                    } else {
+                        close(classLoader);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+        }
+        LOGGER.info("{} ScoreProcessor module(s) loaded in {} ms", modules.size(), System.currentTimeMillis() - start);
+        return modules;
+    }
+
+    /**
+     * Get path where {@link IScoreProcessor} are store
+     *
+     * @return Path or null if there is invalid configuration
+     * @see ScoreProcessorRegistry#PROPERTIES_MANAGER
+     */
+    private static String getPathScoreProcessor() {
+        try {
+            return PROPERTIES_MANAGER.getProperty("scoreprocessor.path");
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn(e.getMessage());
+            LOGGER.warn("There is no ScoreProcessor to load");
+            return null;
+        }
+    }
+
+    /**
+     * Load module of {@link IScoreProcessor} in its own ClassLoader
+     *
+     * @param jarLoader       {@link JarLoader} that represents module
+     * @param scoreProcessors List which receives instances of {@link IScoreProcessor} of this module
+     * @return ClassLoader of the module, or null if jarLoader is null
+     * @see IScoreProcessor
+     */
+    private static URLClassLoader loadModule(JarLoader jarLoader, List<IScoreProcessor> scoreProcessors) {
+        if (jarLoader == null) {
+            return null;
+        }
+        List<URL> urls = jarLoader.getUrls();
+        ClassLoader parent = ScoreProcessorRegistry.class.getClassLoader();
+        URLClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<URLClassLoader>) () -> new URLClassLoader(urls.toArray(new URL[urls.size()]), parent));
+        jarLoader.getClasses().stream()
+                .map(c -> ClassManager.loadClass(c, classLoader))
+                .filter(c -> ClassManager.implementInterface(c, IScoreProcessor.class))
+                .forEach(clazz -> {
+                    try {
+                        scoreProcessors.add((IScoreProcessor) ClassManager.newInstance(clazz));
+                    } catch (Exception e) {
+                        LOGGER.error("Error during instantiate {} : {}", clazz.getName(), e.getMessage());
+                    }
+                });
+        return classLoader;
+    }
+
+    /**
+     * {@link Registration} of a module and the ClassLoader of its jar
+     *
+     * @see ScoreProcessorRegistry#modules
+     */
+    private static class Module {
+        /**
+         * {@link Registration} of this module, in order of application
+         */
+        private final List<Registration> registrations;
+        /**
+         * ClassLoader of this module, can be null
+         */
+        private final Closeable classLoader;
+        /**
+         * Number of held registries which contain this module, guarded by {@link ScoreProcessorRegistry#LOCK}
+         */
+        private int references;
+        /**
+         * True once the current registry doesn't contain this module anymore
+         */
+        private boolean retired;
+        /**
+         * True once {@link Module#classLoader} is closed
+         */
+        private boolean closed;
+
+        /**
+         * Create a module
+         *
+         * @param registrations {@link Registration} of this module
+         * @param classLoader   ClassLoader of this module, can be null
+         */
+        private Module(List<Registration> registrations, Closeable classLoader) {
+            this.registrations = registrations;
+            this.classLoader = classLoader;
+        }
+    }
+
+    /**
+     * Registered {@link IScoreProcessor}: its class, and its instance if it can be shared between threads
+     *
+     * @see IScoreProcessor#isThreadSafe()
+     */
+    static class Registration {
+        /**
+         * Class of {@link IScoreProcessor}
+         *
+         * @see Registration#newInstance()
+         */
+        private final Class<? extends IScoreProcessor> clazz;
+        /**
+         * Instance shared by all threads, null if {@link IScoreProcessor} is not thread safe
+         *
+         * @see Registration#getShared()
+         */
+        private final IScoreProcessor shared;
+        /**
+         * Sources of {@link IScoreProcessor}
+         */
+        private final List<String> sources;
+
+        /**
+         * Register an {@link IScoreProcessor}
+         *
+         * @param scoreProcessor Instance of {@link IScoreProcessor}, kept only if it's thread safe
+         */
+        private Registration(IScoreProcessor scoreProcessor) {
+            this.clazz = scoreProcessor.getClass();
+            this.shared = scoreProcessor.isThreadSafe() ? scoreProcessor : null;
+            this.sources = new ArrayList<>(scoreProcessor.getSources());
+        }
+
+        /**
+         * Get instance shared by all threads
+         *
+         * @return {@link IScoreProcessor} or null if it's not thread safe
+         */
+        IScoreProcessor getShared() {
+            return shared;
+        }
+
+        /**
+         * Create a new instance of {@link IScoreProcessor} for the current thread
+         *
+         * @return New {@link IScoreProcessor}, or null if it cannot be instantiated
+         */
+        IScoreProcessor newInstance() {
+            try {
+                return (IScoreProcessor) ClassManager.newInstance(clazz);
+            } catch (Exception e) {
+                LOGGER.error("Error during instantiate {} : {}", clazz.getName(), e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -22,7 +22,10 @@ import com.waves_rsp.ikb4stream.core.datasource.model.IScoreProcessor;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.KeywordFilter;
+import com.waves_rsp.ikb4stream.core.util.RuleIndex;
 import com.waves_rsp.ikb4stream.core.util.RulesReader;
+import com.waves_rsp.ikb4stream.core.util.nlp.AnnotatedDocument;
 import com.waves_rsp.ikb4stream.core.util.nlp.OpenNLP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,22 +72,29 @@ public class EventScoreProcessor implements IScoreProcessor {
      */
     private static final byte MAX = Event.getScoreMax();
     /**
-     * Map word, score
+     * Rules compiled from the file given by event.rules.file
      *
      * @see EventScoreProcessor#processScore(Event)
      */
-    private final Map<String, Integer> rulesMap;
+    private final RuleIndex rules;
+    /**
+     * Pre-filter of the rules compiled from the file given by event.rules.file, texts it rejects are not lemmatized
+     *
+     * @see EventScoreProcessor#processScore(Event)
+     */
+    private final KeywordFilter filter;
 
     /**
-     * Default constructor to initialize {@link EventScoreProcessor#rulesMap} with a {@link PropertiesManager}
+     * Default constructor to initialize {@link EventScoreProcessor#rules} with a {@link PropertiesManager}
      *
-     * @see EventScoreProcessor#rulesMap
+     * @see EventScoreProcessor#rules
      * @see EventScoreProcessor#PROPERTIES_MANAGER
      */
     public EventScoreProcessor() {
         try {
             String ruleFilename = PROPERTIES_MANAGER.getProperty("event.rules.file");
-            rulesMap = RulesReader.parseJSONRules(ruleFilename);
+            rules = RulesReader.compileJSONRules(ruleFilename);
+            filter = RulesReader.compileJSONFilter(ruleFilename);
         } catch (IllegalArgumentException e) {
             LOGGER.error(e.getMessage());
             throw new IllegalStateException(e.getMessage());
@@ -97,8 +107,9 @@ public class EventScoreProcessor implements IScoreProcessor {
      * @param event an {@link Event} without {@link Event#score}
      * @return Event with a score after {@link OpenNLP} processing
      * @throws NullPointerException if event is null
-     * @see EventScoreProcessor#rulesMap
+     * @see EventScoreProcessor#rules
      * @see EventScoreProcessor#openNLP
+     * @see EventScoreProcessor#filter
      * @see EventScoreProcessor#MAX
      * @see Event
      */
@@ -107,19 +118,15 @@ public class EventScoreProcessor implements IScoreProcessor {
         Objects.requireNonNull(event);
         long start = System.currentTimeMillis();
         String content = event.getDescription();
-        List<String> eventList = openNLP.applyNLPlemma(content);
-        byte score = 0;
-        for (String word : eventList) {
-            if (rulesMap.containsKey(word)) {
-                score += rulesMap.get(word);
-            }
-        }
-        if (score > MAX) {
-            score = MAX;
+        int score = 0;
+        if (filter.matches(content)) {
+            AnnotatedDocument document = AnnotatedDocument.of(event, content);
+            score = rules.scoreWords(openNLP.applyNLPlemma(document))
+                    + rules.scorePhrases(openNLP.applyNLPlemmaSequence(document), openNLP.applyNLPtokens(document));
         }
         long time = System.currentTimeMillis() - start;
         METRICS_LOGGER.log("time_scoring_" + event.getSource(), time);
-        return new Event(event.getLocation(), event.getStart(), event.getEnd(), event.getDescription(), score, event.getSource());
+        return event.withScore(RuleIndex.clamp(score, (byte) 0, MAX));
     }
 
     /**
@@ -80,7 +80,7 @@ public class MockScoreProcessor implements IScoreProcessor {
         LOGGER.info("Score aléatoire: " + nombreAleatoire);
         long time = System.currentTimeMillis() - start;
         METRICS_LOGGER.log("time_scoring_" + event.getSource(), time);
-        return new Event(event.getLocation(), event.getStart(), event.getEnd(), event.getDescription(), nombreAleatoire, event.getSource());
+        return event.withScore(nombreAleatoire);
     }
 
     /**
@@ -103,5 +103,14 @@ public class MockScoreProcessor implements IScoreProcessor {
         }
         return sources;
     }
-}
 
+    /**
+     * This {@link IScoreProcessor} is shared by all threads, it has no state
+     *
+     * @return true
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+}
@@ -24,7 +24,10 @@ import com.waves_rsp.ikb4stream.core.datasource.model.IScoreProcessor;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.KeywordFilter;
+import com.waves_rsp.ikb4stream.core.util.RuleIndex;
 import com.waves_rsp.ikb4stream.core.util.RulesReader;
+import com.waves_rsp.ikb4stream.core.util.nlp.AnnotatedDocument;
 import com.waves_rsp.ikb4stream.core.util.nlp.OpenNLP;
 import org.slf4j.LoggerFactory;
 
@@ -67,26 +70,33 @@ public class OpenAgendaScoreProcessor implements IScoreProcessor {
     /**
      * Max score to an {@link Event}
      *
-     * @see OpenAgendaScoreProcessor#verifyMaxScore(byte)
+     * @see OpenAgendaScoreProcessor#processScore(Event)
      */
     private static final byte MAX_SCORE = Event.getScoreMax();
     /**
-     * Map word, score
+     * Rules compiled from the file given by openagenda.rules.file
      *
      * @see OpenAgendaScoreProcessor#processScore(Event)
      */
-    private final Map<String, Integer> rulesMap;
+    private final RuleIndex rules;
+    /**
+     * Pre-filter of the rules compiled from the file given by openagenda.rules.file, texts it rejects are not lemmatized
+     *
+     * @see OpenAgendaScoreProcessor#processScore(Event)
+     */
+    private final KeywordFilter filter;
 
     /**
-     * Default constructor to initialize {@link OpenAgendaScoreProcessor#rulesMap} with a {@link PropertiesManager}
+     * Default constructor to initialize {@link OpenAgendaScoreProcessor#rules} with a {@link PropertiesManager}
      *
-     * @see OpenAgendaScoreProcessor#rulesMap
+     * @see OpenAgendaScoreProcessor#rules
      * @see OpenAgendaScoreProcessor#PROPERTIES_MANAGER
      */
     public OpenAgendaScoreProcessor() {
         try {
             String filename = PROPERTIES_MANAGER.getProperty("openagenda.rules.file");
-            rulesMap = RulesReader.parseJSONRules(filename);
+            rules = RulesReader.compileJSONRules(filename);
+            filter = RulesReader.compileJSONFilter(filename);
         } catch (IllegalArgumentException e) {
             LOGGER.error("Invalid property {} ", e);
             throw new IllegalStateException("Invalid property\n" + e.getMessage());
@@ -96,39 +106,43 @@ public class OpenAgendaScoreProcessor implements IScoreProcessor {
     /**
      * Process score of an event from an {@link Event}
      *
-     * @param event an {@link Event} without {@link Event#score}
+     * @param event an {@link Event} without {@link Event#score}, with title and description attributes from the
+     *              connector or a JSON object as description
      * @return Event with a score after {@link OpenNLP} processing
      * @throws NullPointerException if event is null
-     * @see OpenAgendaScoreProcessor#rulesMap
+     * @see OpenAgendaScoreProcessor#rules
      * @see OpenAgendaScoreProcessor#openNLP
+     * @see OpenAgendaScoreProcessor#filter
      * @see Event
      */
     @Override
     public Event processScore(Event event) {
         Objects.requireNonNull(event);
         long start = System.currentTimeMillis();
-        ObjectMapper mapper = new ObjectMapper();
         String eventDesc;
-        byte score = 0;
-        try {
-            JsonNode jsonDescription = mapper.readTree(event.getDescription());
-            String title = jsonDescription.get("title").asText();
-            String description = jsonDescription.get("description").asText();
+        String title = event.getAttribute("title", String.class);
+        String description = event.getAttribute("description", String.class);
+        if (title != null && description != null) {
             eventDesc = title + " " + description;
-            List<String> fbList = openNLP.applyNLPlemma(eventDesc);
-            for (String word : fbList) {
-                if (rulesMap.containsKey(word)) {
-                    score += rulesMap.get(word);
-                }
+        } else {
+            try {
+                JsonNode jsonDescription = new ObjectMapper().readTree(event.getDescription());
+                eventDesc = jsonDescription.get("title").asText() + " " + jsonDescription.get("description").asText();
+            } catch (IOException e) {
+                LOGGER.error("Bad json format or tree cannot be read {} ", e);
+                throw new IllegalArgumentException("Bad json format or tree cannot be read");
             }
-        } catch (IOException e) {
-            LOGGER.error("Bad json format or tree cannot be read {} ", e);
-            throw new IllegalArgumentException("Bad json format or tree cannot be read");
+        }
+        int score = 0;
+        if (filter.matches(eventDesc)) {
+            AnnotatedDocument document = AnnotatedDocument.of(event, eventDesc);
+            score = rules.scoreWords(openNLP.applyNLPlemma(document))
+                    + rules.scorePhrases(openNLP.applyNLPlemmaSequence(document), openNLP.applyNLPtokens(document));
         }
 
         long time = System.currentTimeMillis() - start;
         METRICS_LOGGER.log("time_scoring_" + event.getSource(), time);
-        return new Event(event.getLocation(), event.getStart(), event.getEnd(), eventDesc, verifyMaxScore(score), event.getSource());
+        return event.withScore(eventDesc, RuleIndex.clamp(score, (byte) 0, MAX_SCORE));
     }
 
     /**
@@ -148,17 +162,4 @@ public class OpenAgendaScoreProcessor implements IScoreProcessor {
         }
         return sources;
     }
-
-    /**
-     * Check that the score can't overtake {@link OpenAgendaScoreProcessor#MAX_SCORE}
-     *
-     * @param score calculated by {@link OpenNLP} processing
-     * @return score {@link OpenAgendaScoreProcessor#MAX_SCORE}
-     */
-    private byte verifyMaxScore(byte score) {
-        if (score > MAX_SCORE) {
-            return MAX_SCORE;
-        }
-        return score;
-    }
 }
@@ -144,7 +144,8 @@ public class OWMScoreProcessor implements IScoreProcessor {
     /**
      * Process score of an event from an {@link Event}
      *
-     * @param event an {@link Event} without {@link Event#score}
+     * @param event an {@link Event} without {@link Event#score}, with attributes from the connector or a raw response
+     *              of OpenWeatherMap as description
      * @return Event with a score after temperature analysis
      * @throws NullPointerException if event is null
      * @see OWMScoreProcessor#objectMapper
@@ -153,22 +154,56 @@ public class OWMScoreProcessor implements IScoreProcessor {
     @Override
     public Event processScore(Event event) {
         Objects.requireNonNull(event);
+        Double temperature = event.getAttribute("temperature", Double.class);
+        if (temperature != null) {
+            String description = createDescription(event.getAttribute("weather_description", String.class), temperature,
+                    format(event.getAttribute("pressure", Double.class)),
+                    format(event.getAttribute("humidity", Double.class)),
+                    format(event.getAttribute("wind_speed", Double.class)));
+            return event.withScore(description, score(temperature, event.getAttribute("weather", String.class)));
+        }
         String jsonString = event.getDescription();
         try {
             JsonNode jn = objectMapper.readTree(jsonString);
-            double temperature = jn.path("main").path("temp").asDouble();
-            //We suppose that if the T° < threshold, no one turn on fill up his pool
-            byte score1 = (byte) ((temperature - threshold) * factor);
-            //About the weather, if it rain or snow
-            byte score2 = weatherType(score1, jn.path("weather").get(0).path("main").asText());
+            byte score = score(jn.path("main").path("temp").asDouble(), jn.path("weather").get(0).path("main").asText());
             String description = createDescription(jn);
-            return new Event(event.getLocation(), event.getStart(), event.getEnd(), description, verifyMaxScore(score2), event.getSource());
+            return event.withScore(description, score);
         } catch (IOException e) {
             LOGGER.warn("objectMapper failed: {}", e);
             return event;
         }
     }
 
+    /**
+     * Score a weather
+     *
+     * @param temperature Temperature in °C
+     * @param weather     Weather type, can be null
+     * @return Score between {@link OWMScoreProcessor#MIN_SCORE} and {@link OWMScoreProcessor#MAX_SCORE}
+     * @see OWMScoreProcessor#threshold
+     * @see OWMScoreProcessor#factor
+     */
+    private byte score(double temperature, String weather) {
+        //We suppose that if the T° < threshold, no one turn on fill up his pool
+        byte score1 = (byte) ((temperature - threshold) * factor);
+        //About the weather, if it rain or snow
+        byte score2 = weather == null ? score1 : weatherType(score1, weather);
+        return verifyMaxScore(score2);
+    }
+
+    /**
+     * Format a number like it's written in a raw response of OpenWeatherMap
+     *
+     * @param value Number to format, can be null
+     * @return value without decimal part if it's an integer, empty if value is null
+     */
+    private static String format(Double value) {
+        if (value == null) {
+            return "";
+        }
+        return value == Math.rint(value) ? Long.toString(value.longValue()) : value.toString();
+    }
+
     /**
      * Describe an {@link Event}
      *
@@ -176,12 +211,26 @@ public class OWMScoreProcessor implements IScoreProcessor {
      * @return Future string of {@link Event#description}
      */
     private static String createDescription(JsonNode node) {
-        String weather = "Weather: " + node.path("weather").get(0).path("description").asText();
-        String temperature = "Temperature: " + node.path("main").path("temp").asDouble() + "°C";
-        String pressure = "Pressure: " + node.path("main").path("pressure").asText() + "hPa";
-        String humidity = "Humidity: " + node.path("main").path("humidity").asText() + "%";
-        String wind = "Wind: " + node.path("wind").path("speed").asText() + "m/s";
-        return weather + "\\n" + temperature + "\\n" + pressure + "\\n" + humidity + "\\n" + wind;
+        return createDescription(node.path("weather").get(0).path("description").asText(),
+                node.path("main").path("temp").asDouble(),
+                node.path("main").path("pressure").asText(),
+                node.path("main").path("humidity").asText(),
+                node.path("wind").path("speed").asText());
+    }
+
+    /**
+     * Describe an {@link Event}
+     *
+     * @param weather     Description of the weather
+     * @param temperature Temperature in °C
+     * @param pressure    Pressure in hPa
+     * @param humidity    Humidity in %
+     * @param wind        Wind speed in m/s
+     * @return Future string of {@link Event#description}
+     */
+    private static String createDescription(String weather, double temperature, String pressure, String humidity, String wind) {
+        return "Weather: " + weather + "\\n" + "Temperature: " + temperature + "°C" + "\\n" + "Pressure: " + pressure + "hPa"
+                + "\\n" + "Humidity: " + humidity + "%" + "\\n" + "Wind: " + wind + "m/s";
     }
 
     /**
@@ -201,4 +250,14 @@ public class OWMScoreProcessor implements IScoreProcessor {
         }
         return sources;
     }
+
+    /**
+     * This {@link IScoreProcessor} is shared by all threads, rules are only read after construction
+     *
+     * @return true
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -22,7 +22,10 @@ import com.waves_rsp.ikb4stream.core.datasource.model.IScoreProcessor;
 import com.waves_rsp.ikb4stream.core.metrics.MetricsLogger;
 import com.waves_rsp.ikb4stream.core.model.Event;
 import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import com.waves_rsp.ikb4stream.core.util.KeywordFilter;
+import com.waves_rsp.ikb4stream.core.util.RuleIndex;
 import com.waves_rsp.ikb4stream.core.util.RulesReader;
+import com.waves_rsp.ikb4stream.core.util.nlp.AnnotatedDocument;
 import com.waves_rsp.ikb4stream.core.util.nlp.OpenNLP;
 import org.slf4j.LoggerFactory;
 import twitter4j.JSONException;
@@ -74,44 +77,46 @@ public class TwitterScoreProcessor implements IScoreProcessor {
      */
     private static final int COEFF_VERIFY_ACCOUNT = 2;
     /**
+     * Rules compiled from the file given by twitter.rules.file
      *
+     * @see TwitterScoreProcessor#scoreWords(List)
+     * @see TwitterScoreProcessor#scorePhrases(List, List)
      */
-    private final Map<String, Integer> rulesMap;
+    private final RuleIndex rules;
+    /**
+     * Pre-filter of the rules compiled from the file given by twitter.rules.file, texts it rejects are not lemmatized
+     *
+     * @see TwitterScoreProcessor#processScore(Event)
+     */
+    private final KeywordFilter filter;
     /**
      *
      */
     private static final int COEFF_HASHTAG = 2;
+    /**
+     * Name of the Boolean attribute of an {@link Event} telling if the Twitter account is certified
+     *
+     * @see TwitterScoreProcessor#processScore(Event)
+     */
+    private static final String USER_CERTIFIED = "user_certified";
 
     /**
-     * Default constructor to initialize {@link TwitterScoreProcessor#rulesMap} with a {@link PropertiesManager}
+     * Default constructor to initialize {@link TwitterScoreProcessor#rules} with a {@link PropertiesManager}
      *
-     * @see TwitterScoreProcessor#rulesMap
+     * @see TwitterScoreProcessor#rules
      * @see TwitterScoreProcessor#PROPERTIES_MANAGER
      */
     public TwitterScoreProcessor() {
         try {
             String filename = PROPERTIES_MANAGER.getProperty("twitter.rules.file");
-            rulesMap = RulesReader.parseJSONRules(filename);
+            rules = RulesReader.compileJSONRules(filename);
+            filter = RulesReader.compileJSONFilter(filename);
         } catch (IllegalArgumentException e) {
             LOGGER.error(e.getMessage());
             throw new IllegalStateException(e.getMessage());
         }
     }
 
-    /**
-     * Check that the score can't overtake {@link TwitterScoreProcessor#MAX_SCORE}
-     *
-     * @param score calculated by OpenNLP processing
-     * @return score (max = {@link TwitterScoreProcessor#MAX_SCORE})
-     * @see TwitterScoreProcessor#MAX_SCORE
-     */
-    private byte verifyMaxScore(byte score) {
-        if (score > MAX_SCORE) {
-            return MAX_SCORE;
-        }
-        return score;
-    }
-
     /**
      * Check if the word is a hashtag
      *
@@ -154,35 +159,49 @@ public class TwitterScoreProcessor implements IScoreProcessor {
     /**
      * Process score of an event from {@link com.waves_rsp.ikb4stream.datasource.twitter.TwitterProducerConnector TwitterProducerConnector}
      *
-     * @param event an event without score
+     * @param event an event without score, its description is the tweet if it has {@link TwitterScoreProcessor#USER_CERTIFIED}
+     *              attribute, a JSON object otherwise
      * @return Event with a score after OpenNLP processing
      * @throws NullPointerException     if event is null
      * @throws IllegalArgumentException if event is invalid
      * @see TwitterScoreProcessor#openNLP
+     * @see TwitterScoreProcessor#filter
      * @see TwitterScoreProcessor#COEFF_HASHTAG
+     * @see TwitterScoreProcessor#USER_CERTIFIED
      */
     @Override
     public Event processScore(Event event) {
         Objects.requireNonNull(event);
         long start = System.currentTimeMillis();
         String tweet;
-        byte score = 0;
-        try {
-            JSONObject jsonTweet = new JSONObject(event.getDescription());
-            tweet = getParseDescription(jsonTweet);
-            List<String> tweetMap = openNLP.applyNLPlemma(tweet);
-            score = scoreWords(score, tweetMap);
-            //Score x COEFF_VERIFY_ACCOUNT if the twitter is certified
-            if (isCertified(jsonTweet)) {
-                score *= COEFF_VERIFY_ACCOUNT;
+        boolean certified;
+        Boolean userCertified = event.getAttribute(USER_CERTIFIED, Boolean.class);
+        if (userCertified != null) {
+            tweet = event.getDescription();
+            certified = userCertified;
+        } else {
+            try {
+                JSONObject jsonTweet = new JSONObject(event.getDescription());
+                tweet = getParseDescription(jsonTweet);
+                certified = isCertified(jsonTweet);
+            } catch (JSONException e) {
+                LOGGER.error("Wrong JsonObject from Twitter Connector\n" + e.getMessage());
+                throw new IllegalArgumentException("Wrong description of event");
             }
-        } catch (JSONException e) {
-            LOGGER.error("Wrong JsonObject from Twitter Connector\n" + e.getMessage());
-            throw new IllegalArgumentException("Wrong description of event");
+        }
+        int score = 0;
+        if (filter.matches(tweet)) {
+            AnnotatedDocument document = AnnotatedDocument.of(event, tweet);
+            score = scoreWords(openNLP.applyNLPlemma(document))
+                    + scorePhrases(openNLP.applyNLPlemmaSequence(document), openNLP.applyNLPtokens(document));
+        }
+        //Score x COEFF_VERIFY_ACCOUNT if the twitter is certified
+        if (certified) {
+            score *= COEFF_VERIFY_ACCOUNT;
         }
         long time = System.currentTimeMillis() - start;
         METRICS_LOGGER.log("time_scoring_" + event.getSource(), time);
-        return new Event(event.getLocation(), event.getStart(), event.getEnd(), tweet, verifyMaxScore(score), event.getSource());
+        return event.withScore(tweet, RuleIndex.clamp(score, (byte) 0, MAX_SCORE));
     }
 
     /**
@@ -204,32 +223,48 @@ public class TwitterScoreProcessor implements IScoreProcessor {
     }
 
     /**
-     * Score a tweet depending {@link TwitterScoreProcessor#rulesMap}
+     * Score the words of a tweet depending {@link TwitterScoreProcessor#rules}, hashtags count
+     * {@link TwitterScoreProcessor#COEFF_HASHTAG} times
      *
-     * @param score    Actual score of {@link Event}
      * @param tweetMap List of word of tweet
-     * @return New score of {@link Event}
+     * @return Score of single words, not clamped
      * @throws NullPointerException if tweetMap is null
-     * @see TwitterScoreProcessor#rulesMap
+     * @see TwitterScoreProcessor#rules
      */
-    private byte scoreWords(byte score, List<String> tweetMap) {
+    private int scoreWords(List<String> tweetMap) {
         Objects.requireNonNull(tweetMap);
-        byte scoreTmp = score;
+        int score = 0;
         for (String word : tweetMap) {
-            boolean isHashtag = isHashtag(word);
             if (isHashtag(word)) {
-                word = word.substring(1);
+                score += rules.weight(word, 1) * COEFF_HASHTAG;
+            } else {
+                score += rules.weight(word);
             }
-            if (rulesMap.containsKey(word)) {
-                if (isHashtag) {
-                    //if tweetWord is a hashtag
-                    scoreTmp += rulesMap.get(word) * COEFF_HASHTAG;
-                } else {
-                    scoreTmp += rulesMap.get(word);
-                }
+        }
+        return score;
+    }
+
+    /**
+     * Score the phrases of a tweet depending {@link TwitterScoreProcessor#rules}, phrases starting with a hashtag count
+     * {@link TwitterScoreProcessor#COEFF_HASHTAG} times
+     *
+     * @param lemmas Lemma of each token of the tweet, in the order of the text
+     * @param tokens Each token of the tweet in lower case, aligned with lemmas
+     * @return Score of phrases, not clamped
+     * @throws NullPointerException if lemmas or tokens is null
+     * @see TwitterScoreProcessor#rules
+     */
+    private int scorePhrases(List<String> lemmas, List<String> tokens) {
+        Objects.requireNonNull(lemmas);
+        Objects.requireNonNull(tokens);
+        int score = 0;
+        for (int i = 0; i < lemmas.size(); i++) {
+            if (isHashtag(lemmas.get(i))) {
+                score += rules.matchPhrases(lemmas, tokens, i, 1) * COEFF_HASHTAG;
+            } else {
+                score += rules.matchPhrases(lemmas, tokens, i, 0);
             }
         }
-        return scoreTmp;
+        return score;
     }
 }
-
@@ -1,11 +1,19 @@
 package com.waves_rsp.ikb4stream.core.model;
 
+import com.waves_rsp.ikb4stream.core.util.nlp.AnnotatedDocument;
 import org.junit.Test;
 
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class EventTest {
 
@@ -92,4 +100,100 @@ public class EventTest {
     public void testScoreMax() {
         assertEquals(100, Event.getScoreMax());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPackedEqualsAdapted() {
+        LatLong[] location = {new LatLong(2, 3), new LatLong(4, 3), new LatLong(4, 5), new LatLong(2, 3)};
+        Event event = new Event(location, new Date(1000), new Date(2000), "Description", (byte) 10, "twitter");
+        Event packed = new Event(new double[]{2, 3, 4, 3, 4, 5, 2, 3}, 1000, 2000, "Description", (byte) 10, "twitter");
+        assertEquals(event, packed);
+        assertEquals(event.hashCode(), packed.hashCode());
+        assertArrayEquals(location, packed.getLocation());
+        assertEquals(new Date(1000), packed.getStart());
+        assertEquals(2000, event.getEndTime());
+        assertEquals(4, packed.getPointCount());
+        assertEquals(4, packed.getLatitude(1), 0);
+        assertEquals(5, packed.getLongitude(2), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPackedNotClosed() {
+        new Event(new double[]{2, 3, 4, 3, 4, 5}, 1000, 2000, "Description", (byte) -1, "twitter");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPackedOddCoordinates() {
+        new Event(new double[]{2, 3, 2}, 1000, 2000, "Description", (byte) -1, "twitter");
+    }
+
+    @Test
+    public void testWithScore() {
+        Event event = new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "twitter");
+        Event scored = event.withScore((byte) 42);
+        assertEquals(-1, event.getScore());
+        assertEquals(42, scored.getScore());
+        assertEquals(event.getDescription(), scored.getDescription());
+        assertEquals(event.withScore((byte) 42), scored);
+        Event described = event.withScore("Other", (byte) 0);
+        assertEquals("Other", described.getDescription());
+        assertEquals(event.getStartTime(), described.getStartTime());
+    }
+
+    @Test
+    public void testAttributes() {
+        Event event = new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "twitter");
+        assertTrue(event.getAttributes().isEmpty());
+        Event withAttributes = event.withAttributes(Collections.singletonMap("user_certified", true));
+        assertEquals(Boolean.TRUE, withAttributes.getAttribute("user_certified", Boolean.class));
+        assertNull(withAttributes.getAttribute("user_certified", String.class));
+        assertNull(withAttributes.getAttribute("missing", Boolean.class));
+        assertNotEquals(event, withAttributes);
+        assertEquals(withAttributes.getAttributes(), withAttributes.withScore((byte) 10).getAttributes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAttribute() {
+        new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "twitter")
+                .withAttributes(Collections.singletonMap("date", new Date()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAttributesUnmodifiable() {
+        new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "twitter")
+                .withAttributes(Collections.singletonMap("title", "Title")).getAttributes().put("city", "Paris");
+    }
+
+    @Test
+    public void testDocument() {
+        Event event = new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "RSS");
+        assertNull(event.getDocument());
+        AnnotatedDocument document = new AnnotatedDocument("Description");
+        Event withDocument = event.withDocument(document);
+        assertSame(document, withDocument.getDocument());
+        assertEquals(event, withDocument);
+        assertEquals(event.hashCode(), withDocument.hashCode());
+        assertSame(document, withDocument.withScore((byte) 10).getDocument());
+        assertSame(document, withDocument.withAttributes(Collections.singletonMap("title", "Title")).getDocument());
+        assertSame(document, AnnotatedDocument.of(withDocument, "Description"));
+        assertNotSame(document, AnnotatedDocument.of(withDocument, "Other"));
+        assertEquals("Other", AnnotatedDocument.of(event, "Other").getText());
+    }
+
+    @Test
+    public void testId() {
+        Event event = new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "RSS");
+        assertNull(event.getId());
+        Event withId = event.withId("5a0b1c2d3e4f5a6b7c8d9e0f");
+        assertEquals("5a0b1c2d3e4f5a6b7c8d9e0f", withId.getId());
+        assertEquals(event, withId);
+        assertEquals(event.hashCode(), withId.hashCode());
+        assertEquals("5a0b1c2d3e4f5a6b7c8d9e0f", withId.withScore((byte) 10).getId());
+        assertEquals("5a0b1c2d3e4f5a6b7c8d9e0f", withId.withAttributes(Collections.singletonMap("title", "Title")).getId());
+        assertEquals("5a0b1c2d3e4f5a6b7c8d9e0f", withId.withDocument(new AnnotatedDocument("Description")).getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidScore() {
+        new Event(new LatLong(2, 3), new Date(1000), new Date(2000), "Description", "twitter").withScore((byte) 101);
+    }
+}
@@ -0,0 +1,112 @@
+package com.waves_rsp.ikb4stream.core.util;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonObjectId;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventCodecTest {
+    private final EventCodec codec = new EventCodec();
+
+    private BsonDocument encode(Event event) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), event, EncoderContext.builder().build());
+        return document;
+    }
+
+    private Event decode(BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @Test
+    public void testEncodePoint() {
+        Event event = new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), "description", (byte) 42, "source");
+        BsonDocument document = encode(event);
+        assertEquals("description", document.getString("description").getValue());
+        assertEquals("source", document.getString("source").getValue());
+        assertEquals(42, document.getInt32("score").getValue());
+        assertEquals(1000, document.getInt64("start").getValue());
+        assertEquals(2000, document.getInt64("end").getValue());
+        BsonDocument location = document.getDocument("location");
+        assertEquals("Point", location.getString("type").getValue());
+        assertEquals(2.3, location.getArray("coordinates").get(0).asDouble().getValue(), 0);
+        assertEquals(48.8, location.getArray("coordinates").get(1).asDouble().getValue(), 0);
+    }
+
+    @Test
+    public void testRoundTripPolygon() {
+        LatLong[] polygon = {new LatLong(0, 0), new LatLong(0, 1), new LatLong(1, 1), new LatLong(0, 0)};
+        Event event = new Event(polygon, new Date(1000), new Date(2000), "description", (byte) 10, "source");
+        BsonDocument document = encode(event);
+        assertEquals("Polygon", document.getDocument("location").getString("type").getValue());
+        document.put("_id", new BsonObjectId(new ObjectId()));
+        assertEquals(event, decode(document));
+    }
+
+    @Test
+    public void testRoundTripPoint() {
+        Event event = new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), "description", (byte) 0, "source");
+        assertEquals(event, decode(encode(event)));
+    }
+
+    @Test
+    public void testDecodeIntegerCoordinates() {
+        BsonDocument document = encode(new Event(new LatLong(48, 2), new Date(1000), new Date(2000), "description", (byte) 5, "source"));
+        BsonArray point = document.getDocument("location").getArray("coordinates");
+        point.set(0, new BsonInt32(2));
+        point.set(1, new BsonInt64(48));
+        Event event = decode(document);
+        assertEquals(48, event.getLatitude(0), 0);
+        assertEquals(2, event.getLongitude(0), 0);
+    }
+
+    @Test
+    public void testRoundTripId() {
+        Event event = codec.generateIdIfAbsentFromDocument(new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), "description", (byte) 0, "source"));
+        BsonDocument document = encode(event);
+        assertEquals(new ObjectId(event.getId()), document.getObjectId("_id").getValue());
+        assertEquals("_id", document.keySet().iterator().next());
+        assertEquals(event.getId(), decode(document).getId());
+    }
+
+    @Test
+    public void testGenerateId() {
+        Event event = new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), "description", (byte) 0, "source");
+        assertFalse(codec.documentHasId(event));
+        assertFalse(encode(event).containsKey("_id"));
+        Event withId = codec.generateIdIfAbsentFromDocument(event);
+        assertTrue(codec.documentHasId(withId));
+        assertTrue(ObjectId.isValid(withId.getId()));
+        assertSame(withId, codec.generateIdIfAbsentFromDocument(withId));
+        assertEquals(new BsonObjectId(new ObjectId(withId.getId())), codec.getDocumentId(withId));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetMissingId() {
+        codec.getDocumentId(new Event(new LatLong(1, 1), new Date(), new Date(), "description", (byte) 1, "source"));
+    }
+
+    @Test(expected = BsonInvalidOperationException.class)
+    public void testDecodeMissingField() {
+        BsonDocument document = encode(new Event(new LatLong(1, 1), new Date(), new Date(), "description", (byte) 1, "source"));
+        document.remove("source");
+        decode(document);
+    }
+}
@@ -0,0 +1,65 @@
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeywordFilterTest {
+
+    private static KeywordFilter filter() {
+        return KeywordFilter.compile(Arrays.asList("eau", "fuite", "inondation", "fuyait"));
+    }
+
+    @Test
+    public void testMatches() {
+        KeywordFilter filter = filter();
+        assertTrue(filter.matches("Une fuite dans la rue"));
+        assertTrue(filter.matches("eau"));
+        assertTrue(filter.matches("La canalisation fuyait depuis hier"));
+        assertFalse(filter.matches("Match de football ce soir"));
+        assertFalse(filter.matches(""));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        KeywordFilter filter = filter();
+        assertTrue(filter.matches("INONDATION en cours"));
+        assertTrue(KeywordFilter.compile(Collections.singletonList("EAU")).matches("de l'eau"));
+    }
+
+    @Test
+    public void testSubstring() {
+        KeywordFilter filter = filter();
+        assertTrue(filter.matches("#inondations"));
+        assertTrue(filter.matches("bureau"));
+    }
+
+    @Test
+    public void testFailureLinks() {
+        KeywordFilter filter = KeywordFilter.compile(Arrays.asList("abcd", "bce", "ce"));
+        assertTrue(filter.matches("xxabcexx"));
+        assertTrue(filter.matches("abce"));
+        assertFalse(filter.matches("abcabc"));
+        assertTrue(KeywordFilter.compile(Arrays.asList("aab")).matches("aaab"));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertFalse(KeywordFilter.compile(Collections.emptyList()).matches("eau"));
+        assertFalse(KeywordFilter.compile(Collections.singletonList("")).matches("eau"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullKeywords() {
+        KeywordFilter.compile(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullText() {
+        filter().matches(null);
+    }
+}
@@ -0,0 +1,68 @@
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ModuleWatcherTest {
+    private final BlockingQueue<Path> changed = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Path> deleted = new LinkedBlockingQueue<>();
+    private Path directory;
+    private ModuleWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        Thread.interrupted();
+        directory = Files.createTempDirectory("modules").toAbsolutePath().normalize();
+        watcher = new ModuleWatcher(directory, 100, changed::add, deleted::add);
+        watcher.start("Module watcher test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        watcher.stop();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testChangedJar() throws IOException, InterruptedException {
+        Files.write(directory.resolve("rules.txt"), new byte[]{1});
+        Path jar = Files.write(directory.resolve("module.jar"), new byte[]{1});
+        assertEquals(jar, changed.poll(10, TimeUnit.SECONDS));
+        assertNull(changed.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDeletedJar() throws IOException, InterruptedException {
+        Path jar = Files.write(directory.resolve("module.jar"), new byte[]{1});
+        assertEquals(jar, changed.poll(10, TimeUnit.SECONDS));
+        Files.delete(jar);
+        assertEquals(jar, deleted.poll(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNewDirectory() throws IOException, InterruptedException {
+        Path sub = Files.createDirectory(directory.resolve("sub"));
+        Path jar = Files.write(sub.resolve("module.jar"), new byte[]{1});
+        assertEquals(jar, changed.poll(10, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartTwice() {
+        watcher.start("Module watcher test");
+    }
+}
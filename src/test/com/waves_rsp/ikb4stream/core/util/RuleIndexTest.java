@@ -0,0 +1,118 @@
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RuleIndexTest {
+
+    private static RuleIndex rules() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("eau", 10);
+        map.put("fuite", 5);
+        map.put("aire de jeux", 7);
+        map.put("consommation anormale", 20);
+        map.put("consommation", 1);
+        return RuleIndex.compile(map);
+    }
+
+    @Test
+    public void testWeight() {
+        RuleIndex rules = rules();
+        assertEquals(10, rules.weight("eau"));
+        assertEquals(1, rules.weight("consommation"));
+        assertEquals(0, rules.weight("feu"));
+        assertEquals(0, rules.weight("aire"));
+    }
+
+    @Test
+    public void testScoreWords() {
+        assertEquals(25, rules().score(Arrays.asList("fuite", "eau", "eau", "maison")));
+    }
+
+    @Test
+    public void testScorePhrases() {
+        RuleIndex rules = rules();
+        assertEquals(7, rules.score(Arrays.asList("une", "aire", "de", "jeux")));
+        assertEquals(0, rules.score(Arrays.asList("aire", "de")));
+        assertEquals(21, rules.score(Arrays.asList("consommation", "anormale")));
+        assertEquals(1, rules.score(Arrays.asList("anormale", "consommation")));
+    }
+
+    @Test
+    public void testScoreWordsIgnorePhrases() {
+        RuleIndex rules = rules();
+        assertEquals(11, rules.scoreWords(Arrays.asList("consommation", "anormale", "eau")));
+        assertEquals(10, rules.weight("#eau", 1));
+        assertEquals(0, rules.weight("#eau", 0));
+    }
+
+    @Test
+    public void testScorePhrasesOnLemmasAndTokens() {
+        RuleIndex rules = rules();
+        // "jeux" is lemmatized as "jeu", the rule is written with the token
+        List<String> lemmas = Arrays.asList("un", "aire", "de", "jeu", "et", "un", "consommation", "anormal");
+        List<String> tokens = Arrays.asList("une", "aire", "de", "jeux", "et", "une", "consommation", "anormale");
+        assertEquals(27, rules.scorePhrases(lemmas, tokens));
+        assertEquals(0, rules.scorePhrases(Arrays.asList("aire", "de"), Arrays.asList("aire", "de")));
+        assertEquals(0, rules.scorePhrases(Arrays.asList("eau", "fuite"), Arrays.asList("eau", "fuite")));
+    }
+
+    @Test
+    public void testMatchPhrasesFrom() {
+        List<String> words = Arrays.asList("#consommation", "anormale");
+        assertEquals(20, rules().matchPhrases(words, words, 0, 1));
+        assertEquals(0, rules().matchPhrases(words, words, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPhrasesNotAligned() {
+        rules().scorePhrases(Arrays.asList("aire", "de"), Collections.singletonList("aire"));
+    }
+
+    @Test
+    public void testMatchFrom() {
+        List<String> words = Arrays.asList("#eau", "#consommation", "anormale");
+        RuleIndex rules = rules();
+        assertEquals(10, rules.match(words, 0, 1));
+        assertEquals(21, rules.match(words, 1, 1));
+        assertEquals(0, rules.match(words, 0, 0));
+    }
+
+    @Test
+    public void testManyRules() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put("word" + i, i);
+        }
+        RuleIndex rules = RuleIndex.compile(map);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, rules.weight("word" + i));
+        }
+        assertEquals(0, rules.weight("word1000"));
+    }
+
+    @Test
+    public void testEmpty() {
+        RuleIndex rules = RuleIndex.compile(Collections.emptyMap());
+        assertEquals(0, rules.score(Arrays.asList("eau", "fuite")));
+    }
+
+    @Test
+    public void testClamp() {
+        assertEquals(100, RuleIndex.clamp(400, (byte) 0, (byte) 100));
+        assertEquals(0, RuleIndex.clamp(-5, (byte) 0, (byte) 100));
+        assertEquals(42, RuleIndex.clamp(42, (byte) 0, (byte) 100));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullRules() {
+        RuleIndex.compile(null);
+    }
+}
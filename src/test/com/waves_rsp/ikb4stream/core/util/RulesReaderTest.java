@@ -0,0 +1,96 @@
+package com.waves_rsp.ikb4stream.core.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RulesReaderTest {
+
+    @Test
+    public void testParsedOnce() throws IOException {
+        Path file = Files.createTempFile("rules", ".json");
+        try {
+            Files.write(file, "{\"keyword\": [{\"word\": \"eau\", \"score\": 10}]}".getBytes(StandardCharsets.UTF_8));
+            Map<String, Integer> rules = RulesReader.parseJSONRules(file.toString());
+            assertEquals(Integer.valueOf(10), rules.get("eau"));
+            assertSame(rules, RulesReader.parseJSONRules(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParsedAgainWhenModified() throws IOException {
+        Path file = Files.createTempFile("rules", ".json");
+        try {
+            Files.write(file, "{\"keyword\": [{\"word\": \"eau\", \"score\": 10}]}".getBytes(StandardCharsets.UTF_8));
+            Map<String, Integer> rules = RulesReader.parseJSONRules(file.toString());
+            Files.write(file, "{\"keyword\": [{\"word\": \"eau\", \"score\": 20}]}".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(file.toFile().lastModified() + 1000));
+            assertEquals(Integer.valueOf(10), rules.get("eau"));
+            assertEquals(Integer.valueOf(20), RulesReader.parseJSONRules(file.toString()).get("eau"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCompiledOnce() throws IOException {
+        Path file = Files.createTempFile("rules", ".json");
+        try {
+            Files.write(file, "{\"keyword\": [{\"word\": \"aire de jeux\", \"score\": 10}]}".getBytes(StandardCharsets.UTF_8));
+            RuleIndex rules = RulesReader.compileJSONRules(file.toString());
+            assertEquals(10, rules.score(Arrays.asList("aire", "de", "jeux")));
+            assertSame(rules, RulesReader.compileJSONRules(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFilterFirstWords() throws IOException {
+        Path file = Files.createTempFile("rules", ".json");
+        try {
+            Files.write(file, "{\"keyword\": [{\"word\": \"aire de jeux\", \"score\": 10}, {\"word\": \"eau\", \"score\": 5}]}".getBytes(StandardCharsets.UTF_8));
+            KeywordFilter filter = RulesReader.compileJSONFilter(file.toString());
+            assertTrue(filter.matches("Une Aire de jeux"));
+            assertTrue(filter.matches("#eau"));
+            assertFalse(filter.matches("Des jeux"));
+            assertSame(filter, RulesReader.compileJSONFilter(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() throws IOException {
+        Path file = Files.createTempFile("rules", ".json");
+        try {
+            Files.write(file, "{\"keyword\": []}".getBytes(StandardCharsets.UTF_8));
+            RulesReader.parseJSONRules(file.toString()).put("eau", 10);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMissingFile() {
+        assertTrue(RulesReader.parseJSONRules("missing-rules.json").isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullFilename() {
+        RulesReader.parseJSONRules(null);
+    }
+}
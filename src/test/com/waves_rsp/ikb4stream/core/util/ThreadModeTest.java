@@ -0,0 +1,58 @@
+package com.waves_rsp.ikb4stream.core.util;
+
+import com.waves_rsp.ikb4stream.core.model.PropertiesManager;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadModeTest {
+    private static final PropertiesManager PROPERTIES_MANAGER = PropertiesManager.getInstance(ThreadModeTest.class, "resources/config.properties");
+
+    @Test
+    public void testMissingPropertyIsPlatform() {
+        assertEquals(ThreadMode.PLATFORM, ThreadMode.fromProperty(PROPERTIES_MANAGER, "test.thread.mode"));
+    }
+
+    @Test
+    public void testPlatformThread() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        Thread thread = ThreadMode.PLATFORM.newThread(() -> ran.set(true), "platform");
+        assertEquals("platform", thread.getName());
+        assertFalse(thread.isAlive());
+        thread.start();
+        thread.join();
+        assertTrue(ran.get());
+    }
+
+    @Test
+    public void testVirtualThread() throws InterruptedException {
+        if (!ThreadMode.isVirtualSupported()) {
+            return;
+        }
+        AtomicBoolean ran = new AtomicBoolean();
+        Thread thread = ThreadMode.VIRTUAL.newThread(() -> ran.set(true), "virtual");
+        assertEquals("virtual", thread.getName());
+        assertTrue(thread.isDaemon());
+        thread.start();
+        thread.join();
+        assertTrue(ran.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVirtualUnsupported() {
+        if (ThreadMode.isVirtualSupported()) {
+            throw new IllegalStateException();
+        }
+        ThreadMode.VIRTUAL.newThread(() -> {
+        }, "virtual");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullTask() {
+        ThreadMode.PLATFORM.newThread(null, "platform");
+    }
+}
@@ -0,0 +1,81 @@
+package com.waves_rsp.ikb4stream.producer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightWindowTest {
+    @Before
+    public void setUp() {
+        Thread.interrupted();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new InFlightWindow(0);
+    }
+
+    @Test
+    public void testFullWindow() throws InterruptedException {
+        InFlightWindow window = new InFlightWindow(2);
+        assertTrue(window.tryAcquire());
+        assertTrue(window.acquire(0));
+        assertEquals(2, window.getInFlightCount());
+        assertFalse(window.tryAcquire());
+        long start = System.nanoTime();
+        assertFalse(window.acquire(50));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        window.release();
+        assertEquals(1, window.getInFlightCount());
+        assertTrue(window.tryAcquire());
+    }
+
+    @Test
+    public void testReleaseWakesWaiter() throws InterruptedException {
+        InFlightWindow window = new InFlightWindow(1);
+        assertTrue(window.tryAcquire());
+        AtomicBoolean acquired = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                acquired.set(window.acquire(5000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        thread.start();
+        Thread.sleep(50);
+        window.release();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+    }
+
+    @Test
+    public void testInterruptStopsWaiting() throws InterruptedException {
+        InFlightWindow window = new InFlightWindow(1);
+        assertTrue(window.tryAcquire());
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                window.acquire(60_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        thread.start();
+        Thread.sleep(50);
+        thread.interrupt();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(interrupted.get());
+        assertEquals(1, window.getInFlightCount());
+    }
+}
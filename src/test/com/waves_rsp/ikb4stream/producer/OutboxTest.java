@@ -0,0 +1,113 @@
+package com.waves_rsp.ikb4stream.producer;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutboxTest {
+    private Path directory;
+
+    private static Event event(int i) {
+        return new Event(new LatLong(1, 1), new Date(i), new Date(i), "event " + i, (byte) 10, "outbox");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbox");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSegmentSize() throws IOException {
+        new Outbox(directory, 0);
+    }
+
+    @Test
+    public void testAppendAndReplay() throws IOException {
+        Outbox outbox = new Outbox(directory, 1024 * 1024);
+        assertTrue(outbox.isEmpty());
+        outbox.append(Arrays.asList(event(1), event(2)));
+        outbox.append(Collections.singletonList(event(3)));
+        Path segment = outbox.nextSegment();
+        assertEquals(Arrays.asList(event(1), event(2), event(3)), outbox.read(segment));
+        outbox.delete(segment);
+        assertNull(outbox.nextSegment());
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    public void testKeepIds() throws IOException {
+        Outbox outbox = new Outbox(directory, 1024 * 1024);
+        Event event = event(1).withId("5a0b1c2d3e4f5a6b7c8d9e0f");
+        outbox.append(Arrays.asList(event, event(2)));
+        List<Event> events = outbox.read(outbox.nextSegment());
+        assertEquals("5a0b1c2d3e4f5a6b7c8d9e0f", events.get(0).getId());
+        assertNull(events.get(1).getId());
+    }
+
+    @Test
+    public void testSegmentRollAndRecovery() throws IOException {
+        Outbox outbox = new Outbox(directory, 1);
+        outbox.append(Collections.singletonList(event(1)));
+        outbox.append(Collections.singletonList(event(2)));
+        outbox.close();
+        Outbox reopened = new Outbox(directory, 1);
+        List<Event> events = new ArrayList<>();
+        Path segment;
+        while ((segment = reopened.nextSegment()) != null) {
+            events.addAll(reopened.read(segment));
+            reopened.delete(segment);
+        }
+        assertEquals(Arrays.asList(event(1), event(2)), events);
+    }
+
+    @Test
+    public void testTruncatedRecordIgnored() throws IOException {
+        Outbox outbox = new Outbox(directory, 1024 * 1024);
+        outbox.append(Collections.singletonList(event(1)));
+        Path segment = outbox.nextSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{100, 0, 0, 0, 1, 2}));
+        }
+        assertEquals(Collections.singletonList(event(1)), outbox.read(segment));
+    }
+
+    @Test
+    public void testQuarantine() throws IOException {
+        Outbox outbox = new Outbox(directory, 1024 * 1024);
+        outbox.append(Arrays.asList(event(1), event(2), event(3)));
+        Path segment = outbox.nextSegment();
+        Path quarantine = outbox.quarantine(segment, Collections.singletonList(event(2)));
+        assertFalse(Files.exists(segment));
+        assertTrue(outbox.isEmpty());
+        assertEquals(Collections.singletonList(event(2)), outbox.read(quarantine));
+        assertNull(new Outbox(directory, 1024 * 1024).nextSegment());
+    }
+}
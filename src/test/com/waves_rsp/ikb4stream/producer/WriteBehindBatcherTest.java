@@ -0,0 +1,78 @@
+package com.waves_rsp.ikb4stream.producer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindBatcherTest {
+    @Test(expected = NullPointerException.class)
+    public void testNullWriter() {
+        new WriteBehindBatcher<String>(10, 10, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBatchSize() {
+        new WriteBehindBatcher<String>(0, 10, (items, onComplete) -> onComplete.accept(null));
+    }
+
+    @Test
+    public void testFlushWhenFull() {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        WriteBehindBatcher<String> batcher = new WriteBehindBatcher<>(3, 60_000, (items, onComplete) -> {
+            batches.add(new ArrayList<>(items));
+            onComplete.accept(null);
+        });
+        AtomicInteger success = new AtomicInteger();
+        for (int i = 0; i < 7; i++) {
+            batcher.add("event " + i, t -> success.incrementAndGet());
+        }
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(6, success.get());
+        batcher.close();
+        assertEquals(3, batches.size());
+        assertEquals(7, success.get());
+    }
+
+    @Test
+    public void testFlushAfterLinger() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        WriteBehindBatcher<String> batcher = new WriteBehindBatcher<>(100, 10, (items, onComplete) -> onComplete.accept(null));
+        batcher.add("a", t -> latch.countDown());
+        batcher.add("b", t -> latch.countDown());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        batcher.close();
+    }
+
+    @Test
+    public void testWriteRightAwayAfterClose() {
+        AtomicInteger success = new AtomicInteger();
+        WriteBehindBatcher<String> batcher = new WriteBehindBatcher<>(100, 60_000, (items, onComplete) -> onComplete.accept(null));
+        batcher.add("a", t -> success.incrementAndGet());
+        batcher.close();
+        assertEquals(1, success.get());
+        batcher.add("b", t -> success.incrementAndGet());
+        assertEquals(2, success.get());
+    }
+
+    @Test
+    public void testErrorForwardedToEachCallback() {
+        RuntimeException error = new RuntimeException("write failed");
+        List<Throwable> results = new ArrayList<>();
+        WriteBehindBatcher<String> batcher = new WriteBehindBatcher<>(2, 60_000, (items, onComplete) -> onComplete.accept(error));
+        batcher.add("a", results::add);
+        batcher.add("b", results::add);
+        assertEquals(2, results.size());
+        results.forEach(t -> assertSame(error, t));
+        batcher.close();
+    }
+}
@@ -0,0 +1,125 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.datasource.model.IDataProducer;
+import com.waves_rsp.ikb4stream.core.datasource.model.IScheduledProducerConnector;
+import com.waves_rsp.ikb4stream.core.util.ThreadMode;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectorSchedulerTest {
+    @Test
+    public void testIntervalWithoutJitter() {
+        assertEquals(1000, ConnectorScheduler.nextDelay(1000, 0, 60_000, 0, 0.9));
+    }
+
+    @Test
+    public void testJitterBounds() {
+        assertEquals(900, ConnectorScheduler.nextDelay(1000, 0, 60_000, 10, 0));
+        assertEquals(1000, ConnectorScheduler.nextDelay(1000, 0, 60_000, 10, 0.5));
+        assertEquals(1099, ConnectorScheduler.nextDelay(1000, 0, 60_000, 10, 0.9999));
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        assertEquals(2000, ConnectorScheduler.nextDelay(1000, 1, 60_000, 0, 0));
+        assertEquals(8000, ConnectorScheduler.nextDelay(1000, 3, 60_000, 0, 0));
+        assertEquals(60_000, ConnectorScheduler.nextDelay(1000, 10, 60_000, 0, 0));
+        assertEquals(60_000, ConnectorScheduler.nextDelay(1000, Integer.MAX_VALUE, 60_000, 0, 0));
+    }
+
+    @Test
+    public void testBackoffNeverBelowInterval() {
+        assertEquals(7_200_000, ConnectorScheduler.nextDelay(7_200_000, 2, 3_600_000, 0, 0));
+    }
+
+    @Test
+    public void testUnschedule() throws InterruptedException {
+        AtomicInteger polls = new AtomicInteger();
+        IScheduledProducerConnector connector = new IScheduledProducerConnector() {
+            @Override
+            public void poll(IDataProducer dataProducer) {
+                polls.incrementAndGet();
+            }
+
+            @Override
+            public long getInterval() {
+                return 10;
+            }
+
+            @Override
+            public boolean isActive() {
+                return true;
+            }
+        };
+        ConnectorScheduler scheduler = new ConnectorScheduler(ThreadMode.PLATFORM);
+        try {
+            scheduler.schedule(connector, event -> { }, getClass().getClassLoader());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (polls.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(scheduler.unschedule(connector));
+            assertFalse(scheduler.unschedule(connector));
+            Thread.sleep(50);
+            int count = polls.get();
+            Thread.sleep(100);
+            assertEquals(count, polls.get());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testUnscheduleWaitsForPoll() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        IScheduledProducerConnector connector = new IScheduledProducerConnector() {
+            @Override
+            public void poll(IDataProducer dataProducer) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.set(true);
+            }
+
+            @Override
+            public long getInterval() {
+                return 10;
+            }
+
+            @Override
+            public boolean isActive() {
+                return true;
+            }
+        };
+        ConnectorScheduler scheduler = new ConnectorScheduler(ThreadMode.PLATFORM);
+        try {
+            scheduler.schedule(connector, event -> { }, getClass().getClassLoader());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }).start();
+            assertTrue(scheduler.unschedule(connector, 5000));
+            assertTrue(finished.get());
+        } finally {
+            scheduler.stop();
+        }
+    }
+}
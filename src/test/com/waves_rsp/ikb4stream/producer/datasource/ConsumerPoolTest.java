@@ -0,0 +1,60 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.util.ThreadMode;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConsumerPoolTest {
+    @Test
+    public void testSteadyLoad() {
+        assertEquals(0, ConsumerPool.delta(4, 1, 8, 10, 200, 1000, 1000));
+    }
+
+    @Test
+    public void testGrowOnWaitTime() {
+        assertEquals(2, ConsumerPool.delta(2, 1, 8, 10, 2000, 1000, 1000));
+    }
+
+    @Test
+    public void testGrowOnBacklog() {
+        // 4000 events at 2 ms each on 2 threads: 4 s to drain, at most doubling
+        assertEquals(2, ConsumerPool.delta(2, 1, 8, 4000, 0, 2000, 1000));
+        assertEquals(1, ConsumerPool.delta(4, 1, 8, 2500, 0, 2000, 1000));
+    }
+
+    @Test
+    public void testGrowBoundedByMax() {
+        assertEquals(1, ConsumerPool.delta(7, 1, 8, 100000, 10000, 1000, 1000));
+        assertEquals(0, ConsumerPool.delta(8, 1, 8, 100000, 10000, 1000, 1000));
+    }
+
+    @Test
+    public void testShrinkWhenIdle() {
+        assertEquals(-1, ConsumerPool.delta(4, 1, 8, 0, 10, 1000, 1000));
+        assertEquals(0, ConsumerPool.delta(1, 1, 8, 0, 10, 1000, 1000));
+        assertEquals(0, ConsumerPool.delta(4, 1, 8, 0, 900, 1000, 1000));
+    }
+
+    @Test
+    public void testFixedPoolDegrades() throws InterruptedException {
+        PersistenceStage persistenceStage = new PersistenceStage(DataQueue.createDataQueue(), (events, callback) -> callback.onResult(null), 0, 1);
+        OverloadController overloadController = new OverloadController(3, 100, 90, 1000, 25, Collections.emptySet(), 4);
+        ConsumerPool pool = new ConsumerPool(DataQueue.createDataQueue(), persistenceStage, ThreadMode.PLATFORM, overloadController, 1, 1, 100, 1000);
+        // Database writes acknowledged after 5 s: the producer is under pressure
+        persistenceStage.getWriteCounter().add(5000, 1);
+        pool.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (overloadController.getMode() == OverloadController.Mode.NORMAL && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(OverloadController.Mode.RAISE_TARGET, overloadController.getMode());
+            assertEquals(1, pool.size());
+        } finally {
+            pool.stop();
+        }
+    }
+}
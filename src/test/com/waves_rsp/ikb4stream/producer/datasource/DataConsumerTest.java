@@ -0,0 +1,25 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataConsumerTest {
+    @Test
+    public void testStopWakesWaitingConsumer() throws InterruptedException {
+        DataQueue dataQueue = DataQueue.createDataQueue();
+        PersistenceStage persistenceStage = new PersistenceStage(dataQueue, (events, callback) -> callback.onResult(null), 0, 1);
+        OverloadController overloadController = new OverloadController(0, 100, 90, 1000, 25, Collections.emptySet(), 4);
+        DataConsumer dataConsumer = DataConsumer.createDataConsumer(dataQueue, persistenceStage, new MeanCounter(), null, null, overloadController);
+        Thread thread = new Thread(dataConsumer::consume);
+        thread.start();
+        Thread.sleep(100);
+        assertTrue(dataQueue.isEmpty());
+        dataConsumer.stop();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+}
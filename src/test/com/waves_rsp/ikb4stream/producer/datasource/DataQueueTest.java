@@ -0,0 +1,46 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataQueueTest {
+    private static Event event(int i) {
+        Date date = new Date();
+        return new Event(new LatLong(1, 1), date, date, "event " + i, "queue");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPopBatchNullList() throws InterruptedException {
+        DataQueue.createDataQueue().popBatch(null, 10, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPopBatchInvalidSize() throws InterruptedException {
+        DataQueue.createDataQueue().popBatch(new ArrayList<>(), 0, 0);
+    }
+
+    @Test
+    public void testPopBatch() throws InterruptedException {
+        Thread.interrupted();
+        DataQueue dataQueue = DataQueue.createDataQueue();
+        for (int i = 0; i < 5; i++) {
+            dataQueue.push(event(i));
+        }
+        List<Event> events = new ArrayList<>();
+        assertEquals(3, dataQueue.popBatch(events, 3, 0));
+        assertEquals(2, dataQueue.popBatch(events, 3, 5));
+        assertEquals(5, events.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("event " + i, events.get(i).getDescription());
+        }
+        assertTrue(dataQueue.isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlineEventQueueTest {
+    private static PackagedEvent packagedEvent(String source, long arrivedTime) {
+        Date date = new Date();
+        return new PackagedEvent(new Event(new LatLong(1, 1), date, date, "event " + arrivedTime, source), arrivedTime);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new DeadlineEventQueue(0, s -> 0, s -> 0);
+    }
+
+    @Test
+    public void testEvictOldestOfLowestPriority() {
+        DeadlineEventQueue queue = new DeadlineEventQueue(2, s -> "OpenWeatherMap".equals(s) ? 1 : 0, s -> 0);
+        assertTrue(queue.offer(packagedEvent("RSS", 0)));
+        assertTrue(queue.offer(packagedEvent("RSS", 1)));
+        assertTrue(queue.offer(packagedEvent("RSS", 2)));
+        assertEquals(2, queue.size());
+        assertTrue(queue.offer(packagedEvent("OpenWeatherMap", 3)));
+        List<PackagedEvent> events = new ArrayList<>();
+        queue.drainTo(events, 10);
+        assertEquals(3, events.get(0).arrivedTime);
+        assertEquals(2, events.get(1).arrivedTime);
+    }
+
+    @Test
+    public void testRejectLowerPriorityWhenFull() {
+        DeadlineEventQueue queue = new DeadlineEventQueue(2, s -> "OpenWeatherMap".equals(s) ? 1 : 0, s -> 0);
+        assertTrue(queue.offer(packagedEvent("OpenWeatherMap", 0)));
+        assertTrue(queue.offer(packagedEvent("OpenWeatherMap", 1)));
+        assertFalse(queue.offer(packagedEvent("RSS", 2)));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testDropExpiredAtTake() throws InterruptedException {
+        AtomicLong now = new AtomicLong();
+        DeadlineEventQueue queue = new DeadlineEventQueue(10, s -> "RSS".equals(s) ? -1 : 0, s -> "Twitter".equals(s) ? 100 : 0, now::get);
+        queue.offer(packagedEvent("Twitter", 0));
+        queue.offer(packagedEvent("Twitter", 50));
+        queue.offer(packagedEvent("RSS", 60));
+        now.set(120);
+        assertEquals(50, queue.take().arrivedTime);
+        now.set(1000);
+        // RSS has no deadline to enforce
+        assertEquals(60, queue.poll(5, TimeUnit.MILLISECONDS).arrivedTime);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDropExpiredBeforeEviction() {
+        AtomicLong now = new AtomicLong();
+        DeadlineEventQueue queue = new DeadlineEventQueue(2, s -> 0, s -> 100, now::get);
+        queue.offer(packagedEvent("RSS", 0));
+        queue.offer(packagedEvent("RSS", 50));
+        now.set(120);
+        assertTrue(queue.offer(packagedEvent("RSS", 120)));
+        List<PackagedEvent> events = new ArrayList<>();
+        assertEquals(2, queue.drainTo(events, 10));
+        assertEquals(50, events.get(0).arrivedTime);
+        assertEquals(120, events.get(1).arrivedTime);
+    }
+
+    @Test
+    public void testDropExpiredBehindHigherPriority() {
+        AtomicLong now = new AtomicLong();
+        DeadlineEventQueue queue = new DeadlineEventQueue(3, s -> "OpenWeatherMap".equals(s) ? 1 : 0, s -> "Twitter".equals(s) ? 100 : 0, now::get);
+        queue.offer(packagedEvent("OpenWeatherMap", 0));
+        queue.offer(packagedEvent("Twitter", 10));
+        queue.offer(packagedEvent("Twitter", 200));
+        now.set(150);
+        assertTrue(queue.offer(packagedEvent("RSS", 150)));
+        List<PackagedEvent> events = new ArrayList<>();
+        assertEquals(3, queue.drainTo(events, 10));
+        assertEquals(0, events.get(0).arrivedTime);
+        assertEquals(150, events.get(1).arrivedTime);
+        assertEquals(200, events.get(2).arrivedTime);
+    }
+
+    @Test
+    public void testEarliestDeadlineFirst() {
+        DeadlineEventQueue queue = new DeadlineEventQueue(10, s -> 0, s -> "Twitter".equals(s) ? 100 : 10_000, () -> 0);
+        queue.offer(packagedEvent("OpenAgenda", 0));
+        queue.offer(packagedEvent("Twitter", 500));
+        queue.offer(packagedEvent("OpenAgenda", 1000));
+        queue.offer(packagedEvent("Twitter", 200));
+        List<PackagedEvent> events = new ArrayList<>();
+        queue.drainTo(events, 10);
+        assertEquals(200, events.get(0).arrivedTime);
+        assertEquals(500, events.get(1).arrivedTime);
+        assertEquals(0, events.get(2).arrivedTime);
+        assertEquals(1000, events.get(3).arrivedTime);
+    }
+
+    @Test
+    public void testPriorityBeforeDeadline() throws InterruptedException {
+        Thread.interrupted();
+        DeadlineEventQueue queue = new DeadlineEventQueue(10, s -> "OpenWeatherMap".equals(s) ? 1 : 0, s -> 0);
+        queue.offer(packagedEvent("Twitter", 0));
+        queue.offer(packagedEvent("OpenWeatherMap", 50));
+        queue.offer(packagedEvent("Twitter", 0));
+        assertEquals("OpenWeatherMap", queue.take().event.getSource());
+        assertEquals("Twitter", queue.take().event.getSource());
+        assertEquals("Twitter", queue.poll(5, TimeUnit.MILLISECONDS).event.getSource());
+        assertNull(queue.poll(5, TimeUnit.MILLISECONDS));
+    }
+}
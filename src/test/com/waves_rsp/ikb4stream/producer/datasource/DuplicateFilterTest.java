@@ -0,0 +1,76 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static com.waves_rsp.ikb4stream.producer.datasource.TestEvents.event;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateFilterTest {
+    @Test
+    public void testDuplicateInWindow() {
+        DuplicateFilter duplicateFilter = new DuplicateFilter(4000, 1024, 0);
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 0));
+        assertTrue(duplicateFilter.isDuplicate(event("description", "source"), 10));
+        assertTrue(duplicateFilter.isDuplicate(event("description", "source"), 2999));
+        assertFalse(duplicateFilter.isDuplicate(event("other description", "source"), 2999));
+    }
+
+    @Test
+    public void testScoreIsIgnored() {
+        DuplicateFilter duplicateFilter = new DuplicateFilter(4000, 1024, 0);
+        Event scored = new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), "description", (byte) 50, "source");
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 0));
+        assertTrue(duplicateFilter.isDuplicate(scored, 0));
+    }
+
+    @Test
+    public void testFieldsAreHashed() {
+        Event base = event("description", "source");
+        long fingerprint = DuplicateFilter.fingerprint(base, 1);
+        assertEquals(fingerprint, DuplicateFilter.fingerprint(event("description", "source"), 1));
+        assertTrue(fingerprint != DuplicateFilter.fingerprint(new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), "description", "other"), 1));
+        assertTrue(fingerprint != DuplicateFilter.fingerprint(new Event(new LatLong(48.9, 2.3), new Date(1000), new Date(2000), "description", "source"), 1));
+        assertTrue(fingerprint != DuplicateFilter.fingerprint(new Event(new LatLong(48.8, 2.3), new Date(1001), new Date(2000), "description", "source"), 1));
+        assertTrue(fingerprint != DuplicateFilter.fingerprint(new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2001), "description", "source"), 1));
+    }
+
+    @Test
+    public void testForgetAfterWindow() {
+        DuplicateFilter duplicateFilter = new DuplicateFilter(4000, 1024, 0);
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 0));
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 4000));
+        assertTrue(duplicateFilter.isDuplicate(event("description", "source"), 4001));
+    }
+
+    @Test
+    public void testForgetAfterLongIdle() {
+        DuplicateFilter duplicateFilter = new DuplicateFilter(4000, 1024, 0);
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 0));
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 100_000));
+        assertTrue(duplicateFilter.isDuplicate(event("description", "source"), 102_000));
+        assertFalse(duplicateFilter.isDuplicate(event("description", "source"), 104_000));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        DuplicateFilter duplicateFilter = new DuplicateFilter(4000, 1 << 16, 0);
+        int duplicates = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (duplicateFilter.isDuplicate(event("description " + i, "source"), 0)) {
+                duplicates++;
+            }
+        }
+        assertTrue(duplicates < 200);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMemory() {
+        new DuplicateFilter(4000, 8, 0);
+    }
+}
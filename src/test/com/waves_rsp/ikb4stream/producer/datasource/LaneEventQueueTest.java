@@ -0,0 +1,90 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LaneEventQueueTest {
+    private static PackagedEvent packagedEvent(String source, int i) {
+        Date date = new Date();
+        return new PackagedEvent(new Event(new LatLong(1, 1), date, date, "event " + i, source), i);
+    }
+
+    private static List<String> sources(List<PackagedEvent> events) {
+        List<String> sources = new ArrayList<>();
+        events.forEach(p -> sources.add(p.event.getSource()));
+        return sources;
+    }
+
+    @Test
+    public void testLaneCapacity() {
+        LaneEventQueue queue = new LaneEventQueue(s -> 1, s -> "Twitter".equals(s) ? 2 : 1);
+        assertTrue(queue.offer(packagedEvent("Twitter", 0)));
+        assertTrue(queue.offer(packagedEvent("Twitter", 1)));
+        assertFalse(queue.offer(packagedEvent("Twitter", 2)));
+        assertTrue(queue.offer(packagedEvent("OpenWeatherMap", 3)));
+        assertFalse(queue.offer(packagedEvent("OpenWeatherMap", 4)));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void testBurstDoesNotStarveOtherLanes() {
+        LaneEventQueue queue = new LaneEventQueue(s -> 1, s -> 1000);
+        for (int i = 0; i < 100; i++) {
+            queue.offer(packagedEvent("Twitter", i));
+        }
+        queue.offer(packagedEvent("OpenAgenda", 100));
+        List<PackagedEvent> batch = new ArrayList<>();
+        queue.drainTo(batch, 2);
+        assertEquals("OpenAgenda", batch.get(1).event.getSource());
+    }
+
+    @Test
+    public void testWeightedRoundRobin() {
+        LaneEventQueue queue = new LaneEventQueue(s -> "OpenWeatherMap".equals(s) ? 3 : 1, s -> 100);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(packagedEvent("Twitter", i));
+            queue.offer(packagedEvent("OpenWeatherMap", i));
+        }
+        List<PackagedEvent> batch = new ArrayList<>();
+        assertEquals(10, queue.drainTo(batch, 100));
+        List<String> expected = new ArrayList<>();
+        String twitter = "Twitter";
+        String owm = "OpenWeatherMap";
+        expected.add(twitter);
+        expected.add(owm);
+        expected.add(owm);
+        expected.add(owm);
+        expected.add(twitter);
+        expected.add(owm);
+        expected.add(owm);
+        expected.add(twitter);
+        expected.add(twitter);
+        expected.add(twitter);
+        assertEquals(expected, sources(batch));
+    }
+
+    @Test
+    public void testFifoInsideLane() throws InterruptedException {
+        Thread.interrupted();
+        LaneEventQueue queue = new LaneEventQueue(s -> 2, s -> 10);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(packagedEvent("RSS", i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, queue.take().arrivedTime);
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll(5, TimeUnit.MILLISECONDS));
+    }
+}
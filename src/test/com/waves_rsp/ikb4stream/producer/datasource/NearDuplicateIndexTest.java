@@ -0,0 +1,94 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NearDuplicateIndexTest {
+    private static final String STORY = "Un incendie s'est declare ce matin dans un entrepot de la zone industrielle de Gennevilliers, " +
+            "les pompiers sont sur place et la circulation est coupee sur la route du port";
+
+    private static Event event(String description, double latitude, String source) {
+        return new Event(new LatLong(latitude, 2.3), new Date(1000), new Date(2000), description, source);
+    }
+
+    private static NearDuplicateIndex index() {
+        return new NearDuplicateIndex(Collections.emptySet(), 0.7, 0.1, 60_000, 1000, 0);
+    }
+
+    @Test
+    public void testNearDuplicate() {
+        NearDuplicateIndex index = index();
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 0));
+        assertTrue(index.isNearDuplicate(event(STORY + " via @leparisien", 48.82, "Twitter"), 10));
+    }
+
+    @Test
+    public void testDifferentText() {
+        NearDuplicateIndex index = index();
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 0));
+        assertFalse(index.isNearDuplicate(event("Concert gratuit ce soir au parc de la Villette, ouverture des portes a 19h", 48.81, "Twitter"), 10));
+    }
+
+    @Test
+    public void testSourceAndCellAreKeys() {
+        NearDuplicateIndex index = index();
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 0));
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "RSS"), 0));
+        assertFalse(index.isNearDuplicate(event(STORY, 45.75, "Twitter"), 0));
+    }
+
+    @Test
+    public void testOnlyConfiguredSources() {
+        NearDuplicateIndex index = new NearDuplicateIndex(Collections.singleton("Twitter"), 0.7, 0.1, 60_000, 1000, 0);
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "RSS"), 0));
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "RSS"), 0));
+    }
+
+    @Test
+    public void testForgetAfterWindow() {
+        NearDuplicateIndex index = index();
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 0));
+        assertTrue(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 59_000));
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 200_000));
+    }
+
+    @Test
+    public void testMaxEntries() {
+        NearDuplicateIndex index = new NearDuplicateIndex(Collections.emptySet(), 0.7, 0.1, 60_000, 1, 0);
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 0));
+        assertFalse(index.isNearDuplicate(event("first other story", 48.81, "Twitter"), 0));
+        assertFalse(index.isNearDuplicate(event("second other story", 48.81, "Twitter"), 0));
+        assertFalse(index.isNearDuplicate(event(STORY, 48.81, "Twitter"), 0));
+    }
+
+    @Test
+    public void testEmptyDescription() {
+        NearDuplicateIndex index = index();
+        assertFalse(index.isNearDuplicate(event("", 48.81, "Twitter"), 0));
+        assertFalse(index.isNearDuplicate(event("", 48.81, "Twitter"), 0));
+    }
+
+    @Test
+    public void testSimilarity() {
+        int[] signature = NearDuplicateIndex.signature(STORY);
+        assertEquals(1.0, NearDuplicateIndex.similarity(signature, NearDuplicateIndex.signature(STORY)), 0);
+        assertTrue(NearDuplicateIndex.similarity(signature, NearDuplicateIndex.signature(STORY + " via @leparisien")) >= 0.7);
+        assertTrue(NearDuplicateIndex.similarity(signature, NearDuplicateIndex.signature("Concert gratuit ce soir au parc")) < 0.3);
+    }
+
+    @Test
+    public void testSignatureIgnoresCaseAndPunctuation() {
+        assertArrayEquals(NearDuplicateIndex.signature("Fire in Paris!"), NearDuplicateIndex.signature("fire, in paris"));
+        assertNull(NearDuplicateIndex.signature(" ... "));
+    }
+}
@@ -0,0 +1,75 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static com.waves_rsp.ikb4stream.producer.datasource.TestEvents.event;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverloadControllerTest {
+    private static OverloadController controller(int maxLevel) {
+        return new OverloadController(maxLevel, 100, 90, 1000, 25, Collections.singleton("Twitter"), 4);
+    }
+
+    @Test
+    public void testEscalateOneModePerRound() {
+        OverloadController controller = controller(3);
+        assertEquals(OverloadController.Mode.NORMAL, controller.update(10, 10, 10));
+        assertEquals(OverloadController.Mode.RAISE_TARGET, controller.update(100, 10, 10));
+        assertEquals(OverloadController.Mode.SKIP_LOW_PRIORITY, controller.update(10, 95, 10));
+        assertEquals(OverloadController.Mode.SAMPLE, controller.update(10, 10, 2000));
+        assertEquals(OverloadController.Mode.SAMPLE, controller.update(100, 10, 10));
+    }
+
+    @Test
+    public void testMaxLevel() {
+        OverloadController controller = controller(1);
+        controller.update(100, 10, 10);
+        controller.update(100, 10, 10);
+        assertEquals(OverloadController.Mode.RAISE_TARGET, controller.getMode());
+        assertEquals(OverloadController.Mode.NORMAL, controller(0).update(100, 100, 10_000));
+    }
+
+    @Test
+    public void testRecover() {
+        OverloadController controller = controller(3);
+        controller.update(100, 10, 10);
+        controller.update(100, 10, 10);
+        for (int i = 1; i < OverloadController.RECOVERY_ROUNDS; i++) {
+            assertEquals(OverloadController.Mode.SKIP_LOW_PRIORITY, controller.update(10, 10, 10));
+        }
+        assertEquals(OverloadController.Mode.RAISE_TARGET, controller.update(10, 10, 10));
+        controller.update(100, 10, 10);
+        assertEquals(OverloadController.Mode.SKIP_LOW_PRIORITY, controller.getMode());
+    }
+
+    @Test
+    public void testTarget() {
+        OverloadController controller = controller(3);
+        assertEquals(25, controller.target(25));
+        controller.update(100, 10, 10);
+        assertEquals(50, controller.target(25));
+    }
+
+    @Test
+    public void testShed() {
+        OverloadController controller = controller(3);
+        assertFalse(controller.shed(event("description", "Twitter")));
+        controller.update(100, 10, 10);
+        assertFalse(controller.shed(event("description", "Twitter")));
+        controller.update(100, 10, 10);
+        assertTrue(controller.shed(event("description", "Twitter")));
+        assertFalse(controller.shed(event("description", "OpenAgenda")));
+        controller.update(100, 10, 10);
+        int kept = 0;
+        for (int i = 0; i < 20; i++) {
+            if (!controller.shed(event("description", "OpenAgenda"))) {
+                kept++;
+            }
+        }
+        assertEquals(5, kept);
+    }
+}
@@ -0,0 +1,89 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.waves_rsp.ikb4stream.producer.datasource.TestEvents.event;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PersistenceStageTest {
+    private static PackagedEvent packEvent(Event event) {
+        return new PackagedEvent(event, System.currentTimeMillis());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullWriter() {
+        new PersistenceStage(DataQueue.createDataQueue(), null, 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new PersistenceStage(DataQueue.createDataQueue(), (events, callback) -> callback.onResult(null), 1, 0);
+    }
+
+    @Test
+    public void testWriteFromScoringThread() throws InterruptedException {
+        List<List<Event>> written = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        PersistenceStage stage = new PersistenceStage(DataQueue.createDataQueue(), (events, callback) -> {
+            written.add(events);
+            threads.add(Thread.currentThread());
+            callback.onResult(null);
+        }, 0, 1);
+        List<Event> events = Arrays.asList(event("event " + 0, "source"), event("event " + 1, "source"));
+        stage.submit(events, Arrays.asList(packEvent(events.get(0)), packEvent(events.get(1))));
+        assertEquals(Collections.singletonList(events), written);
+        assertSame(Thread.currentThread(), threads.get(0));
+        assertTrue(stage.isEmpty());
+    }
+
+    @Test
+    public void testWriteFromStageThreads() throws InterruptedException {
+        BlockingQueue<String> written = new ArrayBlockingQueue<>(10);
+        PersistenceStage stage = new PersistenceStage(DataQueue.createDataQueue(), (events, callback) -> {
+            events.forEach(event -> written.add(Thread.currentThread().getName() + " " + event.getDescription()));
+            callback.onResult(null);
+        }, 1, 2);
+        stage.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                Event event = event("event " + i, "source");
+                stage.submit(Collections.singletonList(event), Collections.singletonList(packEvent(event)));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals("Persistence 1 event " + i, written.poll(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            stage.stop();
+        }
+    }
+
+    @Test
+    public void testWriteCounter() throws InterruptedException {
+        PersistenceStage stage = new PersistenceStage(DataQueue.createDataQueue(), (events, callback) -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            callback.onResult(events.size() > 1 ? new IllegalStateException("database down") : null);
+        }, 0, 1);
+        Event event = event("event " + 0, "source");
+        stage.submit(Collections.singletonList(event), Collections.singletonList(packEvent(event)));
+        List<Event> events = Arrays.asList(event("event " + 1, "source"), event("event " + 2, "source"));
+        stage.submit(events, Arrays.asList(packEvent(events.get(0)), packEvent(events.get(1))));
+        // Failed writes are timed as well: a slow database in error still shows in the write time
+        assertTrue(stage.getWriteCounter().takeMean() >= 50);
+        assertTrue(stage.getWriteCounter().getLastTotal() >= 100);
+    }
+}
@@ -0,0 +1,164 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferEventQueueTest {
+    private static PackagedEvent packagedEvent(int i) {
+        Date date = new Date();
+        return new PackagedEvent(new Event(new LatLong(1, 1), date, date, "event " + i, "ring"), i);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RingBufferEventQueue(0);
+    }
+
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() {
+        RingBufferEventQueue queue = new RingBufferEventQueue(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(packagedEvent(i)));
+        }
+        assertFalse(queue.offer(packagedEvent(4)));
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void testSingleSlotCapacity() throws InterruptedException {
+        RingBufferEventQueue queue = new RingBufferEventQueue(1);
+        assertTrue(queue.offer(packagedEvent(0)));
+        assertTrue(queue.offer(packagedEvent(1)));
+        assertFalse(queue.offer(packagedEvent(2)));
+        assertEquals(0, queue.take().arrivedTime);
+        assertEquals(1, queue.take().arrivedTime);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testFifoOrder() throws InterruptedException {
+        RingBufferEventQueue queue = new RingBufferEventQueue(8);
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 8; i++) {
+                assertTrue(queue.offer(packagedEvent(i)));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i, queue.take().arrivedTime);
+            }
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDrainToBatch() {
+        RingBufferEventQueue queue = new RingBufferEventQueue(16);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(packagedEvent(i));
+        }
+        List<PackagedEvent> batch = new ArrayList<>();
+        assertEquals(4, queue.drainTo(batch, 4));
+        assertEquals(6, queue.drainTo(batch, 100));
+        assertEquals(0, queue.drainTo(batch, 100));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, batch.get(i).arrivedTime);
+        }
+    }
+
+    @Test
+    public void testPollTimeout() throws InterruptedException {
+        Thread.interrupted();
+        RingBufferEventQueue queue = new RingBufferEventQueue(4);
+        assertNull(queue.poll(5, TimeUnit.MILLISECONDS));
+        queue.offer(packagedEvent(7));
+        assertEquals(7, queue.poll(5, TimeUnit.MILLISECONDS).arrivedTime);
+    }
+
+    @Test
+    public void testTimedOfferWaitsForRoom() throws InterruptedException {
+        Thread.interrupted();
+        RingBufferEventQueue queue = new RingBufferEventQueue(1);
+        assertTrue(queue.offer(packagedEvent(0), 5, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer(packagedEvent(1), 5, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer(packagedEvent(2), 5, TimeUnit.MILLISECONDS));
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+                queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        assertTrue(queue.offer(packagedEvent(3), 5, TimeUnit.SECONDS));
+        consumer.join();
+        assertEquals(1, queue.take().arrivedTime);
+        assertEquals(3, queue.take().arrivedTime);
+    }
+
+    @Test
+    public void testManyProducersManyConsumers() throws InterruptedException {
+        // Connector tests may leave the runner thread interrupted
+        Thread.interrupted();
+        RingBufferEventQueue queue = new RingBufferEventQueue(64);
+        int producers = 4;
+        int perProducer = 5000;
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        AtomicInteger consumed = new AtomicInteger();
+        ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            Thread consumer = new Thread(() -> {
+                List<PackagedEvent> batch = new ArrayList<>();
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        batch.clear();
+                        if (queue.drainTo(batch, 8) == 0) {
+                            batch.add(queue.take());
+                        }
+                        batch.forEach(p -> {
+                            seen.put(p.arrivedTime, true);
+                            consumed.incrementAndGet();
+                            done.countDown();
+                        });
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumer.start();
+            threads.add(consumer);
+        }
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    PackagedEvent event = packagedEvent(offset + i);
+                    while (!queue.offer(event)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producer.start();
+            threads.add(producer);
+        }
+        done.await();
+        threads.forEach(Thread::interrupt);
+        assertEquals(producers * perProducer, consumed.get());
+        assertEquals(producers * perProducer, seen.size());
+        assertTrue(queue.isEmpty());
+    }
+}
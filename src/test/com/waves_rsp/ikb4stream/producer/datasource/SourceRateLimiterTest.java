@@ -0,0 +1,67 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.waves_rsp.ikb4stream.producer.datasource.TestEvents.event;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SourceRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static SourceRateLimiter limiter(long rate, long burst, long sample) {
+        return new SourceRateLimiter(source -> "noisy".equals(source) ? rate : 0, source -> burst, source -> sample);
+    }
+
+    @Test
+    public void testBurstThenRate() {
+        SourceRateLimiter limiter = limiter(2, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.admit(event("description", "noisy"), 0));
+        }
+        assertFalse(limiter.admit(event("description", "noisy"), 0));
+        assertTrue(limiter.admit(event("description", "noisy"), SECOND / 2));
+        assertFalse(limiter.admit(event("description", "noisy"), SECOND / 2));
+        assertTrue(limiter.admit(event("description", "noisy"), SECOND));
+    }
+
+    @Test
+    public void testRefillIsCappedByBurst() {
+        SourceRateLimiter limiter = limiter(1, 3, 0);
+        assertTrue(limiter.admit(event("description", "noisy"), 0));
+        int admitted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (limiter.admit(event("description", "noisy"), 100 * SECOND)) {
+                admitted++;
+            }
+        }
+        assertEquals(3, admitted);
+    }
+
+    @Test
+    public void testOtherSourcesUnlimited() {
+        SourceRateLimiter limiter = limiter(1, 1, 0);
+        assertTrue(limiter.admit(event("description", "noisy"), 0));
+        assertFalse(limiter.admit(event("description", "noisy"), 0));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.admit(event("description", "quiet"), 0));
+        }
+    }
+
+    @Test
+    public void testSample() {
+        SourceRateLimiter limiter = limiter(1, 1, 4);
+        assertTrue(limiter.admit(event("description", "noisy"), 0));
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.admit(event("description", "noisy"), 0)) {
+                admitted++;
+            }
+        }
+        assertEquals(5, admitted);
+    }
+
+}
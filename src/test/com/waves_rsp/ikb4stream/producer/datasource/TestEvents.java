@@ -0,0 +1,15 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+
+import java.util.Date;
+
+final class TestEvents {
+    private TestEvents() {
+    }
+
+    static Event event(String description, String source) {
+        return new Event(new LatLong(48.8, 2.3), new Date(1000), new Date(2000), description, source);
+    }
+}
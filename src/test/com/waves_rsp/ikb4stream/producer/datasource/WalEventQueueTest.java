@@ -0,0 +1,221 @@
+package com.waves_rsp.ikb4stream.producer.datasource;
+
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WalEventQueueTest {
+    private Path directory;
+
+    private static PackagedEvent packagedEvent(int i) {
+        LatLong[] polygon = {new LatLong(0, 0), new LatLong(0, 1), new LatLong(1, 1), new LatLong(0, 0)};
+        return new PackagedEvent(new Event(polygon, new Date(i), new Date(i + 1), "event " + i, (byte) 50, "wal"), i);
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.count();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Thread.interrupted();
+        directory = Files.createTempDirectory("wal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        Event event = packagedEvent(3).event;
+        assertEquals(event, WalEventQueue.decode(WalEventQueue.encode(event)));
+        Event notScored = new Event(new LatLong(1, 2), new Date(1), new Date(2), "é", "wal");
+        assertEquals(notScored, WalEventQueue.decode(WalEventQueue.encode(notScored)));
+    }
+
+    @Test
+    public void testEncodeDecodeAttributes() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("text", "é");
+        attributes.put("certified", true);
+        attributes.put("count", 42L);
+        attributes.put("temperature", 21.5);
+        Event event = packagedEvent(3).event.withAttributes(attributes);
+        Event decoded = WalEventQueue.decode(WalEventQueue.encode(event));
+        assertEquals(event, decoded);
+        assertEquals(attributes, decoded.getAttributes());
+    }
+
+    @Test
+    public void testFifoAndCapacity() throws IOException, InterruptedException {
+        WalEventQueue queue = new WalEventQueue(directory, 256, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer(packagedEvent(i)));
+        }
+        assertFalse(queue.offer(packagedEvent(3)));
+        assertEquals(3, queue.size());
+        for (int i = 0; i < 3; i++) {
+            PackagedEvent packagedEvent = queue.take();
+            assertEquals(packagedEvent(i).event, packagedEvent.event);
+            assertEquals(i, packagedEvent.arrivedTime);
+        }
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+        queue.close();
+    }
+
+    @Test
+    public void testUnacknowledgedEventsRecovered() throws IOException {
+        WalEventQueue queue = new WalEventQueue(directory, 256, 100);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(packagedEvent(i));
+        }
+        List<PackagedEvent> taken = new ArrayList<>();
+        queue.drainTo(taken, 6);
+        for (PackagedEvent packagedEvent : taken.subList(0, 4)) {
+            queue.ack(packagedEvent);
+        }
+        queue.close();
+
+        WalEventQueue reopened = new WalEventQueue(directory, 256, 100);
+        assertEquals(6, reopened.size());
+        List<PackagedEvent> recovered = new ArrayList<>();
+        reopened.drainTo(recovered, 100);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(packagedEvent(i + 4).event, recovered.get(i).event);
+        }
+        recovered.forEach(reopened::ack);
+        reopened.close();
+        assertEquals(0, new WalEventQueue(directory, 256, 100).size());
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsDeleted() throws IOException {
+        WalEventQueue queue = new WalEventQueue(directory, 128, 1000);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(packagedEvent(i));
+        }
+        long files = countFiles();
+        assertTrue(files > 2);
+        List<PackagedEvent> taken = new ArrayList<>();
+        queue.drainTo(taken, 20);
+        taken.forEach(queue::ack);
+        assertEquals(2, countFiles());
+        queue.offer(packagedEvent(20));
+        assertTrue(queue.drainTo(taken, 1) == 1);
+        queue.close();
+    }
+
+    @Test
+    public void testNackDeliveredAfterDelay() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        WalEventQueue queue = new WalEventQueue(directory, 128, 1000, 100, 0, clock::get);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(packagedEvent(i));
+        }
+        List<PackagedEvent> taken = new ArrayList<>();
+        queue.drainTo(taken, 10);
+        queue.nack(taken.get(0));
+        taken.subList(1, 10).forEach(queue::ack);
+        List<PackagedEvent> again = new ArrayList<>();
+        clock.set(99);
+        assertEquals(0, queue.drainTo(again, 10));
+        clock.set(100);
+        assertEquals(1, queue.drainTo(again, 10));
+        assertEquals(packagedEvent(0).event, again.get(0).event);
+        assertEquals(0, again.get(0).arrivedTime);
+        queue.nack(again.get(0));
+        clock.set(299);
+        assertEquals(0, queue.drainTo(again, 10));
+        clock.set(300);
+        assertEquals(1, queue.drainTo(again, 10));
+        queue.ack(again.get(1));
+        queue.offer(packagedEvent(10));
+        assertEquals(2, countFiles());
+        queue.close();
+    }
+
+    @Test
+    public void testNackDroppedAfterMaxAttempts() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        WalEventQueue queue = new WalEventQueue(directory, 128, 1000, 10, 2, clock::get);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(packagedEvent(i));
+        }
+        List<PackagedEvent> taken = new ArrayList<>();
+        queue.drainTo(taken, 10);
+        queue.nack(taken.get(0));
+        taken.subList(1, 10).forEach(queue::ack);
+        clock.set(10);
+        List<PackagedEvent> again = new ArrayList<>();
+        assertEquals(1, queue.drainTo(again, 10));
+        queue.nack(again.get(0));
+        clock.set(1000);
+        assertEquals(0, queue.drainTo(again, 10));
+        queue.offer(packagedEvent(10));
+        assertEquals(2, countFiles());
+        queue.close();
+    }
+
+    @Test
+    public void testNackWakesTake() throws IOException, InterruptedException {
+        WalEventQueue queue = new WalEventQueue(directory, 1024, 1000, 50, 0, System::currentTimeMillis);
+        queue.offer(packagedEvent(1));
+        queue.nack(queue.take());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertEquals(packagedEvent(1).event, queue.take().event);
+        queue.close();
+    }
+
+    @Test
+    public void testOfferFailsWithoutDirectory() throws IOException {
+        WalEventQueue queue = new WalEventQueue(directory, 128, 1000);
+        Files.delete(directory);
+        assertFalse(queue.offer(packagedEvent(1)));
+        Files.createDirectories(directory);
+        queue.close();
+    }
+
+    @Test
+    public void testDeletedSegmentsUnmapped() throws IOException {
+        Path maps = Paths.get("/proc/self/maps");
+        Assume.assumeTrue(Files.isReadable(maps));
+        WalEventQueue queue = new WalEventQueue(directory, 128, 1000);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(packagedEvent(i));
+        }
+        List<PackagedEvent> taken = new ArrayList<>();
+        queue.drainTo(taken, 20);
+        taken.forEach(queue::ack);
+        long mapped = Files.readAllLines(maps).stream().filter(line -> line.contains(directory.toString())).count();
+        assertEquals(1, mapped);
+        queue.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.waves_rsp.ikb4stream.producer.score;
+
+import com.waves_rsp.ikb4stream.core.datasource.model.IScoreProcessor;
+import com.waves_rsp.ikb4stream.core.model.Event;
+import com.waves_rsp.ikb4stream.core.model.LatLong;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScoreProcessorRegistryTest {
+    public static class SharedProcessor implements IScoreProcessor {
+        @Override
+        public Event processScore(Event event) {
+            return event.withScore((byte) 10);
+        }
+
+        @Override
+        public List<String> getSources() {
+            return Arrays.asList("a", "b");
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    public static class LocalProcessor implements IScoreProcessor {
+        @Override
+        public Event processScore(Event event) {
+            return event.withScore((byte) (event.getScore() + 1));
+        }
+
+        @Override
+        public List<String> getSources() {
+            return Arrays.asList("a", "b");
+        }
+    }
+
+    private final ScoreProcessorRegistry registry = new ScoreProcessorRegistry(Arrays.asList(new SharedProcessor(), new LocalProcessor()));
+
+    @Test
+    public void testRegistrations() {
+        assertEquals(2, registry.getRegistrations("a").size());
+        assertTrue(registry.getRegistrations("c").isEmpty());
+    }
+
+    @Test
+    public void testSharedAndLocalInstances() {
+        ScoreProcessorManager first = new ScoreProcessorManager(() -> registry);
+        ScoreProcessorManager second = new ScoreProcessorManager(() -> registry);
+        List<IScoreProcessor> firstA = first.findIScoreProcessor("a");
+        List<IScoreProcessor> secondA = second.findIScoreProcessor("a");
+        assertSame(firstA.get(0), secondA.get(0));
+        assertNotSame(firstA.get(1), secondA.get(1));
+        assertSame(firstA.get(1), first.findIScoreProcessor("b").get(1));
+    }
+
+    @Test
+    public void testProcessInOrder() {
+        Event event = new Event(new LatLong(1, 2), new Date(1), new Date(2), "description", "a");
+        assertEquals(11, new ScoreProcessorManager(() -> registry).processScore(event).getScore());
+        Event other = new Event(new LatLong(1, 2), new Date(1), new Date(2), "description", "c");
+        assertEquals(-1, new ScoreProcessorManager(() -> registry).processScore(other).getScore());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullProcessors() {
+        new ScoreProcessorRegistry(null);
+    }
+
+    @Test
+    public void testEmptyRegistry() {
+        assertTrue(new ScoreProcessorRegistry(Collections.emptyList()).getRegistrations("a").isEmpty());
+    }
+
+    @Test
+    public void testReloadModule() {
+        ScoreProcessorRegistry first = new ScoreProcessorRegistry(Collections.emptyList())
+                .withModule(Paths.get("shared.jar"), Collections.singletonList(new SharedProcessor()))
+                .withModule(Paths.get("local.jar"), Collections.singletonList(new LocalProcessor()));
+        AtomicReference<ScoreProcessorRegistry> current = new AtomicReference<>(first);
+        ScoreProcessorManager manager = new ScoreProcessorManager(current::get);
+        List<IScoreProcessor> before = manager.findIScoreProcessor("a");
+        assertEquals(2, before.size());
+
+        current.set(first.withModule(Paths.get("shared.jar"), Collections.singletonList(new SharedProcessor())));
+        manager.update();
+        List<IScoreProcessor> reloaded = manager.findIScoreProcessor("a");
+        assertNotSame(before.get(0), reloaded.get(0));
+        assertSame(before.get(1), reloaded.get(1));
+
+        current.set(current.get().withModule(Paths.get("local.jar"), Collections.emptyList()));
+        manager.update();
+        assertEquals(1, manager.findIScoreProcessor("a").size());
+        assertFalse(current.get().contains(first.getRegistrations("a").get(1)));
+    }
+
+    @Test
+    public void testClassLoaderClosedOnceReleased() {
+        AtomicBoolean sharedClosed = new AtomicBoolean();
+        AtomicBoolean localClosed = new AtomicBoolean();
+        ScoreProcessorRegistry first = new ScoreProcessorRegistry(Collections.emptyList())
+                .withModule(Paths.get("shared.jar"), Collections.singletonList(new SharedProcessor()), () -> sharedClosed.set(true))
+                .withModule(Paths.get("local.jar"), Collections.singletonList(new LocalProcessor()), () -> localClosed.set(true));
+        assertTrue(first.acquire());
+        AtomicReference<ScoreProcessorRegistry> current = new AtomicReference<>(first);
+        ScoreProcessorManager manager = new ScoreProcessorManager(current::get);
+
+        ScoreProcessorRegistry next = first.withModule(Paths.get("local.jar"), Collections.singletonList(new LocalProcessor()));
+        assertTrue(next.acquire());
+        current.set(next);
+        first.retire(next);
+        assertFalse(localClosed.get());
+
+        manager.update();
+        assertTrue(localClosed.get());
+        assertFalse(sharedClosed.get());
+        assertFalse(first.acquire());
+
+        manager.close();
+        assertFalse(sharedClosed.get());
+    }
+}
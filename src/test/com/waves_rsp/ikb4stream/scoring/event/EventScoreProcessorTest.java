@@ -8,6 +8,8 @@ import twitter4j.JSONException;
 import java.util.Calendar;
 import java.util.Date;
 
+import static org.junit.Assert.assertEquals;
+
 
 public class EventScoreProcessorTest {
     private final LatLong latlong = new LatLong(2, 3);
@@ -27,6 +29,14 @@ public class EventScoreProcessorTest {
         assert (clone.getScore() != -1);
     }
 
+    @Test
+    public void checkPhraseScore() {
+        // Same nouns and verbs, only the first one holds the phrase "aire de jeux"
+        Event phrase = new Event(latlong, date, date, "Une aire de jeux à Paris", "Facebook");
+        Event words = new Event(latlong, date, date, "Une aire à Paris, des jeux", "Facebook");
+        assertEquals(tsp.processScore(words).getScore() + 4, tsp.processScore(phrase).getScore());
+    }
+
     @Test
     public void testSources() {
         assert (tsp.getSources() != null);
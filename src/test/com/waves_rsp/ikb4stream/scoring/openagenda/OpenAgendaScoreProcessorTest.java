@@ -7,6 +7,8 @@ import twitter4j.JSONException;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 public class OpenAgendaScoreProcessorTest {
     private final OpenAgendaScoreProcessor sp = new OpenAgendaScoreProcessor();
@@ -35,4 +37,17 @@ public class OpenAgendaScoreProcessorTest {
         Event clone = sp.processScore(event);
         assert (clone.getScore() != -1);
     }
+
+    @Test
+    public void checkScoreFromAttributes() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("title", "Titre");
+        attributes.put("description", "Roger:, il y a une fuite d'eau à Paris #eau");
+        attributes.put("city", "Paris");
+        Event event = new Event(latlong, date, date, "Titre Roger:, il y a une fuite d'eau à Paris #eau", "OpenAgenda")
+                .withAttributes(attributes);
+        Event clone = sp.processScore(event);
+        assert (clone.getScore() != -1);
+        assert ("Titre Roger:, il y a une fuite d'eau à Paris #eau".equals(clone.getDescription()));
+    }
 }
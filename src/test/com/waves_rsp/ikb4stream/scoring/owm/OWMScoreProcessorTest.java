@@ -7,6 +7,8 @@ import twitter4j.JSONException;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 public class OWMScoreProcessorTest {
     private final OWMScoreProcessor tsp = new OWMScoreProcessor();
@@ -56,4 +58,22 @@ public class OWMScoreProcessorTest {
         Event clone = tsp.processScore(event);
         assert (clone.getScore() != -1);
     }
+
+    @Test
+    public void checkScoreFromAttributes() {
+        String description = "{\"main\": {\"temp\": 48, \"pressure\": 1013, \"humidity\": 81}, \"wind\": {\"speed\": 4.1}, "
+                + "\"weather\": [{\"main\": \"rain\", \"description\": \"Il pleut\"}]}";
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("temperature", 48.0);
+        attributes.put("pressure", 1013.0);
+        attributes.put("humidity", 81.0);
+        attributes.put("wind_speed", 4.1);
+        attributes.put("weather", "rain");
+        attributes.put("weather_description", "Il pleut");
+        Event event = new Event(latlong, date, date, description, source);
+        Event fromJson = tsp.processScore(event);
+        Event fromAttributes = tsp.processScore(event.withAttributes(attributes));
+        assert (fromJson.getScore() == fromAttributes.getScore());
+        assert (fromJson.getDescription().equals(fromAttributes.getDescription()));
+    }
 }
@@ -6,8 +6,11 @@ import org.junit.Test;
 import twitter4j.JSONException;
 
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 
+import static org.junit.Assert.assertEquals;
+
 public class TwitterScoreProcessorTest {
     private final TwitterScoreProcessor tsp = new TwitterScoreProcessor();
     private final Date date = Calendar.getInstance().getTime();
@@ -35,4 +38,24 @@ public class TwitterScoreProcessorTest {
         Event event = new Event(latlong, date, date, description, source);
         assert (tsp.processScore(event).getScore() != -1);
     }
+
+    @Test
+    public void calculPhraseScore() {
+        // Same nouns and verbs, only the first one holds the phrase "aire de jeux"
+        Event phrase = new Event(latlong, date, date, "Une aire de jeux à Paris", source)
+                .withAttributes(Collections.singletonMap("user_certified", false));
+        Event words = new Event(latlong, date, date, "Une aire à Paris, des jeux", source)
+                .withAttributes(Collections.singletonMap("user_certified", false));
+        assertEquals(tsp.processScore(words).getScore() + 4, tsp.processScore(phrase).getScore());
+    }
+
+    @Test
+    public void calculScoreFromAttributes() {
+        String description = "Roger, il y a une fuite d'eau à Paris #eau";
+        Event event = new Event(latlong, date, date, description, source)
+                .withAttributes(Collections.singletonMap("user_certified", true));
+        Event scored = tsp.processScore(event);
+        assert (scored.getScore() != -1);
+        assert (description.equals(scored.getDescription()));
+    }
 }